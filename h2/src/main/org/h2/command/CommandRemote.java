@@ -6,6 +6,7 @@
 package org.h2.command;
 
 import java.io.IOException;
+import java.sql.Statement;
 import java.util.ArrayList;
 
 import org.h2.engine.Constants;
@@ -220,6 +221,75 @@ public class CommandRemote implements CommandInterface {
         }
     }
 
+    /**
+     * Check whether the server can execute a whole batch in one round trip.
+     * This is not supported in cluster mode, where each statement needs to be
+     * committed on all nodes.
+     *
+     * @return true if executeBatchUpdate can be used
+     */
+    public boolean isBatchSupported() {
+        return session.getClientVersion() >= Constants.TCP_PROTOCOL_VERSION_17
+                && !session.isClustered();
+    }
+
+    /**
+     * Execute the statement once for each parameter set. All parameter sets
+     * are sent to the server in one message, and the update counts and
+     * generated keys are returned in one response.
+     *
+     * @param batchParameters the parameter sets (no value may be null)
+     * @param generatedKeys the list the generated keys are added to
+     * @param errors the array where the exception of each failed parameter
+     *            set is stored (the entry is null if there was no error)
+     * @return the update counts
+     */
+    public int[] executeBatchUpdate(ArrayList<Value[]> batchParameters,
+            ArrayList<Value> generatedKeys, DbException[] errors) {
+        synchronized (session) {
+            int size = batchParameters.size();
+            int[] updateCounts = new int[size];
+            boolean autoCommit = false;
+            for (int i = 0, count = 0; i < transferList.size(); i++) {
+                prepareIfRequired();
+                Transfer transfer = transferList.get(i);
+                try {
+                    session.traceOperation("COMMAND_EXECUTE_BATCH_UPDATE", id);
+                    transfer.writeInt(SessionRemote.COMMAND_EXECUTE_BATCH_UPDATE).
+                            writeInt(id).writeInt(size);
+                    for (Value[] set : batchParameters) {
+                        transfer.writeInt(set.length);
+                        for (Value v : set) {
+                            transfer.writeValue(v);
+                        }
+                    }
+                    session.done(transfer);
+                    generatedKeys.clear();
+                    for (int j = 0; j < size; j++) {
+                        if (transfer.readInt() == SessionRemote.STATUS_ERROR) {
+                            updateCounts[j] = Statement.EXECUTE_FAILED;
+                            errors[j] = DbException.convert(
+                                    SessionRemote.readException(transfer));
+                        } else {
+                            updateCounts[j] = transfer.readInt();
+                            errors[j] = null;
+                            Value key = transfer.readValue();
+                            if (key != ValueNull.INSTANCE) {
+                                generatedKeys.add(key);
+                            }
+                        }
+                    }
+                    autoCommit = transfer.readBoolean();
+                } catch (IOException e) {
+                    session.removeServer(e, i--, ++count);
+                }
+            }
+            session.setAutoCommitFromServer(autoCommit);
+            session.readSessionState();
+            return updateCounts;
+        }
+    }
+
     private void checkParameters() {
         if (cmdType != EXPLAIN) {
             for (ParameterInterface p : parameters) {
@@ -5686,6 +5686,10 @@ public class Parser {
             readIfEqualOrTo();
             read();
             return new NoOperation(session);
+        } else if (readIf("COMPRESS_TRANSFER")) {
+            readIfEqualOrTo();
+            read();
+            return new NoOperation(session);
         } else if (readIf("ASSERT")) {
             readIfEqualOrTo();
             read();
@@ -189,6 +189,8 @@ public class CreateTable extends SchemaCommand {
                     insert.setQuery(asQuery);
                     insert.setTable(table);
                     insert.setInsertFromSelect(true);
+                    // if the statement fails, the table is dropped
+                    insert.setBulkInsert(!transactional);
                     insert.prepare();
                     insert.update();
                 } finally {
@@ -47,6 +47,7 @@ public class Insert extends Prepared implements ResultTarget {
     private boolean sortedInsertMode;
     private int rowNumber;
     private boolean insertFromSelect;
+    private boolean bulkInsert;
     /**
      * This table filter is for MERGE..USING support - not used in stand-alone DML
      */    
@@ -115,9 +116,16 @@ public class Insert extends Prepared implements ResultTarget {
             index = table.getScanIndex(session);
             index.setSortedInsertMode(true);
         }
+        boolean bulk = bulkInsert && table.startBulkInsert(session);
+        boolean success = false;
         try {
-            return insertRows();
+            int count = insertRows();
+            success = true;
+            return count;
         } finally {
+            if (bulk) {
+                table.endBulkInsert(session, success);
+            }
             if (index != null) {
                 index.setSortedInsertMode(false);
             }
@@ -132,6 +140,14 @@ public class Insert extends Prepared implements ResultTarget {
         int listSize = list.size();
         if (listSize > 0) {
             int columnLen = columns.length;
+            // without triggers and ON DUPLICATE KEY UPDATE, the rows are
+            // added to the table at once
+            ArrayList<Row> rows = null;
+            if (listSize > 1 && table.canAddRows() &&
+                    (duplicateKeyAssignmentMap == null ||
+                    duplicateKeyAssignmentMap.isEmpty())) {
+                rows = New.arrayList();
+            }
             for (int x = 0; x < listSize; x++) {
                 session.startStatementWithinTransaction();
                 Row newRow = table.getTemplateRow();
@@ -156,6 +172,10 @@ public class Insert extends Prepared implements ResultTarget {
                 table.validateConvertUpdateSequence(session, newRow);
                 boolean done = table.fireBeforeRow(session, null, newRow);
                 if (!done) {
+                    if (rows != null) {
+                        rows.add(newRow);
+                        continue;
+                    }
                     table.lock(session, true, false);
                     try {
                         table.addRow(session, newRow);
@@ -166,6 +186,13 @@ public class Insert extends Prepared implements ResultTarget {
                     table.fireAfterRow(session, null, newRow, false);
                 }
             }
+            if (rows != null) {
+                table.lock(session, true, false);
+                table.addRows(session, rows);
+                for (Row row : rows) {
+                    table.fireAfterRow(session, null, row, false);
+                }
+            }
         } else {
             table.lock(session, true, false);
             if (insertFromSelect) {
@@ -315,6 +342,17 @@ public class Insert extends Prepared implements ResultTarget {
         this.insertFromSelect = value;
     }
 
+    /**
+     * Allow to add the rows in bulk. This is only allowed if the table was
+     * created by the same statement, which drops the table if the statement
+     * fails, so that the rows never need to be rolled back.
+     *
+     * @param bulkInsert the new value
+     */
+    public void setBulkInsert(boolean bulkInsert) {
+        this.bulkInsert = bulkInsert;
+    }
+
     @Override
     public boolean isCacheable() {
         return duplicateKeyAssignmentMap == null ||
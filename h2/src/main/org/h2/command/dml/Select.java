@@ -16,17 +16,21 @@ import org.h2.engine.Constants;
 import org.h2.engine.Database;
 import org.h2.engine.Session;
 import org.h2.engine.SysProperties;
+import org.h2.expression.Aggregate;
 import org.h2.expression.Alias;
 import org.h2.expression.Comparison;
+import org.h2.expression.CompiledExpression;
 import org.h2.expression.ConditionAndOr;
 import org.h2.expression.Expression;
 import org.h2.expression.ExpressionColumn;
+import org.h2.expression.ExpressionCompiler;
 import org.h2.expression.ExpressionVisitor;
 import org.h2.expression.Parameter;
 import org.h2.index.Cursor;
 import org.h2.index.Index;
 import org.h2.index.IndexType;
 import org.h2.message.DbException;
+import org.h2.mvstore.db.MVPrimaryIndex;
 import org.h2.result.LazyResult;
 import org.h2.result.LocalResult;
 import org.h2.result.ResultInterface;
@@ -45,7 +49,9 @@ import org.h2.util.ColumnNamer;
 import org.h2.util.New;
 import org.h2.util.StatementBuilder;
 import org.h2.util.StringUtils;
+import org.h2.util.Task;
 import org.h2.util.ValueHashMap;
+import org.h2.value.CompareMode;
 import org.h2.value.Value;
 import org.h2.value.ValueArray;
 import org.h2.value.ValueNull;
@@ -77,6 +83,18 @@ public class Select extends Query {
     private int[] groupIndex;
     private boolean[] groupByExpression;
     private HashMap<Expression, Object> currentGroup;
+
+    /**
+     * The aggregate of each expression (null for the group expression), if
+     * the query is grouped using SelectGroups.
+     */
+    private Aggregate[] groupAggregates;
+
+    /**
+     * The column index of the group expression and of the input of each
+     * aggregate (-1 for COUNT(*)), if the rows can be grouped in parallel.
+     */
+    private int[] groupColumnIds;
     private int havingIndex;
     private boolean isGroupQuery, isGroupSortedQuery;
     private boolean isForUpdate, isForUpdateMvcc;
@@ -307,16 +325,37 @@ public class Select extends Query {
     }
 
     private void queryGroup(int columnCount, LocalResult result) {
+        if (groupAggregates == null) {
+            queryGroup(columnCount, result, null, 0);
+        } else if (!queryGroupParallel(columnCount, result)) {
+            queryGroupAggregates(columnCount, result, null, 0);
+        }
+    }
+
+    /**
+     * Group the rows of the query, or the rows of a partition.
+     *
+     * @param columnCount the number of columns
+     * @param result the result
+     * @param source the partitions to read from, or null to run the query
+     * @param partition the partition to read
+     */
+    private void queryGroup(int columnCount, LocalResult result,
+            SelectGroupPartitions source, int partition) {
         ValueHashMap<HashMap<Expression, Object>> groups =
                 ValueHashMap.newInstance();
         int rowNumber = 0;
-        setCurrentRowNumber(0);
         currentGroup = null;
         ValueArray defaultGroup = ValueArray.get(new Value[0]);
-        int sampleSize = getSampleSizeValue(session);
-        while (topTableFilter.next()) {
-            setCurrentRowNumber(rowNumber + 1);
-            if (isConditionMet()) {
+        int sampleSize = 0;
+        if (source == null) {
+            setCurrentRowNumber(0);
+            sampleSize = getSampleSizeValue(session);
+        }
+        int maxGroups = getMaxMemoryGroups(source);
+        SelectGroupPartitions partitions = null;
+        try {
+            while (nextGroupRow(source, partition, rowNumber)) {
                 Value key;
                 rowNumber++;
                 if (groupIndex == null) {
@@ -332,49 +371,351 @@ public class Select extends Query {
                     key = ValueArray.get(keyValues);
                 }
                 HashMap<Expression, Object> values = groups.get(key);
-                if (values == null) {
-                    values = new HashMap<>();
-                    groups.put(key, values);
+                if (values == null && groups.size() >= maxGroups) {
+                    if (partitions == null) {
+                        partitions = createGroupPartitions(source);
+                    }
+                    partitions.add(key);
+                } else {
+                    if (values == null) {
+                        values = new HashMap<>();
+                        groups.put(key, values);
+                    }
+                    currentGroup = values;
+                    currentGroupRowId++;
+                    int len = columnCount;
+                    for (int i = 0; i < len; i++) {
+                        if (groupByExpression == null || !groupByExpression[i]) {
+                            Expression expr = expressions.get(i);
+                            expr.updateAggregate(session);
+                        }
+                    }
                 }
-                currentGroup = values;
-                currentGroupRowId++;
-                int len = columnCount;
-                for (int i = 0; i < len; i++) {
-                    if (groupByExpression == null || !groupByExpression[i]) {
-                        Expression expr = expressions.get(i);
-                        expr.updateAggregate(session);
+                if (sampleSize > 0 && rowNumber >= sampleSize) {
+                    break;
+                }
+            }
+            if (groupIndex == null && groups.size() == 0) {
+                groups.put(defaultGroup, new HashMap<Expression, Object>());
+            }
+            ArrayList<Value> keys = groups.keys();
+            for (Value v : keys) {
+                ValueArray key = (ValueArray) v;
+                currentGroup = groups.get(key);
+                Value[] keyValues = key.getList();
+                Value[] row = new Value[columnCount];
+                for (int j = 0; groupIndex != null && j < groupIndex.length; j++) {
+                    row[groupIndex[j]] = keyValues[j];
+                }
+                for (int j = 0; j < columnCount; j++) {
+                    if (groupByExpression != null && groupByExpression[j]) {
+                        continue;
                     }
+                    Expression expr = expressions.get(j);
+                    row[j] = expr.getValue(session);
+                }
+                if (isHavingNullOrFalse(row)) {
+                    continue;
+                }
+                row = keepOnlyDistinct(row, columnCount);
+                result.addRow(row);
+            }
+            if (partitions != null) {
+                groups = null;
+                keys = null;
+                partitions.done();
+                for (int i = 0; i < partitions.getPartitionCount(); i++) {
+                    queryGroup(columnCount, result, partitions, i);
+                }
+            }
+        } finally {
+            if (partitions != null) {
+                partitions.close();
+            }
+        }
+    }
+
+    private void queryGroupAggregates(int columnCount, LocalResult result,
+            SelectGroupPartitions source, int partition) {
+        Expression keyExpr = groupIndex == null ?
+                null : expressions.get(groupIndex[0]);
+        SelectGroups groups = createSelectGroups();
+        int rowNumber = 0;
+        currentGroup = null;
+        int sampleSize = 0;
+        if (source == null) {
+            setCurrentRowNumber(0);
+            sampleSize = getSampleSizeValue(session);
+        }
+        int maxGroups = getMaxMemoryGroups(source);
+        SelectGroupPartitions partitions = null;
+        try {
+            while (nextGroupRow(source, partition, rowNumber)) {
+                rowNumber++;
+                Value key = keyExpr == null ?
+                        ValueNull.INSTANCE : keyExpr.getValue(session);
+                int group = groups.findGroup(key);
+                if (group < 0 && groups.getGroupCount() >= maxGroups) {
+                    if (partitions == null) {
+                        partitions = createGroupPartitions(source);
+                    }
+                    partitions.add(key);
+                } else {
+                    if (group < 0) {
+                        group = groups.getGroup(key);
+                    }
+                    groups.update(group);
                 }
                 if (sampleSize > 0 && rowNumber >= sampleSize) {
                     break;
                 }
             }
+            addGroupRows(groups, columnCount, result);
+            if (partitions != null) {
+                groups = null;
+                partitions.done();
+                for (int i = 0; i < partitions.getPartitionCount(); i++) {
+                    queryGroupAggregates(columnCount, result, partitions, i);
+                }
+            }
+        } finally {
+            if (partitions != null) {
+                partitions.close();
+            }
         }
-        if (groupIndex == null && groups.size() == 0) {
-            groups.put(defaultGroup, new HashMap<Expression, Object>());
+    }
+
+    private void addGroupRows(SelectGroups groups, int columnCount,
+            LocalResult result) {
+        if (groupIndex == null && groups.getGroupCount() == 0) {
+            groups.getGroup(ValueNull.INSTANCE);
         }
-        ArrayList<Value> keys = groups.keys();
-        for (Value v : keys) {
-            ValueArray key = (ValueArray) v;
-            currentGroup = groups.get(key);
-            Value[] keyValues = key.getList();
+        for (int i = 0, count = groups.getGroupCount(); i < count; i++) {
             Value[] row = new Value[columnCount];
-            for (int j = 0; groupIndex != null && j < groupIndex.length; j++) {
-                row[groupIndex[j]] = keyValues[j];
-            }
             for (int j = 0; j < columnCount; j++) {
-                if (groupByExpression != null && groupByExpression[j]) {
+                row[j] = groups.getValue(j, i);
+            }
+            row = keepOnlyDistinct(row, columnCount);
+            result.addRow(row);
+        }
+    }
+
+    /**
+     * Group the rows using multiple threads, if this is enabled and supported
+     * by the query. The key range of the primary index is split into one
+     * range per thread, and the groups of all threads are merged.
+     *
+     * @param columnCount the number of columns
+     * @param result the result
+     * @return false if the rows were not grouped
+     */
+    private boolean queryGroupParallel(int columnCount, LocalResult result) {
+        int threads = session.getGroupByThreads();
+        if (threads <= 1 || groupColumnIds == null ||
+                !(topTableFilter.getIndex() instanceof MVPrimaryIndex) ||
+                getSampleSizeValue(session) > 0) {
+            return false;
+        }
+        MVPrimaryIndex index = (MVPrimaryIndex) topTableFilter.getIndex();
+        Row first = index.findFirstOrLast(session, true).get();
+        Row last = index.findFirstOrLast(session, false).get();
+        if (first == null || last == null) {
+            addGroupRows(createSelectGroups(), columnCount, result);
+            return true;
+        }
+        long min = first.getKey();
+        long max = last.getKey();
+        long step = (max - min) / threads + 1;
+        if (step <= 0) {
+            // overflow
+            return false;
+        }
+        final int keyColumnId = groupIndex == null ?
+                -1 : groupColumnIds[groupIndex[0]];
+        SelectGroups[] groups = new SelectGroups[threads];
+        Task[] tasks = new Task[threads];
+        for (int i = 0; i < threads; i++) {
+            long from = min + step * i;
+            if (from > max) {
+                break;
+            }
+            first = topTableFilter.getTable().getTemplateRow();
+            first.setKey(from);
+            last = topTableFilter.getTable().getTemplateRow();
+            last.setKey(max - from < step ? max : from + step - 1);
+            final Cursor c = index.find(session, first, last);
+            final SelectGroups g = createSelectGroups();
+            groups[i] = g;
+            tasks[i] = new Task() {
+                @Override
+                public void call() {
+                    for (int rowNumber = 1; c.next(); rowNumber++) {
+                        if ((rowNumber & 4095) == 0) {
+                            session.checkCanceled();
+                        }
+                        Row row = c.get();
+                        Value key = keyColumnId < 0 ?
+                                ValueNull.INSTANCE : row.getValue(keyColumnId);
+                        g.update(g.getGroup(key), row, groupColumnIds);
+                    }
+                }
+            };
+            tasks[i].execute("H2 group by " + i);
+        }
+        Exception ex = null;
+        for (Task t : tasks) {
+            if (t != null) {
+                Exception e = t.getException();
+                if (ex == null) {
+                    ex = e;
+                }
+            }
+        }
+        if (ex != null) {
+            throw DbException.convert(ex);
+        }
+        for (int i = 1; i < threads && groups[i] != null; i++) {
+            groups[0].merge(groups[i]);
+        }
+        addGroupRows(groups[0], columnCount, result);
+        return true;
+    }
+
+    private SelectGroups createSelectGroups() {
+        Expression keyExpr = groupIndex == null ?
+                null : expressions.get(groupIndex[0]);
+        return new SelectGroups(session, groupAggregates,
+                keyExpr == null ? Value.UNKNOWN : keyExpr.getType());
+    }
+
+    /**
+     * Get the column index of the group expression and of the input of each
+     * aggregate, if the rows can be grouped in parallel: the query reads a
+     * single table without a condition, and the group expression and the
+     * input of each aggregate is a column of this table.
+     *
+     * @return the column indexes (-1 for COUNT(*)), or null
+     */
+    private int[] getGroupColumnIds() {
+        if (groupAggregates == null || filters.size() != 1 ||
+                condition != null || topTableFilter.getJoin() != null) {
+            return null;
+        }
+        // MIN and MAX of strings depend on the collator,
+        // which can not be used concurrently
+        if (!CompareMode.OFF.equals(session.getDatabase().getCompareMode().getName())) {
+            return null;
+        }
+        int size = expressions.size();
+        int[] columnIds = new int[size];
+        for (int i = 0; i < size; i++) {
+            Aggregate a = groupAggregates[i];
+            Expression expr;
+            if (a == null) {
+                expr = expressions.get(i);
+            } else if (a.isOrdered()) {
+                return null;
+            } else {
+                expr = a.getOn();
+                if (expr == null) {
+                    columnIds[i] = -1;
                     continue;
                 }
-                Expression expr = expressions.get(j);
-                row[j] = expr.getValue(session);
             }
-            if (isHavingNullOrFalse(row)) {
+            expr = expr.getNonAliasExpression();
+            if (!(expr instanceof ExpressionColumn)) {
+                return null;
+            }
+            ExpressionColumn c = (ExpressionColumn) expr;
+            Column column = c.getColumn();
+            if (c.getTableFilter() != topTableFilter ||
+                    column.getColumnId() < 0 ||
+                    column.getEnumerators() != null) {
+                return null;
+            }
+            columnIds[i] = column.getColumnId();
+        }
+        return columnIds;
+    }
+
+    /**
+     * Move to the next row of the query that matches the condition, or to the
+     * next row of a partition.
+     *
+     * @param source the partitions to read from, or null to run the query
+     * @param partition the partition to read
+     * @param rowNumber the number of rows read so far
+     * @return true if there is a next row
+     */
+    private boolean nextGroupRow(SelectGroupPartitions source, int partition,
+            int rowNumber) {
+        if (source != null) {
+            return source.next(partition);
+        }
+        while (topTableFilter.next()) {
+            setCurrentRowNumber(rowNumber + 1);
+            if (isConditionMet()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the maximum number of groups that are kept in memory. The rows of
+     * other groups are buffered in partitions, which are grouped later.
+     *
+     * @param source the partitions that are grouped, or null
+     * @return the maximum number of groups
+     */
+    private int getMaxMemoryGroups(SelectGroupPartitions source) {
+        Database db = session.getDatabase();
+        if (groupIndex == null || !db.isPersistent() || db.isReadOnly()) {
+            return Integer.MAX_VALUE;
+        }
+        if (source != null &&
+                source.getLevel() >= SelectGroupPartitions.MAX_LEVEL) {
+            return Integer.MAX_VALUE;
+        }
+        for (TableFilter f : filters) {
+            if (f.getJoinBatch() != null) {
+                // the current rows can not be restored
+                return Integer.MAX_VALUE;
+            }
+        }
+        return db.getMaxMemoryRows();
+    }
+
+    private SelectGroupPartitions createGroupPartitions(
+            SelectGroupPartitions source) {
+        int level = source == null ? 0 : source.getLevel() + 1;
+        return new SelectGroupPartitions(session, filters, level);
+    }
+
+    /**
+     * Get the aggregate of each expression, if the query can be grouped using
+     * SelectGroups: it is grouped by at most one expression, there is no
+     * HAVING condition, and each other expression is an aggregate function.
+     *
+     * @return the aggregates (null for the group expression), or null
+     */
+    private Aggregate[] getGroupAggregates() {
+        if (havingIndex >= 0 || groupIndex != null && groupIndex.length > 1) {
+            return null;
+        }
+        int size = expressions.size();
+        Aggregate[] aggregates = new Aggregate[size];
+        for (int i = 0; i < size; i++) {
+            if (groupByExpression != null && groupByExpression[i]) {
                 continue;
             }
-            row = keepOnlyDistinct(row, columnCount);
-            result.addRow(row);
+            Expression expr = expressions.get(i).getNonAliasExpression();
+            if (!(expr instanceof Aggregate)) {
+                return null;
+            }
+            aggregates[i] = (Aggregate) expr;
         }
+        return aggregates;
     }
 
     /**
@@ -586,6 +927,7 @@ public class Select extends Query {
         }
         if (randomAccessResult) {
             result = createLocalResult(result);
+            result.setRandomAccess();
         }
         if (isGroupQuery && !isGroupSortedQuery) {
             result = createLocalResult(result);
@@ -593,6 +935,16 @@ public class Select extends Query {
         if (!lazy && (limitRows >= 0 || offsetExpr != null)) {
             result = createLocalResult(result);
         }
+        if (result != null) {
+            // set before the rows are added, so that the result only needs
+            // to keep the top rows when sorting
+            if (offsetExpr != null) {
+                result.setOffset(offsetExpr.getValue(session).getInt());
+            }
+            if (limitRows >= 0) {
+                result.setLimit(limitRows);
+            }
+        }
         topTableFilter.startQuery(session);
         topTableFilter.reset();
         boolean exclusive = isForUpdate && !isForUpdateMvcc;
@@ -643,12 +995,6 @@ public class Select extends Query {
             }
             return lazyResult;
         }
-        if (offsetExpr != null) {
-            result.setOffset(offsetExpr.getValue(session).getInt());
-        }
-        if (limitRows >= 0) {
-            result.setLimit(limitRows);
-        }
         if (result != null) {
             result.done();
             if (target != null) {
@@ -953,11 +1299,36 @@ public class Select extends Query {
                 isGroupSortedQuery = true;
             }
         }
+        if (isGroupQuery && !isGroupSortedQuery && !isQuickAggregateQuery) {
+            groupAggregates = getGroupAggregates();
+            groupColumnIds = getGroupColumnIds();
+        }
+        compileExpressions();
         expressionArray = new Expression[expressions.size()];
         expressions.toArray(expressionArray);
         isPrepared = true;
     }
 
+    private void compileExpressions() {
+        int threshold = session.getDatabase().getSettings().compileExpressions;
+        if (threshold <= 0) {
+            return;
+        }
+        if (condition != null && ExpressionCompiler.isCompilable(condition)) {
+            condition = new CompiledExpression(condition, threshold);
+        }
+        if (isGroupQuery) {
+            // the expressions contain aggregates
+            return;
+        }
+        for (int i = 0, size = expressions.size(); i < size; i++) {
+            Expression e = expressions.get(i);
+            if (ExpressionCompiler.isCompilable(e.getNonAliasExpression())) {
+                expressions.set(i, new CompiledExpression(e, threshold));
+            }
+        }
+    }
+
     @Override
     public void prepareJoinBatch() {
         ArrayList<TableFilter> list = New.arrayList();
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2004-2014 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.command.dml;
+
+import java.util.ArrayList;
+import org.h2.engine.Session;
+import org.h2.result.Row;
+import org.h2.result.RowList;
+import org.h2.table.TableFilter;
+import org.h2.value.Value;
+import org.h2.value.ValueLong;
+import org.h2.value.ValueNull;
+
+/**
+ * The rows of a grouped query that belong to groups that did not fit in
+ * memory. For each such row, the current row of each table filter is stored
+ * in one of a number of partitions. The partition is chosen using the hash
+ * code of the group key, so that all rows of a group are in the same
+ * partition. The partitions are buffered to disk if needed, and are then
+ * grouped one after the other.
+ */
+class SelectGroupPartitions {
+
+    /**
+     * The number of bits of the hash code that are used to choose a
+     * partition.
+     */
+    private static final int PARTITION_BITS = 4;
+
+    /**
+     * The highest level of partitioning; at this level, all bits of the hash
+     * code are used.
+     */
+    static final int MAX_LEVEL = 32 / PARTITION_BITS - 1;
+
+    private final Session session;
+    private final TableFilter[] filters;
+    private final int level;
+    private final RowList[] partitions = new RowList[1 << PARTITION_BITS];
+
+    /**
+     * Create a new object.
+     *
+     * @param session the session
+     * @param filters the table filters of the query
+     * @param level the partition level (0 for the rows of the query,
+     *            1 for the rows of a partition of level 0, and so on)
+     */
+    SelectGroupPartitions(Session session, ArrayList<TableFilter> filters,
+            int level) {
+        this.session = session;
+        this.filters = filters.toArray(new TableFilter[filters.size()]);
+        this.level = level;
+    }
+
+    /**
+     * Get the partition level.
+     *
+     * @return the level
+     */
+    int getLevel() {
+        return level;
+    }
+
+    /**
+     * Add the current rows of the table filters to the partition of the
+     * given group key.
+     *
+     * @param key the group key
+     */
+    void add(Value key) {
+        int hash = key.hashCode() * 0x9E3779B9;
+        int partition = (hash >>> (level * PARTITION_BITS)) &
+                (partitions.length - 1);
+        RowList list = partitions[partition];
+        if (list == null) {
+            list = new RowList(session);
+            partitions[partition] = list;
+        }
+        int len = 0;
+        for (TableFilter f : filters) {
+            len += f.getTable().getColumns().length + 1;
+        }
+        Value[] values = new Value[len];
+        int offset = 0;
+        for (TableFilter f : filters) {
+            int columnCount = f.getTable().getColumns().length;
+            Row r = f.get();
+            if (r == null) {
+                values[offset] = ValueNull.INSTANCE;
+            } else {
+                values[offset] = ValueLong.get(r.getKey());
+                for (int i = 0; i < columnCount; i++) {
+                    values[offset + 1 + i] = r.getValue(i);
+                }
+            }
+            offset += columnCount + 1;
+        }
+        list.add(session.createRow(values, Row.MEMORY_CALCULATE));
+    }
+
+    /**
+     * Get the number of partitions.
+     *
+     * @return the number of partitions
+     */
+    int getPartitionCount() {
+        return partitions.length;
+    }
+
+    /**
+     * This method is called after all rows have been added.
+     */
+    void done() {
+        for (RowList list : partitions) {
+            if (list != null) {
+                list.reset();
+            }
+        }
+    }
+
+    /**
+     * Read the next row of the given partition, and set the current row of
+     * each table filter. The partition is closed after the last row is read.
+     *
+     * @param partition the partition
+     * @return true if a row was read, false if there are no more rows
+     */
+    boolean next(int partition) {
+        RowList list = partitions[partition];
+        if (list == null) {
+            return false;
+        }
+        if (!list.hasNext()) {
+            list.close();
+            partitions[partition] = null;
+            return false;
+        }
+        Row row = list.next();
+        int offset = 0;
+        for (TableFilter f : filters) {
+            int columnCount = f.getTable().getColumns().length;
+            Value key = row.getValue(offset);
+            Row r = null;
+            if (key != ValueNull.INSTANCE) {
+                Value[] values = new Value[columnCount];
+                for (int i = 0; i < columnCount; i++) {
+                    values[i] = row.getValue(offset + 1 + i);
+                }
+                r = session.createRow(values, Row.MEMORY_CALCULATE);
+                r.setKey(key.getLong());
+            }
+            f.set(r);
+            offset += columnCount + 1;
+        }
+        return true;
+    }
+
+    /**
+     * Close all partitions and delete the temporary files.
+     */
+    void close() {
+        for (int i = 0; i < partitions.length; i++) {
+            if (partitions[i] != null) {
+                partitions[i].close();
+                partitions[i] = null;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2004-2014 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.command.dml;
+
+import java.util.Arrays;
+import org.h2.engine.Session;
+import org.h2.expression.Aggregate;
+import org.h2.expression.AggregateDataArray;
+import org.h2.result.Row;
+import org.h2.util.LongIntHashMap;
+import org.h2.util.ValueHashMap;
+import org.h2.value.Value;
+
+/**
+ * The groups of a query that is grouped by at most one expression, where each
+ * other selected expression is an aggregate function. Each group has an id.
+ * The group of an INT or BIGINT key is found using a hash map with primitive
+ * keys, and the aggregate data is kept in arrays indexed by the group id, so
+ * that adding a row does not create objects for the key or the aggregates.
+ */
+class SelectGroups {
+
+    private final Session session;
+
+    /**
+     * The aggregate of each column, or null for the group expression.
+     */
+    private final Aggregate[] aggregates;
+
+    /**
+     * The aggregate data of each column, or null for the group expression.
+     */
+    private final AggregateDataArray[] data;
+
+    /**
+     * Whether the aggregate of a column is updated (false if the same
+     * aggregate is used in an earlier column).
+     */
+    private final boolean[] update;
+
+    /**
+     * The data type of the keys that are stored in the primitive hash map.
+     */
+    private final int longKeyType;
+
+    private final LongIntHashMap longGroups = new LongIntHashMap();
+    private final ValueHashMap<Integer> valueGroups = ValueHashMap.newInstance();
+    private Value[] keys = new Value[16];
+    private int groupCount;
+
+    /**
+     * Create a new object.
+     *
+     * @param session the session
+     * @param aggregates the aggregate of each column, or null for the group
+     *            expression
+     * @param keyType the data type of the group expression
+     */
+    SelectGroups(Session session, Aggregate[] aggregates, int keyType) {
+        this.session = session;
+        this.aggregates = aggregates;
+        int len = aggregates.length;
+        data = new AggregateDataArray[len];
+        update = new boolean[len];
+        for (int i = 0; i < len; i++) {
+            Aggregate a = aggregates[i];
+            if (a == null) {
+                continue;
+            }
+            for (int j = 0; j < i; j++) {
+                if (aggregates[j] == a) {
+                    data[i] = data[j];
+                    break;
+                }
+            }
+            if (data[i] == null) {
+                data[i] = a.createDataArray();
+                update[i] = true;
+            }
+        }
+        longKeyType = keyType == Value.INT || keyType == Value.LONG ?
+                keyType : Value.UNKNOWN;
+    }
+
+    /**
+     * Get the id of the group with the given key. The group is created if
+     * needed.
+     *
+     * @param key the value of the group expression
+     * @return the group id
+     */
+    int getGroup(Value key) {
+        int group = findGroup(key);
+        if (group < 0) {
+            group = addGroup(key);
+            if (key.getType() == longKeyType) {
+                longGroups.put(key.getLong(), group);
+            } else {
+                valueGroups.put(key, group);
+            }
+        }
+        return group;
+    }
+
+    /**
+     * Get the id of the group with the given key, if the group exists.
+     *
+     * @param key the value of the group expression
+     * @return the group id, or -1 if there is no such group
+     */
+    int findGroup(Value key) {
+        if (key.getType() == longKeyType) {
+            return longGroups.get(key.getLong());
+        }
+        Integer group = valueGroups.get(key);
+        return group == null ? -1 : group;
+    }
+
+    private int addGroup(Value key) {
+        if (groupCount == keys.length) {
+            keys = Arrays.copyOf(keys, keys.length * 2);
+        }
+        keys[groupCount] = key;
+        return groupCount++;
+    }
+
+    /**
+     * Update the aggregates of the given group with the current row.
+     *
+     * @param group the group id
+     */
+    void update(int group) {
+        for (int i = 0; i < aggregates.length; i++) {
+            if (update[i]) {
+                aggregates[i].updateAggregate(session, data[i], group);
+            }
+        }
+    }
+
+    /**
+     * Update the aggregates of the given group with a row of the table. This
+     * is only supported if the input of each aggregate is a column.
+     *
+     * @param group the group id
+     * @param row the row
+     * @param columnIds the column index of the input of each aggregate (-1
+     *            for COUNT(*))
+     */
+    void update(int group, Row row, int[] columnIds) {
+        for (int i = 0; i < aggregates.length; i++) {
+            if (update[i]) {
+                int columnId = columnIds[i];
+                Value v = columnId < 0 ? null : row.getValue(columnId);
+                aggregates[i].updateAggregate(session, data[i], group, v);
+            }
+        }
+    }
+
+    /**
+     * Merge the groups of another object, which were calculated for other
+     * rows, into this object.
+     *
+     * @param other the other object
+     */
+    void merge(SelectGroups other) {
+        for (int g = 0; g < other.groupCount; g++) {
+            int group = getGroup(other.keys[g]);
+            for (int i = 0; i < aggregates.length; i++) {
+                if (update[i]) {
+                    aggregates[i].mergeAggregate(session, data[i], group,
+                            other.data[i], g);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the number of groups.
+     *
+     * @return the number of groups
+     */
+    int getGroupCount() {
+        return groupCount;
+    }
+
+    /**
+     * Get the value of the given column for the given group.
+     *
+     * @param column the column index
+     * @param group the group id
+     * @return the key of the group, or the value of the aggregate
+     */
+    Value getValue(int column, int group) {
+        Aggregate a = aggregates[column];
+        if (a == null) {
+            return keys[group];
+        }
+        return a.getValue(session, data[column], group);
+    }
+
+}
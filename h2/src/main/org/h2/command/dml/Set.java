@@ -525,6 +525,15 @@ public class Set extends Prepared {
             session.setLazyQueryExecution(value == 1);
             break;
         }
+        case SetTypes.GROUP_BY_THREADS: {
+            int value = getIntValue();
+            if (value < 1) {
+                throw DbException.getInvalidValueException("GROUP_BY_THREADS",
+                        value);
+            }
+            session.setGroupByThreads(value);
+            break;
+        }
         case SetTypes.BUILTIN_ALIAS_OVERRIDE: {
             session.getUser().checkAdmin();
             int value = getIntValue();
@@ -251,6 +251,11 @@ public class SetTypes {
      * The type of a SET COLUMN_NAME_RULES statement.
      */
     public static final int COLUMN_NAME_RULES = 48;
+
+    /**
+     * The type of a SET GROUP_BY_THREADS statement.
+     */
+    public static final int GROUP_BY_THREADS = 49;
     
 
     private static final ArrayList<String> TYPES = New.arrayList();
@@ -310,6 +315,7 @@ public class SetTypes {
         list.add(LAZY_QUERY_EXECUTION, "LAZY_QUERY_EXECUTION");
         list.add(BUILTIN_ALIAS_OVERRIDE, "BUILTIN_ALIAS_OVERRIDE");
         list.add(COLUMN_NAME_RULES, "COLUMN_NAME_RULES");
+        list.add(GROUP_BY_THREADS, "GROUP_BY_THREADS");
         
     }
 
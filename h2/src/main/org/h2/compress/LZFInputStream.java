@@ -5,6 +5,7 @@
  */
 package org.h2.compress;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import org.h2.message.DbException;
@@ -12,7 +13,9 @@ import org.h2.mvstore.DataUtils;
 
 /**
  * An input stream to read from an LZF stream.
- * The data is automatically expanded.
+ * The data is automatically expanded. The header is only read when reading
+ * the first block, so that the stream can also be used for network
+ * connections.
  */
 public class LZFInputStream extends InputStream {
 
@@ -22,12 +25,10 @@ public class LZFInputStream extends InputStream {
     private int bufferLength;
     private byte[] inBuffer;
     private byte[] buffer;
+    private boolean headerRead;
 
-    public LZFInputStream(InputStream in) throws IOException {
+    public LZFInputStream(InputStream in) {
         this.in = in;
-        if (readInt() != LZFOutputStream.MAGIC) {
-            throw new IOException("Not an LZFInputStream");
-        }
     }
 
     private static byte[] ensureSize(byte[] buff, int len) {
@@ -38,6 +39,12 @@ public class LZFInputStream extends InputStream {
         if (buffer != null && pos < bufferLength) {
             return;
         }
+        if (!headerRead) {
+            if (readInt() != LZFOutputStream.MAGIC) {
+                throw new IOException("Not an LZFInputStream");
+            }
+            headerRead = true;
+        }
         int len = readInt();
         if (decompress == null) {
             // EOF
@@ -55,7 +62,7 @@ public class LZFInputStream extends InputStream {
             try {
                 decompress.expand(inBuffer, 0, len, buffer, 0, size);
             } catch (ArrayIndexOutOfBoundsException e) {
-                DbException.convertToIOException(e);
+                throw DbException.convertToIOException(e);
             }
             this.bufferLength = size;
         }
@@ -66,6 +73,9 @@ public class LZFInputStream extends InputStream {
         int off = 0;
         while (len > 0) {
             int l = in.read(buff, off, len);
+            if (l < 0) {
+                throw new EOFException();
+            }
             len -= l;
             off += l;
         }
@@ -100,17 +110,13 @@ public class LZFInputStream extends InputStream {
         if (len == 0) {
             return 0;
         }
-        int read = 0;
-        while (len > 0) {
-            int r = readBlock(b, off, len);
-            if (r < 0) {
-                break;
-            }
-            read += r;
-            off += r;
-            len -= r;
-        }
-        return read == 0 ? -1 : read;
+        return readBlock(b, off, len);
+    }
+
+    @Override
+    public int available() throws IOException {
+        int len = bufferLength - pos;
+        return len > 0 ? len : in.available();
     }
 
     private int readBlock(byte[] b, int off, int len) throws IOException {
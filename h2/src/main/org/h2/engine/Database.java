@@ -1970,7 +1970,7 @@ public class Database implements DataHandler {
         }
         if (mvStore != null) {
             int millis = value < 0 ? 0 : value;
-            mvStore.getStore().setAutoCommitDelay(millis);
+            mvStore.setWriteDelay(millis);
         }
     }
 
@@ -53,6 +53,34 @@ public class DbSettings extends SettingsBase {
      */
     public final int analyzeSample = get("ANALYZE_SAMPLE", 10000);
 
+    /**
+     * Database setting <code>COMPILE_EXPRESSIONS</code> (default: 0).<br />
+     * The number of times a condition or an expression of the select list of
+     * a query is evaluated before it is compiled to Java byte code. Only
+     * arithmetic operations and comparisons on INT, BIGINT and DOUBLE values,
+     * and AND, OR, and NOT conditions are compiled. This requires that a Java
+     * compiler is available. Compiling is disabled if set to 0.
+     */
+    public final int compileExpressions = get("COMPILE_EXPRESSIONS", 0);
+
+    /**
+     * Database setting <code>COMPACT_THREADS</code> (default: 1).<br />
+     * The number of threads used to read the old chunks when the MVStore
+     * compacts the database file, in the background or when closing. Using
+     * multiple threads is disabled if set to 1.
+     */
+    public final int compactThreads = get("COMPACT_THREADS", 1);
+
+    /**
+     * Database setting <code>CREATE_INDEX_THREADS</code> (default: the
+     * number of processors).<br />
+     * The number of threads used to read and sort the rows when creating an
+     * index on a large persistent MVStore table. Using multiple threads is
+     * disabled if set to 1.
+     */
+    public final int createIndexThreads = get("CREATE_INDEX_THREADS",
+            Runtime.getRuntime().availableProcessors());
+
     /**
      * Database setting <code>DATABASE_TO_UPPER</code> (default: true).<br />
      * Database short names are converted to uppercase for the DATABASE()
@@ -170,6 +198,15 @@ public class DbSettings extends SettingsBase {
      */
     public final boolean nestedJoins = get("NESTED_JOINS", true);
 
+    /**
+     * Database setting <code>OFF_HEAP_CACHE_SIZE</code> (default: 0).<br />
+     * The size of the off-heap page cache of the MVStore, in MB. This cache
+     * keeps the uncompressed page data in direct memory, outside of the Java
+     * heap, and is used when a page is no longer in the regular cache. It is
+     * disabled if set to 0.
+     */
+    public final int offHeapCacheSize = get("OFF_HEAP_CACHE_SIZE", 0);
+
     /**
      * Database setting <code>OPTIMIZE_DISTINCT</code> (default: true).<br />
      * Improve the performance of simple DISTINCT queries if an index is
@@ -192,6 +229,14 @@ public class DbSettings extends SettingsBase {
     public final boolean optimizeEvaluatableSubqueries = get(
             "OPTIMIZE_EVALUATABLE_SUBQUERIES", true);
 
+    /**
+     * Database setting <code>OPTIMIZE_HASH_JOIN</code>
+     * (default: true).<br />
+     * Join tables using a temporary hash table if there is an equality
+     * condition on a column that is not indexed.
+     */
+    public final boolean optimizeHashJoin = get("OPTIMIZE_HASH_JOIN", true);
+
     /**
      * Database setting <code>OPTIMIZE_INSERT_FROM_SELECT</code>
      * (default: true).<br />
@@ -221,6 +266,14 @@ public class DbSettings extends SettingsBase {
      */
     public final boolean optimizeIsNull = get("OPTIMIZE_IS_NULL", true);
 
+    /**
+     * Database setting <code>OPTIMIZE_MERGE_JOIN</code>
+     * (default: true).<br />
+     * Join tables using a merge join if both tables are read in the order of
+     * an index on the joined columns.
+     */
+    public final boolean optimizeMergeJoin = get("OPTIMIZE_MERGE_JOIN", true);
+
     /**
      * Database setting <code>OPTIMIZE_OR</code> (default: true).<br />
      * Convert (C=? OR C=?) to (C IN(?, ?)).
@@ -127,6 +127,7 @@ public class Session extends SessionWithState {
     private boolean joinBatchEnabled;
     private boolean forceJoinOrder;
     private boolean lazyQueryExecution;
+    private int groupByThreads = 1;
     private ColumnNamerConfiguration columnNamerConfiguration;
     /**
      * Tables marked for ANALYZE after the current transaction is committed.
@@ -175,6 +176,14 @@ public class Session extends SessionWithState {
         return lazyQueryExecution;
     }
 
+    public void setGroupByThreads(int groupByThreads) {
+        this.groupByThreads = groupByThreads;
+    }
+
+    public int getGroupByThreads() {
+        return groupByThreads;
+    }
+
     public void setForceJoinOrder(boolean forceJoinOrder) {
         this.forceJoinOrder = forceJoinOrder;
     }
@@ -19,6 +19,7 @@ import org.h2.message.DbException;
 import org.h2.message.Trace;
 import org.h2.message.TraceSystem;
 import org.h2.result.ResultInterface;
+import org.h2.result.ResultRemote;
 import org.h2.store.DataHandler;
 import org.h2.store.FileStore;
 import org.h2.store.LobStorageFrontend;
@@ -60,6 +61,7 @@ public class SessionRemote extends SessionWithState implements DataHandler {
     public static final int SESSION_HAS_PENDING_TRANSACTION = 16;
     public static final int LOB_READ = 17;
     public static final int SESSION_PREPARE_READ_PARAMS2 = 18;
+    public static final int COMMAND_EXECUTE_BATCH_UPDATE = 19;
 
     public static final int STATUS_ERROR = 0;
     public static final int STATUS_OK = 1;
@@ -82,6 +84,8 @@ public class SessionRemote extends SessionWithState implements DataHandler {
     private String sessionId;
     private int clientVersion;
     private boolean autoReconnect;
+    private boolean compressTransfer;
+    private ResultRemote prefetchResult;
     private int lastReconnect;
     private SessionInterface embedded;
     private DatabaseEventListener eventListener;
@@ -119,7 +123,7 @@ public class SessionRemote extends SessionWithState implements DataHandler {
         trans.setSSL(ci.isSSL());
         trans.init();
         trans.writeInt(Constants.TCP_PROTOCOL_VERSION_6);
-        trans.writeInt(Constants.TCP_PROTOCOL_VERSION_16);
+        trans.writeInt(Constants.TCP_PROTOCOL_VERSION_18);
         trans.writeString(db);
         trans.writeString(ci.getOriginalURL());
         trans.writeString(ci.getUserName());
@@ -134,6 +138,12 @@ public class SessionRemote extends SessionWithState implements DataHandler {
             done(trans);
             clientVersion = trans.readInt();
             trans.setVersion(clientVersion);
+            if (clientVersion >= Constants.TCP_PROTOCOL_VERSION_18) {
+                trans.writeBoolean(compressTransfer);
+                if (compressTransfer) {
+                    trans.setCompressed();
+                }
+            }
             if (clientVersion >= Constants.TCP_PROTOCOL_VERSION_14) {
                 if (ci.getFileEncryptionKey() != null) {
                     trans.writeBytes(ci.getFileEncryptionKey());
@@ -424,6 +434,9 @@ public class SessionRemote extends SessionWithState implements DataHandler {
                     .getUnsupportedException("autoServer && serverList != null");
         }
         autoReconnect |= autoServer;
+        // not sent to the server, as older servers don't support it
+        compressTransfer = ci.removeProperty("COMPRESS_TRANSFER",
+                compressTransfer);
         if (autoReconnect) {
             String className = ci.getProperty("DATABASE_EVENT_LISTENER");
             if (className != null) {
@@ -619,16 +632,11 @@ public class SessionRemote extends SessionWithState implements DataHandler {
      */
     public void done(Transfer transfer) throws IOException {
         transfer.flush();
+        readPrefetchedRows();
         int status = transfer.readInt();
         if (status == STATUS_ERROR) {
-            String sqlstate = transfer.readString();
-            String message = transfer.readString();
-            String sql = transfer.readString();
-            int errorCode = transfer.readInt();
-            String stackTrace = transfer.readString();
-            JdbcSQLException s = new JdbcSQLException(message, sql, sqlstate,
-                    errorCode, null, stackTrace);
-            if (errorCode == ErrorCode.CONNECTION_BROKEN_1) {
+            JdbcSQLException s = readException(transfer);
+            if (s.getErrorCode() == ErrorCode.CONNECTION_BROKEN_1) {
                 // allow re-connect
                 IOException e = new IOException(s.toString(), s);
                 throw e;
@@ -646,6 +654,24 @@ public class SessionRemote extends SessionWithState implements DataHandler {
         }
     }
 
+    /**
+     * Read an exception sent by the server. The status code must already
+     * have been read.
+     *
+     * @param transfer the transfer object
+     * @return the exception
+     */
+    public static JdbcSQLException readException(Transfer transfer)
+            throws IOException {
+        String sqlstate = transfer.readString();
+        String message = transfer.readString();
+        String sql = transfer.readString();
+        int errorCode = transfer.readInt();
+        String stackTrace = transfer.readString();
+        return new JdbcSQLException(message, sql, sqlstate,
+                errorCode, null, stackTrace);
+    }
+
     /**
      * Returns true if the connection was opened in cluster mode.
      *
@@ -655,6 +681,40 @@ public class SessionRemote extends SessionWithState implements DataHandler {
         return cluster;
     }
 
+    /**
+     * Check whether a result may request the next block of rows before the
+     * application needs them. This is not done in cluster mode, and if the
+     * session re-connects automatically.
+     *
+     * @return true if prefetching is allowed
+     */
+    public boolean isPrefetchAllowed() {
+        return SysProperties.SERVER_RESULT_SET_PREFETCH && !cluster &&
+                !autoReconnect;
+    }
+
+    /**
+     * Set the result that requested the next block of rows in advance. Only
+     * one request may be pending. Its response is read before the response
+     * of the next operation.
+     *
+     * @param result the result
+     */
+    public void setPrefetchResult(ResultRemote result) {
+        prefetchResult = result;
+    }
+
+    /**
+     * Read the rows that were requested in advance by a result, if any.
+     */
+    public void readPrefetchedRows() throws IOException {
+        ResultRemote result = prefetchResult;
+        if (result != null) {
+            prefetchResult = null;
+            result.readPrefetchedRows();
+        }
+    }
+
     @Override
     public boolean isClosed() {
         return transferList == null || transferList.size() == 0;
@@ -380,6 +380,15 @@ public class SysProperties {
     public static final int SERVER_RESULT_SET_FETCH_SIZE =
             Utils.getProperty("h2.serverResultSetFetchSize", 100);
 
+    /**
+     * System property <code>h2.serverResultSetPrefetch</code>
+     * (default: true).<br />
+     * When using the server mode, request the next block of rows of a large
+     * result set while the application reads the current block.
+     */
+    public static final boolean SERVER_RESULT_SET_PREFETCH =
+            Utils.getProperty("h2.serverResultSetPrefetch", true);
+
     /**
      * System property <code>h2.socketConnectRetry</code> (default: 16).<br />
      * The number of times to retry opening a socket. Windows sometimes fails
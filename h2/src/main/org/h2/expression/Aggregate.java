@@ -256,6 +256,94 @@ public class Aggregate extends Expression {
             data = AggregateData.create(type);
             group.put(this, data);
         }
+        data.add(session.getDatabase(), dataType, distinct,
+                getInputValue(session));
+    }
+
+    /**
+     * Create the data to calculate this aggregate for a number of groups.
+     *
+     * @return the aggregate data
+     */
+    public AggregateDataArray createDataArray() {
+        return AggregateDataArray.create(type,
+                on == null ? Value.UNKNOWN : on.getType(), distinct);
+    }
+
+    /**
+     * Update the aggregate of the given group with the current row.
+     *
+     * @param session the session
+     * @param data the aggregate data
+     * @param group the group id
+     */
+    public void updateAggregate(Session session, AggregateDataArray data,
+            int group) {
+        updateAggregate(session, data, group, getInputValue(session));
+    }
+
+    /**
+     * Update the aggregate of the given group with the given value of the
+     * aggregated expression. This is only supported if the aggregate is not
+     * ordered.
+     *
+     * @param session the session
+     * @param data the aggregate data
+     * @param group the group id
+     * @param v the value, or null for COUNT(*)
+     */
+    public void updateAggregate(Session session, AggregateDataArray data,
+            int group, Value v) {
+        data.add(session.getDatabase(), dataType, distinct, group, v);
+    }
+
+    /**
+     * Merge a group of other aggregate data, which was calculated for other
+     * rows, into the given group.
+     *
+     * @param session the session
+     * @param data the aggregate data
+     * @param group the group id
+     * @param other the other aggregate data
+     * @param otherGroup the group id in the other aggregate data
+     */
+    public void mergeAggregate(Session session, AggregateDataArray data,
+            int group, AggregateDataArray other, int otherGroup) {
+        data.merge(session.getDatabase(), dataType, distinct, group, other,
+                otherGroup);
+    }
+
+    /**
+     * Get the aggregated expression.
+     *
+     * @return the expression, or null for COUNT(*)
+     */
+    public Expression getOn() {
+        return on;
+    }
+
+    /**
+     * Check if this is a GROUP_CONCAT aggregate with an ORDER BY clause.
+     *
+     * @return true if it is
+     */
+    public boolean isOrdered() {
+        return groupConcatOrderList != null;
+    }
+
+    /**
+     * Get the result of the aggregate for the given group.
+     *
+     * @param session the session
+     * @param data the aggregate data
+     * @param group the group id
+     * @return the value
+     */
+    public Value getValue(Session session, AggregateDataArray data, int group) {
+        return data.getValue(session, this, group);
+    }
+
+    private Value getInputValue(Session session) {
         Value v = on == null ? null : on.getValue(session);
         if (type == GROUP_CONCAT) {
             if (v != ValueNull.INSTANCE) {
@@ -272,7 +360,7 @@ public class Aggregate extends Expression {
                 }
             }
         }
-        data.add(session.getDatabase(), dataType, distinct, v);
+        return v;
     }
 
     @Override
@@ -312,6 +400,17 @@ public class Aggregate extends Expression {
         if (data == null) {
             data = AggregateData.create(type);
         }
+        return getValue(session, data);
+    }
+
+    /**
+     * Get the result of the aggregate.
+     *
+     * @param session the session
+     * @param data the aggregate data
+     * @return the value
+     */
+    Value getValue(Session session, AggregateData data) {
         Value v = data.getValue(session.getDatabase(), dataType, distinct);
         if (type == GROUP_CONCAT) {
             ArrayList<Value> list = ((AggregateDataGroupConcat) data).getList();
@@ -45,6 +45,18 @@ abstract class AggregateData {
      */
     abstract void add(Database database, int dataType, boolean distinct, Value v);
 
+    /**
+     * Merge the data of another object, which was calculated for other rows
+     * of the same group, into this object.
+     *
+     * @param database the database
+     * @param dataType the datatype of the computed result
+     * @param distinct if the calculation should be distinct
+     * @param other the other object
+     */
+    abstract void merge(Database database, int dataType, boolean distinct,
+            AggregateData other);
+
     /**
      * Get the aggregate result.
      *
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2004-2014 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.expression;
+
+import org.h2.engine.Database;
+import org.h2.engine.Session;
+import org.h2.value.Value;
+
+/**
+ * The data of an aggregate for a number of groups. The state of each group is
+ * kept in arrays indexed by the group id, so that no object is needed per
+ * group for the common aggregates.
+ */
+public abstract class AggregateDataArray {
+
+    /**
+     * The initial number of groups.
+     */
+    static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Create an AggregateDataArray object of the correct sub-type.
+     *
+     * @param aggregateType the type of the aggregate operation
+     * @param inputType the data type of the aggregated expression
+     * @param distinct if distinct is used
+     * @return the aggregate data object of the specified type
+     */
+    static AggregateDataArray create(int aggregateType, int inputType,
+            boolean distinct) {
+        if (!distinct) {
+            switch (aggregateType) {
+            case Aggregate.COUNT_ALL:
+            case Aggregate.COUNT:
+                return new AggregateDataArrayCount(
+                        aggregateType == Aggregate.COUNT_ALL);
+            case Aggregate.SUM:
+            case Aggregate.AVG:
+                // the sum of these types is a BIGINT
+                if (AggregateDataArrayLong.isIntType(inputType)) {
+                    return new AggregateDataArrayLong(aggregateType, inputType);
+                }
+                break;
+            case Aggregate.MIN:
+            case Aggregate.MAX:
+                if (AggregateDataArrayLong.isIntType(inputType) ||
+                        inputType == Value.LONG) {
+                    return new AggregateDataArrayLong(aggregateType, inputType);
+                }
+                break;
+            default:
+            }
+        }
+        return new AggregateDataArrayDefault(aggregateType);
+    }
+
+    /**
+     * Get the new length of an array, so that it can contain the given group.
+     *
+     * @param length the current length
+     * @param group the group id
+     * @return the new length
+     */
+    static int grow(int length, int group) {
+        return Math.max(length * 2, group + 1);
+    }
+
+    /**
+     * Add a value to the given group.
+     *
+     * @param database the database
+     * @param dataType the datatype of the computed result
+     * @param distinct if the calculation should be distinct
+     * @param group the group id
+     * @param v the value
+     */
+    abstract void add(Database database, int dataType, boolean distinct,
+            int group, Value v);
+
+    /**
+     * Merge the data of a group of another object, which was calculated for
+     * other rows, into the given group.
+     *
+     * @param database the database
+     * @param dataType the datatype of the computed result
+     * @param distinct if the calculation should be distinct
+     * @param group the group id
+     * @param other the other object
+     * @param otherGroup the group id in the other object
+     */
+    abstract void merge(Database database, int dataType, boolean distinct,
+            int group, AggregateDataArray other, int otherGroup);
+
+    /**
+     * Get the aggregate result of the given group.
+     *
+     * @param session the session
+     * @param aggregate the aggregate
+     * @param group the group id
+     * @return the value
+     */
+    abstract Value getValue(Session session, Aggregate aggregate, int group);
+
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2004-2014 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.expression;
+
+import java.util.Arrays;
+import org.h2.engine.Database;
+import org.h2.engine.Session;
+import org.h2.value.Value;
+import org.h2.value.ValueLong;
+import org.h2.value.ValueNull;
+
+/**
+ * Data stored while calculating a COUNT(*) or COUNT(expression) aggregate
+ * for a number of groups.
+ */
+class AggregateDataArrayCount extends AggregateDataArray {
+
+    private final boolean all;
+    private long[] counts = new long[INITIAL_CAPACITY];
+
+    /**
+     * @param all whether all rows are counted (COUNT(*))
+     */
+    AggregateDataArrayCount(boolean all) {
+        this.all = all;
+    }
+
+    @Override
+    void add(Database database, int dataType, boolean distinct, int group,
+            Value v) {
+        if (!all && v == ValueNull.INSTANCE) {
+            return;
+        }
+        if (group >= counts.length) {
+            counts = Arrays.copyOf(counts, grow(counts.length, group));
+        }
+        counts[group]++;
+    }
+
+    @Override
+    void merge(Database database, int dataType, boolean distinct, int group,
+            AggregateDataArray other, int otherGroup) {
+        long[] o = ((AggregateDataArrayCount) other).counts;
+        if (otherGroup >= o.length) {
+            return;
+        }
+        if (group >= counts.length) {
+            counts = Arrays.copyOf(counts, grow(counts.length, group));
+        }
+        counts[group] += o[otherGroup];
+    }
+
+    @Override
+    Value getValue(Session session, Aggregate aggregate, int group) {
+        long count = group < counts.length ? counts[group] : 0;
+        return ValueLong.get(count).convertTo(aggregate.getType());
+    }
+
+}
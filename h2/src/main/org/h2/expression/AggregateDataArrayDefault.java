@@ -0,0 +1,71 @@
+/*
+ * Copyright 2004-2014 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.expression;
+
+import java.util.Arrays;
+import org.h2.engine.Database;
+import org.h2.engine.Session;
+import org.h2.value.Value;
+
+/**
+ * Data stored while calculating an aggregate for a number of groups, using
+ * one AggregateData object per group.
+ */
+class AggregateDataArrayDefault extends AggregateDataArray {
+
+    private final int aggregateType;
+    private AggregateData[] data = new AggregateData[INITIAL_CAPACITY];
+
+    /**
+     * @param aggregateType the type of the aggregate operation
+     */
+    AggregateDataArrayDefault(int aggregateType) {
+        this.aggregateType = aggregateType;
+    }
+
+    @Override
+    void add(Database database, int dataType, boolean distinct, int group,
+            Value v) {
+        if (group >= data.length) {
+            data = Arrays.copyOf(data, grow(data.length, group));
+        }
+        AggregateData d = data[group];
+        if (d == null) {
+            d = AggregateData.create(aggregateType);
+            data[group] = d;
+        }
+        d.add(database, dataType, distinct, v);
+    }
+
+    @Override
+    void merge(Database database, int dataType, boolean distinct, int group,
+            AggregateDataArray other, int otherGroup) {
+        AggregateData[] o = ((AggregateDataArrayDefault) other).data;
+        AggregateData od = otherGroup < o.length ? o[otherGroup] : null;
+        if (od == null) {
+            return;
+        }
+        if (group >= data.length) {
+            data = Arrays.copyOf(data, grow(data.length, group));
+        }
+        AggregateData d = data[group];
+        if (d == null) {
+            data[group] = od;
+        } else {
+            d.merge(database, dataType, distinct, od);
+        }
+    }
+
+    @Override
+    Value getValue(Session session, Aggregate aggregate, int group) {
+        AggregateData d = group < data.length ? data[group] : null;
+        if (d == null) {
+            d = AggregateData.create(aggregateType);
+        }
+        return aggregate.getValue(session, d);
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2004-2014 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.expression;
+
+import java.util.Arrays;
+import org.h2.engine.Database;
+import org.h2.engine.Session;
+import org.h2.message.DbException;
+import org.h2.value.Value;
+import org.h2.value.ValueLong;
+import org.h2.value.ValueNull;
+
+/**
+ * Data stored while calculating a SUM, AVG, MIN or MAX aggregate of integer
+ * values for a number of groups.
+ */
+class AggregateDataArrayLong extends AggregateDataArray {
+
+    private final int aggregateType;
+    private final int inputType;
+    private long[] values = new long[INITIAL_CAPACITY];
+    private long[] counts = new long[INITIAL_CAPACITY];
+
+    /**
+     * @param aggregateType the type of the aggregate operation
+     * @param inputType the data type of the aggregated expression
+     */
+    AggregateDataArrayLong(int aggregateType, int inputType) {
+        this.aggregateType = aggregateType;
+        this.inputType = inputType;
+    }
+
+    /**
+     * Check whether the sum of values of this type fits in a BIGINT.
+     *
+     * @param type the data type
+     * @return true if it is TINYINT, SMALLINT, or INT
+     */
+    static boolean isIntType(int type) {
+        return type == Value.BYTE || type == Value.SHORT || type == Value.INT;
+    }
+
+    @Override
+    void add(Database database, int dataType, boolean distinct, int group,
+            Value v) {
+        if (v == ValueNull.INSTANCE) {
+            return;
+        }
+        if (v.getType() != inputType) {
+            v = v.convertTo(inputType);
+        }
+        long x = v.getLong();
+        if (group >= values.length) {
+            int len = grow(values.length, group);
+            values = Arrays.copyOf(values, len);
+            counts = Arrays.copyOf(counts, len);
+        }
+        if (counts[group]++ == 0) {
+            values[group] = x;
+        } else {
+            values[group] = combine(values[group], x);
+        }
+    }
+
+    @Override
+    void merge(Database database, int dataType, boolean distinct, int group,
+            AggregateDataArray other, int otherGroup) {
+        AggregateDataArrayLong o = (AggregateDataArrayLong) other;
+        long count = otherGroup < o.counts.length ? o.counts[otherGroup] : 0;
+        if (count == 0) {
+            return;
+        }
+        long x = o.values[otherGroup];
+        if (group >= values.length) {
+            int len = grow(values.length, group);
+            values = Arrays.copyOf(values, len);
+            counts = Arrays.copyOf(counts, len);
+        }
+        if (counts[group] == 0) {
+            values[group] = x;
+        } else {
+            values[group] = combine(values[group], x);
+        }
+        counts[group] += count;
+    }
+
+    private long combine(long value, long x) {
+        switch (aggregateType) {
+        case Aggregate.SUM:
+        case Aggregate.AVG:
+            long result = value + x;
+            if (((value ^ result) & (x ^ result)) < 0) {
+                // throws the same exception as adding the values
+                ValueLong.get(value).add(ValueLong.get(x));
+            }
+            return result;
+        case Aggregate.MIN:
+            return Math.min(value, x);
+        case Aggregate.MAX:
+            return Math.max(value, x);
+        default:
+            throw DbException.throwInternalError("type=" + aggregateType);
+        }
+    }
+
+    @Override
+    Value getValue(Session session, Aggregate aggregate, int group) {
+        long count = group < counts.length ? counts[group] : 0;
+        if (count == 0) {
+            return ValueNull.INSTANCE;
+        }
+        long value = values[group];
+        if (aggregateType == Aggregate.AVG) {
+            value /= count;
+        }
+        return ValueLong.get(value).convertTo(aggregate.getType());
+    }
+
+}
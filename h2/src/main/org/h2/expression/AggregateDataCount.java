@@ -33,6 +33,21 @@ class AggregateDataCount extends AggregateData {
         }
     }
 
+    @Override
+    void merge(Database database, int dataType, boolean distinct,
+            AggregateData other) {
+        AggregateDataCount o = (AggregateDataCount) other;
+        count += o.count;
+        if (o.distinctValues != null) {
+            if (distinctValues == null) {
+                distinctValues = ValueHashMap.newInstance();
+            }
+            for (Value v : o.distinctValues.keys()) {
+                distinctValues.put(v, this);
+            }
+        }
+    }
+
     @Override
     Value getValue(Database database, int dataType, boolean distinct) {
         if (distinct) {
@@ -25,6 +25,15 @@ class AggregateDataCountAll extends AggregateData {
         count++;
     }
 
+    @Override
+    void merge(Database database, int dataType, boolean distinct,
+            AggregateData other) {
+        if (distinct) {
+            throw DbException.throwInternalError();
+        }
+        count += ((AggregateDataCountAll) other).count;
+    }
+
     @Override
     Value getValue(Database database, int dataType, boolean distinct) {
         if (distinct) {
@@ -127,6 +127,48 @@ class AggregateDataDefault extends AggregateData {
         }
     }
 
+    @Override
+    void merge(Database database, int dataType, boolean distinct,
+            AggregateData other) {
+        AggregateDataDefault o = (AggregateDataDefault) other;
+        if (o.count == 0) {
+            return;
+        }
+        if (distinct) {
+            count += o.count;
+            if (o.distinctValues != null) {
+                if (distinctValues == null) {
+                    distinctValues = ValueHashMap.newInstance();
+                }
+                for (Value v : o.distinctValues.keys()) {
+                    distinctValues.put(v, this);
+                }
+            }
+            return;
+        }
+        switch (aggregateType) {
+        case Aggregate.STDDEV_POP:
+        case Aggregate.STDDEV_SAMP:
+        case Aggregate.VAR_POP:
+        case Aggregate.VAR_SAMP: {
+            // combine the partial results, see also
+            // http://en.wikipedia.org/wiki/Algorithms_for_calculating_variance
+            long n = count + o.count;
+            double delta = o.mean - mean;
+            mean += delta * o.count / n;
+            m2 += o.m2 + delta * delta * count * o.count / n;
+            count = n;
+            break;
+        }
+        default:
+            // SUM, AVG, MIN, MAX, BOOL_AND, BOOL_OR, BIT_AND, BIT_OR:
+            // add the partial result as if it was a value
+            long c = count;
+            add(database, dataType, false, o.value);
+            count = c + o.count;
+        }
+    }
+
     @Override
     Value getValue(Database database, int dataType, boolean distinct) {
         if (distinct) {
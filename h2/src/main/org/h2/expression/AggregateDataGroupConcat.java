@@ -37,6 +37,26 @@ class AggregateDataGroupConcat extends AggregateData {
         list.add(v);
     }
 
+    @Override
+    void merge(Database database, int dataType, boolean distinct,
+            AggregateData other) {
+        AggregateDataGroupConcat o = (AggregateDataGroupConcat) other;
+        if (o.distinctValues != null) {
+            if (distinctValues == null) {
+                distinctValues = ValueHashMap.newInstance();
+            }
+            for (Value v : o.distinctValues.keys()) {
+                distinctValues.put(v, this);
+            }
+        }
+        if (o.list != null) {
+            if (list == null) {
+                list = New.arrayList();
+            }
+            list.addAll(o.list);
+        }
+    }
+
     @Override
     Value getValue(Database database, int dataType, boolean distinct) {
         if (distinct) {
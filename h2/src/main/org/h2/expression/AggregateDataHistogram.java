@@ -39,6 +39,29 @@ class AggregateDataHistogram extends AggregateData {
         }
     }
 
+    @Override
+    void merge(Database database, int dataType, boolean distinct,
+            AggregateData other) {
+        AggregateDataHistogram o = (AggregateDataHistogram) other;
+        if (o.distinctValues == null) {
+            return;
+        }
+        if (distinctValues == null) {
+            distinctValues = ValueHashMap.newInstance();
+        }
+        for (Value v : o.distinctValues.keys()) {
+            AggregateDataHistogram a = distinctValues.get(v);
+            if (a == null) {
+                if (distinctValues.size() >= Constants.SELECTIVITY_DISTINCT_COUNT) {
+                    continue;
+                }
+                a = new AggregateDataHistogram();
+                distinctValues.put(v, a);
+            }
+            a.count += o.distinctValues.get(v).count;
+        }
+    }
+
     @Override
     Value getValue(Database database, int dataType, boolean distinct) {
         if (distinct) {
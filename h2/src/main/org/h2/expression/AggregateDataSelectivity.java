@@ -35,6 +35,19 @@ class AggregateDataSelectivity extends AggregateData {
         distinctHashes.put(hash, 1);
     }
 
+    @Override
+    void merge(Database database, int dataType, boolean distinct,
+            AggregateData other) {
+        AggregateDataSelectivity o = (AggregateDataSelectivity) other;
+        // like when the set of hashes is reset, the distinct values of the
+        // other object are counted separately, so this is an estimate
+        count += o.count;
+        m2 += o.m2;
+        if (o.distinctHashes != null) {
+            m2 += o.distinctHashes.size();
+        }
+    }
+
     @Override
     Value getValue(Database database, int dataType, boolean distinct) {
         if (distinct) {
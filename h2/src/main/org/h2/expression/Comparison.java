@@ -592,4 +592,13 @@ public class Comparison extends Condition {
         return getLeft ? this.left : right;
     }
 
+    /**
+     * Get the compare type.
+     *
+     * @return the compare type
+     */
+    int getCompareType() {
+        return compareType;
+    }
+
 }
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2004-2014 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.expression;
+
+import org.h2.engine.Session;
+import org.h2.table.ColumnResolver;
+import org.h2.table.TableFilter;
+import org.h2.value.Value;
+
+/**
+ * An expression that is compiled to Java byte code once it was evaluated a
+ * number of times. Until then, and if compiling is not possible, the
+ * expression is interpreted. All other methods are delegated to the original
+ * expression.
+ */
+public class CompiledExpression extends Expression {
+
+    private final Expression expr;
+    private final int threshold;
+    private int evaluationCount;
+    private volatile ExpressionCompiler.Evaluator evaluator;
+
+    /**
+     * Create a compiled expression.
+     *
+     * @param expr the optimized expression
+     * @param threshold the number of evaluations after which the expression
+     *            is compiled
+     */
+    public CompiledExpression(Expression expr, int threshold) {
+        this.expr = expr;
+        this.threshold = threshold;
+    }
+
+    @Override
+    public Value getValue(Session session) {
+        ExpressionCompiler.Evaluator e = evaluator;
+        if (e != null) {
+            return e.getValue(session);
+        }
+        if (evaluationCount < threshold && ++evaluationCount == threshold) {
+            e = ExpressionCompiler.compile(session,
+                    expr.getNonAliasExpression());
+            if (e != null) {
+                evaluator = e;
+                return e.getValue(session);
+            }
+        }
+        return expr.getValue(session);
+    }
+
+    /**
+     * Check whether the expression is compiled.
+     *
+     * @return true if it is compiled
+     */
+    public boolean isCompiled() {
+        return evaluator != null;
+    }
+
+    @Override
+    public int getType() {
+        return expr.getType();
+    }
+
+    @Override
+    public void mapColumns(ColumnResolver resolver, int level) {
+        expr.mapColumns(resolver, level);
+    }
+
+    @Override
+    public Expression optimize(Session session) {
+        return expr.optimize(session);
+    }
+
+    @Override
+    public void setEvaluatable(TableFilter tableFilter, boolean value) {
+        expr.setEvaluatable(tableFilter, value);
+    }
+
+    @Override
+    public int getScale() {
+        return expr.getScale();
+    }
+
+    @Override
+    public long getPrecision() {
+        return expr.getPrecision();
+    }
+
+    @Override
+    public int getDisplaySize() {
+        return expr.getDisplaySize();
+    }
+
+    @Override
+    public String getSQL() {
+        return expr.getSQL();
+    }
+
+    @Override
+    public void updateAggregate(Session session) {
+        expr.updateAggregate(session);
+    }
+
+    @Override
+    public boolean isEverything(ExpressionVisitor visitor) {
+        return expr.isEverything(visitor);
+    }
+
+    @Override
+    public int getCost() {
+        return expr.getCost();
+    }
+
+    @Override
+    public Expression getNotIfPossible(Session session) {
+        return expr.getNotIfPossible(session);
+    }
+
+    @Override
+    public boolean isConstant() {
+        return expr.isConstant();
+    }
+
+    @Override
+    public boolean isValueSet() {
+        return expr.isValueSet();
+    }
+
+    @Override
+    public boolean isAutoIncrement() {
+        return expr.isAutoIncrement();
+    }
+
+    @Override
+    public void createIndexConditions(Session session, TableFilter filter) {
+        expr.createIndexConditions(session, filter);
+    }
+
+    @Override
+    public String getColumnName() {
+        return expr.getColumnName();
+    }
+
+    @Override
+    public String getSchemaName() {
+        return expr.getSchemaName();
+    }
+
+    @Override
+    public String getTableName() {
+        return expr.getTableName();
+    }
+
+    @Override
+    public int getNullable() {
+        return expr.getNullable();
+    }
+
+    @Override
+    public String getTableAlias() {
+        return expr.getTableAlias();
+    }
+
+    @Override
+    public String getAlias() {
+        return expr.getAlias();
+    }
+
+    @Override
+    public boolean isWildcard() {
+        return expr.isWildcard();
+    }
+
+    @Override
+    public Expression getNonAliasExpression() {
+        return expr.getNonAliasExpression();
+    }
+
+    @Override
+    public void addFilterConditions(TableFilter filter, boolean outerJoin) {
+        expr.addFilterConditions(filter, outerJoin);
+    }
+
+    @Override
+    public Expression[] getExpressionColumns(Session session) {
+        return expr.getExpressionColumns(session);
+    }
+
+}
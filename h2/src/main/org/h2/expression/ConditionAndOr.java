@@ -295,4 +295,13 @@ public class ConditionAndOr extends Condition {
         return getLeft ? this.left : right;
     }
 
+    /**
+     * Get the type of this condition.
+     *
+     * @return AND or OR
+     */
+    int getAndOrType() {
+        return andOrType;
+    }
+
 }
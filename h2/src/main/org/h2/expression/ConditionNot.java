@@ -98,4 +98,13 @@ public class ConditionNot extends Condition {
         return condition.getCost();
     }
 
+    /**
+     * Get the condition that is negated.
+     *
+     * @return the condition
+     */
+    Expression getCondition() {
+        return condition;
+    }
+
 }
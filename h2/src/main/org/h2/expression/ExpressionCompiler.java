@@ -0,0 +1,777 @@
+/*
+ * Copyright 2004-2014 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.expression;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.h2.engine.Session;
+import org.h2.message.Trace;
+import org.h2.util.New;
+import org.h2.util.SmallLRUCache;
+import org.h2.util.SourceCompiler;
+import org.h2.value.Value;
+import org.h2.value.ValueDouble;
+import org.h2.value.ValueInt;
+import org.h2.value.ValueLong;
+import org.h2.value.ValueNull;
+
+/**
+ * Converts an expression tree to Java source code and compiles it. Arithmetic
+ * operations and comparisons on INT, BIGINT and DOUBLE values, and AND, OR,
+ * NOT conditions are converted to code that works on primitive values. All
+ * other expressions are still evaluated by calling their getValue method from
+ * the generated code.
+ */
+public class ExpressionCompiler {
+
+    /**
+     * The package of the generated classes.
+     */
+    private static final String PACKAGE_NAME = "org.h2.dynamic";
+
+    /**
+     * The maximum number of nodes of an expression tree that is compiled,
+     * to stay well below the size limit of a method.
+     */
+    private static final int MAX_NODES = 500;
+
+    /**
+     * The generated classes, keyed by the source code of the method. A null
+     * value means compiling failed.
+     */
+    private static final SmallLRUCache<String, Class<?>> CACHE =
+            SmallLRUCache.newInstance(64);
+
+    private static final AtomicInteger NEXT_CLASS_ID = new AtomicInteger();
+
+    private final StringBuilder buff = new StringBuilder();
+    private final ArrayList<Expression> leaves = New.arrayList();
+    private String indent = "        ";
+    private int nextVariable;
+    private int nodeCount;
+
+    private ExpressionCompiler() {
+        // only the static methods are used from outside
+    }
+
+    /**
+     * Check whether compiling the expression would convert at least its
+     * outermost operation.
+     *
+     * @param expr the expression
+     * @return true if the expression can be compiled
+     */
+    public static boolean isCompilable(Expression expr) {
+        return isNode(expr);
+    }
+
+    /**
+     * Compile the expression.
+     *
+     * @param session the session
+     * @param expr the optimized expression
+     * @return the evaluator, or null if the expression could not be compiled
+     */
+    public static Evaluator compile(Session session, Expression expr) {
+        if (!isNode(expr)) {
+            return null;
+        }
+        ExpressionCompiler compiler = new ExpressionCompiler();
+        String code = compiler.generate(expr);
+        if (code == null) {
+            return null;
+        }
+        Class<?> clazz;
+        boolean cached;
+        synchronized (CACHE) {
+            cached = CACHE.containsKey(code);
+            clazz = CACHE.get(code);
+        }
+        if (!cached) {
+            // compile without holding the lock, as this is slow; if another
+            // thread compiled the same code in the meantime, its class is used
+            Class<?> c = compileClass(session, code);
+            synchronized (CACHE) {
+                if (CACHE.containsKey(code)) {
+                    clazz = CACHE.get(code);
+                } else {
+                    CACHE.put(code, c);
+                    clazz = c;
+                }
+            }
+        }
+        if (clazz == null) {
+            return null;
+        }
+        try {
+            Evaluator evaluator = (Evaluator) clazz.newInstance();
+            Expression[] list = new Expression[compiler.leaves.size()];
+            compiler.leaves.toArray(list);
+            evaluator.init(list);
+            return evaluator;
+        } catch (Exception e) {
+            session.getDatabase().getTrace(Trace.COMMAND).error(e,
+                    "compile expression");
+            return null;
+        }
+    }
+
+    private static Class<?> compileClass(Session session, String code) {
+        String className = "CompiledExpression" +
+                NEXT_CLASS_ID.incrementAndGet();
+        String fullClassName = PACKAGE_NAME + "." + className;
+        String source = "package " + PACKAGE_NAME + ";\n" +
+                "import org.h2.engine.Session;\n" +
+                "import org.h2.value.*;\n" +
+                "public class " + className + " extends " +
+                Evaluator.class.getName().replace('$', '.') + " {\n" +
+                "    @Override\n" +
+                "    public Value getValue(Session session) {\n" +
+                code +
+                "    }\n" +
+                "}\n";
+        try {
+            SourceCompiler compiler = new SourceCompiler();
+            compiler.setSource(fullClassName, source);
+            Class<?> clazz = compiler.getClass(fullClassName);
+            if (!Evaluator.class.isAssignableFrom(clazz)) {
+                // loaded using a class loader that can not see this class
+                return null;
+            }
+            return clazz;
+        } catch (Throwable t) {
+            session.getDatabase().getTrace(Trace.COMMAND).error(t,
+                    "compile expression {0}", source);
+            return null;
+        }
+    }
+
+    private String generate(Expression expr) {
+        String result;
+        int type = getNodeType(expr);
+        if (type == Value.BOOLEAN) {
+            String b = generateCondition(expr);
+            result = b + " == -1 ? ValueNull.INSTANCE : ValueBoolean.get(" +
+                    b + " == 1)";
+        } else {
+            String[] x = generateNumber(expr, type);
+            result = x[1] + " ? ValueNull.INSTANCE : " +
+                    getValueClass(type) + ".get(" + x[0] + ")";
+        }
+        if (nodeCount > MAX_NODES) {
+            return null;
+        }
+        line("return " + result + ";");
+        return buff.toString();
+    }
+
+    /**
+     * Generate the code for a condition. The variable of the returned name is
+     * 1 for true, 0 for false, and -1 for NULL.
+     *
+     * @param expr the expression of data type BOOLEAN
+     * @return the variable name
+     */
+    private String generateCondition(Expression expr) {
+        nodeCount++;
+        String b = newVariable("b");
+        if (!isNode(expr)) {
+            String v = readLeaf(expr);
+            line("int " + b + " = " + v + " == ValueNull.INSTANCE ? -1 : " +
+                    v + ".getBoolean().booleanValue() ? 1 : 0;");
+        } else if (expr instanceof ConditionAndOr) {
+            ConditionAndOr c = (ConditionAndOr) expr;
+            boolean and = c.getAndOrType() == ConditionAndOr.AND;
+            String l = generateCondition(c.getExpression(true));
+            line("int " + b + ";");
+            // the right side is only evaluated if needed
+            line("if (" + l + " == " + (and ? 0 : 1) + ") {");
+            line("    " + b + " = " + l + ";");
+            line("} else {");
+            indent += "    ";
+            String r = generateCondition(c.getExpression(false));
+            line(b + " = " + r + " == " + (and ? 0 : 1) + " ? " + r + " : " +
+                    l + " == -1 || " + r + " == -1 ? -1 : " +
+                    (and ? 1 : 0) + ";");
+            indent = indent.substring(4);
+            line("}");
+        } else if (expr instanceof ConditionNot) {
+            String c = generateCondition(((ConditionNot) expr).getCondition());
+            line("int " + b + " = " + c + " == -1 ? -1 : 1 - " + c + ";");
+        } else {
+            Comparison c = (Comparison) expr;
+            int compareType = c.getCompareType();
+            Expression left = c.getExpression(true);
+            if (compareType == Comparison.IS_NULL ||
+                    compareType == Comparison.IS_NOT_NULL) {
+                String isNull;
+                int leftType = getNodeType(left);
+                if (leftType != Value.BOOLEAN && isNode(left)) {
+                    isNull = generateNumber(left, leftType)[1];
+                } else {
+                    isNull = readLeaf(left) + " == ValueNull.INSTANCE";
+                }
+                line("int " + b + " = " + isNull + " ? " +
+                        (compareType == Comparison.IS_NULL ? "1 : 0" : "0 : 1") +
+                        ";");
+            } else {
+                Expression right = c.getExpression(false);
+                int type = Math.max(getPrimitiveType(left.getType()),
+                        getPrimitiveType(right.getType()));
+                String[] l = generateNumber(left, type);
+                line("int " + b + ";");
+                // like Comparison, the right side is not evaluated if the left
+                // side is NULL
+                line("if (" + l[1] + ") {");
+                line("    " + b + " = -1;");
+                line("} else {");
+                indent += "    ";
+                String[] r = generateNumber(right, type);
+                String cmp;
+                if (type == Value.DOUBLE) {
+                    cmp = "Double.compare(" + l[0] + ", " + r[0] + ") " +
+                            getOperator(compareType) + " 0";
+                } else {
+                    cmp = l[0] + " " + getOperator(compareType) + " " + r[0];
+                }
+                line(b + " = " + ifNull(r[1], "-1", cmp + " ? 1 : 0") + ";");
+                indent = indent.substring(4);
+                line("}");
+            }
+        }
+        return b;
+    }
+
+    /**
+     * Generate the code for a numeric expression.
+     *
+     * @param expr the expression
+     * @param type the data type of the result (INT, LONG, or DOUBLE)
+     * @return the Java expressions of the value and of the NULL flag
+     */
+    private String[] generateNumber(Expression expr, int type) {
+        nodeCount++;
+        String javaType = getJavaType(type);
+        if (expr instanceof ValueExpression) {
+            Value v = expr.getValue(null);
+            if (v != ValueNull.INSTANCE) {
+                return new String[] { getLiteral(v, type), "false" };
+            }
+        }
+        if (!isNode(expr)) {
+            String v = readLeaf(expr);
+            String n = newVariable("n"), x = newVariable("x");
+            line("boolean " + n + " = " + v + " == ValueNull.INSTANCE;");
+            line(javaType + " " + x + " = " + n + " ? 0 : " + v + ".get" +
+                    getValueName(type) + "();");
+            return new String[] { x, n };
+        }
+        Operation op = (Operation) expr;
+        int opType = op.getOperationType();
+        int nodeType = op.getType();
+        String[] l = generateNumber(op.getExpression(true), nodeType);
+        String n, value;
+        if (opType == Operation.NEGATE) {
+            n = l[1];
+            value = "negate(" + l[0] + ")";
+        } else {
+            String[] r = generateNumber(op.getExpression(false), nodeType);
+            if ("false".equals(l[1])) {
+                n = r[1];
+            } else if ("false".equals(r[1])) {
+                n = l[1];
+            } else {
+                n = newVariable("n");
+                line("boolean " + n + " = " + l[1] + " || " + r[1] + ";");
+            }
+            value = getOperationMethod(opType) + "(" + l[0] + ", " + r[0] + ")";
+        }
+        String x = newVariable("x");
+        // the result of a node is widened to the requested type if needed
+        line(javaType + " " + x + " = " + ifNull(n, "0", value) + ";");
+        return new String[] { x, n };
+    }
+
+    /**
+     * Get the Java expression that returns the null value if the flag is set,
+     * and otherwise the value.
+     *
+     * @param isNull the NULL flag
+     * @param nullValue the value to use for NULL
+     * @param value the value
+     * @return the Java expression
+     */
+    private static String ifNull(String isNull, String nullValue,
+            String value) {
+        if ("false".equals(isNull)) {
+            return value;
+        }
+        return isNull + " ? " + nullValue + " : " + value;
+    }
+
+    private String readLeaf(Expression expr) {
+        String v = newVariable("v");
+        line("Value " + v + " = e[" + leaves.size() + "].getValue(session);");
+        leaves.add(expr);
+        return v;
+    }
+
+    private String newVariable(String prefix) {
+        return prefix + nextVariable++;
+    }
+
+    private void line(String s) {
+        buff.append(indent).append(s).append('\n');
+    }
+
+    /**
+     * Check whether the code for this expression is generated, as opposed to
+     * calling its getValue method.
+     *
+     * @param expr the expression
+     * @return true if code is generated
+     */
+    private static boolean isNode(Expression expr) {
+        if (expr instanceof ConditionAndOr) {
+            ConditionAndOr c = (ConditionAndOr) expr;
+            return c.getExpression(true).getType() == Value.BOOLEAN &&
+                    c.getExpression(false).getType() == Value.BOOLEAN;
+        } else if (expr instanceof ConditionNot) {
+            return ((ConditionNot) expr).getCondition().getType() ==
+                    Value.BOOLEAN;
+        } else if (expr instanceof Comparison) {
+            Comparison c = (Comparison) expr;
+            switch (c.getCompareType()) {
+            case Comparison.IS_NULL:
+            case Comparison.IS_NOT_NULL:
+                return true;
+            case Comparison.EQUAL:
+            case Comparison.NOT_EQUAL:
+            case Comparison.BIGGER:
+            case Comparison.BIGGER_EQUAL:
+            case Comparison.SMALLER:
+            case Comparison.SMALLER_EQUAL:
+                return isNumber(c.getExpression(true)) &&
+                        isNumber(c.getExpression(false));
+            default:
+                return false;
+            }
+        } else if (expr instanceof Operation) {
+            Operation op = (Operation) expr;
+            switch (op.getOperationType()) {
+            case Operation.NEGATE:
+                break;
+            case Operation.PLUS:
+            case Operation.MINUS:
+            case Operation.MULTIPLY:
+            case Operation.DIVIDE:
+            case Operation.MODULUS:
+                if (!isNumber(op.getExpression(false))) {
+                    return false;
+                }
+                break;
+            default:
+                return false;
+            }
+            int type = op.getType();
+            return (type == Value.INT || type == Value.LONG ||
+                    type == Value.DOUBLE) && isNumber(op.getExpression(true));
+        }
+        return false;
+    }
+
+    private static boolean isNumber(Expression expr) {
+        return getPrimitiveType(expr.getType()) != Value.UNKNOWN;
+    }
+
+    private static int getNodeType(Expression expr) {
+        int type = expr.getType();
+        return type == Value.BOOLEAN ? type : getPrimitiveType(type);
+    }
+
+    /**
+     * Get the primitive type that is used to read values of the given data
+     * type. BYTE and SHORT values are read as INT values, as converting them
+     * to a higher data type doesn't change the result of an operation.
+     *
+     * @param type the data type
+     * @return INT, LONG, DOUBLE, or UNKNOWN if not supported
+     */
+    private static int getPrimitiveType(int type) {
+        switch (type) {
+        case Value.BYTE:
+        case Value.SHORT:
+        case Value.INT:
+            return Value.INT;
+        case Value.LONG:
+        case Value.DOUBLE:
+            return type;
+        default:
+            return Value.UNKNOWN;
+        }
+    }
+
+    private static String getJavaType(int type) {
+        switch (type) {
+        case Value.INT:
+            return "int";
+        case Value.LONG:
+            return "long";
+        default:
+            return "double";
+        }
+    }
+
+    private static String getValueName(int type) {
+        switch (type) {
+        case Value.INT:
+            return "Int";
+        case Value.LONG:
+            return "Long";
+        default:
+            return "Double";
+        }
+    }
+
+    private static String getValueClass(int type) {
+        return "Value" + getValueName(type);
+    }
+
+    private static String getLiteral(Value v, int type) {
+        switch (type) {
+        case Value.INT:
+            return Integer.toString(v.getInt());
+        case Value.LONG:
+            return Long.toString(v.getLong()) + "L";
+        default:
+            double d = v.getDouble();
+            if (Double.isNaN(d)) {
+                return "Double.NaN";
+            } else if (Double.isInfinite(d)) {
+                return d > 0 ? "Double.POSITIVE_INFINITY" :
+                        "Double.NEGATIVE_INFINITY";
+            }
+            return Double.toString(d) + "d";
+        }
+    }
+
+    private static String getOperator(int compareType) {
+        switch (compareType) {
+        case Comparison.EQUAL:
+            return "==";
+        case Comparison.NOT_EQUAL:
+            return "!=";
+        case Comparison.BIGGER:
+            return ">";
+        case Comparison.BIGGER_EQUAL:
+            return ">=";
+        case Comparison.SMALLER:
+            return "<";
+        default:
+            return "<=";
+        }
+    }
+
+    private static String getOperationMethod(int opType) {
+        switch (opType) {
+        case Operation.PLUS:
+            return "add";
+        case Operation.MINUS:
+            return "subtract";
+        case Operation.MULTIPLY:
+            return "multiply";
+        case Operation.DIVIDE:
+            return "divide";
+        default:
+            return "modulus";
+        }
+    }
+
+    /**
+     * The base class of the generated classes. The operations return the
+     * same result as the operations of the value classes. In case of an
+     * overflow or a division by zero, the operation of the value class is
+     * used, so that the same exception is thrown.
+     */
+    public abstract static class Evaluator {
+
+        /**
+         * The expressions that are evaluated by calling getValue.
+         */
+        protected Expression[] e;
+
+        /**
+         * Set the expressions that are evaluated by calling getValue.
+         *
+         * @param e the expressions
+         */
+        void init(Expression[] e) {
+            this.e = e;
+        }
+
+        /**
+         * Evaluate the expression.
+         *
+         * @param session the session
+         * @return the value
+         */
+        public abstract Value getValue(Session session);
+
+        /**
+         * Add two values.
+         *
+         * @param a the first value
+         * @param b the second value
+         * @return the result
+         */
+        protected static int add(int a, int b) {
+            long r = (long) a + b;
+            if (r != (int) r) {
+                return ValueInt.get(a).add(ValueInt.get(b)).getInt();
+            }
+            return (int) r;
+        }
+
+        /**
+         * Subtract two values.
+         *
+         * @param a the first value
+         * @param b the second value
+         * @return the result
+         */
+        protected static int subtract(int a, int b) {
+            long r = (long) a - b;
+            if (r != (int) r) {
+                return ValueInt.get(a).subtract(ValueInt.get(b)).getInt();
+            }
+            return (int) r;
+        }
+
+        /**
+         * Multiply two values.
+         *
+         * @param a the first value
+         * @param b the second value
+         * @return the result
+         */
+        protected static int multiply(int a, int b) {
+            long r = (long) a * b;
+            if (r != (int) r) {
+                return ValueInt.get(a).multiply(ValueInt.get(b)).getInt();
+            }
+            return (int) r;
+        }
+
+        /**
+         * Divide two values.
+         *
+         * @param a the first value
+         * @param b the second value
+         * @return the result
+         */
+        protected static int divide(int a, int b) {
+            if (b == 0) {
+                return ValueInt.get(a).divide(ValueInt.get(b)).getInt();
+            }
+            return a / b;
+        }
+
+        /**
+         * Calculate the modulus of two values.
+         *
+         * @param a the first value
+         * @param b the second value
+         * @return the result
+         */
+        protected static int modulus(int a, int b) {
+            if (b == 0) {
+                return ValueInt.get(a).modulus(ValueInt.get(b)).getInt();
+            }
+            return a % b;
+        }
+
+        /**
+         * Negate a value.
+         *
+         * @param a the value
+         * @return the result
+         */
+        protected static int negate(int a) {
+            if (a == Integer.MIN_VALUE) {
+                return ValueInt.get(a).negate().getInt();
+            }
+            return -a;
+        }
+
+        /**
+         * Add two values.
+         *
+         * @param a the first value
+         * @param b the second value
+         * @return the result
+         */
+        protected static long add(long a, long b) {
+            long r = a + b;
+            if (((a ^ r) & (b ^ r)) < 0) {
+                return ValueLong.get(a).add(ValueLong.get(b)).getLong();
+            }
+            return r;
+        }
+
+        /**
+         * Subtract two values.
+         *
+         * @param a the first value
+         * @param b the second value
+         * @return the result
+         */
+        protected static long subtract(long a, long b) {
+            long r = a - b;
+            if (((a ^ b) & (a ^ r)) < 0) {
+                return ValueLong.get(a).subtract(ValueLong.get(b)).getLong();
+            }
+            return r;
+        }
+
+        /**
+         * Multiply two values.
+         *
+         * @param a the first value
+         * @param b the second value
+         * @return the result
+         */
+        protected static long multiply(long a, long b) {
+            if (a != (int) a || b != (int) b) {
+                return ValueLong.get(a).multiply(ValueLong.get(b)).getLong();
+            }
+            return a * b;
+        }
+
+        /**
+         * Divide two values.
+         *
+         * @param a the first value
+         * @param b the second value
+         * @return the result
+         */
+        protected static long divide(long a, long b) {
+            if (b == 0) {
+                return ValueLong.get(a).divide(ValueLong.get(b)).getLong();
+            }
+            return a / b;
+        }
+
+        /**
+         * Calculate the modulus of two values.
+         *
+         * @param a the first value
+         * @param b the second value
+         * @return the result
+         */
+        protected static long modulus(long a, long b) {
+            if (b == 0) {
+                return ValueLong.get(a).modulus(ValueLong.get(b)).getLong();
+            }
+            return a % b;
+        }
+
+        /**
+         * Negate a value.
+         *
+         * @param a the value
+         * @return the result
+         */
+        protected static long negate(long a) {
+            if (a == Long.MIN_VALUE) {
+                return ValueLong.get(a).negate().getLong();
+            }
+            return -a;
+        }
+
+        /**
+         * Add two values.
+         *
+         * @param a the first value
+         * @param b the second value
+         * @return the result
+         */
+        protected static double add(double a, double b) {
+            return normalize(a + b);
+        }
+
+        /**
+         * Subtract two values.
+         *
+         * @param a the first value
+         * @param b the second value
+         * @return the result
+         */
+        protected static double subtract(double a, double b) {
+            return normalize(a - b);
+        }
+
+        /**
+         * Multiply two values.
+         *
+         * @param a the first value
+         * @param b the second value
+         * @return the result
+         */
+        protected static double multiply(double a, double b) {
+            return normalize(a * b);
+        }
+
+        /**
+         * Divide two values.
+         *
+         * @param a the first value
+         * @param b the second value
+         * @return the result
+         */
+        protected static double divide(double a, double b) {
+            if (b == 0.0) {
+                return ValueDouble.get(a).divide(ValueDouble.get(b)).getDouble();
+            }
+            return normalize(a / b);
+        }
+
+        /**
+         * Calculate the modulus of two values.
+         *
+         * @param a the first value
+         * @param b the second value
+         * @return the result
+         */
+        protected static double modulus(double a, double b) {
+            if (b == 0.0) {
+                return ValueDouble.get(a).modulus(ValueDouble.get(b)).getDouble();
+            }
+            return normalize(a % b);
+        }
+
+        /**
+         * Negate a value.
+         *
+         * @param a the value
+         * @return the result
+         */
+        protected static double negate(double a) {
+            return normalize(-a);
+        }
+
+        /**
+         * Convert -0.0 to 0.0, as ValueDouble.get does.
+         *
+         * @param a the value
+         * @return the normalized value
+         */
+        private static double normalize(double a) {
+            return a == 0.0 ? 0.0 : a;
+        }
+
+    }
+
+}
@@ -265,11 +265,17 @@ public abstract class BaseIndex extends SchemaObjectBase implements Index {
                 needsToReadFromScanIndex = false;
             }
         }
+        // In a merge join, the rows are read in the order of the index,
+        // so there is no lookup in the index for each row.
+        long lookupCost = 20;
+        if (filters != null && filters[filter].isMergeJoin(this)) {
+            lookupCost = 2;
+        }
         long rc;
         if (isScanIndex) {
-            rc = rowsCost + sortingCost + 20;
+            rc = rowsCost + sortingCost + lookupCost;
         } else if (needsToReadFromScanIndex) {
-            rc = rowsCost + rowsCost + sortingCost + 20;
+            rc = rowsCost + rowsCost + sortingCost + lookupCost;
         } else {
             // The (20-x) calculation makes sure that when we pick a covering
             // index, we pick the covering index that has the smallest number of
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2004-2014 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.index;
+
+import java.util.Arrays;
+import org.h2.message.DbException;
+import org.h2.result.Row;
+import org.h2.result.SearchRow;
+import org.h2.table.ColumnVector;
+import org.h2.table.ColumnarTable;
+import org.h2.util.BitField;
+
+/**
+ * The cursor implementation for the columnar scan index. For each block, the
+ * filters are evaluated first, and then only the matching rows are returned.
+ */
+class ColumnarCursor implements Cursor {
+
+    private final ColumnVector[] vectors;
+    private final BitField deleted;
+    private final int size;
+    private final ColumnVector.Filter[] filters;
+    private final boolean[] match = new boolean[ColumnVector.BLOCK_SIZE];
+    private int block = -1;
+    private int blockStart, blockCount;
+    private int index;
+    private Row row;
+
+    ColumnarCursor(ColumnVector[] vectors, BitField deleted, int size,
+            ColumnVector.Filter[] filters) {
+        this.vectors = vectors;
+        this.deleted = deleted;
+        this.size = size;
+        this.filters = filters;
+    }
+
+    @Override
+    public Row get() {
+        return row;
+    }
+
+    @Override
+    public SearchRow getSearchRow() {
+        return row;
+    }
+
+    @Override
+    public boolean next() {
+        while (true) {
+            while (index < blockCount) {
+                int i = index++;
+                if (match[i]) {
+                    row = ColumnarTable.getRow(vectors, blockStart + i);
+                    return true;
+                }
+            }
+            if (!nextBlock()) {
+                row = null;
+                return false;
+            }
+        }
+    }
+
+    private boolean nextBlock() {
+        block++;
+        blockStart = block << ColumnVector.BLOCK_SHIFT;
+        if (blockStart >= size) {
+            blockCount = 0;
+            return false;
+        }
+        blockCount = Math.min(ColumnVector.BLOCK_SIZE, size - blockStart);
+        index = 0;
+        Arrays.fill(match, 0, blockCount, true);
+        for (int i = 0; i < blockCount; i++) {
+            if (deleted.get(blockStart + i)) {
+                match[i] = false;
+            }
+        }
+        for (ColumnVector.Filter f : filters) {
+            f.filter(block, blockCount, match);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean previous() {
+        throw DbException.throwInternalError(toString());
+    }
+
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2004-2014 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.index;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import org.h2.engine.Constants;
+import org.h2.engine.Session;
+import org.h2.message.DbException;
+import org.h2.result.Row;
+import org.h2.result.SearchRow;
+import org.h2.result.SortOrder;
+import org.h2.table.Column;
+import org.h2.table.ColumnVector;
+import org.h2.table.ColumnarTable;
+import org.h2.table.IndexColumn;
+import org.h2.table.TableFilter;
+import org.h2.util.BitField;
+import org.h2.util.New;
+import org.h2.value.Value;
+
+/**
+ * The scan index of a columnar table. It contains all columns, so that the
+ * conditions of a query on any column are passed to the find method. The
+ * conditions are then evaluated block by block on the column vectors, before
+ * the rows are read.
+ */
+public class ColumnarScanIndex extends BaseIndex {
+
+    private final ColumnarTable tableData;
+
+    public ColumnarScanIndex(ColumnarTable table, int id, IndexColumn[] columns,
+            IndexType indexType) {
+        initBaseIndex(table, id, table.getName() + "_DATA", columns, indexType);
+        tableData = table;
+    }
+
+    @Override
+    public Cursor find(Session session, SearchRow first, SearchRow last) {
+        ColumnVector[] vectors;
+        BitField deleted;
+        int size;
+        synchronized (tableData) {
+            vectors = tableData.getVectors();
+            deleted = tableData.getDeleted();
+            size = tableData.getSize();
+        }
+        ArrayList<ColumnVector.Filter> filters = New.arrayList();
+        for (int i = 0; i < vectors.length; i++) {
+            Value min = first == null ? null : first.getValue(i);
+            Value max = last == null ? null : last.getValue(i);
+            if (min != null || max != null) {
+                ColumnVector.Filter f = vectors[i].createFilter(table, min, max);
+                if (f != null) {
+                    filters.add(f);
+                }
+            }
+        }
+        ColumnVector.Filter[] list = new ColumnVector.Filter[filters.size()];
+        filters.toArray(list);
+        return new ColumnarCursor(vectors, deleted, size, list);
+    }
+
+    @Override
+    public double getCost(Session session, int[] masks,
+            TableFilter[] filters, int filter, SortOrder sortOrder,
+            HashSet<Column> allColumnsSet) {
+        return tableData.getRowCountApproximation() + Constants.COST_ROW_OFFSET;
+    }
+
+    @Override
+    public Row getRow(Session session, long key) {
+        return tableData.getRow(key);
+    }
+
+    @Override
+    public void add(Session session, Row row) {
+        // the data is stored in the table
+    }
+
+    @Override
+    public void remove(Session session, Row row) {
+        // the data is stored in the table
+    }
+
+    @Override
+    public void remove(Session session) {
+        // nothing to do
+    }
+
+    @Override
+    public void truncate(Session session) {
+        // the data is stored in the table
+    }
+
+    @Override
+    public void close(Session session) {
+        // nothing to do
+    }
+
+    @Override
+    public String getCreateSQL() {
+        return null;
+    }
+
+    @Override
+    public void checkRename() {
+        throw DbException.getUnsupportedException("SCAN");
+    }
+
+    @Override
+    public boolean isFirstColumn(Column column) {
+        return false;
+    }
+
+    @Override
+    public boolean needRebuild() {
+        return false;
+    }
+
+    @Override
+    public boolean canGetFirstOrLast() {
+        return false;
+    }
+
+    @Override
+    public Cursor findFirstOrLast(Session session, boolean first) {
+        throw DbException.getUnsupportedException("SCAN");
+    }
+
+    @Override
+    public long getRowCount(Session session) {
+        return tableData.getRowCount(session);
+    }
+
+    @Override
+    public long getRowCountApproximation() {
+        return tableData.getRowCountApproximation();
+    }
+
+    @Override
+    public long getDiskSpaceUsed() {
+        return 0;
+    }
+
+    @Override
+    public String getPlanSQL() {
+        return table.getSQL() + ".columnScan";
+    }
+
+}
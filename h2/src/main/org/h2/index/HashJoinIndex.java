@@ -0,0 +1,360 @@
+/*
+ * Copyright 2004-2014 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.index;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import org.h2.engine.Constants;
+import org.h2.engine.Database;
+import org.h2.engine.Session;
+import org.h2.message.DbException;
+import org.h2.result.Row;
+import org.h2.result.RowList;
+import org.h2.result.SearchRow;
+import org.h2.result.SortOrder;
+import org.h2.table.Column;
+import org.h2.table.IndexColumn;
+import org.h2.table.Table;
+import org.h2.table.TableFilter;
+import org.h2.table.TableType;
+import org.h2.util.New;
+import org.h2.util.SmallLRUCache;
+import org.h2.util.ValueHashMap;
+import org.h2.value.CompareMode;
+import org.h2.value.Value;
+
+/**
+ * A temporary hash index on a column of a table, used to join the table on
+ * this column if there is no regular index. The hash table is built when the
+ * first row is looked up after the query was started, by scanning the table
+ * once (the build phase), and is then used for each row of the other tables
+ * (the probe phase).
+ * <p>
+ * If the table has more than MAX_MEMORY_ROWS rows, the rows are split into
+ * partitions by the hash code of the column value, and the partitions are
+ * buffered to disk if needed (the same as the groups of a large grouped
+ * query). A lookup then reads the partition of the value. Only a few
+ * partitions are kept in memory at any time, so that at most about
+ * MAX_MEMORY_ROWS rows are in memory.
+ */
+public class HashJoinIndex extends BaseIndex {
+
+    /**
+     * The number of partitions that are kept in memory at the same time.
+     */
+    private static final int CACHED_PARTITIONS = 4;
+
+    private final int indexColumn;
+    private ValueHashMap<ArrayList<Row>> rows;
+    private RowList[] partitions;
+    private int partitionBits;
+    private SmallLRUCache<Integer, ValueHashMap<ArrayList<Row>>> cache;
+
+    private HashJoinIndex(Table table, Column column) {
+        initBaseIndex(table, 0, null, IndexColumn.wrap(new Column[] { column }),
+                IndexType.createNonUnique(false));
+        this.indexColumn = column.getColumnId();
+    }
+
+    /**
+     * Create a hash join index if a hash join can be used for the given
+     * table filter, because there is an equality condition on a column that
+     * has no index, and this table is not the first table of the join.
+     * <p>
+     * Small tables are scanned instead, as the cost of a table scan is then
+     * dominated by the constant cost per lookup, so that building a hash
+     * table is not worth it.
+     *
+     * @param session the session
+     * @param table the table
+     * @param masks the search mask of each column
+     * @param filter the index of the table filter in the join
+     * @return the index, or null
+     */
+    public static HashJoinIndex create(Session session, Table table,
+            int[] masks, int filter) {
+        Database db = session.getDatabase();
+        if (masks == null || filter == 0 || !db.getSettings().optimizeHashJoin ||
+                table.getTableType() != TableType.TABLE) {
+            return null;
+        }
+        long rowCount = table.getRowCountApproximation();
+        if (rowCount < Constants.COST_ROW_OFFSET) {
+            return null;
+        }
+        Column best = null;
+        for (Column column : table.getColumns()) {
+            int mask = masks[column.getColumnId()];
+            if ((mask & IndexCondition.EQUALITY) == IndexCondition.EQUALITY &&
+                    isHashable(db, column.getType())) {
+                if (best == null ||
+                        column.getSelectivity() > best.getSelectivity()) {
+                    best = column;
+                }
+            }
+        }
+        return best == null ? null : new HashJoinIndex(table, best);
+    }
+
+    /**
+     * Check if two values of the given type are equal if and only if they
+     * compare as equal, so that they can be found using a hash table.
+     *
+     * @param db the database
+     * @param type the data type
+     * @return true if they can
+     */
+    private static boolean isHashable(Database db, int type) {
+        switch (type) {
+        case Value.BOOLEAN:
+        case Value.BYTE:
+        case Value.SHORT:
+        case Value.INT:
+        case Value.LONG:
+        case Value.DATE:
+        case Value.TIME:
+        case Value.TIMESTAMP:
+        case Value.UUID:
+        case Value.STRING_IGNORECASE:
+            return true;
+        case Value.STRING:
+            return CompareMode.OFF.equals(db.getCompareMode().getName());
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Remove the hash table, so that it is built again when the next row is
+     * looked up. This method is called when the query is started.
+     */
+    public void reset() {
+        rows = null;
+        cache = null;
+        if (partitions != null) {
+            for (RowList list : partitions) {
+                list.close();
+            }
+            partitions = null;
+        }
+    }
+
+    private void build(Session session) {
+        int maxMemoryRows = session.getDatabase().getMaxMemoryRows();
+        ValueHashMap<ArrayList<Row>> r = ValueHashMap.newInstance();
+        Cursor cursor = table.getScanIndex(session).find(session, null, null);
+        for (int count = 0; cursor.next(); count++) {
+            Row row = cursor.get();
+            if (partitions == null && count >= maxMemoryRows) {
+                // the hash table would not fit in memory
+                createPartitions(session, count, maxMemoryRows);
+                for (ArrayList<Row> list : r.values()) {
+                    for (Row old : list) {
+                        addToPartition(old);
+                    }
+                }
+                r = null;
+            }
+            if (partitions == null) {
+                add(r, row);
+            } else {
+                addToPartition(row);
+            }
+        }
+        if (partitions == null) {
+            rows = r;
+        } else {
+            for (RowList list : partitions) {
+                list.reset();
+            }
+            cache = SmallLRUCache.newInstance(CACHED_PARTITIONS);
+        }
+    }
+
+    private void createPartitions(Session session, int count,
+            int maxMemoryRows) {
+        long rowCount = Math.max(count, table.getRowCountApproximation());
+        // each cached partition should contain at most
+        // MAX_MEMORY_ROWS / CACHED_PARTITIONS rows
+        long maxPartitionRows = Math.max(1,
+                maxMemoryRows / CACHED_PARTITIONS);
+        int bits = 1;
+        while (bits < 16 && (rowCount >> bits) > maxPartitionRows) {
+            bits++;
+        }
+        partitionBits = bits;
+        partitions = new RowList[1 << bits];
+        for (int i = 0; i < partitions.length; i++) {
+            partitions[i] = new RowList(session);
+        }
+    }
+
+    private int getPartition(Value v) {
+        int hash = v.hashCode() * 0x9E3779B9;
+        return hash >>> (32 - partitionBits);
+    }
+
+    private ValueHashMap<ArrayList<Row>> readPartition(int partition) {
+        ValueHashMap<ArrayList<Row>> r = cache.get(partition);
+        if (r == null) {
+            r = ValueHashMap.newInstance();
+            RowList list = partitions[partition];
+            list.reset();
+            while (list.hasNext()) {
+                add(r, list.next());
+            }
+            cache.put(partition, r);
+        }
+        return r;
+    }
+
+    private void add(ValueHashMap<ArrayList<Row>> r, Row row) {
+        Value v = row.getValue(indexColumn);
+        ArrayList<Row> list = r.get(v);
+        if (list == null) {
+            list = New.arrayList();
+            r.put(v, list);
+        }
+        list.add(row);
+    }
+
+    private void addToPartition(Row row) {
+        partitions[getPartition(row.getValue(indexColumn))].add(row);
+    }
+
+    @Override
+    public Cursor find(Session session, SearchRow first, SearchRow last) {
+        Value v = first == null ? null : first.getValue(indexColumn);
+        if (v == null || last == null || !v.equals(last.getValue(indexColumn))) {
+            // not an equality condition: return all rows,
+            // the conditions are checked later
+            return table.getScanIndex(session).find(session, null, null);
+        }
+        int type = columns[0].getType();
+        if (Value.getHigherOrder(type, v.getType()) != type) {
+            // the column values would be converted when comparing
+            return table.getScanIndex(session).find(session, null, null);
+        }
+        try {
+            v = v.convertTo(type);
+        } catch (DbException e) {
+            // the comparison fails in the same way (unless there are no rows)
+            return table.getScanIndex(session).find(session, null, null);
+        }
+        if (rows == null && partitions == null) {
+            build(session);
+        }
+        ArrayList<Row> list;
+        if (partitions == null) {
+            list = rows.get(v);
+        } else {
+            list = readPartition(getPartition(v)).get(v);
+        }
+        if (list == null) {
+            list = New.arrayList();
+        }
+        return new MetaCursor(list);
+    }
+
+    /**
+     * Get the cost to build the hash table, which is the cost of a table
+     * scan. If the table has more than MAX_MEMORY_ROWS rows, the rows are
+     * also written to the partitions and read again.
+     *
+     * @param session the session
+     * @return the cost
+     */
+    public double getBuildCost(Session session) {
+        double cost = table.getScanIndex(session).getCost(session, null, null,
+                0, null, null);
+        if (table.getRowCountApproximation() >
+                session.getDatabase().getMaxMemoryRows()) {
+            cost *= 3;
+        }
+        return cost;
+    }
+
+    @Override
+    public double getCost(Session session, int[] masks,
+            TableFilter[] filters, int filter, SortOrder sortOrder,
+            HashSet<Column> allColumnsSet) {
+        // the rows are usually read from the table,
+        // so the cost is the same as for a secondary index
+        return 10 * getCostRangeIndex(masks, table.getRowCountApproximation(),
+                filters, filter, sortOrder, false, allColumnsSet);
+    }
+
+    @Override
+    public String getPlanSQL() {
+        return table.getSQL() + ".hashJoin";
+    }
+
+    @Override
+    public void close(Session session) {
+        // nothing to do
+    }
+
+    @Override
+    public void add(Session session, Row row) {
+        throw DbException.getUnsupportedException("HASH JOIN");
+    }
+
+    @Override
+    public void remove(Session session, Row row) {
+        throw DbException.getUnsupportedException("HASH JOIN");
+    }
+
+    @Override
+    public void remove(Session session) {
+        // nothing to do
+    }
+
+    @Override
+    public void truncate(Session session) {
+        throw DbException.getUnsupportedException("HASH JOIN");
+    }
+
+    @Override
+    public boolean needRebuild() {
+        return false;
+    }
+
+    @Override
+    public void checkRename() {
+        throw DbException.getUnsupportedException("HASH JOIN");
+    }
+
+    @Override
+    public boolean canGetFirstOrLast() {
+        return false;
+    }
+
+    @Override
+    public Cursor findFirstOrLast(Session session, boolean first) {
+        throw DbException.getUnsupportedException("HASH JOIN");
+    }
+
+    @Override
+    public long getRowCount(Session session) {
+        return table.getRowCount(session);
+    }
+
+    @Override
+    public long getRowCountApproximation() {
+        return table.getRowCountApproximation();
+    }
+
+    @Override
+    public long getDiskSpaceUsed() {
+        return 0;
+    }
+
+    @Override
+    public boolean canScan() {
+        return false;
+    }
+
+}
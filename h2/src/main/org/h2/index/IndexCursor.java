@@ -18,6 +18,7 @@ import org.h2.table.Column;
 import org.h2.table.IndexColumn;
 import org.h2.table.Table;
 import org.h2.table.TableFilter;
+import org.h2.util.New;
 import org.h2.value.Value;
 import org.h2.value.ValueGeometry;
 import org.h2.value.ValueNull;
@@ -32,6 +33,12 @@ import org.h2.value.ValueNull;
  */
 public class IndexCursor implements Cursor {
 
+    /**
+     * The maximum number of rows to skip in a merge join, before a new
+     * lookup in the index is made instead.
+     */
+    private static final int MERGE_MAX_SKIP = 32;
+
     private Session session;
     private final TableFilter tableFilter;
     private Index index;
@@ -47,6 +54,11 @@ public class IndexCursor implements Cursor {
     private ResultInterface inResult;
     private HashSet<Value> inResultTested;
 
+    private boolean mergeJoin;
+    private Cursor mergeCursor;
+    private SearchRow mergeRow, mergeStart;
+    private ArrayList<Row> mergeRows;
+
     public IndexCursor(TableFilter filter) {
         this.tableFilter = filter;
     }
@@ -67,6 +79,21 @@ public class IndexCursor implements Cursor {
         }
     }
 
+    /**
+     * Enable or disable the merge join mode. In this mode, the index cursor
+     * is kept open, and if the value to look up is larger than or equal to
+     * the previous value, the cursor is moved forward instead of making a new
+     * lookup in the index. This also resets the position of the cursor.
+     *
+     * @param mergeJoin whether to use the merge join mode
+     */
+    public void setMergeJoin(boolean mergeJoin) {
+        this.mergeJoin = mergeJoin;
+        mergeCursor = null;
+        mergeRow = mergeStart = null;
+        mergeRows = null;
+    }
+
     /**
      * Prepare this index cursor to make a lookup in index.
      *
@@ -165,12 +192,74 @@ public class IndexCursor implements Cursor {
             if (intersects != null && index instanceof SpatialIndex) {
                 cursor = ((SpatialIndex) index).findByGeometry(tableFilter,
                         start, end, intersects);
+            } else if (mergeJoin && isEqualityLookup()) {
+                cursor = findMerge();
             } else {
                 cursor = index.find(tableFilter, start, end);
             }
         }
     }
 
+    /**
+     * Check if the start and the end of the range are the same non-null
+     * values for the first columns of the index.
+     *
+     * @return true if yes
+     */
+    private boolean isEqualityLookup() {
+        if (start == null || end == null) {
+            return false;
+        }
+        IndexColumn[] cols = index.getIndexColumns();
+        for (int i = 0; i < cols.length; i++) {
+            int id = cols[i].column.getColumnId();
+            Value a = start.getValue(id), b = end.getValue(id);
+            if (a == null && b == null) {
+                return i > 0;
+            }
+            if (a == null || b == null || a == ValueNull.INSTANCE ||
+                    !a.equals(b)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Cursor findMerge() {
+        if (mergeStart != null && index.compareRows(start, mergeStart) == 0) {
+            // same value as before
+            return new MetaCursor(mergeRows);
+        }
+        if (mergeStart == null || index.compareRows(start, mergeStart) < 0) {
+            seekMerge();
+        } else {
+            for (int skip = 0; mergeRow != null &&
+                    index.compareRows(mergeRow, start) < 0; skip++) {
+                if (skip >= MERGE_MAX_SKIP) {
+                    seekMerge();
+                    break;
+                }
+                nextMerge();
+            }
+        }
+        mergeStart = start;
+        mergeRows = New.arrayList();
+        while (mergeRow != null && index.compareRows(mergeRow, start) == 0) {
+            mergeRows.add(mergeCursor.get());
+            nextMerge();
+        }
+        return new MetaCursor(mergeRows);
+    }
+
+    private void seekMerge() {
+        mergeCursor = index.find(tableFilter, start, null);
+        nextMerge();
+    }
+
+    private void nextMerge() {
+        mergeRow = mergeCursor.next() ? mergeCursor.getSearchRow() : null;
+    }
+
     private boolean canUseIndexForIn(Column column) {
         if (inColumn != null) {
             // only one IN(..) condition can be used at the same time
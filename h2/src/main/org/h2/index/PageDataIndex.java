@@ -5,7 +5,9 @@
  */
 package org.h2.index;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -156,6 +158,40 @@ public class PageDataIndex extends PageIndex {
         lastKey = Math.max(lastKey, row.getKey());
     }
 
+    /**
+     * Add multiple rows. If the key is stored in a column, the rows are added
+     * in the order of their keys. If adding a row fails, the rows that were
+     * added before are removed again.
+     *
+     * @param session the session
+     * @param rows the rows
+     */
+    public void add(Session session, List<Row> rows) {
+        ArrayList<Row> list = new ArrayList<>(rows);
+        if (mainIndexColumn != -1) {
+            for (Row row : list) {
+                row.setKey(row.getValue(mainIndexColumn).getLong());
+            }
+            Collections.sort(list, new Comparator<Row>() {
+                @Override
+                public int compare(Row r1, Row r2) {
+                    return Long.compare(r1.getKey(), r2.getKey());
+                }
+            });
+        }
+        int i = 0;
+        try {
+            for (int size = list.size(); i < size; i++) {
+                add(session, list.get(i));
+            }
+        } catch (DbException e) {
+            while (--i >= 0) {
+                remove(session, list.get(i));
+            }
+            throw e;
+        }
+    }
+
     public DbException getNewDuplicateKeyException() {
         String sql = "PRIMARY KEY ON " + table.getSQL();
         if (mainIndexColumn >= 0 && mainIndexColumn < indexColumns.length) {
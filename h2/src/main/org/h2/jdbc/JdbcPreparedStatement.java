@@ -27,6 +27,7 @@ import java.util.Calendar;
 import java.util.HashMap;
 import org.h2.api.ErrorCode;
 import org.h2.command.CommandInterface;
+import org.h2.command.CommandRemote;
 import org.h2.expression.ParameterInterface;
 import org.h2.message.DbException;
 import org.h2.message.TraceObject;
@@ -1202,31 +1203,61 @@ public class JdbcPreparedStatement extends JdbcStatement implements
             SQLException next = null;
             checkClosedForWrite();
             try {
-                for (int i = 0; i < size; i++) {
-                    Value[] set = batchParameters.get(i);
-                    ArrayList<? extends ParameterInterface> parameters =
-                            command.getParameters();
-                    for (int j = 0; j < set.length; j++) {
-                        Value value = set[j];
-                        ParameterInterface param = parameters.get(j);
-                        param.setValue(value, false);
+                if (isRemoteBatchSupported()) {
+                    ArrayList<Value> keys = New.arrayList();
+                    DbException[] errors = new DbException[size];
+                    closeOldResultSet();
+                    synchronized (session) {
+                        try {
+                            setExecutingStatement(command);
+                            result = ((CommandRemote) command).executeBatchUpdate(
+                                    batchParameters, keys, errors);
+                        } finally {
+                            setExecutingStatement(null);
+                        }
                     }
-                    try {
-                        result[i] = executeUpdateInternal();
-                        ResultSet rs = conn.getGeneratedKeys(this, id);
-                        while (rs.next()) {
-                            batchIdentities.add(rs.getObject(1));
+                    for (Value v : keys) {
+                        batchIdentities.add(v.getObject());
+                    }
+                    for (int i = 0; i < size; i++) {
+                        if (errors[i] != null) {
+                            SQLException e = logAndConvert(errors[i]);
+                            if (next == null) {
+                                next = e;
+                            } else {
+                                e.setNextException(next);
+                                next = e;
+                            }
+                            error = true;
                         }
-                    } catch (Exception re) {
-                        SQLException e = logAndConvert(re);
-                        if (next == null) {
-                            next = e;
-                        } else {
-                            e.setNextException(next);
-                            next = e;
+                    }
+                } else {
+                    for (int i = 0; i < size; i++) {
+                        Value[] set = batchParameters.get(i);
+                        ArrayList<? extends ParameterInterface> parameters =
+                                command.getParameters();
+                        for (int j = 0; j < set.length; j++) {
+                            Value value = set[j];
+                            ParameterInterface param = parameters.get(j);
+                            param.setValue(value, false);
+                        }
+                        try {
+                            result[i] = executeUpdateInternal();
+                            ResultSet rs = conn.getGeneratedKeys(this, id);
+                            while (rs.next()) {
+                                batchIdentities.add(rs.getObject(1));
+                            }
+                        } catch (Exception re) {
+                            SQLException e = logAndConvert(re);
+                            if (next == null) {
+                                next = e;
+                            } else {
+                                e.setNextException(next);
+                                next = e;
+                            }
+                            result[i] = Statement.EXECUTE_FAILED;
+                            error = true;
                         }
-                        result[i] = Statement.EXECUTE_FAILED;
-                        error = true;
                     }
                 }
                 batchParameters = null;
@@ -1243,6 +1274,27 @@ public class JdbcPreparedStatement extends JdbcStatement implements
         }
     }
 
+    /**
+     * Check whether the batch can be sent to the server in one message. This
+     * is only possible if all parameters of all sets are set.
+     *
+     * @return true if the remote batch execution can be used
+     */
+    private boolean isRemoteBatchSupported() {
+        if (!(command instanceof CommandRemote) ||
+                !((CommandRemote) command).isBatchSupported()) {
+            return false;
+        }
+        for (Value[] set : batchParameters) {
+            for (Value v : set) {
+                if (v == null) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
     @Override
     public ResultSet getGeneratedKeys() throws SQLException {
         if (batchIdentities != null && !batchIdentities.isEmpty()) {
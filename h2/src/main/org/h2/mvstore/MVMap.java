@@ -8,12 +8,14 @@ package org.h2.mvstore;
 import java.util.AbstractList;
 import java.util.AbstractMap;
 import java.util.AbstractSet;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import org.h2.mvstore.type.DataType;
 import org.h2.mvstore.type.ObjectDataType;
 import org.h2.util.New;
@@ -25,10 +27,11 @@ import org.h2.util.New;
  * operations, without risk of corruption.
  * <p>
  * Write operations first read the relevant area from disk to memory
- * concurrently, and only then modify the data. The in-memory part of write
- * operations is synchronized. For scalable concurrent in-memory write
- * operations, the map should be split into multiple smaller sub-maps that are
- * then synchronized independently.
+ * concurrently, and then build a modified copy of the path from the root to
+ * the changed leaf. The new root is installed using compare-and-swap; if
+ * another thread changed the map in the meantime, the operation is retried.
+ * Only when the write version changes, or if there are too many failed
+ * attempts, is the in-memory part of a write operation synchronized.
  *
  * @param <K> the key class
  * @param <V> the value class
@@ -36,6 +39,25 @@ import org.h2.util.New;
 public class MVMap<K, V> extends AbstractMap<K, V>
         implements ConcurrentMap<K, V> {
 
+    /**
+     * The number of optimistic write attempts before synchronizing on the map.
+     */
+    private static final int MAX_OPTIMISTIC_ATTEMPTS = 16;
+
+    private static final int UPDATE_PUT = 0;
+    private static final int UPDATE_PUT_IF_ABSENT = 1;
+    private static final int UPDATE_REPLACE = 2;
+    private static final int UPDATE_IF_EQUAL = 3;
+
+    /**
+     * The marker returned by an optimistic write that needs to be retried.
+     */
+    private static final Object RETRY = new Object();
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<MVMap, Page> ROOT_UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(MVMap.class, Page.class, "root");
+
     /**
      * The store.
      */
@@ -116,15 +138,154 @@ public class MVMap<K, V> extends AbstractMap<K, V>
      */
     @Override
     @SuppressWarnings("unchecked")
-    public synchronized V put(K key, V value) {
+    public V put(K key, V value) {
         DataUtils.checkArgument(value != null, "The value may not be null");
         beforeWrite();
-        long v = writeVersion;
-        Page p = root.copy(v);
-        p = splitRootIfNeeded(p, v);
-        Object result = put(p, v, key, value);
-        newRoot(p);
-        return (V) result;
+        if (isOptimisticWrite()) {
+            return (V) update(key, value, null, UPDATE_PUT);
+        }
+        synchronized (this) {
+            long v = writeVersion;
+            Page p = root.copy(v);
+            p = splitRootIfNeeded(p, v);
+            Object result = put(p, v, key, value);
+            newRoot(p);
+            return (V) result;
+        }
+    }
+
+    /**
+     * Whether write operations use optimistic concurrency control, that is,
+     * whether they can run concurrently without synchronizing on this map.
+     * Maps that override the page level put or remove methods need to return
+     * false.
+     *
+     * @return true if optimistic writes are used
+     */
+    protected boolean isOptimisticWrite() {
+        return true;
+    }
+
+    /**
+     * Add, replace, or remove the entry for a key, if the condition for the
+     * given mode is met.
+     *
+     * @param key the key
+     * @param value the new value, or null to remove the entry
+     * @param expected the expected old value (only used when updating if
+     *            equal)
+     * @param mode the update mode
+     * @return the old value, or null
+     */
+    private Object update(Object key, Object value, Object expected,
+            int mode) {
+        for (int i = 0; i < MAX_OPTIMISTIC_ATTEMPTS; i++) {
+            Page r = root;
+            long v = writeVersion;
+            if (r.getVersion() != v) {
+                // the old root needs to be kept: synchronize
+                break;
+            }
+            Object result;
+            try {
+                result = tryUpdate(r, v, key, value, expected, mode);
+            } catch (IllegalStateException e) {
+                if (r == root) {
+                    throw e;
+                }
+                // the root was replaced concurrently, and the chunks that
+                // are only used by the old root may already be overwritten
+                // (if the retention time is low)
+                continue;
+            }
+            if (result != RETRY) {
+                return result;
+            }
+        }
+        synchronized (this) {
+            while (true) {
+                Object result = tryUpdate(root, writeVersion,
+                        key, value, expected, mode);
+                if (result != RETRY) {
+                    return result;
+                }
+            }
+        }
+    }
+
+    private Object tryUpdate(Page r, long v, Object key, Object value,
+            Object expected, int mode) {
+        Object old = binarySearch(r, key);
+        boolean update;
+        switch (mode) {
+        case UPDATE_PUT:
+            update = true;
+            break;
+        case UPDATE_PUT_IF_ABSENT:
+            update = old == null;
+            break;
+        case UPDATE_REPLACE:
+            update = old != null;
+            break;
+        case UPDATE_IF_EQUAL:
+            update = areValuesEqual(old, expected);
+            break;
+        default:
+            throw DataUtils.newIllegalArgumentException("Unknown mode {0}", mode);
+        }
+        if (!update || (value == null && old == null)) {
+            return old;
+        }
+        ArrayList<Page> removed = New.arrayList();
+        removed.add(r);
+        Page p = r.copyKeepOld(v);
+        if (value == null) {
+            remove(p, v, key, removed);
+            if (!p.isLeaf() && p.getTotalCount() == 0) {
+                removed.add(p);
+                p = Page.createEmpty(this,  v);
+            }
+        } else {
+            p = splitRootIfNeeded(p, v);
+            put(p, v, key, value, removed);
+        }
+        if (!compareAndSetRoot(r, p)) {
+            return RETRY;
+        }
+        for (Page x : removed) {
+            x.removePage();
+        }
+        return old;
+    }
+
+    /**
+     * Use the new root page, if the current root is the expected page. If the
+     * version changes, this method must be called while synchronized on the
+     * map, so that the old root is kept in the right order.
+     *
+     * @param expected the expected current root page
+     * @param newRoot the new root page
+     * @return whether the root was replaced
+     */
+    private boolean compareAndSetRoot(Page expected, Page newRoot) {
+        removeUnusedOldVersions();
+        boolean added = false;
+        if (expected.getVersion() != newRoot.getVersion()) {
+            Page last = oldRoots.peekLast();
+            if (last == null || last.getVersion() != expected.getVersion()) {
+                // add before replacing the root, so that concurrent readers
+                // of the old version can always find it
+                oldRoots.add(expected);
+                added = true;
+            }
+        }
+        if (ROOT_UPDATER.compareAndSet(this, expected, newRoot)) {
+            return true;
+        }
+        if (added) {
+            oldRoots.removeLast(expected);
+        }
+        return false;
     }
 
     /**
@@ -164,6 +325,22 @@ public class MVMap<K, V> extends AbstractMap<K, V>
      * @return the old value, or null
      */
     protected Object put(Page p, long writeVersion, Object key, Object value) {
+        return put(p, writeVersion, key, value, null);
+    }
+
+    /**
+     * Add or update a key-value pair.
+     *
+     * @param p the page
+     * @param writeVersion the write version
+     * @param key the key (may not be null)
+     * @param value the value (may not be null)
+     * @param removed the list of replaced pages that are to be removed later,
+     *            or null to remove them immediately
+     * @return the old value, or null
+     */
+    private Object put(Page p, long writeVersion, Object key, Object value,
+            ArrayList<Page> removed) {
         int index = p.binarySearch(key);
         if (p.isLeaf()) {
             if (index < 0) {
@@ -179,7 +356,7 @@ public class MVMap<K, V> extends AbstractMap<K, V>
         } else {
             index++;
         }
-        Page c = p.getChildPage(index).copy(writeVersion);
+        Page c = copy(p.getChildPage(index), writeVersion, removed);
         if (c.getMemory() > store.getPageSplitSize() && c.getKeyCount() > 1) {
             // split on the way down
             int at = c.getKeyCount() / 2;
@@ -188,13 +365,146 @@ public class MVMap<K, V> extends AbstractMap<K, V>
             p.setChild(index, split);
             p.insertNode(index, k, c);
             // now we are not sure where to add
-            return put(p, writeVersion, key, value);
+            return put(p, writeVersion, key, value, removed);
         }
-        Object result = put(c, writeVersion, key, value);
+        Object result = put(c, writeVersion, key, value, removed);
         p.setChild(index, c);
         return result;
     }
 
+    /**
+     * Create a copy of a page. The old page is either removed immediately, or
+     * added to the list of pages to remove.
+     *
+     * @param p the page
+     * @param writeVersion the write version
+     * @param removed the list of pages to remove later, or null
+     * @return the copy
+     */
+    private static Page copy(Page p, long writeVersion,
+            ArrayList<Page> removed) {
+        if (removed == null) {
+            return p.copy(writeVersion);
+        }
+        removed.add(p);
+        return p.copyKeepOld(writeVersion);
+    }
+
+    /**
+     * Append a leaf page with the given sorted entries at the end of the map.
+     * The first key must be larger than the largest key of the map. The leaf
+     * is added as the last child of the rightmost node, so that the entries
+     * are not inserted one by one. If a node on the rightmost path is full,
+     * only its last child is moved to a new node, so that the tree is built
+     * bottom-up and all nodes except the rightmost ones are full. The arrays
+     * are not cloned.
+     *
+     * @param keys the keys, in ascending order
+     * @param values the values
+     * @throws IllegalArgumentException if the first key is not larger than
+     *             the largest key of the map
+     */
+    void appendLeaf(Object[] keys, Object[] values) {
+        if (keys.length == 0) {
+            return;
+        }
+        beforeWrite();
+        synchronized (this) {
+            long v = writeVersion;
+            Page leaf = Page.create(this, v, keys, values, null,
+                    keys.length, 0);
+            while (true) {
+                Page r = root;
+                ArrayList<Page> removed = New.arrayList();
+                removed.add(r);
+                Page p;
+                if (r.isLeaf()) {
+                    int count = r.getKeyCount();
+                    if (count == 0) {
+                        p = leaf;
+                    } else {
+                        checkAppend(r.getKey(count - 1), keys[0]);
+                        Page.PageReference[] children = {
+                                new Page.PageReference(r, r.getPos(), r.getTotalCount()),
+                                new Page.PageReference(leaf, leaf.getPos(), leaf.getTotalCount()),
+                        };
+                        p = Page.create(this, v, new Object[] { keys[0] },
+                                null, children,
+                                r.getTotalCount() + leaf.getTotalCount(), 0);
+                        // the old root is still used as a child
+                        removed.clear();
+                    }
+                } else {
+                    p = r.copyKeepOld(v);
+                    if (isFull(p)) {
+                        int at = p.getKeyCount() - 1;
+                        Object k = p.getKey(at);
+                        Page split = p.split(at);
+                        appendLeaf(split, v, leaf, removed);
+                        Page.PageReference[] children = {
+                                new Page.PageReference(p, p.getPos(), p.getTotalCount()),
+                                new Page.PageReference(split, split.getPos(), split.getTotalCount()),
+                        };
+                        p = Page.create(this, v, new Object[] { k },
+                                null, children,
+                                p.getTotalCount() + split.getTotalCount(), 0);
+                    } else {
+                        appendLeaf(p, v, leaf, removed);
+                    }
+                }
+                if (compareAndSetRoot(r, p)) {
+                    for (Page x : removed) {
+                        x.removePage();
+                    }
+                    return;
+                }
+            }
+        }
+    }
+
+    private void appendLeaf(Page p, long writeVersion, Page leaf,
+            ArrayList<Page> removed) {
+        int index = p.getKeyCount();
+        Page c = p.getChildPage(index);
+        if (c.isLeaf()) {
+            int count = c.getKeyCount();
+            if (count == 0) {
+                removed.add(c);
+                p.setChild(index, leaf);
+            } else {
+                checkAppend(c.getKey(count - 1), leaf.getKey(0));
+                p.setChild(index, leaf);
+                p.insertNode(index, leaf.getKey(0), c);
+            }
+            return;
+        }
+        c = copy(c, writeVersion, removed);
+        if (isFull(c)) {
+            // split on the way down, keeping the left part full
+            int at = c.getKeyCount() - 1;
+            Object k = c.getKey(at);
+            Page split = c.split(at);
+            appendLeaf(split, writeVersion, leaf, removed);
+            p.setChild(index, split);
+            p.insertNode(index, k, c);
+        } else {
+            appendLeaf(c, writeVersion, leaf, removed);
+            p.setChild(index, c);
+        }
+    }
+
+    private boolean isFull(Page p) {
+        return p.getMemory() > store.getPageSplitSize() && p.getKeyCount() > 1;
+    }
+
+    private void checkAppend(Object last, Object key) {
+        if (compare(last, key) >= 0) {
+            throw DataUtils.newIllegalArgumentException(
+                    "Appended key {0} is not larger than the last key {1}",
+                    key, last);
+        }
+    }
+
     /**
      * Get the first key, or null if the map is empty.
      *
@@ -470,10 +780,17 @@ public class MVMap<K, V> extends AbstractMap<K, V>
      * Remove all entries.
      */
     @Override
-    public synchronized void clear() {
+    public void clear() {
         beforeWrite();
-        root.removeAllRecursive();
-        newRoot(Page.createEmpty(this, writeVersion));
+        synchronized (this) {
+            while (true) {
+                Page r = root;
+                if (compareAndSetRoot(r, Page.createEmpty(this, writeVersion))) {
+                    r.removeAllRecursive();
+                    return;
+                }
+            }
+        }
     }
 
     /**
@@ -498,6 +815,9 @@ public class MVMap<K, V> extends AbstractMap<K, V>
     @SuppressWarnings("unchecked")
     public V remove(Object key) {
         beforeWrite();
+        if (isOptimisticWrite()) {
+            return (V) update(key, null, null, UPDATE_PUT);
+        }
         V result = get(key);
         if (result == null) {
             return null;
@@ -523,12 +843,20 @@ public class MVMap<K, V> extends AbstractMap<K, V>
      * @return the old value if the key existed, or null otherwise
      */
     @Override
-    public synchronized V putIfAbsent(K key, V value) {
-        V old = get(key);
-        if (old == null) {
-            put(key, value);
+    @SuppressWarnings("unchecked")
+    public V putIfAbsent(K key, V value) {
+        if (isOptimisticWrite()) {
+            DataUtils.checkArgument(value != null, "The value may not be null");
+            beforeWrite();
+            return (V) update(key, value, null, UPDATE_PUT_IF_ABSENT);
+        }
+        synchronized (this) {
+            V old = get(key);
+            if (old == null) {
+                put(key, value);
+            }
+            return old;
         }
-        return old;
     }
 
     /**
@@ -539,13 +867,20 @@ public class MVMap<K, V> extends AbstractMap<K, V>
      * @return true if the item was removed
      */
     @Override
-    public synchronized boolean remove(Object key, Object value) {
-        V old = get(key);
-        if (areValuesEqual(old, value)) {
-            remove(key);
-            return true;
+    public boolean remove(Object key, Object value) {
+        if (isOptimisticWrite()) {
+            beforeWrite();
+            Object old = update(key, null, value, UPDATE_IF_EQUAL);
+            return areValuesEqual(old, value);
+        }
+        synchronized (this) {
+            V old = get(key);
+            if (areValuesEqual(old, value)) {
+                remove(key);
+                return true;
+            }
+            return false;
         }
-        return false;
     }
 
     /**
@@ -573,13 +908,21 @@ public class MVMap<K, V> extends AbstractMap<K, V>
      * @return true if the value was replaced
      */
     @Override
-    public synchronized boolean replace(K key, V oldValue, V newValue) {
-        V old = get(key);
-        if (areValuesEqual(old, oldValue)) {
-            put(key, newValue);
-            return true;
+    public boolean replace(K key, V oldValue, V newValue) {
+        if (isOptimisticWrite()) {
+            DataUtils.checkArgument(newValue != null, "The value may not be null");
+            beforeWrite();
+            Object old = update(key, newValue, oldValue, UPDATE_IF_EQUAL);
+            return areValuesEqual(old, oldValue);
+        }
+        synchronized (this) {
+            V old = get(key);
+            if (areValuesEqual(old, oldValue)) {
+                put(key, newValue);
+                return true;
+            }
+            return false;
         }
-        return false;
     }
 
     /**
@@ -590,13 +933,21 @@ public class MVMap<K, V> extends AbstractMap<K, V>
      * @return the old value, if the value was replaced, or null
      */
     @Override
-    public synchronized V replace(K key, V value) {
-        V old = get(key);
-        if (old != null) {
-            put(key, value);
-            return old;
+    @SuppressWarnings("unchecked")
+    public V replace(K key, V value) {
+        if (isOptimisticWrite()) {
+            DataUtils.checkArgument(value != null, "The value may not be null");
+            beforeWrite();
+            return (V) update(key, value, null, UPDATE_REPLACE);
+        }
+        synchronized (this) {
+            V old = get(key);
+            if (old != null) {
+                put(key, value);
+                return old;
+            }
+            return null;
         }
-        return null;
     }
 
     /**
@@ -608,6 +959,21 @@ public class MVMap<K, V> extends AbstractMap<K, V>
      * @return the old value, or null if the key did not exist
      */
     protected Object remove(Page p, long writeVersion, Object key) {
+        return remove(p, writeVersion, key, null);
+    }
+
+    /**
+     * Remove a key-value pair.
+     *
+     * @param p the page (may not be null)
+     * @param writeVersion the write version
+     * @param key the key
+     * @param removed the list of replaced pages that are to be removed later,
+     *            or null to remove them immediately
+     * @return the old value, or null if the key did not exist
+     */
+    private Object remove(Page p, long writeVersion, Object key,
+            ArrayList<Page> removed) {
         int index = p.binarySearch(key);
         Object result = null;
         if (p.isLeaf()) {
@@ -624,8 +990,8 @@ public class MVMap<K, V> extends AbstractMap<K, V>
             index++;
         }
         Page cOld = p.getChildPage(index);
-        Page c = cOld.copy(writeVersion);
-        result = remove(c, writeVersion, key);
+        Page c = copy(cOld, writeVersion, removed);
+        result = remove(c, writeVersion, key, removed);
         if (result == null || c.getTotalCount() != 0) {
             // no change, or
             // there are more nodes
@@ -634,7 +1000,11 @@ public class MVMap<K, V> extends AbstractMap<K, V>
             // this child was deleted
             if (p.getKeyCount() == 0) {
                 p.setChild(index, c);
-                c.removePage();
+                if (removed == null) {
+                    c.removePage();
+                } else {
+                    removed.add(c);
+                }
             } else {
                 p.remove(index);
             }
@@ -643,20 +1013,19 @@ public class MVMap<K, V> extends AbstractMap<K, V>
     }
 
     /**
-     * Use the new root page from now on.
+     * Use the new root page from now on. This method must be called while
+     * synchronized on the map, and the new root must be based on the current
+     * root. Only maps without optimistic writes may change the root this way,
+     * or else a concurrent update could be lost.
      *
      * @param newRoot the new root page
      */
     protected void newRoot(Page newRoot) {
-        if (root != newRoot) {
-            removeUnusedOldVersions();
-            if (root.getVersion() != newRoot.getVersion()) {
-                Page last = oldRoots.peekLast();
-                if (last == null || last.getVersion() != root.getVersion()) {
-                    oldRoots.add(root);
-                }
-            }
-            root = newRoot;
+        Page r = root;
+        if (r != newRoot && !compareAndSetRoot(r, newRoot)) {
+            throw DataUtils.newIllegalStateException(
+                    DataUtils.ERROR_INTERNAL,
+                    "The root of map {0} was changed concurrently", id);
         }
     }
 
@@ -706,8 +1075,18 @@ public class MVMap<K, V> extends AbstractMap<K, V>
      * @param version the version of the root
      */
     void setRootPos(long rootPos, long version) {
-        root = rootPos == 0 ? Page.createEmpty(this, -1) : readPage(rootPos);
-        root.setVersion(version);
+        Page p = rootPos == 0 ? Page.createEmpty(this, -1) : readPage(rootPos);
+        p.setVersion(version);
+        synchronized (this) {
+            // concurrent updates that are based on the old root fail
+            // and are retried on the new root
+            while (true) {
+                Page r = root;
+                if (ROOT_UPDATER.compareAndSet(this, r, p)) {
+                    break;
+                }
+            }
+        }
     }
 
     /**
@@ -721,40 +1100,39 @@ public class MVMap<K, V> extends AbstractMap<K, V>
     }
 
     /**
-     * Re-write any pages that belong to one of the chunks in the given set.
+     * Get the root page of the previous version, which is read to find the
+     * pages that need to be re-written when compacting.
      *
-     * @param set the set of chunk ids
-     * @return whether rewriting was successful
+     * @return the root page, or null if there is nothing to re-write
      */
-    boolean rewrite(Set<Integer> set) {
+    Page getRewriteRoot() {
         // read from old version, to avoid concurrent reads
         long previousVersion = store.getCurrentVersion() - 1;
         if (previousVersion < createVersion) {
             // a new map
-            return true;
+            return null;
         }
-        MVMap<K, V> readMap;
         try {
-            readMap = openVersion(previousVersion);
+            return openVersion(previousVersion).root;
         } catch (IllegalArgumentException e) {
             // unknown version: ok
             // TODO should not rely on exception handling
-            return true;
-        }
-        try {
-            rewrite(readMap.root, set);
-            return true;
-        } catch (IllegalStateException e) {
-            // TODO should not rely on exception handling
-            if (DataUtils.getErrorCode(e.getMessage()) == DataUtils.ERROR_CHUNK_NOT_FOUND) {
-                // ignore
-                return false;
-            }
-            throw e;
+            return null;
         }
     }
 
-    private int rewrite(Page p, Set<Integer> set) {
+    /**
+     * Collect the keys of the pages that belong to one of the chunks in the
+     * given set. Re-writing the entry with the given key re-writes the page
+     * and all its parents. Only the given page and its children are read, so
+     * that the subtrees of one map can be processed concurrently.
+     *
+     * @param p the page of an old version
+     * @param set the set of chunk ids
+     * @param keys the list to add the keys to
+     * @return the number of pages that are re-written
+     */
+    int collectRewriteKeys(Page p, Set<Integer> set, ArrayList<Object> keys) {
         if (p.isLeaf()) {
             long pos = p.getPos();
             int chunkId = DataUtils.getPageChunkId(pos);
@@ -762,12 +1140,7 @@ public class MVMap<K, V> extends AbstractMap<K, V>
                 return 0;
             }
             if (p.getKeyCount() > 0) {
-                @SuppressWarnings("unchecked")
-                K key = (K) p.getKey(0);
-                V value = get(key);
-                if (value != null) {
-                    replace(key, value, value);
-                }
+                keys.add(p.getKey(0));
             }
             return 1;
         }
@@ -783,34 +1156,54 @@ public class MVMap<K, V> extends AbstractMap<K, V>
                     continue;
                 }
             }
-            writtenPageCount += rewrite(p.getChildPage(i), set);
+            writtenPageCount += collectRewriteKeys(p.getChildPage(i), set, keys);
         }
         if (writtenPageCount == 0) {
-            long pos = p.getPos();
-            int chunkId = DataUtils.getPageChunkId(pos);
-            if (set.contains(chunkId)) {
-                // an inner node page that is in one of the chunks,
-                // but only points to chunks that are not in the set:
-                // if no child was changed, we need to do that now
-                // (this is not needed if anyway one of the children
-                // was changed, as this would have updated this
-                // page as well)
-                Page p2 = p;
-                while (!p2.isLeaf()) {
-                    p2 = p2.getChildPage(0);
-                }
-                @SuppressWarnings("unchecked")
-                K key = (K) p2.getKey(0);
-                V value = get(key);
-                if (value != null) {
-                    replace(key, value, value);
-                }
-                writtenPageCount++;
-            }
+            writtenPageCount = collectRewriteNode(p, set, keys);
         }
         return writtenPageCount;
     }
 
+    /**
+     * Collect the first key of an inner node page that is in one of the
+     * chunks, but only points to chunks that are not in the set. If no child
+     * was changed, the page needs to be re-written using that key (this is not
+     * needed if anyway one of the children was changed, as this would have
+     * updated this page as well).
+     *
+     * @param p the inner node page
+     * @param set the set of chunk ids
+     * @param keys the list to add the key to
+     * @return 1 if the key was added, 0 otherwise
+     */
+    int collectRewriteNode(Page p, Set<Integer> set, ArrayList<Object> keys) {
+        long pos = p.getPos();
+        int chunkId = DataUtils.getPageChunkId(pos);
+        if (!set.contains(chunkId)) {
+            return 0;
+        }
+        Page p2 = p;
+        while (!p2.isLeaf()) {
+            p2 = p2.getChildPage(0);
+        }
+        keys.add(p2.getKey(0));
+        return 1;
+    }
+
+    /**
+     * Re-write the page that contains the given key, and all its parents.
+     *
+     * @param key the key
+     */
+    void rewriteKey(Object key) {
+        @SuppressWarnings("unchecked")
+        K k = (K) key;
+        V value = get(k);
+        if (value != null) {
+            replace(k, value, value);
+        }
+    }
+
     /**
      * Get a cursor to iterate over a number of keys and values.
      *
@@ -927,22 +1320,26 @@ public class MVMap<K, V> extends AbstractMap<K, V>
      *
      * @param version the version
      */
-    void rollbackTo(long version) {
+    synchronized void rollbackTo(long version) {
         beforeWrite();
         if (version <= createVersion) {
             // the map is removed later
-        } else if (root.getVersion() >= version) {
-            while (true) {
-                Page last = oldRoots.peekLast();
-                if (last == null) {
-                    break;
-                }
+            return;
+        }
+        while (true) {
+            Page r = root;
+            if (r.getVersion() < version) {
+                break;
+            }
+            Page last = oldRoots.peekLast();
+            if (last == null) {
+                break;
+            }
+            // an optimistic update may have replaced the root in the meantime,
+            // in which case the rollback is retried
+            if (ROOT_UPDATER.compareAndSet(this, r, last)) {
                 // slow, but rollback is not a common operation
                 oldRoots.removeLast(last);
-                root = last;
-                if (root.getVersion() < version) {
-                    break;
-                }
             }
         }
     }
@@ -1167,7 +1564,7 @@ public class MVMap<K, V> extends AbstractMap<K, V>
         return buff.toString();
     }
 
-    void setWriteVersion(long writeVersion) {
+    synchronized void setWriteVersion(long writeVersion) {
         this.writeVersion = writeVersion;
     }
 
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2004-2014 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.mvstore;
+
+import java.util.ArrayList;
+import org.h2.mvstore.type.DataType;
+import org.h2.mvstore.type.LongKeyDataType;
+import org.h2.util.New;
+
+/**
+ * Appends entries in ascending key order at the end of a map. Entries are
+ * collected until a leaf page is full, and then the whole leaf is added to
+ * the map at once. This is much faster than adding the entries one by one
+ * using put, and the leaf pages are completely filled. Entries are only
+ * visible in the map after the leaf page was added, or after flush was
+ * called.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public class MVMapAppender<K, V> {
+
+    private final MVMap<K, V> map;
+    private final DataType keyType, valueType;
+    private final int pageSplitSize;
+    private final boolean persistent;
+    private final boolean longKeys;
+    private final ArrayList<Object> keys = New.arrayList();
+    private final ArrayList<Object> values = New.arrayList();
+    private Object lastKey;
+    private int memory;
+    private long count;
+
+    public MVMapAppender(MVMap<K, V> map) {
+        if (!map.isOptimisticWrite()) {
+            throw DataUtils.newUnsupportedOperationException(
+                    "Appending is not supported for this map type");
+        }
+        this.map = map;
+        keyType = map.getKeyType();
+        valueType = map.getValueType();
+        MVStore store = map.getStore();
+        pageSplitSize = store.getPageSplitSize();
+        persistent = store.getFileStore() != null;
+        longKeys = keyType instanceof LongKeyDataType;
+        memory = DataUtils.PAGE_MEMORY;
+    }
+
+    /**
+     * Append an entry. The key must be larger than all keys that were
+     * appended so far, and larger than all keys of the map.
+     *
+     * @param key the key (may not be null)
+     * @param value the value (may not be null)
+     * @throws IllegalArgumentException if the key is not larger than the last
+     *             key
+     */
+    public void append(K key, V value) {
+        DataUtils.checkArgument(value != null, "The value may not be null");
+        if (lastKey != null && keyType.compare(key, lastKey) <= 0) {
+            throw DataUtils.newIllegalArgumentException(
+                    "Appended key {0} is not larger than the last key {1}",
+                    key, lastKey);
+        }
+        if (persistent) {
+            int m = (longKeys ?
+                    Page.LONG_KEY_MEMORY : keyType.getMemory(key)) +
+                    valueType.getMemory(value);
+            // like when adding entries one by one, a page is only larger
+            // than the split size if it has just one entry
+            if (!keys.isEmpty() && memory + m > pageSplitSize) {
+                flush();
+            }
+            memory += m;
+        }
+        keys.add(key);
+        values.add(value);
+        lastKey = key;
+        count++;
+        if (persistent ? memory >= pageSplitSize :
+                keys.size() >= pageSplitSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Add the pending entries to the map.
+     */
+    public void flush() {
+        if (keys.isEmpty()) {
+            return;
+        }
+        Object[] k = keys.toArray();
+        Object[] v = values.toArray();
+        keys.clear();
+        values.clear();
+        memory = DataUtils.PAGE_MEMORY;
+        map.appendLeaf(k, v);
+    }
+
+    /**
+     * Get the number of entries that were appended so far.
+     *
+     * @return the number of entries
+     */
+    public long getCount() {
+        return count;
+    }
+
+}
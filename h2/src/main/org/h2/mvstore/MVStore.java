@@ -18,6 +18,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.h2.compress.CompressDeflate;
 import org.h2.compress.CompressLZF;
 import org.h2.compress.Compressor;
@@ -26,6 +27,7 @@ import org.h2.mvstore.cache.CacheLongKeyLIRS;
 import org.h2.mvstore.type.StringDataType;
 import org.h2.util.MathUtils;
 import org.h2.util.New;
+import org.h2.util.Task;
 import org.h2.util.Utils;
 
 /*
@@ -143,6 +145,12 @@ public final class MVStore {
      */
     private static final int MARKED_FREE = 10000000;
 
+    /**
+     * The number of pages that are re-written by compaction before the
+     * changes are committed.
+     */
+    private static final int COMPACT_STEP_PAGES = 1000;
+
     /**
      * The background thread, if any.
      */
@@ -171,6 +179,14 @@ public final class MVStore {
      */
     private final CacheLongKeyLIRS<PageChildren> cacheChunkRef;
 
+    /**
+     * The off-heap cache of the serialized (uncompressed) page data, which is
+     * kept in direct buffers. Pages that are no longer in the page cache are
+     * re-created from this data without reading from the file. Disabled by
+     * default.
+     */
+    private final CacheLongKeyLIRS<ByteBuffer> cacheOffHeap;
+
     /**
      * The newest chunk. If nothing was stored yet, this field is not set.
      */
@@ -267,6 +283,28 @@ public final class MVStore {
 
     private Thread currentStoreThread;
 
+    /**
+     * The chunk that was serialized by the last store operation, but possibly
+     * not yet written to the file.
+     */
+    private volatile PendingChunk pendingChunk;
+
+    /**
+     * The synchronization object for group commits.
+     */
+    private final Object groupCommitSync = new Object();
+
+    /**
+     * Whether a thread is storing and syncing the changes for a group commit.
+     */
+    private boolean groupCommitRunning;
+
+    /**
+     * The version up to which all changes were stored and synced by a group
+     * commit.
+     */
+    private long groupCommitVersion = -1;
+
     private volatile boolean metaChanged;
 
     /**
@@ -279,6 +317,12 @@ public final class MVStore {
 
     private Object compactSync = new Object();
 
+    /**
+     * The number of threads used to find the pages to re-write when
+     * compacting.
+     */
+    private final int compactThreads;
+
     private IllegalStateException panicException;
 
     private long lastTimeAbsolute;
@@ -305,6 +349,7 @@ public final class MVStore {
 
         int pgSplitSize = 48; // for "mem:" case it is # of keys
         CacheLongKeyLIRS.Config cc = null;
+        CacheLongKeyLIRS.Config offHeap = null;
         if (this.fileStore != null) {
             int mb = Utils.getConfigParam(config, "cacheSize", 16);
             if (mb > 0) {
@@ -315,8 +360,19 @@ public final class MVStore {
                     cc.segmentCount = (Integer)o;
                 }
             }
+            int offHeapMb = Utils.getConfigParam(config, "offHeapCacheSize", 0);
+            if (offHeapMb > 0) {
+                offHeap = new CacheLongKeyLIRS.Config();
+                offHeap.maxMemory = offHeapMb * 1024L * 1024L;
+                Object o = config.get("cacheConcurrency");
+                if (o != null) {
+                    offHeap.segmentCount = (Integer)o;
+                }
+            }
             pgSplitSize = 16 * 1024;
         }
+        cacheOffHeap = offHeap == null ? null :
+                new CacheLongKeyLIRS<ByteBuffer>(offHeap);
         if (cc != null) {
             cache = new CacheLongKeyLIRS<>(cc);
             cc.maxMemory /= 4;
@@ -332,6 +388,8 @@ public final class MVStore {
             pgSplitSize = (int)cache.getMaxItemSize();
         }
         pageSplitSize = pgSplitSize;
+        compactThreads = Math.max(1,
+                Utils.getConfigParam(config, "compactThreads", 1));
         backgroundExceptionHandler =
                 (UncaughtExceptionHandler)config.get("backgroundExceptionHandler");
         meta = new MVMap<>(StringDataType.INSTANCE,
@@ -527,8 +585,15 @@ public final class MVStore {
     }
 
     private MVMap<String, String> getMetaMap(long version) {
-        Chunk c = getChunkForVersion(version);
+        Chunk c;
+        synchronized (this) {
+            // the chunk that is being stored right now is only visible
+            // once it is pending
+            c = getChunkForVersion(version);
+        }
         DataUtils.checkArgument(c != null, "Unknown version {0}", version);
+        // the chunk header and the meta root are read from the file
+        awaitPendingChunk(c.id);
         c = readChunkHeader(c.block);
         MVMap<String, String> oldMeta = meta.openReadOnly();
         oldMeta.setRootPos(c.metaRootPos, version);
@@ -824,6 +889,10 @@ public final class MVStore {
     }
 
     private void writeStoreHeader() {
+        write(0, getStoreHeaderBuffer());
+    }
+
+    private ByteBuffer getStoreHeaderBuffer() {
         StringBuilder buff = new StringBuilder();
         if (lastChunk != null) {
             storeHeader.put("block", lastChunk.block);
@@ -841,7 +910,7 @@ public final class MVStore {
         header.position(BLOCK_SIZE);
         header.put(bytes);
         header.rewind();
-        write(0, header);
+        return header;
     }
 
     private void write(long pos, ByteBuffer buffer) {
@@ -894,6 +963,13 @@ public final class MVStore {
         stopBackgroundThread();
         closed = true;
         synchronized (this) {
+            PendingChunk p = pendingChunk;
+            if (p != null) {
+                // errors are ignored here, they were already
+                // reported to the thread that started the write
+                p.write(this);
+                pendingChunk = null;
+            }
             if (fileStore != null && shrinkIfPossible) {
                 shrinkFileIfPossible(0);
             }
@@ -905,6 +981,9 @@ public final class MVStore {
             if (cacheChunkRef != null) {
                 cacheChunkRef.clear();
             }
+            if (cacheOffHeap != null) {
+                cacheOffHeap.clear();
+            }
             for (MVMap<?, ?> m : New.arrayList(maps.values())) {
                 m.close();
             }
@@ -986,13 +1065,66 @@ public final class MVStore {
      *
      * @return the new version
      */
-    public synchronized long commit() {
+    public long commit() {
         if (fileStore != null) {
             return commitAndSave();
         }
-        long v = ++currentVersion;
-        setWriteVersion(v);
-        return v;
+        synchronized (this) {
+            long v = ++currentVersion;
+            setWriteVersion(v);
+            return v;
+        }
+    }
+
+    /**
+     * Commit the changes and force them to the storage, so that they are
+     * durable when this method returns.
+     * <p>
+     * Concurrent calls are grouped: one of the threads stores the changes of
+     * all of them in one chunk and syncs the file once, while the others wait.
+     * Threads that call this method while the file is synced are handled by
+     * the next group.
+     */
+    public void commitAndSync() {
+        long version = currentVersion;
+        boolean leader = false;
+        synchronized (groupCommitSync) {
+            while (groupCommitVersion < version) {
+                if (!groupCommitRunning) {
+                    groupCommitRunning = true;
+                    leader = true;
+                    break;
+                }
+                try {
+                    groupCommitSync.wait();
+                } catch (InterruptedException e) {
+                    // ignore
+                }
+            }
+        }
+        if (!leader) {
+            return;
+        }
+        boolean success = false;
+        long syncVersion = -1;
+        try {
+            // the changes of a version are only stored once the version was
+            // incremented: if there were no unsaved changes, the current
+            // version is not incremented, and changes made afterwards in the
+            // same version are not stored yet
+            syncVersion = commit() - 1;
+            sync();
+            success = true;
+        } finally {
+            synchronized (groupCommitSync) {
+                groupCommitRunning = false;
+                if (success) {
+                    groupCommitVersion = Math.max(
+                            groupCommitVersion, syncVersion);
+                }
+                groupCommitSync.notifyAll();
+            }
+        }
     }
 
     /**
@@ -1000,39 +1132,93 @@ public final class MVStore {
      * there are no unsaved changes, otherwise it increments the current version
      * and stores the data (for file based stores).
      * <p>
-     * At most one store operation may run at any time.
+     * At most one store operation may run at any time. The pages are
+     * serialized while holding the store lock, but the chunk is written to the
+     * file after the lock was released, so that readers and concurrent changes
+     * do not have to wait for the I/O. The method returns once the chunk was
+     * written.
      *
      * @return the new version (incremented if there were changes)
      */
-    private synchronized long commitAndSave() {
-        if (closed) {
-            return currentVersion;
-        }
-        if (fileStore == null) {
-            throw DataUtils.newIllegalStateException(
-                    DataUtils.ERROR_WRITING_FAILED,
-                    "This is an in-memory store");
-        }
-        if (currentStoreVersion >= 0) {
-            // store is possibly called within store, if the meta map changed
-            return currentVersion;
+    private long commitAndSave() {
+        long version;
+        PendingChunk pending;
+        synchronized (this) {
+            if (closed) {
+                return currentVersion;
+            }
+            if (fileStore == null) {
+                throw DataUtils.newIllegalStateException(
+                        DataUtils.ERROR_WRITING_FAILED,
+                        "This is an in-memory store");
+            }
+            if (currentStoreVersion >= 0) {
+                // store is possibly called within store, if the meta map changed
+                return currentVersion;
+            }
+            if (!hasUnsavedChanges()) {
+                return currentVersion;
+            }
+            if (fileStore.isReadOnly()) {
+                throw DataUtils.newIllegalStateException(
+                        DataUtils.ERROR_WRITING_FAILED, "This store is read-only");
+            }
+            try {
+                currentStoreVersion = currentVersion;
+                currentStoreThread = Thread.currentThread();
+                version = storeNow();
+            } finally {
+                // in any case reset the current store version,
+                // to allow closing the store
+                currentStoreVersion = -1;
+                currentStoreThread = null;
+            }
+            pending = pendingChunk;
+        }
+        if (pending != null) {
+            writePendingChunk(pending);
+            if (pending.shrink) {
+                synchronized (this) {
+                    if (!closed) {
+                        // may only shrink after the store header was written
+                        awaitPendingChunk();
+                        shrinkFileIfPossible(1);
+                    }
+                }
+            }
         }
-        if (!hasUnsavedChanges()) {
-            return currentVersion;
+        return version;
+    }
+
+    /**
+     * Wait until the chunk of the last store operation is written, or write
+     * it in this thread if no other thread started doing so.
+     */
+    private void awaitPendingChunk() {
+        PendingChunk p = pendingChunk;
+        if (p != null) {
+            writePendingChunk(p);
         }
-        if (fileStore.isReadOnly()) {
-            throw DataUtils.newIllegalStateException(
-                    DataUtils.ERROR_WRITING_FAILED, "This store is read-only");
+    }
+
+    /**
+     * Wait until the given chunk is written, if it is the chunk of the last
+     * store operation. Pages of this chunk may only be read from the file
+     * afterwards.
+     *
+     * @param chunkId the chunk id
+     */
+    private void awaitPendingChunk(int chunkId) {
+        PendingChunk p = pendingChunk;
+        if (p != null && p.chunkId == chunkId) {
+            writePendingChunk(p);
         }
-        try {
-            currentStoreVersion = currentVersion;
-            currentStoreThread = Thread.currentThread();
-            return storeNow();
-        } finally {
-            // in any case reset the current store version,
-            // to allow closing the store
-            currentStoreVersion = -1;
-            currentStoreThread = null;
+    }
+
+    private void writePendingChunk(PendingChunk p) {
+        IllegalStateException e = p.write(this);
+        if (e != null) {
+            panic(e);
         }
     }
 
@@ -1046,6 +1232,13 @@ public final class MVStore {
     }
 
     private long storeNowTry() {
+        // the previous chunk needs to be written first: the write buffer is
+        // re-used, and the file length in use needs to be known
+        PendingChunk previous = pendingChunk;
+        if (previous != null) {
+            writePendingChunk(previous);
+            releaseWriteBuffer(previous.buff);
+        }
         long time = getTimeSinceCreation();
         int freeDelay = retentionTime / 10;
         if (time >= lastFreeUnusedChunks + freeDelay) {
@@ -1196,8 +1389,6 @@ public final class MVStore {
         buff.put(c.getFooterBytes());
 
         buff.position(0);
-        write(filePos, buff.getBuffer());
-        releaseWriteBuffer(buff);
 
         // whether we need to write the store header
         boolean writeStoreHeader = false;
@@ -1233,20 +1424,19 @@ public final class MVStore {
         }
 
         lastChunk = c;
-        if (writeStoreHeader) {
-            writeStoreHeader();
-        }
-        if (!storeAtEndOfFile) {
-            // may only shrink after the store header was written
-            shrinkFileIfPossible(1);
-        }
+        ArrayList<Page> roots = New.arrayList();
         for (MVMap<?, ?> m : changed) {
             Page p = m.getRoot();
             if (p.getTotalCount() > 0) {
-                p.writeEnd();
+                roots.add(p);
             }
         }
-        metaRoot.writeEnd();
+        roots.add(metaRoot);
+        // the chunk (and the store header) is written by the caller,
+        // possibly after the store lock was released
+        pendingChunk = new PendingChunk(c.id, filePos, buff,
+                writeStoreHeader ? getStoreHeaderBuffer() : null,
+                roots, !storeAtEndOfFile);
 
         // some pages might have been changed in the meantime (in the newest
         // version)
@@ -1364,6 +1554,7 @@ public final class MVStore {
             if (r == null) {
                 // page was not cached: read the data
                 Chunk c = getChunk(pos);
+                awaitPendingChunk(c.id);
                 long filePos = c.block * BLOCK_SIZE;
                 filePos += DataUtils.getPageOffset(pos);
                 if (filePos < 0) {
@@ -1634,6 +1825,7 @@ public final class MVStore {
             // nothing to do
             return false;
         }
+        awaitPendingChunk();
         int oldRetentionTime = retentionTime;
         boolean oldReuse = reuseSpace;
         try {
@@ -1647,6 +1839,11 @@ public final class MVStore {
             compactMoveChunks(move);
             freeUnusedChunks();
             storeNow();
+            PendingChunk p = pendingChunk;
+            writePendingChunk(p);
+            if (p.shrink) {
+                shrinkFileIfPossible(1);
+            }
         } finally {
             reuseSpace = oldReuse;
             retentionTime = oldRetentionTime;
@@ -1765,6 +1962,7 @@ public final class MVStore {
         checkOpen();
         FileStore f = fileStore;
         if (f != null) {
+            awaitPendingChunk();
             f.sync();
         }
     }
@@ -1779,6 +1977,10 @@ public final class MVStore {
      * Please note this method will not necessarily reduce the file size, as
      * empty chunks are not overwritten.
      * <p>
+     * The pages are re-written in steps of a limited number of pages, and the
+     * changes are committed after each step, so that concurrent commits do not
+     * need to wait for the whole operation.
+     * <p>
      * Only data of open maps can be moved. For maps that are not open, the old
      * chunk is still referenced. Therefore, it is recommended to open all maps
      * before calling this method.
@@ -1905,20 +2107,119 @@ public final class MVStore {
         for (Chunk c : old) {
             set.add(c.id);
         }
-        for (MVMap<?, ?> m : maps.values()) {
-            @SuppressWarnings("unchecked")
-            MVMap<Object, Object> map = (MVMap<Object, Object>) m;
-            if (!map.rewrite(set)) {
+        ArrayList<MVMap<?, ?>> list = New.arrayList(maps.values());
+        list.add(meta);
+        ArrayList<ArrayList<Object>> keys = New.arrayList();
+        try {
+            for (MVMap<?, ?> m : list) {
+                keys.add(collectRewriteKeys(m, set));
+            }
+        } catch (IllegalStateException e) {
+            // TODO should not rely on exception handling
+            if (DataUtils.getErrorCode(e.getMessage()) ==
+                    DataUtils.ERROR_CHUNK_NOT_FOUND) {
+                // ignore
                 return;
             }
+            throw e;
         }
-        if (!meta.rewrite(set)) {
-            return;
+        int count = 0;
+        for (int i = 0; i < list.size(); i++) {
+            MVMap<?, ?> m = list.get(i);
+            for (Object key : keys.get(i)) {
+                if (m.isClosed()) {
+                    break;
+                }
+                if (m == meta) {
+                    synchronized (this) {
+                        meta.rewriteKey(key);
+                    }
+                } else {
+                    m.rewriteKey(key);
+                }
+                if (++count % COMPACT_STEP_PAGES == 0) {
+                    // store the re-written pages, so that the next
+                    // commit does not need to store all of them
+                    commitAndSave();
+                }
+            }
         }
         freeUnusedChunks();
         commitAndSave();
     }
 
+    /**
+     * Find the pages of a map that belong to one of the chunks in the given
+     * set. If multiple threads are used, the subtrees of the root page are
+     * read concurrently.
+     *
+     * @param map the map
+     * @param set the set of chunk ids
+     * @return a key of each page to re-write
+     */
+    private ArrayList<Object> collectRewriteKeys(final MVMap<?, ?> map,
+            final Set<Integer> set) {
+        ArrayList<Object> keys = New.arrayList();
+        final Page root = map.getRewriteRoot();
+        if (root == null) {
+            return keys;
+        }
+        if (compactThreads <= 1 || root.isLeaf()) {
+            map.collectRewriteKeys(root, set, keys);
+            return keys;
+        }
+        final int childCount = map.getChildPageCount(root);
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicInteger written = new AtomicInteger();
+        final ArrayList<ArrayList<Object>> childKeys =
+                New.arrayList(childCount);
+        for (int i = 0; i < childCount; i++) {
+            childKeys.add(null);
+        }
+        Task[] tasks = new Task[Math.min(compactThreads, childCount)];
+        for (int t = 0; t < tasks.length; t++) {
+            tasks[t] = new Task() {
+                @Override
+                public void call() {
+                    for (int i; (i = next.getAndIncrement()) < childCount;) {
+                        long childPos = root.getChildPagePos(i);
+                        if (childPos != 0 && DataUtils.getPageType(childPos) ==
+                                DataUtils.PAGE_TYPE_LEAF &&
+                                !set.contains(DataUtils.getPageChunkId(childPos))) {
+                            continue;
+                        }
+                        ArrayList<Object> k = New.arrayList();
+                        written.addAndGet(map.collectRewriteKeys(
+                                root.getChildPage(i), set, k));
+                        childKeys.set(i, k);
+                    }
+                }
+            };
+            tasks[t].execute();
+        }
+        // wait for all tasks first, so that no task is still reading pages
+        // when an exception is thrown
+        for (Task t : tasks) {
+            t.join();
+        }
+        for (Task t : tasks) {
+            Exception e = t.getException();
+            if (e instanceof IllegalStateException) {
+                throw (IllegalStateException) e;
+            }
+            t.get();
+        }
+        for (ArrayList<Object> k : childKeys) {
+            if (k != null) {
+                keys.addAll(k);
+            }
+        }
+        if (written.get() == 0) {
+            map.collectRewriteNode(root, set, keys);
+        }
+        return keys;
+    }
+
     /**
      * Read a page.
      *
@@ -1933,16 +2234,24 @@ public final class MVStore {
         }
         Page p = cache == null ? null : cache.get(pos);
         if (p == null) {
-            Chunk c = getChunk(pos);
-            long filePos = c.block * BLOCK_SIZE;
-            filePos += DataUtils.getPageOffset(pos);
-            if (filePos < 0) {
-                throw DataUtils.newIllegalStateException(
-                        DataUtils.ERROR_FILE_CORRUPT,
-                        "Negative position {0}", filePos);
+            ByteBuffer data = cacheOffHeap == null ?
+                    null : cacheOffHeap.get(pos);
+            if (data != null) {
+                p = Page.read(data.duplicate(), pos, map);
+            } else {
+                Chunk c = getChunk(pos);
+                awaitPendingChunk(c.id);
+                long filePos = c.block * BLOCK_SIZE;
+                filePos += DataUtils.getPageOffset(pos);
+                if (filePos < 0) {
+                    throw DataUtils.newIllegalStateException(
+                            DataUtils.ERROR_FILE_CORRUPT,
+                            "Negative position {0}", filePos);
+                }
+                long maxPos = (c.block + c.len) * BLOCK_SIZE;
+                p = Page.read(fileStore, pos, map, filePos, maxPos,
+                        cacheOffHeap);
             }
-            long maxPos = (c.block + c.len) * BLOCK_SIZE;
-            p = Page.read(fileStore, pos, map, filePos, maxPos);
             cachePage(pos, p, p.getMemory());
         }
         return p;
@@ -1971,12 +2280,15 @@ public final class MVStore {
         // but we don't optimize for rollback.
         // We could also keep the page in the cache, as somebody
         // could still read it (reading the old version).
-        if (cache != null) {
-            if (DataUtils.getPageType(pos) == DataUtils.PAGE_TYPE_LEAF) {
-                // keep nodes in the cache, because they are still used for
-                // garbage collection
+        if (DataUtils.getPageType(pos) == DataUtils.PAGE_TYPE_LEAF) {
+            // keep nodes in the cache, because they are still used for
+            // garbage collection
+            if (cache != null) {
                 cache.remove(pos);
             }
+            if (cacheOffHeap != null) {
+                cacheOffHeap.remove(pos);
+            }
         }
 
         Chunk c = getChunk(pos);
@@ -2258,6 +2570,7 @@ public final class MVStore {
      */
     public synchronized void rollbackTo(long version) {
         checkOpen();
+        awaitPendingChunk();
         if (version == 0) {
             // special case: remove all data
             for (MVMap<?, ?> m : maps.values()) {
@@ -2673,6 +2986,15 @@ public final class MVStore {
         return cache;
     }
 
+    /**
+     * Get the off-heap page data cache.
+     *
+     * @return the cache, or null if it is disabled
+     */
+    public CacheLongKeyLIRS<ByteBuffer> getOffHeapCache() {
+        return cacheOffHeap;
+    }
+
     /**
      * Whether the store is read-only.
      *
@@ -2682,6 +3004,79 @@ public final class MVStore {
         return fileStore == null ? false : fileStore.isReadOnly();
     }
 
+    /**
+     * A chunk that was serialized while holding the store lock, and that is
+     * written to the file afterwards. The first thread that calls write does
+     * the I/O, all other threads wait until it is done.
+     */
+    private static class PendingChunk {
+
+        /**
+         * The chunk id.
+         */
+        final int chunkId;
+
+        /**
+         * Whether the file should be shrunk after the chunk was written.
+         */
+        final boolean shrink;
+
+        /**
+         * The buffer, that may be re-used once the chunk was written.
+         */
+        final WriteBuffer buff;
+
+        private final long filePos;
+        private final ByteBuffer storeHeader;
+        private final ArrayList<Page> roots;
+        private boolean done;
+        private IllegalStateException failure;
+
+        PendingChunk(int chunkId, long filePos, WriteBuffer buff,
+                ByteBuffer storeHeader, ArrayList<Page> roots, boolean shrink) {
+            this.chunkId = chunkId;
+            this.filePos = filePos;
+            this.buff = buff;
+            this.storeHeader = storeHeader;
+            this.roots = roots;
+            this.shrink = shrink;
+        }
+
+        /**
+         * Write the chunk and the store header (if needed), and unlink the
+         * child pages, unless this was already done.
+         *
+         * @param store the store
+         * @return the exception if writing failed, or null
+         */
+        synchronized IllegalStateException write(MVStore store) {
+            if (done) {
+                return failure;
+            }
+            // in case of an unexpected error, the chunk is not written
+            failure = DataUtils.newIllegalStateException(
+                    DataUtils.ERROR_WRITING_FAILED,
+                    "Chunk {0} was not written", chunkId);
+            try {
+                store.fileStore.writeFully(filePos, buff.getBuffer());
+                if (storeHeader != null) {
+                    store.fileStore.writeFully(0, storeHeader);
+                }
+                // only now the pages can be read from the file
+                for (Page p : roots) {
+                    p.writeEnd();
+                }
+                failure = null;
+            } catch (IllegalStateException e) {
+                failure = e;
+            } finally {
+                done = true;
+            }
+            return failure;
+        }
+
+    }
+
     /**
      * A background writer thread to automatically store changes from time to
      * time.
@@ -2844,6 +3239,33 @@ public final class MVStore {
             return set("cacheConcurrency", concurrency);
         }
 
+        /**
+         * Set the size of the off-heap page cache in MB. The default is 0
+         * (disabled). This second-level cache keeps the uncompressed data of
+         * pages that were read in direct buffers, so that pages which no
+         * longer fit in the (on-heap) read cache can be loaded again without
+         * reading from the file or expanding them. When enabled, the read
+         * cache can be kept small.
+         *
+         * @param mb the cache size in megabytes
+         * @return this
+         */
+        public Builder offHeapCacheSize(int mb) {
+            return set("offHeapCacheSize", mb);
+        }
+
+        /**
+         * Set the number of threads used to read the old chunks when
+         * compacting. The default is 1. With multiple threads, the subtrees of
+         * each map are read concurrently to find the pages to re-write.
+         *
+         * @param threads the number of threads
+         * @return this
+         */
+        public Builder compactThreads(int threads) {
+            return set("compactThreads", threads);
+        }
+
         /**
          * Compress data before writing using the LZF algorithm. This will save
          * about 50% of the disk space, but will slow down read and write
@@ -8,7 +8,9 @@ package org.h2.mvstore;
 import java.nio.ByteBuffer;
 import java.util.HashSet;
 import org.h2.compress.Compressor;
+import org.h2.mvstore.cache.CacheLongKeyLIRS;
 import org.h2.mvstore.type.DataType;
+import org.h2.mvstore.type.LongKeyDataType;
 import org.h2.util.New;
 
 /**
@@ -34,6 +36,11 @@ public class Page {
      * An empty object array.
      */
     public static final Object[] EMPTY_OBJECT_ARRAY = new Object[0];
+
+    /**
+     * The estimated memory used by a key of a page with long keys.
+     */
+    static final int LONG_KEY_MEMORY = 8;
     private static final int IN_MEMORY = Integer.MIN_VALUE;
 
     private final MVMap<?, ?> map;
@@ -62,6 +69,12 @@ public class Page {
      */
     private Object[] keys;
 
+    /**
+     * The keys, if the key type of the map is a LongKeyDataType. In this case,
+     * the field keys is null.
+     */
+    private long[] longKeys;
+
     /**
      * The values.
      * <p>
@@ -118,9 +131,27 @@ public class Page {
     public static Page create(MVMap<?, ?> map, long version,
             Object[] keys, Object[] values, PageReference[] children,
             long totalCount, int memory) {
+        LongKeyDataType longKeyType = getLongKeyType(map);
+        if (longKeyType == null) {
+            return create(map, version, keys, null, values, children,
+                    totalCount, memory);
+        }
+        long[] longKeys = keys.length == 0 ?
+                PageChildren.EMPTY_ARRAY : new long[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            longKeys[i] = longKeyType.toLong(keys[i]);
+        }
+        return create(map, version, null, longKeys, values, children,
+                totalCount, memory);
+    }
+
+    private static Page create(MVMap<?, ?> map, long version,
+            Object[] keys, long[] longKeys, Object[] values,
+            PageReference[] children, long totalCount, int memory) {
         Page p = new Page(map, version);
         // the position is 0
         p.keys = keys;
+        p.longKeys = longKeys;
         p.values = values;
         p.children = children;
         p.totalCount = totalCount;
@@ -147,10 +178,16 @@ public class Page {
      * @return the page
      */
     public static Page create(MVMap<?, ?> map, long version, Page source) {
-        return create(map, version, source.keys, source.values, source.children,
+        return create(map, version, source.keys, source.longKeys,
+                source.values, source.children,
                 source.totalCount, source.memory);
     }
 
+    private static LongKeyDataType getLongKeyType(MVMap<?, ?> map) {
+        DataType keyType = map.getKeyType();
+        return keyType instanceof LongKeyDataType ? (LongKeyDataType) keyType : null;
+    }
+
     /**
      * Read a page.
      *
@@ -159,10 +196,12 @@ public class Page {
      * @param map the map
      * @param filePos the position in the file
      * @param maxPos the maximum position (the end of the chunk)
+     * @param offHeapCache the cache for the serialized page data, or null
      * @return the page
      */
     static Page read(FileStore fileStore, long pos, MVMap<?, ?> map,
-            long filePos, long maxPos) {
+            long filePos, long maxPos,
+            CacheLongKeyLIRS<ByteBuffer> offHeapCache) {
         ByteBuffer buff;
         int maxLength = DataUtils.getPageMaxLength(pos);
         if (maxLength == DataUtils.PAGE_LARGE) {
@@ -183,7 +222,35 @@ public class Page {
         p.pos = pos;
         int chunkId = DataUtils.getPageChunkId(pos);
         int offset = DataUtils.getPageOffset(pos);
-        p.read(buff, chunkId, offset, maxLength);
+        ByteBuffer data = p.read(buff, chunkId, offset, maxLength,
+                offHeapCache != null);
+        if (offHeapCache != null) {
+            int len = data.remaining();
+            if (len <= offHeapCache.getMaxItemSize()) {
+                ByteBuffer direct = ByteBuffer.allocateDirect(len);
+                direct.put(data);
+                direct.flip();
+                offHeapCache.put(pos, direct, len);
+            }
+        }
+        return p;
+    }
+
+    /**
+     * Read a page from the uncompressed page data that was kept in the
+     * off-heap cache.
+     *
+     * @param data the page data
+     * @param pos the position
+     * @param map the map
+     * @return the page
+     */
+    static Page read(ByteBuffer data, long pos, MVMap<?, ?> map) {
+        Page p = new Page(map, 0);
+        p.pos = pos;
+        int chunkId = DataUtils.getPageChunkId(pos);
+        int offset = DataUtils.getPageOffset(pos);
+        p.read(data, chunkId, offset, data.remaining(), false);
         return p;
     }
 
@@ -194,6 +261,9 @@ public class Page {
      * @return the key
      */
     public Object getKey(int index) {
+        if (longKeys != null) {
+            return ((LongKeyDataType) map.getKeyType()).toKey(longKeys[index]);
+        }
         return keys[index];
     }
 
@@ -234,7 +304,7 @@ public class Page {
      * @return the number of keys
      */
     public int getKeyCount() {
-        return keys.length;
+        return longKeys != null ? longKeys.length : keys.length;
     }
 
     /**
@@ -265,15 +335,16 @@ public class Page {
             int chunkId = DataUtils.getPageChunkId(pos);
             buff.append("chunk: ").append(Long.toHexString(chunkId)).append("\n");
         }
-        for (int i = 0; i <= keys.length; i++) {
+        int len = getKeyCount();
+        for (int i = 0; i <= len; i++) {
             if (i > 0) {
                 buff.append(" ");
             }
             if (children != null) {
                 buff.append("[" + Long.toHexString(children[i].pos) + "] ");
             }
-            if (i < keys.length) {
-                buff.append(keys[i]);
+            if (i < len) {
+                buff.append(getKey(i));
                 if (values != null) {
                     buff.append(':');
                     buff.append(values[i]);
@@ -290,12 +361,25 @@ public class Page {
      * @return a page with the given version
      */
     public Page copy(long version) {
+        Page newPage = copyKeepOld(version);
+        // mark the old as deleted
+        removePage();
+        return newPage;
+    }
+
+    /**
+     * Create a copy of this page, but do not mark this page as removed. This
+     * is used by optimistic writes, where the old page may only be removed
+     * once the new root was installed successfully.
+     *
+     * @param version the new version
+     * @return a page with the given version
+     */
+    Page copyKeepOld(long version) {
         Page newPage = create(map, version,
-                keys, values,
+                keys, longKeys, values,
                 children, totalCount,
                 memory);
-        // mark the old as deleted
-        removePage();
         newPage.cachedCompare = cachedCompare;
         return newPage;
     }
@@ -312,6 +396,9 @@ public class Page {
      * @return the value or null
      */
     public int binarySearch(Object key) {
+        if (longKeys != null) {
+            return binarySearch(((LongKeyDataType) map.getKeyType()).toLong(key));
+        }
         int low = 0, high = keys.length - 1;
         // the cached index minus one, so that
         // for the first time (when cachedCompare is 0),
@@ -352,6 +439,36 @@ public class Page {
         // return -(low + 1);
     }
 
+    /**
+     * Search the key in a page with long keys. This is the same as
+     * binarySearch(Object), but without calling the key type.
+     *
+     * @param key the key
+     * @return the value or null
+     */
+    private int binarySearch(long key) {
+        int low = 0, high = longKeys.length - 1;
+        int x = cachedCompare - 1;
+        if (x < 0 || x > high) {
+            x = high >>> 1;
+        }
+        long[] k = longKeys;
+        while (low <= high) {
+            long y = k[x];
+            if (key > y) {
+                low = x + 1;
+            } else if (key < y) {
+                high = x - 1;
+            } else {
+                cachedCompare = x + 1;
+                return x;
+            }
+            x = (low + high) >>> 1;
+        }
+        cachedCompare = low;
+        return -(low + 1);
+    }
+
     /**
      * Split the page. This modifies the current page.
      *
@@ -367,12 +484,22 @@ public class Page {
     }
 
     private Page splitLeaf(int at) {
-        int a = at, b = keys.length - a;
-        Object[] aKeys = new Object[a];
-        Object[] bKeys = new Object[b];
-        System.arraycopy(keys, 0, aKeys, 0, a);
-        System.arraycopy(keys, a, bKeys, 0, b);
-        keys = aKeys;
+        int a = at, b = getKeyCount() - a;
+        Object[] bKeys = null;
+        long[] bLongKeys = null;
+        if (longKeys != null) {
+            long[] aLongKeys = new long[a];
+            bLongKeys = new long[b];
+            System.arraycopy(longKeys, 0, aLongKeys, 0, a);
+            System.arraycopy(longKeys, a, bLongKeys, 0, b);
+            longKeys = aLongKeys;
+        } else {
+            Object[] aKeys = new Object[a];
+            bKeys = new Object[b];
+            System.arraycopy(keys, 0, aKeys, 0, a);
+            System.arraycopy(keys, a, bKeys, 0, b);
+            keys = aKeys;
+        }
         Object[] aValues = new Object[a];
         Object[] bValues = new Object[b];
         bValues = new Object[b];
@@ -381,20 +508,30 @@ public class Page {
         values = aValues;
         totalCount = a;
         Page newPage = create(map, version,
-                bKeys, bValues,
+                bKeys, bLongKeys, bValues,
                 null,
                 b, 0);
         return newPage;
     }
 
     private Page splitNode(int at) {
-        int a = at, b = keys.length - a;
-
-        Object[] aKeys = new Object[a];
-        Object[] bKeys = new Object[b - 1];
-        System.arraycopy(keys, 0, aKeys, 0, a);
-        System.arraycopy(keys, a + 1, bKeys, 0, b - 1);
-        keys = aKeys;
+        int a = at, b = getKeyCount() - a;
+
+        Object[] bKeys = null;
+        long[] bLongKeys = null;
+        if (longKeys != null) {
+            long[] aLongKeys = new long[a];
+            bLongKeys = new long[b - 1];
+            System.arraycopy(longKeys, 0, aLongKeys, 0, a);
+            System.arraycopy(longKeys, a + 1, bLongKeys, 0, b - 1);
+            longKeys = aLongKeys;
+        } else {
+            Object[] aKeys = new Object[a];
+            bKeys = new Object[b - 1];
+            System.arraycopy(keys, 0, aKeys, 0, a);
+            System.arraycopy(keys, a + 1, bKeys, 0, b - 1);
+            keys = aKeys;
+        }
 
         PageReference[] aChildren = new PageReference[a + 1];
         PageReference[] bChildren = new PageReference[b];
@@ -412,7 +549,7 @@ public class Page {
             t += x.count;
         }
         Page newPage = create(map, version,
-                bKeys, null,
+                bKeys, bLongKeys, null,
                 bChildren,
                 t, 0);
         return newPage;
@@ -427,7 +564,7 @@ public class Page {
         if (MVStore.ASSERT) {
             long check = 0;
             if (isLeaf()) {
-                check = keys.length;
+                check = getKeyCount();
             } else {
                 for (PageReference x : children) {
                     check += x.count;
@@ -486,6 +623,11 @@ public class Page {
      * @param key the new key
      */
     public void setKey(int index, Object key) {
+        if (longKeys != null) {
+            longKeys = longKeys.clone();
+            longKeys[index] = ((LongKeyDataType) map.getKeyType()).toLong(key);
+            return;
+        }
         // this is slightly slower:
         // keys = Arrays.copyOf(keys, keys.length);
         keys = keys.clone();
@@ -554,22 +696,40 @@ public class Page {
      * @param value the value
      */
     public void insertLeaf(int index, Object key, Object value) {
-        int len = keys.length + 1;
-        Object[] newKeys = new Object[len];
-        DataUtils.copyWithGap(keys, newKeys, len - 1, index);
-        keys = newKeys;
+        int len = getKeyCount() + 1;
+        insertKey(index, key);
         Object[] newValues = new Object[len];
         DataUtils.copyWithGap(values, newValues, len - 1, index);
         values = newValues;
-        keys[index] = key;
         values[index] = value;
         totalCount++;
         if(isPersistent()) {
-            addMemory(map.getKeyType().getMemory(key) +
+            addMemory(getKeyMemory(key) +
                     map.getValueType().getMemory(value));
         }
     }
 
+    private void insertKey(int index, Object key) {
+        if (longKeys != null) {
+            int len = longKeys.length;
+            long[] newKeys = new long[len + 1];
+            System.arraycopy(longKeys, 0, newKeys, 0, index);
+            System.arraycopy(longKeys, index, newKeys, index + 1, len - index);
+            newKeys[index] = ((LongKeyDataType) map.getKeyType()).toLong(key);
+            longKeys = newKeys;
+        } else {
+            Object[] newKeys = new Object[keys.length + 1];
+            DataUtils.copyWithGap(keys, newKeys, keys.length, index);
+            newKeys[index] = key;
+            keys = newKeys;
+        }
+    }
+
+    private int getKeyMemory(Object key) {
+        return longKeys != null ?
+                LONG_KEY_MEMORY : map.getKeyType().getMemory(key);
+    }
+
     /**
      * Insert a child page into this node.
      *
@@ -579,10 +739,7 @@ public class Page {
      */
     public void insertNode(int index, Object key, Page childPage) {
 
-        Object[] newKeys = new Object[keys.length + 1];
-        DataUtils.copyWithGap(keys, newKeys, keys.length, index);
-        newKeys[index] = key;
-        keys = newKeys;
+        insertKey(index, key);
 
         int childCount = children.length;
         PageReference[] newChildren = new PageReference[childCount + 1];
@@ -593,7 +750,7 @@ public class Page {
 
         totalCount += childPage.totalCount;
         if(isPersistent()) {
-            addMemory(map.getKeyType().getMemory(key) +
+            addMemory(getKeyMemory(key) +
                     DataUtils.PAGE_MEMORY_CHILD);
         }
     }
@@ -604,15 +761,26 @@ public class Page {
      * @param index the index
      */
     public void remove(int index) {
-        int keyLength = keys.length;
+        int keyLength = getKeyCount();
         int keyIndex = index >= keyLength ? index - 1 : index;
-        if(isPersistent()) {
-            Object old = keys[keyIndex];
-            addMemory(-map.getKeyType().getMemory(old));
+        if (longKeys != null) {
+            if(isPersistent()) {
+                addMemory(-LONG_KEY_MEMORY);
+            }
+            long[] newKeys = new long[keyLength - 1];
+            System.arraycopy(longKeys, 0, newKeys, 0, keyIndex);
+            System.arraycopy(longKeys, keyIndex + 1, newKeys, keyIndex,
+                    keyLength - keyIndex - 1);
+            longKeys = newKeys;
+        } else {
+            if(isPersistent()) {
+                Object old = keys[keyIndex];
+                addMemory(-map.getKeyType().getMemory(old));
+            }
+            Object[] newKeys = new Object[keyLength - 1];
+            DataUtils.copyExcept(keys, newKeys, keyLength, keyIndex);
+            keys = newKeys;
         }
-        Object[] newKeys = new Object[keyLength - 1];
-        DataUtils.copyExcept(keys, newKeys, keyLength, keyIndex);
-        keys = newKeys;
 
         if (values != null) {
             if(isPersistent()) {
@@ -646,8 +814,12 @@ public class Page {
      * @param chunkId the chunk id
      * @param offset the offset within the chunk
      * @param maxLength the maximum length
+     * @param keepData whether to return the serialized page data
+     * @return the serialized page data without compression (a buffer that
+     *         only contains this page), or null if keepData is false
      */
-    void read(ByteBuffer buff, int chunkId, int offset, int maxLength) {
+    private ByteBuffer read(ByteBuffer buff, int chunkId, int offset,
+            int maxLength, boolean keepData) {
         int start = buff.position();
         int pageLength = buff.getInt();
         if (pageLength > maxLength || pageLength < 4) {
@@ -657,6 +829,11 @@ public class Page {
                     chunkId, maxLength, pageLength);
         }
         buff.limit(start + pageLength);
+        ByteBuffer data = null;
+        if (keepData) {
+            data = buff.duplicate();
+            data.position(start);
+        }
         short check = buff.getShort();
         int mapId = DataUtils.readVarInt(buff);
         if (mapId != map.getId()) {
@@ -675,7 +852,7 @@ public class Page {
                     chunkId, checkTest, check);
         }
         int len = DataUtils.readVarInt(buff);
-        keys = new Object[len];
+        int typePos = buff.position();
         int type = buff.get();
         boolean node = (type & 1) == DataUtils.PAGE_TYPE_NODE;
         if (node) {
@@ -701,6 +878,7 @@ public class Page {
             } else {
                 compressor = map.getStore().getCompressorFast();
             }
+            int headerLength = buff.position() - start;
             int lenAdd = DataUtils.readVarInt(buff);
             int compLen = pageLength + start - buff.position();
             byte[] comp = DataUtils.newBytes(compLen);
@@ -709,14 +887,59 @@ public class Page {
             buff = ByteBuffer.allocate(l);
             compressor.expand(comp, 0, compLen, buff.array(),
                     buff.arrayOffset(), l);
+            if (keepData) {
+                data = expandedData(data, headerLength, typePos - start,
+                        type, buff, chunkId, offset);
+            }
+        }
+        DataType keyType = map.getKeyType();
+        if (keyType instanceof LongKeyDataType) {
+            longKeys = new long[len];
+            ((LongKeyDataType) keyType).read(buff, longKeys, len);
+        } else {
+            keys = new Object[len];
+            keyType.read(buff, keys, len, true);
         }
-        map.getKeyType().read(buff, keys, len, true);
         if (!node) {
             values = new Object[len];
             map.getValueType().read(buff, values, len, false);
             totalCount = len;
         }
         recalculateMemory();
+        return data;
+    }
+
+    /**
+     * Build the serialized data of a compressed page as if it had been
+     * stored without compression, so that it can be read again without
+     * having to expand it.
+     *
+     * @param data the page data as stored, at the start of the page
+     * @param headerLength the length of the header (including the children)
+     * @param typeOffset the offset of the type within the page
+     * @param type the type as stored
+     * @param expanded the expanded keys and values
+     * @param chunkId the chunk id
+     * @param offset the offset within the chunk
+     * @return the uncompressed page data
+     */
+    private static ByteBuffer expandedData(ByteBuffer data, int headerLength,
+            int typeOffset, int type, ByteBuffer expanded, int chunkId,
+            int offset) {
+        int pageLength = headerLength + expanded.capacity();
+        ByteBuffer buff = ByteBuffer.allocate(pageLength);
+        data.limit(data.position() + headerLength);
+        buff.put(data);
+        buff.put(expanded.array(), expanded.arrayOffset(),
+                expanded.capacity());
+        int check = DataUtils.getCheckValue(chunkId)
+                ^ DataUtils.getCheckValue(offset)
+                ^ DataUtils.getCheckValue(pageLength);
+        buff.putInt(0, pageLength);
+        buff.putShort(4, (short) check);
+        buff.put(typeOffset, (byte) (type & ~DataUtils.PAGE_COMPRESSED_HIGH));
+        buff.flip();
+        return buff;
     }
 
     /**
@@ -728,7 +951,7 @@ public class Page {
      */
     private int write(Chunk chunk, WriteBuffer buff) {
         int start = buff.position();
-        int len = keys.length;
+        int len = getKeyCount();
         int type = children != null ? DataUtils.PAGE_TYPE_NODE
                 : DataUtils.PAGE_TYPE_LEAF;
         buff.putInt(0).
@@ -744,7 +967,11 @@ public class Page {
             }
         }
         int compressStart = buff.position();
-        map.getKeyType().write(buff, keys, len, true);
+        if (longKeys != null) {
+            ((LongKeyDataType) map.getKeyType()).write(buff, longKeys, len);
+        } else {
+            map.getKeyType().write(buff, keys, len, true);
+        }
         if (type == DataUtils.PAGE_TYPE_LEAF) {
             map.getValueType().write(buff, values, len, false);
         }
@@ -809,7 +1036,7 @@ public class Page {
     }
 
     private void writeChildren(WriteBuffer buff) {
-        int len = keys.length;
+        int len = getKeyCount();
         for (int i = 0; i <= len; i++) {
             buff.putLong(children[i].pos);
         }
@@ -917,13 +1144,18 @@ public class Page {
 
     private void recalculateMemory() {
         int mem = DataUtils.PAGE_MEMORY;
-        DataType keyType = map.getKeyType();
-        for (int i = 0; i < keys.length; i++) {
-            mem += keyType.getMemory(keys[i]);
+        int len = getKeyCount();
+        if (longKeys != null) {
+            mem += len * LONG_KEY_MEMORY;
+        } else {
+            DataType keyType = map.getKeyType();
+            for (int i = 0; i < len; i++) {
+                mem += keyType.getMemory(keys[i]);
+            }
         }
         if (this.isLeaf()) {
             DataType valueType = map.getValueType();
-            for (int i = 0; i < keys.length; i++) {
+            for (int i = 0; i < len; i++) {
                 mem += valueType.getMemory(values[i]);
             }
         } else {
@@ -5,8 +5,10 @@
  */
 package org.h2.mvstore.db;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -53,6 +55,8 @@ public class MVPrimaryIndex extends BaseIndex {
     private TransactionMap<Value, Value> dataMap;
     private final AtomicLong lastKey = new AtomicLong(0);
     private int mainIndexColumn = -1;
+    private TransactionStore.Appender<Value, Value> appender;
+    private long lastAppendedKey;
 
     public MVPrimaryIndex(Database db, MVTable table, int id,
             IndexColumn[] columns, IndexType indexType) {
@@ -62,7 +66,7 @@ public class MVPrimaryIndex extends BaseIndex {
         for (int i = 0; i < columns.length; i++) {
             sortTypes[i] = SortOrder.ASCENDING;
         }
-        ValueDataType keyType = new ValueDataType(null, null, null);
+        ValueDataType keyType = new ValueLongDataType();
         ValueDataType valueType = new ValueDataType(db.getCompareMode(), db,
                 sortTypes);
         mapName = "table." + getId();
@@ -94,11 +98,75 @@ public class MVPrimaryIndex extends BaseIndex {
         return mainIndexColumn;
     }
 
+    /**
+     * Start appending rows in bulk, if the map is empty. Rows with ascending
+     * keys are then added as committed rows, without undo log entries, and
+     * full pages are appended to the map. Once a row with a smaller key is
+     * added, the remaining rows are added one by one.
+     *
+     * @return true if the rows are appended in bulk
+     */
+    boolean startAppend() {
+        if (!dataMap.map.isEmpty()) {
+            return false;
+        }
+        lastAppendedKey = Long.MIN_VALUE;
+        appender = dataMap.appender();
+        return true;
+    }
+
+    /**
+     * Stop appending rows in bulk.
+     *
+     * @param success whether to add the pending rows to the map, or to remove
+     *            the rows that were appended
+     */
+    void endAppend(boolean success) {
+        TransactionStore.Appender<Value, Value> a = appender;
+        if (a != null) {
+            appender = null;
+            if (success) {
+                a.flush();
+            } else {
+                a.rollback();
+            }
+        }
+    }
+
     @Override
     public void close(Session session) {
         // ok
     }
 
+    /**
+     * Add multiple rows. The keys of all rows are set first, and the rows are
+     * then added in the order of their keys.
+     *
+     * @param session the session
+     * @param rows the rows
+     */
+    public void add(Session session, List<Row> rows) {
+        ArrayList<Row> list = new ArrayList<>(rows);
+        for (Row row : list) {
+            if (mainIndexColumn == -1) {
+                if (row.getKey() == 0) {
+                    row.setKey(lastKey.incrementAndGet());
+                }
+            } else {
+                row.setKey(row.getValue(mainIndexColumn).getLong());
+            }
+        }
+        Collections.sort(list, new Comparator<Row>() {
+            @Override
+            public int compare(Row r1, Row r2) {
+                return Long.compare(r1.getKey(), r2.getKey());
+            }
+        });
+        for (Row row : list) {
+            add(session, row);
+        }
+    }
+
     @Override
     public void add(Session session, Row row) {
         if (mainIndexColumn == -1) {
@@ -123,6 +191,22 @@ public class MVPrimaryIndex extends BaseIndex {
             }
         }
 
+        if (appender != null) {
+            long k = row.getKey();
+            if (k > lastAppendedKey) {
+                appender.append(ValueLong.get(k),
+                        ValueArray.get(row.getValueList()));
+                lastAppendedKey = k;
+                if (k > lastKey.get()) {
+                    lastKey.set(k);
+                }
+                return;
+            }
+            // the keys are not ascending: add the remaining rows one by one
+            appender.flush();
+            lastAppendedKey = Long.MAX_VALUE;
+        }
+
         TransactionMap<Value, Value> map = getMap(session);
         Value key = ValueLong.get(row.getKey());
         Value old = map.getLatest(key);
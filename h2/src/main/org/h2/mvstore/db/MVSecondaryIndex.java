@@ -22,6 +22,7 @@ import org.h2.message.DbException;
 import org.h2.mvstore.MVMap;
 import org.h2.mvstore.db.TransactionStore.Transaction;
 import org.h2.mvstore.db.TransactionStore.TransactionMap;
+import org.h2.mvstore.type.DataType;
 import org.h2.result.Row;
 import org.h2.result.SearchRow;
 import org.h2.result.SortOrder;
@@ -29,7 +30,6 @@ import org.h2.table.Column;
 import org.h2.table.IndexColumn;
 import org.h2.table.TableFilter;
 import org.h2.util.New;
-import org.h2.value.CompareMode;
 import org.h2.value.Value;
 import org.h2.value.ValueArray;
 import org.h2.value.ValueLong;
@@ -105,15 +105,15 @@ public final class MVSecondaryIndex extends BaseIndex implements MVIndex {
         }
 
         public static final class Comparator implements java.util.Comparator<Source> {
-            private final CompareMode compareMode;
+            private final DataType keyType;
 
-            public Comparator(CompareMode compareMode) {
-                this.compareMode = compareMode;
+            public Comparator(DataType keyType) {
+                this.keyType = keyType;
             }
 
             @Override
             public int compare(Source one, Source two) {
-                return one.currentRowData.compareTo(two.currentRowData, compareMode);
+                return keyType.compare(one.currentRowData, two.currentRowData);
             }
         }
     }
@@ -121,9 +121,10 @@ public final class MVSecondaryIndex extends BaseIndex implements MVIndex {
     @Override
     public void addBufferedRows(List<String> bufferNames) {
         ArrayList<String> mapNames = New.arrayList(bufferNames);
-        CompareMode compareMode = database.getCompareMode();
         int buffersCount = bufferNames.size();
-        Queue<Source> queue = new PriorityQueue<>(buffersCount, new Source.Comparator(compareMode));
+        // use the sort order of the index, as the rows are merged in order
+        Queue<Source> queue = new PriorityQueue<>(buffersCount,
+                new Source.Comparator(dataMap.getKeyType()));
         for (String bufferName : bufferNames) {
             Iterator<ValueArray> iter = openMap(bufferName).keyIterator(null);
             if (iter.hasNext()) {
@@ -131,27 +132,46 @@ public final class MVSecondaryIndex extends BaseIndex implements MVIndex {
             }
         }
 
+        // if the index is empty, the merged rows are appended in bulk, and
+        // duplicates are detected by comparing with the previous row
+        TransactionStore.Appender<Value, Value> appender =
+                dataMap.sizeAsLongMax() == 0 ? dataMap.appender() : null;
+        SearchRow last = null;
         try {
             while (!queue.isEmpty()) {
                 Source s = queue.remove();
                 ValueArray rowData = s.next();
 
-                if (indexType.isUnique()) {
-                    Value[] array = rowData.getList();
-                    // don't change the original value
-                    array = array.clone();
-                    array[keyColumns - 1] = ValueLong.get(Long.MIN_VALUE);
-                    ValueArray unique = ValueArray.get(array);
-                    SearchRow row = convertToSearchRow(rowData);
-                    checkUnique(row, dataMap, unique);
+                if (appender != null) {
+                    if (indexType.isUnique()) {
+                        SearchRow row = convertToSearchRow(rowData);
+                        if (last != null && compareRows(last, row) == 0 &&
+                                !containsNullAndAllowMultipleNull(row)) {
+                            throw getDuplicateKeyException(rowData.toString());
+                        }
+                        last = row;
+                    }
+                    appender.append(rowData, ValueNull.INSTANCE);
+                } else {
+                    if (indexType.isUnique()) {
+                        Value[] array = rowData.getList();
+                        // don't change the original value
+                        array = array.clone();
+                        array[keyColumns - 1] = ValueLong.get(Long.MIN_VALUE);
+                        ValueArray unique = ValueArray.get(array);
+                        SearchRow row = convertToSearchRow(rowData);
+                        checkUnique(row, dataMap, unique);
+                    }
+                    dataMap.putCommitted(rowData, ValueNull.INSTANCE);
                 }
 
-                dataMap.putCommitted(rowData, ValueNull.INSTANCE);
-
                 if (s.hasNext()) {
                     queue.offer(s);
                 }
             }
+            if (appender != null) {
+                appender.flush();
+            }
         } finally {
             for (String tempMapName : mapNames) {
                 MVMap<ValueArray, Value> map = openMap(tempMapName);
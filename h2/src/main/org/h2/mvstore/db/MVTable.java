@@ -9,9 +9,11 @@ import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import org.h2.api.DatabaseEventListener;
 import org.h2.api.ErrorCode;
 import org.h2.command.ddl.CreateTableData;
@@ -28,6 +30,7 @@ import org.h2.index.MultiVersionIndex;
 import org.h2.message.DbException;
 import org.h2.message.Trace;
 import org.h2.mvstore.DataUtils;
+import org.h2.mvstore.MVStore;
 import org.h2.mvstore.db.MVTableEngine.Store;
 import org.h2.mvstore.db.TransactionStore.Transaction;
 import org.h2.result.Row;
@@ -41,6 +44,7 @@ import org.h2.table.TableType;
 import org.h2.util.DebuggingThreadLocal;
 import org.h2.util.MathUtils;
 import org.h2.util.New;
+import org.h2.util.Task;
 import org.h2.value.DataType;
 import org.h2.value.Value;
 
@@ -549,6 +553,7 @@ public class MVTable extends TableBase {
         if (index instanceof MVSpatialIndex) {
             // the spatial index doesn't support multi-way merge sort
             rebuildIndexBuffered(session, index);
+            return;
         }
         // Read entries in memory, sort them, write to a new map (in sorted
         // order); repeat (using a new map for every block of 1 MB) until all
@@ -560,11 +565,15 @@ public class MVTable extends TableBase {
         Index scan = getScanIndex(session);
         long remaining = scan.getRowCount(session);
         long total = remaining;
+        int bufferSize = database.getMaxMemoryRows() / 2;
+        if (total > bufferSize &&
+                rebuildIndexParallel(session, index, total, bufferSize)) {
+            return;
+        }
         Cursor cursor = scan.find(session, null, null);
         long i = 0;
         Store store = session.getDatabase().getMvStore();
 
-        int bufferSize = database.getMaxMemoryRows() / 2;
         ArrayList<Row> buffer = New.arrayList(bufferSize);
         String n = getName() + ":" + index.getName();
         int t = MathUtils.convertLongToInt(total);
@@ -599,6 +608,112 @@ public class MVTable extends TableBase {
         }
     }
 
+    /**
+     * Read, sort and buffer the rows using multiple threads, if this is
+     * enabled. The key range of the primary index is split into one range per
+     * thread. Each thread sorts blocks of its rows and writes them to
+     * temporary maps, and the blocks of all threads are then merged into the
+     * index.
+     *
+     * @param session the session
+     * @param index the index
+     * @param total the number of rows
+     * @param bufferSize the number of rows to buffer
+     * @return false if the index was not built
+     */
+    private boolean rebuildIndexParallel(final Session session,
+            final MVIndex index, long total, int bufferSize) {
+        int threads = database.getSettings().createIndexThreads;
+        if (threads <= 1) {
+            return false;
+        }
+        Row first = primaryIndex.findFirstOrLast(session, true).get();
+        Row last = primaryIndex.findFirstOrLast(session, false).get();
+        if (first == null || last == null) {
+            return false;
+        }
+        long min = first.getKey();
+        long max = last.getKey();
+        long step = (max - min) / threads + 1;
+        if (step <= 0) {
+            // overflow
+            return false;
+        }
+        final Store store = session.getDatabase().getMvStore();
+        final String n = getName() + ":" + index.getName();
+        final int t = MathUtils.convertLongToInt(total);
+        // the rows buffered by all threads fit in the same amount of memory
+        final int size = Math.max(bufferSize / threads, 1);
+        final AtomicLong rowCount = new AtomicLong();
+        final ArrayList<String> bufferNames = New.arrayList();
+        Task[] tasks = new Task[threads];
+        for (int i = 0; i < threads; i++) {
+            long from = min + step * i;
+            if (from > max) {
+                break;
+            }
+            first = getTemplateRow();
+            first.setKey(from);
+            last = getTemplateRow();
+            last.setKey(max - from < step ? max : from + step - 1);
+            final Cursor cursor = primaryIndex.find(session, first, last);
+            tasks[i] = new Task() {
+                @Override
+                public void call() {
+                    ArrayList<Row> buffer = New.arrayList(size);
+                    while (cursor.next()) {
+                        buffer.add(cursor.get());
+                        if (buffer.size() >= size) {
+                            addBuffer(buffer);
+                        }
+                    }
+                    if (!buffer.isEmpty()) {
+                        addBuffer(buffer);
+                    }
+                }
+
+                private void addBuffer(ArrayList<Row> buffer) {
+                    session.checkCanceled();
+                    sortRows(buffer, index);
+                    String mapName = store.nextTemporaryMapName();
+                    synchronized (bufferNames) {
+                        bufferNames.add(mapName);
+                    }
+                    index.addRowsToBuffer(buffer, mapName);
+                    long count = rowCount.addAndGet(buffer.size());
+                    database.setProgress(DatabaseEventListener.STATE_CREATE_INDEX,
+                            n, MathUtils.convertLongToInt(count), t);
+                    buffer.clear();
+                }
+            };
+            tasks[i].execute("H2 create index " + i);
+        }
+        Exception ex = null;
+        for (Task task : tasks) {
+            if (task != null) {
+                Exception e = task.getException();
+                if (ex == null) {
+                    ex = e;
+                }
+            }
+        }
+        if (ex != null) {
+            MVStore s = store.getStore();
+            for (String mapName : bufferNames) {
+                if (s.hasMap(mapName)) {
+                    s.removeMap(s.openMap(mapName));
+                }
+            }
+            throw DbException.convert(ex);
+        }
+        if (SysProperties.CHECK && rowCount.get() != total) {
+            DbException.throwInternalError("rowcount remaining=" +
+                    (total - rowCount.get()) + " " + getName());
+        }
+        index.addBufferedRows(bufferNames);
+        return true;
+    }
+
     private void rebuildIndexBuffered(Session session, Index index) {
         Index scan = getScanIndex(session);
         long remaining = scan.getRowCount(session);
@@ -681,7 +796,7 @@ public class MVTable extends TableBase {
             t.rollbackToSavepoint(savepoint);
             throw DbException.convert(e);
         }
-        analyzeIfRequired(session);
+        analyzeIfRequired(session, 1);
     }
 
     @Override
@@ -694,6 +809,26 @@ public class MVTable extends TableBase {
         changesSinceAnalyze = 0;
     }
 
+    @Override
+    public boolean startBulkInsert(Session session) {
+        for (Index index : indexes) {
+            if (index != primaryIndex && !(index instanceof MVDelegateIndex)) {
+                return false;
+            }
+        }
+        // no other session may change the table until the rows are added
+        lock(session, true, true);
+        if (!isLockedExclusivelyBy(session)) {
+            return false;
+        }
+        return primaryIndex.startAppend();
+    }
+
+    @Override
+    public void endBulkInsert(Session session, boolean success) {
+        primaryIndex.endAppend(success);
+    }
+
     @Override
     public void addRow(Session session, Row row) {
         lastModificationId = database.getNextModificationDataId();
@@ -708,27 +843,67 @@ public class MVTable extends TableBase {
             t.rollbackToSavepoint(savepoint);
             DbException de = DbException.convert(e);
             if (de.getErrorCode() == ErrorCode.DUPLICATE_KEY_1) {
-                for (int j = 0; j < indexes.size(); j++) {
-                    Index index = indexes.get(j);
-                    if (index.getIndexType().isUnique() &&
-                            index instanceof MultiVersionIndex) {
-                        MultiVersionIndex mv = (MultiVersionIndex) index;
-                        if (mv.isUncommittedFromOtherSession(session, row)) {
-                            throw DbException.get(
-                                    ErrorCode.CONCURRENT_UPDATE_1,
-                                    index.getName());
-                        }
-                    }
+                checkUncommittedFromOtherSession(session, row);
+            }
+            throw de;
+        }
+        analyzeIfRequired(session, 1);
+    }
+
+    @Override
+    public void addRows(Session session, List<Row> rows) {
+        lastModificationId = database.getNextModificationDataId();
+        Transaction t = session.getTransaction();
+        long savepoint = t.setSavepoint();
+        try {
+            primaryIndex.add(session, rows);
+            ArrayList<Row> list = null;
+            for (int i = 1, size = indexes.size(); i < size; i++) {
+                Index index = indexes.get(i);
+                if (index instanceof MVDelegateIndex) {
+                    // uses the rows of the primary index
+                    continue;
+                }
+                if (list == null) {
+                    list = new ArrayList<>(rows);
+                }
+                sortRows(list, index);
+                for (Row row : list) {
+                    index.add(session, row);
+                }
+            }
+        } catch (Throwable e) {
+            t.rollbackToSavepoint(savepoint);
+            DbException de = DbException.convert(e);
+            if (de.getErrorCode() == ErrorCode.DUPLICATE_KEY_1) {
+                for (Row row : rows) {
+                    checkUncommittedFromOtherSession(session, row);
                 }
             }
             throw de;
         }
-        analyzeIfRequired(session);
+        analyzeIfRequired(session, rows.size());
+    }
+
+    private void checkUncommittedFromOtherSession(Session session, Row row) {
+        for (int j = 0; j < indexes.size(); j++) {
+            Index index = indexes.get(j);
+            if (index.getIndexType().isUnique() &&
+                    index instanceof MultiVersionIndex) {
+                MultiVersionIndex mv = (MultiVersionIndex) index;
+                if (mv.isUncommittedFromOtherSession(session, row)) {
+                    throw DbException.get(
+                            ErrorCode.CONCURRENT_UPDATE_1,
+                            index.getName());
+                }
+            }
+        }
     }
 
-    private void analyzeIfRequired(Session session) {
+    private void analyzeIfRequired(Session session, int changes) {
         synchronized (this) {
-            if (nextAnalyze == 0 || nextAnalyze > changesSinceAnalyze++) {
+            changesSinceAnalyze += changes;
+            if (nextAnalyze == 0 || nextAnalyze >= changesSinceAnalyze) {
                 return;
             }
             changesSinceAnalyze = 0;
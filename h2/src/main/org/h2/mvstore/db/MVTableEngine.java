@@ -88,6 +88,14 @@ public class MVTableEngine implements TableEngine {
                 // use a larger page split size to improve the compression ratio
                 builder.pageSplitSize(64 * 1024);
             }
+            int offHeapCacheSize = db.getSettings().offHeapCacheSize;
+            if (offHeapCacheSize > 0) {
+                builder.offHeapCacheSize(offHeapCacheSize);
+            }
+            int compactThreads = db.getSettings().compactThreads;
+            if (compactThreads > 1) {
+                builder.compactThreads(compactThreads);
+            }
             builder.backgroundExceptionHandler(new UncaughtExceptionHandler() {
 
                 @Override
@@ -332,6 +340,19 @@ public class MVTableEngine implements TableEngine {
             return new FileChannelInputStream(fc, false);
         }
 
+        /**
+         * Set the maximum delay in milliseconds to write changes. With a delay
+         * of 0, the changes of a transaction are stored and synced when it is
+         * committed; concurrent commits are grouped to one store operation and
+         * one sync.
+         *
+         * @param millis the delay (0 for durable commits)
+         */
+        public void setWriteDelay(int millis) {
+            store.setAutoCommitDelay(millis);
+            transactionStore.setSyncOnCommit(millis == 0);
+        }
+
         /**
          * Force the changes to disk.
          */
@@ -7,15 +7,19 @@ package org.h2.mvstore.db;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import org.h2.mvstore.Cursor;
 import org.h2.mvstore.DataUtils;
 import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVMapAppender;
 import org.h2.mvstore.MVStore;
 import org.h2.mvstore.WriteBuffer;
 import org.h2.mvstore.type.DataType;
@@ -39,7 +43,11 @@ public class TransactionStore {
     final MVMap<Integer, Object[]> preparedTransactions;
 
     /**
-     * The undo log.
+     * The undo logs, indexed by transaction id. Each transaction id has its
+     * own undo log map, which is created when the transaction writes the first
+     * entry, and kept for the next transaction with the same id. The array
+     * grows as needed; as the lowest free id is used for a new transaction,
+     * its length depends on the number of concurrently open transactions.
      * <p>
      * If the first entry for a transaction doesn't have a logId
      * of 0, then the transaction is partially committed (which means rollback
@@ -48,14 +56,53 @@ public class TransactionStore {
      * <p>
      * Key: opId, value: [ mapId, key, oldValue ].
      */
-    final MVMap<Long, Object[]> undoLog;
+    private volatile MVMap<Long, Object[]>[] undoLogs;
 
     /**
-     * the reader/writer lock for the undo-log. Allows us to process multiple
-     * selects in parallel.
+     * The reader/writer lock for the undo logs. Committing and rolling back
+     * transactions only needs the read lock, so that multiple transactions
+     * can be committed in parallel. Counting the entries of a map needs the
+     * write lock, so that the undo logs don't change while they are scanned.
      */
     final ReentrantReadWriteLock rwLock = new ReentrantReadWriteLock();
 
+    /**
+     * The prefix of the names of the undo log maps.
+     */
+    private static final String UNDO_LOG_NAME_PREFIX = "undoLog.";
+
+    /**
+     * The name of the undo log map that was shared by all transactions, as
+     * used by older versions.
+     */
+    private static final String UNDO_LOG_SHARED_NAME = "undoLog";
+
+    /**
+     * The largest transaction id that fits in an operation id.
+     */
+    private static final int MAX_TRANSACTION_ID = (1 << 24) - 1;
+
+    /**
+     * The number of undo log maps that are kept when they are not in use.
+     */
+    private static final int MIN_UNDO_LOGS = 16;
+
+    /**
+     * The largest log id that fits in an operation id.
+     */
+    private static final long MAX_LOG_ID = (1L << 40) - 1;
+
+    private final ArrayType undoLogValueType;
+
+    /**
+     * The number of committed entries of the maps, if already known. It is
+     * updated when a transaction is committed.
+     * <p>
+     * Key: mapId, value: the number of entries.
+     */
+    private final ConcurrentHashMap<Integer, AtomicLong> committedSizes =
+            new ConcurrentHashMap<>();
+
     /**
      * The map of maps.
      */
@@ -66,9 +113,23 @@ public class TransactionStore {
 
     private final BitSet openTransactions = new BitSet();
 
+    /**
+     * The transactions of this process that are not yet closed.
+     * <p>
+     * Key: transactionId, value: the transaction.
+     */
+    private final HashMap<Integer, Transaction> transactions =
+            New.hashMap();
+
     private boolean init;
 
-    private int maxTransactionId = 0xffff;
+    private int maxTransactionId = MAX_TRANSACTION_ID;
+
+    /**
+     * Whether the file is synced when a transaction is committed, if
+     * auto-commit of the store is disabled.
+     */
+    private volatile boolean syncOnCommit;
 
     /**
      * The next id of a temporary map.
@@ -96,18 +157,93 @@ public class TransactionStore {
         preparedTransactions = store.openMap("openTransactions",
                 new MVMap.Builder<Integer, Object[]>());
         VersionedValueType oldValueType = new VersionedValueType(dataType);
-        ArrayType undoLogValueType = new ArrayType(new DataType[]{
+        undoLogValueType = new ArrayType(new DataType[]{
                 new ObjectDataType(), dataType, oldValueType
         });
+        undoLogs = newUndoLogArray(MIN_UNDO_LOGS);
+        for (String mapName : store.getMapNames()) {
+            if (mapName.startsWith(UNDO_LOG_NAME_PREFIX)) {
+                int transactionId = Integer.parseInt(
+                        mapName.substring(UNDO_LOG_NAME_PREFIX.length()));
+                setUndoLog(transactionId, openUndoLog(mapName));
+            }
+        }
+        if (store.hasMap(UNDO_LOG_SHARED_NAME)) {
+            // entries of transactions written by an older version: as the
+            // keys are operation ids, the shared map is used as the undo
+            // log of each of those transactions
+            MVMap<Long, Object[]> undoLog = openUndoLog(UNDO_LOG_SHARED_NAME);
+            Long key = undoLog.firstKey();
+            while (key != null) {
+                int transactionId = getTransactionId(key);
+                setUndoLog(transactionId, undoLog);
+                key = undoLog.higherKey(
+                        getOperationId(transactionId, MAX_LOG_ID));
+            }
+        }
+    }
+
+    private MVMap<Long, Object[]> openUndoLog(String mapName) {
         MVMap.Builder<Long, Object[]> builder =
                 new MVMap.Builder<Long, Object[]>().
                 valueType(undoLogValueType);
-        undoLog = store.openMap("undoLog", builder);
+        MVMap<Long, Object[]> undoLog = store.openMap(mapName, builder);
         if (undoLog.getValueType() != undoLogValueType) {
             throw DataUtils.newIllegalStateException(
                     DataUtils.ERROR_TRANSACTION_CORRUPT,
                     "Undo map open with a different value type");
         }
+        return undoLog;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static MVMap<Long, Object[]>[] newUndoLogArray(int length) {
+        return new MVMap[length];
+    }
+
+    /**
+     * Get the undo log of the given transaction.
+     *
+     * @param transactionId the transaction id
+     * @return the undo log, or null if no transaction with this id wrote an
+     *         entry so far
+     */
+    MVMap<Long, Object[]> getUndoLog(int transactionId) {
+        MVMap<Long, Object[]>[] logs = undoLogs;
+        return transactionId < logs.length ? logs[transactionId] : null;
+    }
+
+    /**
+     * Set the undo log of the given transaction, and grow the array if needed.
+     *
+     * @param transactionId the transaction id
+     * @param undoLog the undo log
+     */
+    private synchronized void setUndoLog(int transactionId,
+            MVMap<Long, Object[]> undoLog) {
+        MVMap<Long, Object[]>[] logs = undoLogs;
+        if (transactionId >= logs.length) {
+            int len = Math.max(transactionId + 1, logs.length * 2);
+            logs = Arrays.copyOf(logs, Math.min(len, MAX_TRANSACTION_ID + 1));
+        }
+        logs[transactionId] = undoLog;
+        undoLogs = logs;
+    }
+
+    /**
+     * Get the undo log of the given transaction, and create it if needed.
+     *
+     * @param transactionId the transaction id
+     * @return the undo log
+     */
+    private synchronized MVMap<Long, Object[]> getOrCreateUndoLog(
+            int transactionId) {
+        MVMap<Long, Object[]> undoLog = getUndoLog(transactionId);
+        if (undoLog == null) {
+            undoLog = openUndoLog(UNDO_LOG_NAME_PREFIX + transactionId);
+            setUndoLog(transactionId, undoLog);
+        }
+        return undoLog;
     }
 
     /**
@@ -124,30 +260,64 @@ public class TransactionStore {
                 store.removeMap(temp);
             }
         }
-        rwLock.writeLock().lock();
-        try {
-            if (undoLog.size() > 0) {
-                for (Long key : undoLog.keySet()) {
-                    int transactionId = getTransactionId(key);
-                    openTransactions.set(transactionId);
-                }
+        MVMap<Long, Object[]>[] logs = undoLogs;
+        for (int i = 0; i < logs.length; i++) {
+            MVMap<Long, Object[]> undoLog = logs[i];
+            if (undoLog != null && getLastOperationId(undoLog, i) != null) {
+                openTransactions.set(i);
             }
-        } finally {
-            rwLock.writeLock().unlock();
         }
+        if (store.hasMap(UNDO_LOG_SHARED_NAME)) {
+            MVMap<Long, Object[]> undoLog = openUndoLog(UNDO_LOG_SHARED_NAME);
+            if (undoLog.isEmpty()) {
+                store.removeMap(undoLog);
+            }
+        }
+    }
+
+    /**
+     * Get the last operation id of the given transaction in the undo log.
+     *
+     * @param undoLog the undo log
+     * @param transactionId the transaction id
+     * @return the operation id, or null if there is no entry
+     */
+    private static Long getLastOperationId(MVMap<Long, Object[]> undoLog,
+            int transactionId) {
+        Long key = undoLog.floorKey(getOperationId(transactionId, MAX_LOG_ID));
+        if (key == null || getTransactionId(key) != transactionId) {
+            return null;
+        }
+        return key;
     }
 
     /**
-     * Set the maximum transaction id, after which ids are re-used. If the old
-     * transaction is still in use when re-using an old id, the new transaction
-     * fails.
+     * Set the maximum transaction id, which is also the maximum number of
+     * concurrently open transactions. A new transaction gets the lowest id
+     * that is not in use by an open transaction. The default (and largest
+     * possible value) is 16777215.
      *
      * @param max the maximum id
      */
     public void setMaxTransactionId(int max) {
+        DataUtils.checkArgument(max <= MAX_TRANSACTION_ID,
+                "Concurrent transactions limit is too high: {0}", max);
         this.maxTransactionId = max;
     }
 
+    /**
+     * Set whether committing a transaction forces the changes to the storage,
+     * if auto-commit of the store is disabled. Transactions that are committed
+     * concurrently share one store operation and one sync, see
+     * {@link MVStore#commitAndSync()}. By default, the changes are stored, but
+     * the file is not synced.
+     *
+     * @param syncOnCommit the new value
+     */
+    public void setSyncOnCommit(boolean syncOnCommit) {
+        this.syncOnCommit = syncOnCommit;
+    }
+
     /**
      * Combine the transaction id and the log id to an operation id.
      *
@@ -156,9 +326,10 @@ public class TransactionStore {
      * @return the operation id
      */
     static long getOperationId(int transactionId, long logId) {
-        DataUtils.checkArgument(transactionId >= 0 && transactionId < (1 << 24),
+        DataUtils.checkArgument(transactionId >= 0 &&
+                transactionId <= MAX_TRANSACTION_ID,
                 "Transaction id out of range: {0}", transactionId);
-        DataUtils.checkArgument(logId >= 0 && logId < (1L << 40),
+        DataUtils.checkArgument(logId >= 0 && logId <= MAX_LOG_ID,
                 "Transaction log id out of range: {0}", logId);
         return ((long) transactionId << 40) | logId;
     }
@@ -180,7 +351,7 @@ public class TransactionStore {
      * @return the log id
      */
     static long getLogId(long operationId) {
-        return operationId & ((1L << 40) - 1);
+        return operationId & MAX_LOG_ID;
     }
 
     /**
@@ -189,37 +360,38 @@ public class TransactionStore {
      * @return the list of transactions (sorted by id)
      */
     public List<Transaction> getOpenTransactions() {
-        rwLock.readLock().lock();
-        try {
-            ArrayList<Transaction> list = New.arrayList();
-            Long key = undoLog.firstKey();
-            while (key != null) {
-                int transactionId = getTransactionId(key);
-                key = undoLog.lowerKey(getOperationId(transactionId + 1, 0));
-                long logId = getLogId(key) + 1;
-                Object[] data = preparedTransactions.get(transactionId);
-                int status;
-                String name;
-                if (data == null) {
-                    if (undoLog.containsKey(getOperationId(transactionId, 0))) {
-                        status = Transaction.STATUS_OPEN;
-                    } else {
-                        status = Transaction.STATUS_COMMITTING;
-                    }
-                    name = null;
+        ArrayList<Transaction> list = New.arrayList();
+        MVMap<Long, Object[]>[] logs = undoLogs;
+        for (int transactionId = 0; transactionId < logs.length;
+                transactionId++) {
+            MVMap<Long, Object[]> undoLog = logs[transactionId];
+            if (undoLog == null) {
+                continue;
+            }
+            Long key = getLastOperationId(undoLog, transactionId);
+            if (key == null) {
+                continue;
+            }
+            long logId = getLogId(key) + 1;
+            Object[] data = preparedTransactions.get(transactionId);
+            int status;
+            String name;
+            if (data == null) {
+                if (undoLog.containsKey(getOperationId(transactionId, 0))) {
+                    status = Transaction.STATUS_OPEN;
                 } else {
-                    status = (Integer) data[0];
-                    name = (String) data[1];
+                    status = Transaction.STATUS_COMMITTING;
                 }
-                Transaction t = new Transaction(this, transactionId, status,
-                        name, logId);
-                list.add(t);
-                key = undoLog.ceilingKey(getOperationId(transactionId + 1, 0));
+                name = null;
+            } else {
+                status = (Integer) data[0];
+                name = (String) data[1];
             }
-            return list;
-        } finally {
-            rwLock.readLock().unlock();
+            Transaction t = new Transaction(this, transactionId, status,
+                    name, logId);
+            list.add(t);
         }
+        return list;
     }
 
     /**
@@ -252,7 +424,10 @@ public class TransactionStore {
         }
         openTransactions.set(transactionId);
         status = Transaction.STATUS_OPEN;
-        return new Transaction(this, transactionId, status, null, 0);
+        Transaction t = new Transaction(this, transactionId, status, null, 0);
+        t.sizeDeltas = new ConcurrentHashMap<>();
+        transactions.put(transactionId, t);
+        return t;
     }
 
     /**
@@ -281,7 +456,8 @@ public class TransactionStore {
             Object key, Object oldValue) {
         Long undoKey = getOperationId(t.getId(), logId);
         Object[] log = new Object[] { mapId, key, oldValue };
-        rwLock.writeLock().lock();
+        MVMap<Long, Object[]> undoLog = getOrCreateUndoLog(t.getId());
+        rwLock.readLock().lock();
         try {
             if (logId == 0) {
                 if (undoLog.containsKey(undoKey)) {
@@ -294,7 +470,7 @@ public class TransactionStore {
             }
             undoLog.put(undoKey, log);
         } finally {
-            rwLock.writeLock().unlock();
+            rwLock.readLock().unlock();
         }
     }
 
@@ -306,9 +482,10 @@ public class TransactionStore {
      */
     public void logUndo(Transaction t, long logId) {
         Long undoKey = getOperationId(t.getId(), logId);
-        rwLock.writeLock().lock();
+        MVMap<Long, Object[]> undoLog = getUndoLog(t.getId());
+        rwLock.readLock().lock();
         try {
-            Object[] old = undoLog.remove(undoKey);
+            Object[] old = undoLog == null ? null : undoLog.remove(undoKey);
             if (old == null) {
                 throw DataUtils.newIllegalStateException(
                         DataUtils.ERROR_TRANSACTION_ILLEGAL_STATE,
@@ -316,7 +493,7 @@ public class TransactionStore {
                         t.getId());
             }
         } finally {
-            rwLock.writeLock().unlock();
+            rwLock.readLock().unlock();
         }
     }
 
@@ -329,9 +506,77 @@ public class TransactionStore {
      */
     synchronized <K, V> void removeMap(TransactionMap<K, V> map) {
         maps.remove(map.mapId);
+        committedSizes.remove(map.mapId);
         store.removeMap(map.map);
     }
 
+    /**
+     * Get the number of committed entries of a map.
+     *
+     * @param mapId the map id
+     * @param map the map
+     * @return the number of entries
+     */
+    long getCommittedSize(int mapId, MVMap<?, VersionedValue> map) {
+        AtomicLong size = committedSizes.get(mapId);
+        if (size != null) {
+            return size.get();
+        }
+        // count once, while no transaction is committed
+        rwLock.writeLock().lock();
+        try {
+            size = committedSizes.get(mapId);
+            if (size == null) {
+                // all entries, except those that were added
+                // by open transactions
+                long count = map.sizeAsLong();
+                for (MVMap<Long, Object[]> undoLog : getUndoLogs()) {
+                    for (Entry<Long, Object[]> e : undoLog.entrySet()) {
+                        Object[] op = e.getValue();
+                        if ((Integer) op[0] == mapId && op[2] == null &&
+                                map.containsKey(op[1])) {
+                            count--;
+                        }
+                    }
+                }
+                size = new AtomicLong(count);
+                committedSizes.put(mapId, size);
+            }
+            return size.get();
+        } finally {
+            rwLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Change the number of committed entries of a map, if it is known.
+     *
+     * @param mapId the map id
+     * @param delta the number of added entries (negative if removed)
+     */
+    void addCommittedSize(int mapId, long delta) {
+        AtomicLong size = committedSizes.get(mapId);
+        if (size != null) {
+            size.addAndGet(delta);
+        }
+    }
+
+    /**
+     * Forget the number of committed entries of a map, so that it is
+     * counted again when needed, and the number of entries the open
+     * transactions added to the map. This is needed when the map is cleared.
+     *
+     * @param mapId the map id
+     */
+    synchronized void resetSize(int mapId) {
+        committedSizes.remove(mapId);
+        for (Transaction t : transactions.values()) {
+            if (t.sizeDeltas != null) {
+                t.sizeDeltas.remove(mapId);
+            }
+        }
+    }
+
     /**
      * Commit a transaction.
      *
@@ -342,8 +587,13 @@ public class TransactionStore {
         if (store.isClosed()) {
             return;
         }
-        // TODO could synchronize on blocks (100 at a time or so)
-        rwLock.writeLock().lock();
+        MVMap<Long, Object[]> undoLog = getUndoLog(t.getId());
+        if (undoLog == null) {
+            // nothing was changed
+            endTransaction(t);
+            return;
+        }
+        rwLock.readLock().lock();
         try {
             t.setStatus(Transaction.STATUS_COMMITTING);
             for (long logId = 0; logId < maxLogId; logId++) {
@@ -380,8 +630,17 @@ public class TransactionStore {
                 }
                 undoLog.remove(undoKey);
             }
+            if (t.sizeDeltas == null) {
+                // the changes of transactions that were opened by an
+                // earlier process are not known
+                committedSizes.clear();
+            } else {
+                for (Entry<Integer, AtomicLong> e : t.sizeDeltas.entrySet()) {
+                    addCommittedSize(e.getKey(), e.getValue().get());
+                }
+            }
         } finally {
-            rwLock.writeLock().unlock();
+            rwLock.readLock().unlock();
         }
         endTransaction(t);
     }
@@ -468,29 +727,109 @@ public class TransactionStore {
      *
      * @param t the transaction
      */
-    synchronized void endTransaction(Transaction t) {
-        if (t.getStatus() == Transaction.STATUS_PREPARED) {
-            preparedTransactions.remove(t.getId());
-        }
-        t.setStatus(Transaction.STATUS_CLOSED);
-        openTransactions.clear(t.transactionId);
-        if (store.getAutoCommitDelay() == 0) {
-            store.commit();
-            return;
+    void endTransaction(Transaction t) {
+        boolean commitStore;
+        synchronized (this) {
+            if (t.getStatus() == Transaction.STATUS_PREPARED) {
+                preparedTransactions.remove(t.getId());
+            }
+            t.setStatus(Transaction.STATUS_CLOSED);
+            openTransactions.clear(t.transactionId);
+            transactions.remove(t.transactionId);
+            removeUnusedUndoLogs();
+            if (store.getAutoCommitDelay() == 0) {
+                commitStore = true;
+            } else if (!hasUndoLogEntries()) {
+                // to avoid having to store the transaction log,
+                // if there is no open transaction,
+                // and if there have been many changes, store them now
+                int unsaved = store.getUnsavedMemory();
+                int max = store.getAutoCommitMemory();
+                // save at 3/4 capacity
+                commitStore = unsaved * 4 > max * 3;
+            } else {
+                commitStore = false;
+            }
         }
-        // to avoid having to store the transaction log,
-        // if there is no open transaction,
-        // and if there have been many changes, store them now
-        if (undoLog.isEmpty()) {
-            int unsaved = store.getUnsavedMemory();
-            int max = store.getAutoCommitMemory();
-            // save at 3/4 capacity
-            if (unsaved * 4 > max * 3) {
+        // the store is committed without holding the lock,
+        // so that concurrent commits can be grouped
+        if (commitStore) {
+            if (syncOnCommit && store.getAutoCommitDelay() == 0) {
+                store.commitAndSync();
+            } else {
                 store.commit();
             }
         }
     }
 
+    /**
+     * Remove the empty undo logs of transaction ids that are far above the
+     * ids of the open transactions. As the lowest free id is used for new
+     * transactions, those maps would only be needed again if the number of
+     * concurrent transactions grows again.
+     */
+    private void removeUnusedUndoLogs() {
+        MVMap<Long, Object[]>[] logs = undoLogs;
+        int keep = Math.max(MIN_UNDO_LOGS, openTransactions.length() * 2);
+        if (keep >= logs.length) {
+            return;
+        }
+        int length = keep;
+        for (int i = keep; i < logs.length; i++) {
+            MVMap<Long, Object[]> undoLog = logs[i];
+            if (undoLog == null) {
+                continue;
+            }
+            if (openTransactions.get(i) || !undoLog.isEmpty()) {
+                length = i + 1;
+                continue;
+            }
+            if ((UNDO_LOG_NAME_PREFIX + i).equals(undoLog.getName())) {
+                store.removeMap(undoLog);
+            }
+            logs[i] = null;
+        }
+        if (length < logs.length / 2) {
+            undoLogs = Arrays.copyOf(logs, length);
+        }
+    }
+
+    /**
+     * Get the undo logs that are in use.
+     *
+     * @return the list of undo logs
+     */
+    List<MVMap<Long, Object[]>> getUndoLogs() {
+        ArrayList<MVMap<Long, Object[]>> list = New.arrayList();
+        for (MVMap<Long, Object[]> undoLog : undoLogs) {
+            if (undoLog == null) {
+                continue;
+            }
+            boolean found = false;
+            for (MVMap<Long, Object[]> m : list) {
+                if (m == undoLog) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                list.add(undoLog);
+            }
+        }
+        return list;
+    }
+
+    private boolean hasUndoLogEntries() {
+        for (int i = openTransactions.nextSetBit(0); i >= 0;
+                i = openTransactions.nextSetBit(i + 1)) {
+            MVMap<Long, Object[]> undoLog = getUndoLog(i);
+            if (undoLog != null && !undoLog.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Rollback to an old savepoint.
      *
@@ -499,8 +838,11 @@ public class TransactionStore {
      * @param toLogId the log id to roll back to
      */
     void rollbackTo(Transaction t, long maxLogId, long toLogId) {
-        // TODO could synchronize on blocks (100 at a time or so)
-        rwLock.writeLock().lock();
+        MVMap<Long, Object[]> undoLog = getUndoLog(t.getId());
+        if (undoLog == null) {
+            return;
+        }
+        rwLock.readLock().lock();
         try {
             for (long logId = maxLogId - 1; logId >= toLogId; logId--) {
                 Long undoKey = getOperationId(t.getId(), logId);
@@ -520,21 +862,33 @@ public class TransactionStore {
                 if (map != null) {
                     Object key = op[1];
                     VersionedValue oldValue = (VersionedValue) op[2];
+                    VersionedValue value;
                     if (oldValue == null) {
                         // this transaction added the value
-                        map.remove(key);
+                        value = map.remove(key);
                     } else {
                         // this transaction updated the value
-                        map.put(key, oldValue);
+                        value = map.put(key, oldValue);
                     }
+                    t.addSizeDelta(mapId, getSize(oldValue) - getSize(value));
                 }
                 undoLog.remove(undoKey);
             }
         } finally {
-            rwLock.writeLock().unlock();
+            rwLock.readLock().unlock();
         }
     }
 
+    /**
+     * Get the number of entries a value stands for.
+     *
+     * @param value the value, or null
+     * @return 1 if the value exists, 0 if not or if it is removed
+     */
+    static int getSize(VersionedValue value) {
+        return value == null || value.value == null ? 0 : 1;
+    }
+
     /**
      * Get the changes of the given transaction, starting from the latest log id
      * back to the given log id.
@@ -546,6 +900,7 @@ public class TransactionStore {
      */
     Iterator<Change> getChanges(final Transaction t, final long maxLogId,
             final long toLogId) {
+        final MVMap<Long, Object[]> undoLog = getUndoLog(t.getId());
         return new Iterator<Change>() {
 
             private long logId = maxLogId - 1;
@@ -556,8 +911,7 @@ public class TransactionStore {
             }
 
             private void fetchNext() {
-                rwLock.writeLock().lock();
-                try {
+                if (undoLog != null) {
                     while (logId >= toLogId) {
                         Long undoKey = getOperationId(t.getId(), logId);
                         Object[] op = undoLog.get(undoKey);
@@ -586,8 +940,6 @@ public class TransactionStore {
                             return;
                         }
                     }
-                } finally {
-                    rwLock.writeLock().unlock();
                 }
                 current = null;
             }
@@ -679,6 +1031,15 @@ public class TransactionStore {
          */
         long logId;
 
+        /**
+         * The number of entries this transaction added to each map, minus the
+         * number of entries it removed. This is null for transactions that
+         * were opened by an earlier process, as their changes are not known.
+         * <p>
+         * Key: mapId, value: the difference in the number of entries.
+         */
+        ConcurrentHashMap<Integer, AtomicLong> sizeDeltas;
+
         private int status;
 
         private String name;
@@ -743,6 +1104,36 @@ public class TransactionStore {
             store.logUndo(this, --logId);
         }
 
+        /**
+         * Change the number of entries this transaction added to a map.
+         *
+         * @param mapId the map id
+         * @param delta the number of added entries (negative if removed)
+         */
+        void addSizeDelta(int mapId, long delta) {
+            if (delta == 0 || sizeDeltas == null) {
+                return;
+            }
+            AtomicLong d = sizeDeltas.get(mapId);
+            if (d == null) {
+                d = new AtomicLong();
+                sizeDeltas.put(mapId, d);
+            }
+            d.addAndGet(delta);
+        }
+
+        /**
+         * Get the number of entries this transaction added to a map, minus
+         * the number of entries it removed.
+         *
+         * @param mapId the map id
+         * @return the difference in the number of entries
+         */
+        long getSizeDelta(int mapId) {
+            AtomicLong d = sizeDeltas.get(mapId);
+            return d == null ? 0 : d.get();
+        }
+
         /**
          * Open a data map.
          *
@@ -946,13 +1337,24 @@ public class TransactionStore {
          * @return the size
          */
         public long sizeAsLong() {
-            transaction.store.rwLock.readLock().lock();
+            if (transaction.sizeDeltas != null &&
+                    readLogId >= transaction.logId) {
+                // all changes of this transaction are visible: the committed
+                // entries, plus the changes of this transaction
+                long size = transaction.store.getCommittedSize(mapId, map);
+                if (transaction.getStatus() != Transaction.STATUS_CLOSED) {
+                    size += transaction.getSizeDelta(mapId);
+                }
+                return size;
+            }
+            transaction.store.rwLock.writeLock().lock();
             try {
                 long sizeRaw = map.sizeAsLong();
-                MVMap<Long, Object[]> undo = transaction.store.undoLog;
-                long undoLogSize;
-                synchronized (undo) {
-                    undoLogSize = undo.sizeAsLong();
+                List<MVMap<Long, Object[]>> undoLogs =
+                        transaction.store.getUndoLogs();
+                long undoLogSize = 0;
+                for (MVMap<Long, Object[]> undo : undoLogs) {
+                    undoLogSize += undo.sizeAsLong();
                 }
                 if (undoLogSize == 0) {
                     return sizeRaw;
@@ -974,12 +1376,11 @@ public class TransactionStore {
                 }
                 // the undo log is smaller than the map -
                 // scan the undo log and subtract invisible entries
-                synchronized (undo) {
-                    // re-fetch in case any transaction was committed now
-                    long size = map.sizeAsLong();
-                    MVMap<Object, Integer> temp = transaction.store
-                            .createTempMap();
-                    try {
+                long size = sizeRaw;
+                MVMap<Object, Integer> temp = transaction.store
+                        .createTempMap();
+                try {
+                    for (MVMap<Long, Object[]> undo : undoLogs) {
                         for (Entry<Long, Object[]> e : undo.entrySet()) {
                             Object[] op = e.getValue();
                             int m = (Integer) op[0];
@@ -999,13 +1400,13 @@ public class TransactionStore {
                                 }
                             }
                         }
-                    } finally {
-                        transaction.store.store.removeMap(temp);
                     }
-                    return size;
+                } finally {
+                    transaction.store.store.removeMap(temp);
                 }
+                return size;
             } finally {
-                transaction.store.rwLock.readLock().unlock();
+                transaction.store.rwLock.writeLock().unlock();
             }
         }
 
@@ -1051,6 +1452,9 @@ public class TransactionStore {
             VersionedValue newValue = new VersionedValue();
             newValue.value = value;
             VersionedValue oldValue = map.put(key, newValue);
+            if (oldValue == null) {
+                transaction.store.addCommittedSize(mapId, 1);
+            }
             return (V) (oldValue == null ? null : oldValue.value);
         }
 
@@ -1140,6 +1544,7 @@ public class TransactionStore {
                     transaction.logUndo();
                     return false;
                 }
+                transaction.addSizeDelta(mapId, getSize(newValue));
                 return true;
             }
             long id = current.operationId;
@@ -1153,6 +1558,8 @@ public class TransactionStore {
                     transaction.logUndo();
                     return false;
                 }
+                transaction.addSizeDelta(mapId,
+                        getSize(newValue) - getSize(current));
                 return true;
             }
             int tx = getTransactionId(current.operationId);
@@ -1165,6 +1572,8 @@ public class TransactionStore {
                     transaction.logUndo();
                     return false;
                 }
+                transaction.addSizeDelta(mapId,
+                        getSize(newValue) - getSize(current));
                 return true;
             }
             // the transaction is not yet committed
@@ -1232,13 +1641,8 @@ public class TransactionStore {
         }
 
         private VersionedValue getValue(K key, long maxLog) {
-            transaction.store.rwLock.readLock().lock();
-            try {
-                VersionedValue data = map.get(key);
-                return getValue(key, maxLog, data);
-            } finally {
-                transaction.store.rwLock.readLock().unlock();
-            }
+            VersionedValue data = map.get(key);
+            return getValue(key, maxLog, data);
         }
 
         /**
@@ -1250,6 +1654,8 @@ public class TransactionStore {
          * @return the value
          */
         VersionedValue getValue(K key, long maxLog, VersionedValue data) {
+            // the value that was read from the map
+            VersionedValue stored = data;
             while (true) {
                 if (data == null) {
                     // doesn't exist or deleted by a committed transaction
@@ -1268,24 +1674,50 @@ public class TransactionStore {
                     }
                 }
                 // get the value before the uncommitted transaction
-                Object[] d;
-                d = transaction.store.undoLog.get(id);
-                if (d == null) {
-                    if (transaction.store.store.isReadOnly()) {
-                        // uncommitted transaction for a read-only store
-                        return null;
-                    }
-                    // this entry should be committed or rolled back
-                    // in the meantime (the transaction might still be open)
-                    // or it might be changed again in a different
-                    // transaction (possibly one with the same id)
-                    data = map.get(key);
+                MVMap<Long, Object[]> undo = transaction.store.getUndoLog(tx);
+                Object[] d = undo == null ? null : undo.get(id);
+                if (d == null && transaction.store.store.isReadOnly()) {
+                    // uncommitted transaction for a read-only store
+                    return null;
+                }
+                VersionedValue current = map.get(key);
+                if (!isSameVersion(current, stored)) {
+                    // the entry was committed or rolled back in the meantime,
+                    // or changed again in a different transaction; the undo
+                    // log entry might then belong to a newer transaction
+                    // with the same id
+                    data = stored = current;
+                } else if (d == null) {
+                    // the transaction is being committed or rolled back
+                    // right now (the transaction might still be open)
+                    data = current;
                 } else {
                     data = (VersionedValue) d[2];
                 }
             }
         }
 
+        /**
+         * Check whether two values read from the map are the same entry. The
+         * objects are not necessarily identical, as a page can be read again
+         * after it was removed from the cache.
+         *
+         * @param a the first value
+         * @param b the second value
+         * @return true if both have the same operation id and value
+         */
+        private boolean isSameVersion(VersionedValue a, VersionedValue b) {
+            if (a == b) {
+                return true;
+            } else if (a == null || b == null ||
+                    a.operationId != b.operationId) {
+                return false;
+            } else if (a.value == null || b.value == null) {
+                return a.value == b.value;
+            }
+            return transaction.store.dataType.compare(a.value, b.value) == 0;
+        }
+
         /**
          * Check whether this map is closed.
          *
@@ -1301,6 +1733,7 @@ public class TransactionStore {
         public void clear() {
             // TODO truncate transactionally?
             map.clear();
+            transaction.store.resetSize(mapId);
         }
 
         /**
@@ -1482,45 +1915,40 @@ public class TransactionStore {
 
                 private void fetchNext() {
                     while (cursor.hasNext()) {
-                        transaction.store.rwLock.readLock().lock();
+                        K k;
                         try {
-                            K k;
-                            try {
-                                k = cursor.next();
-                            } catch (IllegalStateException e) {
-                                // TODO this is a bit ugly
-                                if (DataUtils.getErrorCode(e.getMessage()) ==
-                                        DataUtils.ERROR_CHUNK_NOT_FOUND) {
-                                    cursor = map.cursor(currentKey);
-                                    // we (should) get the current key again,
-                                    // we need to ignore that one
-                                    if (!cursor.hasNext()) {
-                                        break;
-                                    }
-                                    cursor.next();
-                                    if (!cursor.hasNext()) {
-                                        break;
-                                    }
-                                    k = cursor.next();
-                                } else {
-                                    throw e;
+                            k = cursor.next();
+                        } catch (IllegalStateException e) {
+                            // TODO this is a bit ugly
+                            if (DataUtils.getErrorCode(e.getMessage()) ==
+                                    DataUtils.ERROR_CHUNK_NOT_FOUND) {
+                                cursor = map.cursor(currentKey);
+                                // we (should) get the current key again,
+                                // we need to ignore that one
+                                if (!cursor.hasNext()) {
+                                    break;
                                 }
+                                cursor.next();
+                                if (!cursor.hasNext()) {
+                                    break;
+                                }
+                                k = cursor.next();
+                            } else {
+                                throw e;
                             }
-                            final K key = k;
-                            if (to != null && map.getKeyType().compare(k, to) > 0) {
-                                break;
-                            }
-                            VersionedValue data = cursor.getValue();
-                            data = getValue(key, readLogId, data);
-                            if (data != null && data.value != null) {
-                                @SuppressWarnings("unchecked")
-                                final V value = (V) data.value;
-                                current = new DataUtils.MapEntry<>(key, value);
-                                currentKey = key;
-                                return;
-                            }
-                        } finally {
-                            transaction.store.rwLock.readLock().unlock();
+                        }
+                        final K key = k;
+                        if (to != null && map.getKeyType().compare(k, to) > 0) {
+                            break;
+                        }
+                        VersionedValue data = cursor.getValue();
+                        data = getValue(key, readLogId, data);
+                        if (data != null && data.value != null) {
+                            @SuppressWarnings("unchecked")
+                            final V value = (V) data.value;
+                            current = new DataUtils.MapEntry<>(key, value);
+                            currentKey = key;
+                            return;
                         }
                     }
                     current = null;
@@ -1607,6 +2035,85 @@ public class TransactionStore {
             return map.getKeyType();
         }
 
+        /**
+         * Create an appender that adds committed entries at the end of the
+         * map, without undo log entries.
+         *
+         * @return the appender
+         */
+        public Appender<K, V> appender() {
+            return new Appender<>(this);
+        }
+
+    }
+
+    /**
+     * Appends committed entries in ascending key order at the end of a
+     * transaction map. See also {@link MVMapAppender}.
+     *
+     * @param <K> the key type
+     * @param <V> the value type
+     */
+    public static final class Appender<K, V> {
+
+        private final TransactionMap<K, V> map;
+        private final MVMapAppender<K, VersionedValue> appender;
+        private long flushedCount;
+        private K firstKey;
+
+        Appender(TransactionMap<K, V> map) {
+            this.map = map;
+            appender = new MVMapAppender<>(map.map);
+        }
+
+        /**
+         * Append a committed entry. The key must be larger than all keys
+         * that were appended so far, and larger than all keys of the map.
+         *
+         * @param key the key
+         * @param value the value
+         */
+        public void append(K key, V value) {
+            DataUtils.checkArgument(value != null, "The value may not be null");
+            VersionedValue v = new VersionedValue();
+            v.value = value;
+            appender.append(key, v);
+            if (firstKey == null) {
+                firstKey = key;
+            }
+        }
+
+        /**
+         * Add the pending entries to the map.
+         */
+        public void flush() {
+            appender.flush();
+            long count = appender.getCount();
+            map.transaction.store.addCommittedSize(map.mapId,
+                    count - flushedCount);
+            flushedCount = count;
+        }
+
+        /**
+         * Remove the entries that were added to the map, and discard the
+         * pending entries. Uncommitted entries are not removed.
+         */
+        public void rollback() {
+            if (firstKey == null) {
+                return;
+            }
+            long removed = 0;
+            Cursor<K, VersionedValue> cursor = map.map.cursor(firstKey);
+            while (cursor.hasNext()) {
+                K key = cursor.next();
+                if (cursor.getValue().operationId == 0) {
+                    map.map.remove(key);
+                    removed++;
+                }
+            }
+            map.transaction.store.addCommittedSize(map.mapId, -removed);
+        }
+
     }
 
     /**
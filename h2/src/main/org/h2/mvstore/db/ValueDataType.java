@@ -213,17 +213,9 @@ public class ValueDataType implements DataType {
             }
             break;
         }
-        case Value.LONG: {
-            long x = v.getLong();
-            if (x < 0) {
-                buff.put((byte) LONG_NEG).putVarLong(-x);
-            } else if (x < 8) {
-                buff.put((byte) (LONG_0_7 + x));
-            } else {
-                buff.put((byte) type).putVarLong(x);
-            }
+        case Value.LONG:
+            writeLong(buff, v.getLong());
             break;
-        }
         case Value.DECIMAL: {
             BigDecimal x = v.getBigDecimal();
             if (BigDecimal.ZERO.equals(x)) {
@@ -448,6 +440,45 @@ public class ValueDataType implements DataType {
         buff.putVarInt(len).putStringData(s, len);
     }
 
+    /**
+     * Write a long value, using the same format as for a ValueLong.
+     *
+     * @param buff the target buffer
+     * @param x the value
+     */
+    static void writeLong(WriteBuffer buff, long x) {
+        if (x < 0) {
+            buff.put((byte) LONG_NEG).putVarLong(-x);
+        } else if (x < 8) {
+            buff.put((byte) (LONG_0_7 + x));
+        } else {
+            buff.put((byte) Value.LONG).putVarLong(x);
+        }
+    }
+
+    /**
+     * Read a value and convert it to a long.
+     *
+     * @param buff the source buffer
+     * @return the value
+     */
+    long readLong(ByteBuffer buff) {
+        int start = buff.position();
+        int type = buff.get() & 255;
+        switch (type) {
+        case LONG_NEG:
+            return -readVarLong(buff);
+        case Value.LONG:
+            return readVarLong(buff);
+        default:
+            if (type >= LONG_0_7 && type < LONG_0_7 + 8) {
+                return type - LONG_0_7;
+            }
+            buff.position(start);
+            return ((Value) readValue(buff)).getLong();
+        }
+    }
+
     /**
      * Read a value.
      *
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2004-2014 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.mvstore.db;
+
+import java.nio.ByteBuffer;
+import org.h2.mvstore.WriteBuffer;
+import org.h2.mvstore.type.LongKeyDataType;
+import org.h2.value.Value;
+import org.h2.value.ValueLong;
+
+/**
+ * The key type of the primary index of a table. The keys are of type
+ * ValueLong, and are stored in the same format as with the ValueDataType, but
+ * the pages keep them in a long array.
+ */
+public class ValueLongDataType extends ValueDataType implements
+        LongKeyDataType {
+
+    public ValueLongDataType() {
+        super(null, null, null);
+    }
+
+    @Override
+    public int compare(Object a, Object b) {
+        if (a instanceof ValueLong && b instanceof ValueLong) {
+            long x = ((ValueLong) a).getLong();
+            long y = ((ValueLong) b).getLong();
+            return x < y ? -1 : x > y ? 1 : 0;
+        }
+        return super.compare(a, b);
+    }
+
+    @Override
+    public long toLong(Object key) {
+        return ((Value) key).getLong();
+    }
+
+    @Override
+    public Object toKey(long x) {
+        return ValueLong.get(x);
+    }
+
+    @Override
+    public void read(ByteBuffer buff, long[] keys, int len) {
+        for (int i = 0; i < len; i++) {
+            keys[i] = readLong(buff);
+        }
+    }
+
+    @Override
+    public void write(WriteBuffer buff, long[] keys, int len) {
+        for (int i = 0; i < len; i++) {
+            writeLong(buff, keys[i]);
+        }
+    }
+
+}
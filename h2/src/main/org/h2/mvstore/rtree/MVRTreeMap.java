@@ -456,6 +456,12 @@ public class MVRTreeMap<V> extends MVMap<SpatialKey, V> {
         return p.getRawChildPageCount() - 1;
     }
 
+    @Override
+    protected boolean isOptimisticWrite() {
+        // the r-tree has its own page level put and remove operations
+        return false;
+    }
+
     /**
      * A cursor to iterate over a subset of the keys.
      */
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2004-2014 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.mvstore.type;
+
+import java.nio.ByteBuffer;
+
+import org.h2.mvstore.WriteBuffer;
+
+/**
+ * A data type for keys that can be converted to a long value and back without
+ * loss, where the keys are sorted in the same order as the long values. Pages
+ * of maps that use such a key type keep the keys in a long array instead of
+ * an object array, and search them without calling compare. Int keys can use
+ * this type as well.
+ */
+public interface LongKeyDataType extends DataType {
+
+    /**
+     * Convert a key to a long value.
+     *
+     * @param key the key
+     * @return the long value
+     */
+    long toLong(Object key);
+
+    /**
+     * Convert a long value to a key.
+     *
+     * @param x the long value
+     * @return the key
+     */
+    Object toKey(long x);
+
+    /**
+     * Read a list of keys.
+     *
+     * @param buff the source buffer
+     * @param keys the keys
+     * @param len the number of keys to read
+     */
+    void read(ByteBuffer buff, long[] keys, int len);
+
+    /**
+     * Write a list of keys.
+     *
+     * @param buff the target buffer
+     * @param keys the keys
+     * @param len the number of keys to write
+     */
+    void write(WriteBuffer buff, long[] keys, int len);
+
+}
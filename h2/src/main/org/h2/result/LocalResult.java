@@ -8,6 +8,8 @@ package org.h2.result;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.PriorityQueue;
 import org.h2.engine.Database;
 import org.h2.engine.Session;
 import org.h2.expression.Expression;
@@ -34,6 +36,11 @@ public class LocalResult implements ResultInterface, ResultTarget {
     private ArrayList<Value[]> rows;
     private SortOrder sort;
     private ValueHashMap<Value[]> distinctRows;
+    /**
+     * The best rows seen so far if only the top rows of a sorted result are
+     * needed. The head of the queue is the last of these rows.
+     */
+    private PriorityQueue<Value[]> topRows;
     private Value[] currentRow;
     private int offset;
     private int limit = -1;
@@ -311,16 +318,77 @@ public class LocalResult implements ResultInterface, ResultTarget {
             }
             return;
         }
+        if (topRows == null && rowCount == 0 && isTopN()) {
+            topRows = new PriorityQueue<Value[]>(11,
+                    Collections.reverseOrder(sort));
+        }
+        if (topRows != null) {
+            addTopRow(values);
+            return;
+        }
         rows.add(values);
         rowCount++;
         if (rows.size() > maxMemoryRows) {
             if (external == null) {
-                external = new ResultTempTable(session, expressions, false, sort);
+                external = createSortedExternal(false);
             }
             addRowsToDisk();
         }
     }
 
+    /**
+     * Create the buffer for rows that don't fit in memory. If the result is
+     * sorted and only read sequentially, the rows are written as sorted runs,
+     * which are merged when reading. Otherwise a temporary table is used.
+     *
+     * @param distinctRows whether the rows are distinct already
+     * @return the buffer
+     */
+    private ResultExternal createSortedExternal(boolean distinctRows) {
+        if (sort != null && !randomAccess) {
+            boolean supported = true;
+            for (Expression e : expressions) {
+                int type = e.getType();
+                if (type == Value.UNKNOWN || type == Value.CLOB ||
+                        type == Value.BLOB || type == Value.ENUM) {
+                    supported = false;
+                    break;
+                }
+            }
+            if (supported) {
+                return new ResultDiskBuffer(session, sort, expressions.length,
+                        maxMemoryRows);
+            }
+        }
+        return new ResultTempTable(session, expressions, distinctRows, sort);
+    }
+
+    /**
+     * Check if only the first rows of the sorted result need to be kept. This
+     * is the case if the sort order, and the limit are set before the first
+     * row is added, and the rows that are needed fit in memory.
+     *
+     * @return true if only the top rows need to be kept
+     */
+    private boolean isTopN() {
+        if (sort == null || limit <= 0 || external != null) {
+            return false;
+        }
+        return (long) Math.max(offset, 0) + limit <= maxMemoryRows;
+    }
+
+    private void addTopRow(Value[] values) {
+        int max = Math.max(offset, 0) + limit;
+        if (topRows.size() < max) {
+            topRows.add(values);
+        } else if (sort.compare(values, topRows.peek()) < 0) {
+            // the new row replaces the last of the top rows
+            topRows.poll();
+            topRows.add(values);
+        }
+        rowCount = topRows.size();
+    }
+
     private void addRowsToDisk() {
         rowCount = external.addRows(rows);
         rows.clear();
@@ -335,6 +403,11 @@ public class LocalResult implements ResultInterface, ResultTarget {
      * This method is called after all rows have been added.
      */
     public void done() {
+        if (topRows != null) {
+            rows = New.arrayList(topRows);
+            rowCount = rows.size();
+            topRows = null;
+        }
         if (distinct) {
             if (distinctRows != null) {
                 rows = distinctRows.values();
@@ -352,7 +425,7 @@ public class LocalResult implements ResultInterface, ResultTarget {
                             break;
                         }
                         if (external == null) {
-                            external = new ResultTempTable(session, expressions, true, sort);
+                            external = createSortedExternal(true);
                         }
                         rows.add(list);
                         if (rows.size() > maxMemoryRows) {
@@ -0,0 +1,278 @@
+/*
+ * Copyright 2004-2014 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.result;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import org.h2.engine.Constants;
+import org.h2.engine.Database;
+import org.h2.engine.Session;
+import org.h2.message.DbException;
+import org.h2.store.Data;
+import org.h2.store.FileStore;
+import org.h2.util.New;
+import org.h2.value.Value;
+import org.h2.value.ValueNull;
+
+/**
+ * This class implements the disk buffer for the LocalResult class. Each list
+ * of rows that is added is sorted and written as a run to a temporary file.
+ * When reading, the runs are merged. Unlike ResultTempTable, no index needs to
+ * be maintained, so that reading and writing is sequential.
+ */
+class ResultDiskBuffer implements ResultExternal {
+
+    private final Database database;
+    private final SortOrder sort;
+    private final int columnCount;
+    private final Data rowBuff;
+    private final ArrayList<ResultDiskTape> tapes = New.arrayList();
+    private final ArrayList<Value[]> pending = New.arrayList();
+    private final int maxPendingRows;
+    private FileStore file;
+    private long filePos = FileStore.HEADER_LENGTH;
+    private int rowCount;
+    private PriorityQueue<ResultDiskTape> mergeQueue;
+    private int tapeIndex;
+
+    /**
+     * Represents a run of sorted rows in the file.
+     */
+    static class ResultDiskTape {
+
+        /**
+         * The start position of the run.
+         */
+        long start;
+
+        /**
+         * The end position of the run.
+         */
+        long end;
+
+        /**
+         * The position of the next block to read.
+         */
+        long pos;
+
+        /**
+         * The rows of the current block.
+         */
+        final ArrayList<Value[]> buffer = New.arrayList();
+
+        /**
+         * The index of the next row in the buffer.
+         */
+        int bufferIndex;
+
+        /**
+         * The current row while merging.
+         */
+        Value[] current;
+    }
+
+    ResultDiskBuffer(Session session, SortOrder sort, int columnCount,
+            int maxMemoryRows) {
+        this.database = session.getDatabase();
+        this.sort = sort;
+        this.columnCount = columnCount;
+        rowBuff = Data.create(database, Constants.DEFAULT_PAGE_SIZE);
+        maxPendingRows = Math.max(1, maxMemoryRows);
+        String fileName = database.createTempFile();
+        file = database.openFile(fileName, "rw", false);
+        file.setCheckedWriting(false);
+        file.autoDelete();
+    }
+
+    @Override
+    public int addRow(Value[] values) {
+        pending.add(values);
+        rowCount++;
+        if (pending.size() >= maxPendingRows) {
+            writeRun(pending);
+            pending.clear();
+        }
+        return rowCount;
+    }
+
+    @Override
+    public int addRows(ArrayList<Value[]> rows) {
+        if (!pending.isEmpty()) {
+            writeRun(pending);
+            pending.clear();
+        }
+        writeRun(rows);
+        rowCount += rows.size();
+        return rowCount;
+    }
+
+    private void writeRun(ArrayList<Value[]> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        if (sort != null) {
+            sort.sort(rows);
+        }
+        ResultDiskTape tape = new ResultDiskTape();
+        tape.start = filePos;
+        Data buff = rowBuff;
+        initBuffer(buff);
+        for (int i = 0, size = rows.size(); i < size; i++) {
+            if (i > 0 && buff.length() > Constants.IO_BUFFER_SIZE) {
+                flushBuffer(buff);
+                initBuffer(buff);
+            }
+            Value[] row = rows.get(i);
+            buff.checkCapacity(1);
+            buff.writeByte((byte) 1);
+            for (int j = 0; j < columnCount; j++) {
+                // rows may not contain the values of all expressions
+                Value v = j < row.length ? row[j] : ValueNull.INSTANCE;
+                buff.checkCapacity(buff.getValueLen(v));
+                buff.writeValue(v);
+            }
+        }
+        flushBuffer(buff);
+        tape.end = filePos;
+        tapes.add(tape);
+    }
+
+    private static void initBuffer(Data buff) {
+        buff.reset();
+        buff.writeInt(0);
+    }
+
+    private void flushBuffer(Data buff) {
+        buff.checkCapacity(1);
+        buff.writeByte((byte) 0);
+        buff.fillAligned();
+        buff.setInt(0, buff.length() / Constants.FILE_BLOCK_SIZE);
+        file.seek(filePos);
+        file.write(buff.getBytes(), 0, buff.length());
+        filePos += buff.length();
+    }
+
+    @Override
+    public void done() {
+        if (!pending.isEmpty()) {
+            writeRun(pending);
+            pending.clear();
+        }
+        reset();
+    }
+
+    @Override
+    public void reset() {
+        mergeQueue = null;
+        tapeIndex = 0;
+        for (ResultDiskTape tape : tapes) {
+            tape.pos = tape.start;
+            tape.buffer.clear();
+            tape.bufferIndex = 0;
+            tape.current = null;
+        }
+    }
+
+    @Override
+    public Value[] next() {
+        if (sort == null || tapes.size() == 1) {
+            // read the runs one after the other
+            while (tapeIndex < tapes.size()) {
+                Value[] row = readRow(tapes.get(tapeIndex));
+                if (row != null) {
+                    return row;
+                }
+                tapeIndex++;
+            }
+            return null;
+        }
+        if (mergeQueue == null) {
+            mergeQueue = new PriorityQueue<ResultDiskTape>(tapes.size(),
+                    new Comparator<ResultDiskTape>() {
+                @Override
+                public int compare(ResultDiskTape a, ResultDiskTape b) {
+                    return sort.compare(a.current, b.current);
+                }
+            });
+            for (ResultDiskTape tape : tapes) {
+                tape.current = readRow(tape);
+                if (tape.current != null) {
+                    mergeQueue.add(tape);
+                }
+            }
+        }
+        ResultDiskTape tape = mergeQueue.poll();
+        if (tape == null) {
+            return null;
+        }
+        Value[] row = tape.current;
+        tape.current = readRow(tape);
+        if (tape.current != null) {
+            mergeQueue.add(tape);
+        }
+        return row;
+    }
+
+    private Value[] readRow(ResultDiskTape tape) {
+        if (tape.bufferIndex >= tape.buffer.size()) {
+            if (tape.pos >= tape.end) {
+                return null;
+            }
+            readBlock(tape);
+        }
+        return tape.buffer.get(tape.bufferIndex++);
+    }
+
+    private void readBlock(ResultDiskTape tape) {
+        tape.buffer.clear();
+        tape.bufferIndex = 0;
+        Data buff = rowBuff;
+        buff.reset();
+        int min = Constants.FILE_BLOCK_SIZE;
+        file.seek(tape.pos);
+        file.readFully(buff.getBytes(), 0, min);
+        int len = buff.readInt() * Constants.FILE_BLOCK_SIZE;
+        buff.checkCapacity(len);
+        if (len - min > 0) {
+            file.readFully(buff.getBytes(), min, len - min);
+        }
+        tape.pos += len;
+        while (buff.readByte() != 0) {
+            Value[] row = new Value[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                row[i] = buff.readValue();
+            }
+            tape.buffer.add(row);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (file != null) {
+            file.autoDelete();
+            file.closeAndDeleteSilently();
+            file = null;
+        }
+    }
+
+    @Override
+    public int removeRow(Value[] values) {
+        throw DbException.throwInternalError();
+    }
+
+    @Override
+    public boolean contains(Value[] values) {
+        throw DbException.throwInternalError();
+    }
+
+    @Override
+    public ResultExternal createShallowCopy() {
+        // the file position is not shared
+        return null;
+    }
+
+}
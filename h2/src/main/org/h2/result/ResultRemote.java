@@ -19,7 +19,9 @@ import org.h2.value.Value;
 /**
  * The client side part of a result set that is kept on the server.
  * In many cases, the complete data is kept on the client side,
- * but for large results only a subset is in-memory.
+ * but for large results only a subset is in-memory. For large results,
+ * the next block of rows is requested while the application reads the
+ * current block, so that the server sends it in the meantime.
  */
 public class ResultRemote implements ResultInterface {
 
@@ -34,6 +36,23 @@ public class ResultRemote implements ResultInterface {
     private ArrayList<Value[]> result;
     private final Trace trace;
 
+    /**
+     * The number of rows requested in advance, or 0 if there is no pending
+     * request.
+     */
+    private int prefetchCount;
+
+    /**
+     * The rows that were requested in advance, or null.
+     */
+    private ArrayList<Value[]> prefetched;
+
+    /**
+     * The exception that occurred while reading the rows requested in
+     * advance, or null.
+     */
+    private DbException prefetchError;
+
     public ResultRemote(SessionRemote session, Transfer transfer, int id,
             int columnCount, int fetchSize) throws IOException {
         this.session = session;
@@ -116,6 +135,7 @@ public class ResultRemote implements ResultInterface {
         synchronized (session) {
             session.checkClosed();
             try {
+                discardPrefetchedRows();
                 session.traceOperation("RESULT_RESET", id);
                 transfer.writeInt(SessionRemote.RESULT_RESET).writeInt(id).flush();
             } catch (IOException e) {
@@ -178,6 +198,7 @@ public class ResultRemote implements ResultInterface {
         // TODO result sets: no reset possible for larger remote result sets
         try {
             synchronized (session) {
+                discardPrefetchedRows();
                 session.traceOperation("RESULT_CLOSE", id);
                 transfer.writeInt(SessionRemote.RESULT_CLOSE).writeInt(id);
             }
@@ -223,26 +244,32 @@ public class ResultRemote implements ResultInterface {
                 result.clear();
                 int fetch = Math.min(fetchSize, rowCount - rowOffset);
                 if (sendFetch) {
-                    session.traceOperation("RESULT_FETCH_ROWS", id);
-                    transfer.writeInt(SessionRemote.RESULT_FETCH_ROWS).
-                            writeInt(id).writeInt(fetch);
-                    session.done(transfer);
-                }
-                for (int r = 0; r < fetch; r++) {
-                    boolean row = transfer.readBoolean();
-                    if (!row) {
-                        break;
+                    if (prefetchCount > 0) {
+                        session.readPrefetchedRows();
+                    }
+                    if (prefetchError != null) {
+                        DbException e = prefetchError;
+                        prefetchError = null;
+                        throw e;
                     }
-                    int len = columns.length;
-                    Value[] values = new Value[len];
-                    for (int i = 0; i < len; i++) {
-                        Value v = transfer.readValue();
-                        values[i] = v;
+                    if (prefetched != null) {
+                        result = prefetched;
+                        prefetched = null;
+                    } else {
+                        session.traceOperation("RESULT_FETCH_ROWS", id);
+                        transfer.writeInt(SessionRemote.RESULT_FETCH_ROWS).
+                                writeInt(id).writeInt(fetch);
+                        session.done(transfer);
+                        readRows(result, fetch);
                     }
-                    result.add(values);
+                } else {
+                    readRows(result, fetch);
                 }
-                if (rowOffset + result.size() >= rowCount) {
+                int remaining = rowCount - rowOffset - result.size();
+                if (remaining <= 0) {
                     sendClose();
+                } else if (session.isPrefetchAllowed()) {
+                    sendPrefetch(Math.min(fetchSize, remaining));
                 }
             } catch (IOException e) {
                 throw DbException.convertIOException(e, null);
@@ -250,6 +277,67 @@ public class ResultRemote implements ResultInterface {
         }
     }
 
+    private void readRows(ArrayList<Value[]> rows, int fetch)
+            throws IOException {
+        for (int r = 0; r < fetch; r++) {
+            boolean row = transfer.readBoolean();
+            if (!row) {
+                break;
+            }
+            int len = columns.length;
+            Value[] values = new Value[len];
+            for (int i = 0; i < len; i++) {
+                Value v = transfer.readValue();
+                values[i] = v;
+            }
+            rows.add(values);
+        }
+    }
+
+    /**
+     * Request the next block of rows, without waiting for the response. The
+     * response is read when the rows are needed, or before the response of
+     * the next operation of this session.
+     *
+     * @param fetch the number of rows
+     */
+    private void sendPrefetch(int fetch) throws IOException {
+        session.readPrefetchedRows();
+        session.traceOperation("RESULT_FETCH_ROWS", id);
+        transfer.writeInt(SessionRemote.RESULT_FETCH_ROWS).
+                writeInt(id).writeInt(fetch).flush();
+        prefetchCount = fetch;
+        session.setPrefetchResult(this);
+    }
+
+    /**
+     * Read the rows that were requested in advance. This method is called by
+     * the session.
+     */
+    public void readPrefetchedRows() throws IOException {
+        int fetch = prefetchCount;
+        prefetchCount = 0;
+        ArrayList<Value[]> rows = New.arrayList();
+        try {
+            session.done(transfer);
+            readRows(rows, fetch);
+            prefetched = rows;
+        } catch (DbException e) {
+            prefetchError = e;
+        } catch (IOException e) {
+            prefetchError = DbException.convertIOException(e, null);
+            throw e;
+        }
+    }
+
+    private void discardPrefetchedRows() throws IOException {
+        if (prefetchCount > 0) {
+            session.readPrefetchedRows();
+        }
+        prefetched = null;
+        prefetchError = null;
+    }
+
     @Override
     public String toString() {
         return "columns: " + columns.length + " rows: " + rowCount + " pos: " + rowId;
@@ -9,6 +9,7 @@ import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.UnknownHostException;
+import java.nio.channels.ServerSocketChannel;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
@@ -56,9 +57,12 @@ public class TcpServer implements Service {
     private boolean portIsSet;
     private boolean trace;
     private boolean ssl;
-    private boolean stop;
+    private volatile boolean stop;
     private ShutdownHandler shutdownHandler;
     private ServerSocket serverSocket;
+    private ServerSocketChannel serverChannel;
+    private int workerCount;
+    private TcpServerSelector selector;
     private final Set<TcpServerThread> running =
             Collections.synchronizedSet(new HashSet<TcpServerThread>());
     private String baseDir;
@@ -188,6 +192,8 @@ public class TcpServer implements Service {
                 isDaemon = true;
             } else if (Tool.isOption(a, "-ifExists")) {
                 ifExists = true;
+            } else if (Tool.isOption(a, "-tcpWorkers")) {
+                workerCount = Integer.decode(args[++i]);
             }
         }
         org.h2.Driver.load();
@@ -225,13 +231,26 @@ public class TcpServer implements Service {
     @Override
     public synchronized void start() throws SQLException {
         stop = false;
-        try {
-            serverSocket = NetUtils.createServerSocket(port, ssl);
-        } catch (DbException e) {
-            if (!portIsSet) {
-                serverSocket = NetUtils.createServerSocket(0, ssl);
-            } else {
-                throw e;
+        if (workerCount > 0 && !ssl) {
+            try {
+                serverChannel = NetUtils.createServerSocketChannel(port);
+            } catch (DbException e) {
+                if (!portIsSet) {
+                    serverChannel = NetUtils.createServerSocketChannel(0);
+                } else {
+                    throw e;
+                }
+            }
+            serverSocket = serverChannel.socket();
+        } else {
+            try {
+                serverSocket = NetUtils.createServerSocket(port, ssl);
+            } catch (DbException e) {
+                if (!portIsSet) {
+                    serverSocket = NetUtils.createServerSocket(0, ssl);
+                } else {
+                    throw e;
+                }
             }
         }
         port = serverSocket.getLocalPort();
@@ -243,16 +262,23 @@ public class TcpServer implements Service {
         listenerThread = Thread.currentThread();
         String threadName = listenerThread.getName();
         try {
+            if (serverChannel != null) {
+                selector = new TcpServerSelector(this, serverChannel,
+                        workerCount, threadName, isDaemon);
+                if (!stop) {
+                    selector.run();
+                }
+            }
             while (!stop) {
                 Socket s = serverSocket.accept();
-                TcpServerThread c = new TcpServerThread(s, this, nextThreadId++);
-                running.add(c);
+                TcpServerThread c = newConnection(s);
                 Thread thread = new Thread(c, threadName + " thread");
                 thread.setDaemon(isDaemon);
                 c.setThread(thread);
                 thread.start();
             }
             serverSocket = NetUtils.closeSilently(serverSocket);
+            serverChannel = null;
         } catch (Exception e) {
             if (!stop) {
                 DbException.traceThrowable(e);
@@ -261,6 +287,27 @@ public class TcpServer implements Service {
         stopManagementDb();
     }
 
+    /**
+     * Register a new client connection.
+     *
+     * @param socket the socket of the connection
+     * @return the connection
+     */
+    TcpServerThread newConnection(Socket socket) {
+        TcpServerThread c = new TcpServerThread(socket, this, nextThreadId++);
+        running.add(c);
+        return c;
+    }
+
+    /**
+     * Check whether the server was stopped.
+     *
+     * @return true if it was stopped
+     */
+    boolean isStopped() {
+        return stop;
+    }
+
     @Override
     public synchronized boolean isRunning(boolean traceError) {
         if (serverSocket == null) {
@@ -297,6 +344,9 @@ public class TcpServer implements Service {
                 }
                 serverSocket = null;
             }
+            if (selector != null) {
+                selector.wakeup();
+            }
             if (listenerThread != null) {
                 try {
                     listenerThread.join(1000);
@@ -310,7 +360,10 @@ public class TcpServer implements Service {
             if (c != null) {
                 c.close();
                 try {
-                    c.getThread().join(100);
+                    Thread thread = c.getThread();
+                    if (thread != null) {
+                        thread.join(100);
+                    }
                 } catch (Exception e) {
                     DbException.traceThrowable(e);
                 }
@@ -345,6 +398,9 @@ public class TcpServer implements Service {
         if (shutdownMode == SHUTDOWN_NORMAL) {
             server.stopManagementDb();
             server.stop = true;
+            if (server.selector != null) {
+                server.selector.wakeup();
+            }
             try {
                 Socket s = NetUtils.createLoopbackSocket(port, false);
                 s.close();
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2004-2014 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.server;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.h2.util.New;
+
+/**
+ * Serves the connections of a TCP server using a selector, so that idle
+ * connections don't need a thread. Once a request arrives on a connection, the
+ * connection is removed from the selector and handed to a worker of a pool.
+ * The worker processes the requests using blocking I/O, as the protocol is
+ * the same as with one thread per connection, and then gives the connection
+ * back to the selector.
+ * <p>
+ * A request that waits for a lock keeps its worker. So that the request
+ * that releases the lock can still be processed, a new worker is started if
+ * all workers are busy. At most one worker per connection is used, and the
+ * workers beyond the configured number are stopped once they are idle.
+ */
+class TcpServerSelector {
+
+    /**
+     * The number of seconds after which an additional worker that is idle
+     * is stopped.
+     */
+    private static final int KEEP_ALIVE_SECONDS = 60;
+
+    private final TcpServer server;
+    private final ServerSocketChannel serverChannel;
+    private final Selector selector;
+    private final ExecutorService workers;
+
+    /**
+     * The connections that are waiting to be registered with the selector
+     * again.
+     */
+    private final ArrayList<TcpServerThread> idle = New.arrayList();
+
+    TcpServerSelector(TcpServer server, ServerSocketChannel serverChannel,
+            int workerCount, final String threadName, final boolean daemon)
+            throws IOException {
+        this.server = server;
+        this.serverChannel = serverChannel;
+        selector = Selector.open();
+        workers = new ThreadPoolExecutor(workerCount, Integer.MAX_VALUE,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(), new ThreadFactory() {
+            private int id;
+
+            @Override
+            public synchronized Thread newThread(Runnable r) {
+                Thread t = new Thread(r, threadName + " worker " + id++);
+                t.setDaemon(daemon);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Accept connections and dispatch requests until the server is stopped.
+     */
+    void run() throws IOException {
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        ArrayList<TcpServerThread> ready = New.arrayList();
+        try {
+            while (!server.isStopped()) {
+                selector.select();
+                registerIdle();
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else if (key.isReadable()) {
+                        key.cancel();
+                        ready.add((TcpServerThread) key.attachment());
+                    }
+                }
+                if (ready.isEmpty()) {
+                    continue;
+                }
+                // the channels can only be switched to blocking mode
+                // once the cancelled keys are removed from the selector
+                selector.selectNow();
+                selector.selectedKeys().clear();
+                for (final TcpServerThread c : ready) {
+                    workers.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            process(c);
+                        }
+                    });
+                }
+                ready.clear();
+            }
+        } finally {
+            close();
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        TcpServerThread c = server.newConnection(channel.socket());
+        channel.configureBlocking(false);
+        channel.register(selector, SelectionKey.OP_READ, c);
+    }
+
+    private void registerIdle() {
+        synchronized (idle) {
+            for (TcpServerThread c : idle) {
+                try {
+                    getChannel(c).register(selector, SelectionKey.OP_READ, c);
+                } catch (IOException e) {
+                    server.traceError(e);
+                    c.close();
+                }
+            }
+            idle.clear();
+        }
+    }
+
+    private void process(TcpServerThread c) {
+        SocketChannel channel = getChannel(c);
+        try {
+            channel.configureBlocking(true);
+            if (!c.processAvailable()) {
+                return;
+            }
+            channel.configureBlocking(false);
+        } catch (Exception e) {
+            server.traceError(e);
+            c.close();
+            return;
+        }
+        synchronized (idle) {
+            if (!selector.isOpen()) {
+                c.close();
+                return;
+            }
+            idle.add(c);
+        }
+        selector.wakeup();
+    }
+
+    private static SocketChannel getChannel(TcpServerThread c) {
+        return c.transfer.getSocket().getChannel();
+    }
+
+    /**
+     * Wake up the selector, so that it notices when the server is stopped.
+     */
+    void wakeup() {
+        selector.wakeup();
+    }
+
+    /**
+     * Stop accepting connections and close the idle connections. Requests
+     * that are processed right now are not interrupted, but the connection is
+     * closed afterwards.
+     */
+    private void close() {
+        workers.shutdown();
+        synchronized (idle) {
+            if (!selector.isOpen()) {
+                return;
+            }
+            for (SelectionKey key : selector.keys()) {
+                Object c = key.attachment();
+                if (c instanceof TcpServerThread) {
+                    ((TcpServerThread) c).close();
+                }
+            }
+            for (TcpServerThread c : idle) {
+                c.close();
+            }
+            idle.clear();
+            try {
+                selector.close();
+            } catch (IOException e) {
+                server.traceError(e);
+            }
+        }
+    }
+
+}
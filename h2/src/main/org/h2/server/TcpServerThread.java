@@ -37,9 +37,11 @@ import org.h2.util.StringUtils;
 import org.h2.value.Transfer;
 import org.h2.value.Value;
 import org.h2.value.ValueLobDb;
+import org.h2.value.ValueNull;
 
 /**
- * One server thread is opened per client connection.
+ * One server thread is opened per client connection. If the server uses a
+ * selector, the requests are processed by a pool of worker threads instead.
  */
 public class TcpServerThread implements Runnable {
 
@@ -47,6 +49,7 @@ public class TcpServerThread implements Runnable {
     private final TcpServer server;
     private Session session;
     private boolean stop;
+    private boolean connected;
     private Thread thread;
     private Command commit;
     private final SmallMap cache =
@@ -73,92 +76,9 @@ public class TcpServerThread implements Runnable {
     @Override
     public void run() {
         try {
-            transfer.init();
-            trace("Connect");
-            // TODO server: should support a list of allowed databases
-            // and a list of allowed clients
-            try {
-                if (!server.allow(transfer.getSocket())) {
-                    throw DbException.get(ErrorCode.REMOTE_CONNECTION_NOT_ALLOWED);
-                }
-                int minClientVersion = transfer.readInt();
-                int maxClientVersion = transfer.readInt();
-                if (maxClientVersion < Constants.TCP_PROTOCOL_VERSION_6) {
-                    throw DbException.get(ErrorCode.DRIVER_VERSION_ERROR_2,
-                            "" + clientVersion, "" + Constants.TCP_PROTOCOL_VERSION_6);
-                } else if (minClientVersion > Constants.TCP_PROTOCOL_VERSION_16) {
-                    throw DbException.get(ErrorCode.DRIVER_VERSION_ERROR_2,
-                            "" + clientVersion, "" + Constants.TCP_PROTOCOL_VERSION_16);
-                }
-                if (maxClientVersion >= Constants.TCP_PROTOCOL_VERSION_16) {
-                    clientVersion = Constants.TCP_PROTOCOL_VERSION_16;
-                } else {
-                    clientVersion = maxClientVersion;
-                }
-                transfer.setVersion(clientVersion);
-                String db = transfer.readString();
-                String originalURL = transfer.readString();
-                if (db == null && originalURL == null) {
-                    String targetSessionId = transfer.readString();
-                    int command = transfer.readInt();
-                    stop = true;
-                    if (command == SessionRemote.SESSION_CANCEL_STATEMENT) {
-                        // cancel a running statement
-                        int statementId = transfer.readInt();
-                        server.cancelStatement(targetSessionId, statementId);
-                    } else if (command == SessionRemote.SESSION_CHECK_KEY) {
-                        // check if this is the correct server
-                        db = server.checkKeyAndGetDatabaseName(targetSessionId);
-                        if (!targetSessionId.equals(db)) {
-                            transfer.writeInt(SessionRemote.STATUS_OK);
-                        } else {
-                            transfer.writeInt(SessionRemote.STATUS_ERROR);
-                        }
-                    }
-                }
-                String baseDir = server.getBaseDir();
-                if (baseDir == null) {
-                    baseDir = SysProperties.getBaseDir();
-                }
-                db = server.checkKeyAndGetDatabaseName(db);
-                ConnectionInfo ci = new ConnectionInfo(db);
-                ci.setOriginalURL(originalURL);
-                ci.setUserName(transfer.readString());
-                ci.setUserPasswordHash(transfer.readBytes());
-                ci.setFilePasswordHash(transfer.readBytes());
-                int len = transfer.readInt();
-                for (int i = 0; i < len; i++) {
-                    ci.setProperty(transfer.readString(), transfer.readString());
-                }
-                // override client's requested properties with server settings
-                if (baseDir != null) {
-                    ci.setBaseDir(baseDir);
-                }
-                if (server.getIfExists()) {
-                    ci.setProperty("IFEXISTS", "TRUE");
-                }
-                transfer.writeInt(SessionRemote.STATUS_OK);
-                transfer.writeInt(clientVersion);
-                transfer.flush();
-                if (clientVersion >= Constants.TCP_PROTOCOL_VERSION_13) {
-                    if (ci.getFilePasswordHash() != null) {
-                        ci.setFileEncryptionKey(transfer.readBytes());
-                    }
-                }
-                session = Engine.getInstance().createSession(ci);
-                transfer.setSession(session);
-                server.addConnection(threadId, originalURL, ci.getUserName());
-                trace("Connected");
-            } catch (Throwable e) {
-                sendError(e);
-                stop = true;
-            }
+            connect();
             while (!stop) {
-                try {
-                    process();
-                } catch (Throwable e) {
-                    sendError(e);
-                }
+                processRequest();
             }
             trace("Disconnect");
         } catch (Throwable e) {
@@ -168,6 +88,135 @@ public class TcpServerThread implements Runnable {
         }
     }
 
+    /**
+     * Process the requests that were already received on this connection,
+     * without waiting for more. The first call reads the connection request.
+     * This is used if the connection is served by a selector instead of a
+     * dedicated thread.
+     *
+     * @return false if the connection was closed
+     */
+    boolean processAvailable() {
+        try {
+            if (!connected) {
+                connect();
+            } else {
+                processRequest();
+            }
+            while (!stop && transfer.hasBufferedInput()) {
+                processRequest();
+            }
+        } catch (Throwable e) {
+            server.traceError(e);
+            stop = true;
+        }
+        if (stop) {
+            trace("Disconnect");
+            close();
+            return false;
+        }
+        return true;
+    }
+
+    private void processRequest() {
+        try {
+            process();
+        } catch (Throwable e) {
+            sendError(e);
+        }
+    }
+
+    private void connect() throws IOException {
+        connected = true;
+        transfer.init();
+        trace("Connect");
+        // TODO server: should support a list of allowed databases
+        // and a list of allowed clients
+        try {
+            if (!server.allow(transfer.getSocket())) {
+                throw DbException.get(ErrorCode.REMOTE_CONNECTION_NOT_ALLOWED);
+            }
+            int minClientVersion = transfer.readInt();
+            int maxClientVersion = transfer.readInt();
+            if (maxClientVersion < Constants.TCP_PROTOCOL_VERSION_6) {
+                throw DbException.get(ErrorCode.DRIVER_VERSION_ERROR_2,
+                        "" + clientVersion, "" + Constants.TCP_PROTOCOL_VERSION_6);
+            } else if (minClientVersion > Constants.TCP_PROTOCOL_VERSION_18) {
+                throw DbException.get(ErrorCode.DRIVER_VERSION_ERROR_2,
+                        "" + clientVersion, "" + Constants.TCP_PROTOCOL_VERSION_18);
+            }
+            if (maxClientVersion >= Constants.TCP_PROTOCOL_VERSION_18) {
+                clientVersion = Constants.TCP_PROTOCOL_VERSION_18;
+            } else {
+                clientVersion = maxClientVersion;
+            }
+            String db = transfer.readString();
+            String originalURL = transfer.readString();
+            if (db == null && originalURL == null) {
+                String targetSessionId = transfer.readString();
+                int command = transfer.readInt();
+                stop = true;
+                if (command == SessionRemote.SESSION_CANCEL_STATEMENT) {
+                    // cancel a running statement
+                    int statementId = transfer.readInt();
+                    server.cancelStatement(targetSessionId, statementId);
+                } else if (command == SessionRemote.SESSION_CHECK_KEY) {
+                    // check if this is the correct server
+                    db = server.checkKeyAndGetDatabaseName(targetSessionId);
+                    if (!targetSessionId.equals(db)) {
+                        transfer.writeInt(SessionRemote.STATUS_OK);
+                    } else {
+                        transfer.writeInt(SessionRemote.STATUS_ERROR);
+                    }
+                }
+            }
+            String baseDir = server.getBaseDir();
+            if (baseDir == null) {
+                baseDir = SysProperties.getBaseDir();
+            }
+            db = server.checkKeyAndGetDatabaseName(db);
+            ConnectionInfo ci = new ConnectionInfo(db);
+            ci.setOriginalURL(originalURL);
+            ci.setUserName(transfer.readString());
+            ci.setUserPasswordHash(transfer.readBytes());
+            ci.setFilePasswordHash(transfer.readBytes());
+            int len = transfer.readInt();
+            for (int i = 0; i < len; i++) {
+                ci.setProperty(transfer.readString(), transfer.readString());
+            }
+            // override client's requested properties with server settings
+            if (baseDir != null) {
+                ci.setBaseDir(baseDir);
+            }
+            if (server.getIfExists()) {
+                ci.setProperty("IFEXISTS", "TRUE");
+            }
+            // the connection request, and errors up to here,
+            // use the string format of the old versions
+            transfer.setVersion(clientVersion);
+            transfer.writeInt(SessionRemote.STATUS_OK);
+            transfer.writeInt(clientVersion);
+            transfer.flush();
+            if (clientVersion >= Constants.TCP_PROTOCOL_VERSION_18) {
+                if (transfer.readBoolean()) {
+                    transfer.setCompressed();
+                }
+            }
+            if (clientVersion >= Constants.TCP_PROTOCOL_VERSION_13) {
+                if (ci.getFilePasswordHash() != null) {
+                    ci.setFileEncryptionKey(transfer.readBytes());
+                }
+            }
+            session = Engine.getInstance().createSession(ci);
+            transfer.setSession(session);
+            server.addConnection(threadId, originalURL, ci.getUserName());
+            trace("Connected");
+        } catch (Throwable e) {
+            sendError(e);
+            stop = true;
+        }
+    }
+
     private void closeSession() {
         if (session != null) {
             RuntimeException closeError = null;
@@ -217,23 +266,8 @@ public class TcpServerThread implements Runnable {
 
     private void sendError(Throwable t) {
         try {
-            SQLException e = DbException.convert(t).getSQLException();
-            StringWriter writer = new StringWriter();
-            e.printStackTrace(new PrintWriter(writer));
-            String trace = writer.toString();
-            String message;
-            String sql;
-            if (e instanceof JdbcSQLException) {
-                JdbcSQLException j = (JdbcSQLException) e;
-                message = j.getOriginalMessage();
-                sql = j.getSQL();
-            } else {
-                message = e.getMessage();
-                sql = null;
-            }
-            transfer.writeInt(SessionRemote.STATUS_ERROR).
-                    writeString(e.getSQLState()).writeString(message).
-                    writeString(sql).writeInt(e.getErrorCode()).writeString(trace).flush();
+            writeError(t);
+            transfer.flush();
         } catch (Exception e2) {
             if (!transfer.isClosed()) {
                 server.traceError(e2);
@@ -243,6 +277,26 @@ public class TcpServerThread implements Runnable {
         }
     }
 
+    private void writeError(Throwable t) throws IOException {
+        SQLException e = DbException.convert(t).getSQLException();
+        StringWriter writer = new StringWriter();
+        e.printStackTrace(new PrintWriter(writer));
+        String trace = writer.toString();
+        String message;
+        String sql;
+        if (e instanceof JdbcSQLException) {
+            JdbcSQLException j = (JdbcSQLException) e;
+            message = j.getOriginalMessage();
+            sql = j.getSQL();
+        } else {
+            message = e.getMessage();
+            sql = null;
+        }
+        transfer.writeInt(SessionRemote.STATUS_ERROR).
+                writeString(e.getSQLState()).writeString(message).
+                writeString(sql).writeInt(e.getErrorCode()).writeString(trace);
+    }
+
     private void setParameters(Command command) throws IOException {
         int len = transfer.readInt();
         ArrayList<? extends ParameterInterface> params = command.getParameters();
@@ -365,6 +419,63 @@ public class TcpServerThread implements Runnable {
             transfer.flush();
             break;
         }
+        case SessionRemote.COMMAND_EXECUTE_BATCH_UPDATE: {
+            int id = transfer.readInt();
+            Command command = (Command) cache.getObject(id, false);
+            int size = transfer.readInt();
+            // read the whole batch first, as the client only starts reading
+            // the response after it has sent all parameter sets
+            Value[][] batch = new Value[size][];
+            for (int i = 0; i < size; i++) {
+                int len = transfer.readInt();
+                Value[] set = new Value[len];
+                for (int j = 0; j < len; j++) {
+                    set[j] = transfer.readValue();
+                }
+                batch[i] = set;
+            }
+            ArrayList<? extends ParameterInterface> params = command.getParameters();
+            int[] updateCounts = new int[size];
+            Value[] keys = new Value[size];
+            Throwable[] errors = new Throwable[size];
+            int old = session.getModificationId();
+            synchronized (session) {
+                for (int i = 0; i < size; i++) {
+                    Value[] set = batch[i];
+                    for (int j = 0; j < set.length; j++) {
+                        Parameter p = (Parameter) params.get(j);
+                        p.setValue(set[j]);
+                    }
+                    try {
+                        updateCounts[i] = command.executeUpdate();
+                        keys[i] = session.getLastScopeIdentity();
+                    } catch (Throwable e) {
+                        errors[i] = e;
+                    }
+                }
+            }
+            int status;
+            if (session.isClosed()) {
+                status = SessionRemote.STATUS_CLOSED;
+                stop = true;
+            } else {
+                status = getState(old);
+            }
+            transfer.writeInt(status);
+            for (int i = 0; i < size; i++) {
+                if (errors[i] != null) {
+                    writeError(errors[i]);
+                } else {
+                    Value key = keys[i];
+                    transfer.writeInt(SessionRemote.STATUS_OK).
+                            writeInt(updateCounts[i]).
+                            writeValue(key == null ? ValueNull.INSTANCE : key);
+                }
+            }
+            transfer.writeBoolean(session.getAutoCommit());
+            transfer.flush();
+            break;
+        }
         case SessionRemote.COMMAND_CLOSE: {
             int id = transfer.readInt();
             Command command = (Command) cache.getObject(id, true);
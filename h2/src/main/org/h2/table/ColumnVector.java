@@ -0,0 +1,794 @@
+/*
+ * Copyright 2004-2014 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.table;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import org.h2.engine.Constants;
+import org.h2.util.New;
+import org.h2.value.Value;
+import org.h2.value.ValueBoolean;
+import org.h2.value.ValueByte;
+import org.h2.value.ValueDate;
+import org.h2.value.ValueInt;
+import org.h2.value.ValueLong;
+import org.h2.value.ValueNull;
+import org.h2.value.ValueShort;
+import org.h2.value.ValueTime;
+import org.h2.value.ValueTimestamp;
+
+/**
+ * The values of one column of a columnar table. Values are appended, and
+ * accessed by position. The rows are split into blocks of BLOCK_SIZE rows;
+ * full blocks are compressed.
+ */
+public abstract class ColumnVector {
+
+    /**
+     * The number of bits of the position within a block.
+     */
+    public static final int BLOCK_SHIFT = 10;
+
+    /**
+     * The number of rows of a block.
+     */
+    public static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+
+    private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+
+    /**
+     * The number of values.
+     */
+    protected int size;
+
+    /**
+     * The number of NULL values in each block.
+     */
+    private int[] nullCounts = new int[16];
+
+    /**
+     * The positions of NULL values.
+     */
+    private boolean[][] nulls = new boolean[16][];
+
+    /**
+     * Create a vector for the given column. Integer, date and time columns
+     * are stored as long values, and VARCHAR columns use a dictionary. Other
+     * columns are stored as value objects.
+     *
+     * @param column the column
+     * @return the vector
+     */
+    public static ColumnVector create(Column column) {
+        int type = column.getType();
+        switch (type) {
+        case Value.BOOLEAN:
+        case Value.BYTE:
+        case Value.SHORT:
+        case Value.INT:
+        case Value.LONG:
+        case Value.DATE:
+        case Value.TIME:
+            return new LongVector(type);
+        case Value.TIMESTAMP:
+            return new TimestampVector();
+        case Value.STRING:
+        case Value.STRING_IGNORECASE:
+        case Value.STRING_FIXED:
+            return new DictionaryVector();
+        default:
+            return new ValueVector();
+        }
+    }
+
+    /**
+     * Append a value.
+     *
+     * @param v the value
+     */
+    public final void add(Value v) {
+        int pos = size;
+        int block = pos >>> BLOCK_SHIFT;
+        if (v == ValueNull.INSTANCE) {
+            if (block >= nullCounts.length) {
+                int len = Math.max(nullCounts.length * 2, block + 1);
+                nullCounts = Arrays.copyOf(nullCounts, len);
+                nulls = Arrays.copyOf(nulls, len);
+            }
+            if (nulls[block] == null) {
+                nulls[block] = new boolean[BLOCK_SIZE];
+            }
+            nulls[block][pos & BLOCK_MASK] = true;
+            nullCounts[block]++;
+            addValue(null);
+        } else {
+            addValue(v);
+        }
+        size++;
+    }
+
+    /**
+     * Get the value at the given position.
+     *
+     * @param pos the position
+     * @return the value
+     */
+    public final Value get(int pos) {
+        if (isNull(pos)) {
+            return ValueNull.INSTANCE;
+        }
+        return getValue(pos);
+    }
+
+    private boolean isNull(int pos) {
+        int block = pos >>> BLOCK_SHIFT;
+        return block < nulls.length && nulls[block] != null &&
+                nulls[block][pos & BLOCK_MASK];
+    }
+
+    /**
+     * Get the number of values.
+     *
+     * @return the number of values
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the approximate memory used by this vector.
+     *
+     * @return the number of bytes
+     */
+    public long getMemory() {
+        long memory = nullCounts.length * 4 + nulls.length * Constants.MEMORY_POINTER;
+        for (boolean[] n : nulls) {
+            if (n != null) {
+                memory += n.length;
+            }
+        }
+        return memory;
+    }
+
+    /**
+     * Create a filter for the given range. A bound that is null is not used.
+     * If both bounds are NULL, only rows with a NULL value match. Otherwise,
+     * rows with a NULL value never match.
+     *
+     * @param table the table (used to compare values)
+     * @param min the lower bound (inclusive), or null
+     * @param max the upper bound (inclusive), or null
+     * @return the filter, or null if all rows match
+     */
+    public Filter createFilter(Table table, Value min, Value max) {
+        if (min == ValueNull.INSTANCE && max == ValueNull.INSTANCE) {
+            return new Filter(this, true) {
+                @Override
+                protected void filterValues(int block, int count, boolean[] match) {
+                    Arrays.fill(match, 0, count, false);
+                }
+            };
+        }
+        if (min == ValueNull.INSTANCE) {
+            min = null;
+        }
+        if (max == ValueNull.INSTANCE) {
+            max = null;
+        }
+        if (min == null && max == null) {
+            return null;
+        }
+        return createRangeFilter(table, min, max);
+    }
+
+    /**
+     * Create a filter for the given range of non-NULL values.
+     *
+     * @param table the table (used to compare values)
+     * @param min the lower bound (inclusive), or null
+     * @param max the upper bound (inclusive), or null
+     * @return the filter
+     */
+    protected Filter createRangeFilter(final Table table, final Value min,
+            final Value max) {
+        return new Filter(this, false) {
+            @Override
+            protected void filterValues(int block, int count, boolean[] match) {
+                int start = block << BLOCK_SHIFT;
+                for (int i = 0; i < count; i++) {
+                    if (match[i]) {
+                        Value v = getValue(start + i);
+                        if (min != null && table.compareTypeSafe(v, min) < 0 ||
+                                max != null && table.compareTypeSafe(v, max) > 0) {
+                            match[i] = false;
+                        }
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Append a value.
+     *
+     * @param v the value, or null for NULL
+     */
+    protected abstract void addValue(Value v);
+
+    /**
+     * Get the non-NULL value at the given position.
+     *
+     * @param pos the position
+     * @return the value
+     */
+    protected abstract Value getValue(int pos);
+
+    /**
+     * A filter that is evaluated on the values of a block.
+     */
+    public abstract static class Filter {
+
+        private final ColumnVector vector;
+        private final boolean matchNull;
+
+        Filter(ColumnVector vector, boolean matchNull) {
+            this.vector = vector;
+            this.matchNull = matchNull;
+        }
+
+        /**
+         * Clear the flags of the rows of a block that don't match.
+         *
+         * @param block the block
+         * @param count the number of rows of the block
+         * @param match the flags (one for each row of the block)
+         */
+        public void filter(int block, int count, boolean[] match) {
+            boolean[][] nulls = vector.nulls;
+            boolean[] n = block < nulls.length ? nulls[block] : null;
+            if (n == null || vector.nullCounts[block] == 0) {
+                filterValues(block, count, match);
+            } else if (matchNull) {
+                for (int i = 0; i < count; i++) {
+                    match[i] &= n[i];
+                }
+            } else {
+                for (int i = 0; i < count; i++) {
+                    if (n[i]) {
+                        match[i] = false;
+                    }
+                }
+                filterValues(block, count, match);
+            }
+        }
+
+        /**
+         * Clear the flags of the rows of a block that don't match. This is
+         * only called for non-NULL rows.
+         *
+         * @param block the block
+         * @param count the number of rows of the block
+         * @param match the flags
+         */
+        protected abstract void filterValues(int block, int count,
+                boolean[] match);
+    }
+
+    /**
+     * A list of long values. Full blocks are stored as the difference to the
+     * smallest value of the block, using 0, 1, 2, 4, or 8 bytes per value.
+     * The smallest and largest value of each block are kept, so that blocks
+     * can be skipped when filtering.
+     */
+    static final class LongBlocks {
+
+        private Object[] blocks = new Object[16];
+        private long[] minValues = new long[16];
+        private long[] maxValues = new long[16];
+        private long[] last = new long[BLOCK_SIZE];
+        private int size;
+
+        /**
+         * Append a value.
+         *
+         * @param x the value
+         */
+        void add(long x) {
+            last[size & BLOCK_MASK] = x;
+            size++;
+            if ((size & BLOCK_MASK) == 0) {
+                seal((size - 1) >>> BLOCK_SHIFT);
+            }
+        }
+
+        private void seal(int block) {
+            long min = last[0], max = min;
+            for (int i = 1; i < BLOCK_SIZE; i++) {
+                long x = last[i];
+                if (x < min) {
+                    min = x;
+                } else if (x > max) {
+                    max = x;
+                }
+            }
+            if (block >= blocks.length) {
+                int len = blocks.length * 2;
+                blocks = Arrays.copyOf(blocks, len);
+                minValues = Arrays.copyOf(minValues, len);
+                maxValues = Arrays.copyOf(maxValues, len);
+            }
+            minValues[block] = min;
+            maxValues[block] = max;
+            long range = max - min;
+            Object data;
+            if (range == 0) {
+                data = null;
+            } else if (range < 0 || range > 0xffffffffL) {
+                // if the range overflows, the differences still
+                // add up to the right values
+                long[] d = new long[BLOCK_SIZE];
+                for (int i = 0; i < BLOCK_SIZE; i++) {
+                    d[i] = last[i] - min;
+                }
+                data = d;
+            } else if (range <= 0xff) {
+                byte[] d = new byte[BLOCK_SIZE];
+                for (int i = 0; i < BLOCK_SIZE; i++) {
+                    d[i] = (byte) (last[i] - min);
+                }
+                data = d;
+            } else if (range <= 0xffff) {
+                short[] d = new short[BLOCK_SIZE];
+                for (int i = 0; i < BLOCK_SIZE; i++) {
+                    d[i] = (short) (last[i] - min);
+                }
+                data = d;
+            } else {
+                int[] d = new int[BLOCK_SIZE];
+                for (int i = 0; i < BLOCK_SIZE; i++) {
+                    d[i] = (int) (last[i] - min);
+                }
+                data = d;
+            }
+            blocks[block] = data;
+        }
+
+        /**
+         * Get the value at the given position.
+         *
+         * @param pos the position
+         * @return the value
+         */
+        long get(int pos) {
+            int block = pos >>> BLOCK_SHIFT;
+            int i = pos & BLOCK_MASK;
+            if (!isSealed(block)) {
+                return last[i];
+            }
+            return decode(blocks[block], minValues[block], i);
+        }
+
+        private static long decode(Object data, long min, int i) {
+            if (data == null) {
+                return min;
+            } else if (data instanceof byte[]) {
+                return min + (((byte[]) data)[i] & 0xff);
+            } else if (data instanceof short[]) {
+                return min + (((short[]) data)[i] & 0xffff);
+            } else if (data instanceof int[]) {
+                return min + (((int[]) data)[i] & 0xffffffffL);
+            }
+            return min + ((long[]) data)[i];
+        }
+
+        /**
+         * Check whether the given block is full and compressed.
+         *
+         * @param block the block
+         * @return true if it is
+         */
+        boolean isSealed(int block) {
+            return block < (size >>> BLOCK_SHIFT);
+        }
+
+        /**
+         * Get the smallest value of a sealed block.
+         *
+         * @param block the block
+         * @return the smallest value
+         */
+        long getMin(int block) {
+            return minValues[block];
+        }
+
+        /**
+         * Get the largest value of a sealed block.
+         *
+         * @param block the block
+         * @return the largest value
+         */
+        long getMax(int block) {
+            return maxValues[block];
+        }
+
+        /**
+         * Clear the flags of the values of a block that are not in the range.
+         *
+         * @param block the block
+         * @param count the number of values of the block
+         * @param min the lower bound (inclusive)
+         * @param max the upper bound (inclusive)
+         * @param match the flags
+         */
+        void filter(int block, int count, long min, long max, boolean[] match) {
+            if (!isSealed(block)) {
+                for (int i = 0; i < count; i++) {
+                    long x = last[i];
+                    if (x < min || x > max) {
+                        match[i] = false;
+                    }
+                }
+                return;
+            }
+            long blockMin = minValues[block], blockMax = maxValues[block];
+            if (blockMax < min || blockMin > max) {
+                Arrays.fill(match, 0, count, false);
+                return;
+            } else if (blockMin >= min && blockMax <= max) {
+                return;
+            }
+            // compare the differences to the smallest value, which is
+            // possible because both bounds are within the range of the block
+            long lo = Math.max(min, blockMin) - blockMin;
+            long hi = Math.min(max, blockMax) - blockMin;
+            Object data = blocks[block];
+            if (data instanceof byte[]) {
+                byte[] d = (byte[]) data;
+                for (int i = 0; i < count; i++) {
+                    int x = d[i] & 0xff;
+                    if (x < lo || x > hi) {
+                        match[i] = false;
+                    }
+                }
+            } else if (data instanceof short[]) {
+                short[] d = (short[]) data;
+                for (int i = 0; i < count; i++) {
+                    int x = d[i] & 0xffff;
+                    if (x < lo || x > hi) {
+                        match[i] = false;
+                    }
+                }
+            } else if (data instanceof int[]) {
+                int[] d = (int[]) data;
+                for (int i = 0; i < count; i++) {
+                    long x = d[i] & 0xffffffffL;
+                    if (x < lo || x > hi) {
+                        match[i] = false;
+                    }
+                }
+            } else {
+                for (int i = 0; i < count; i++) {
+                    long x = decode(data, blockMin, i);
+                    if (x < min || x > max) {
+                        match[i] = false;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Get the approximate memory used.
+         *
+         * @return the number of bytes
+         */
+        long getMemory() {
+            long memory = blocks.length * (Constants.MEMORY_POINTER + 16) +
+                    last.length * 8;
+            for (Object data : blocks) {
+                if (data instanceof byte[]) {
+                    memory += BLOCK_SIZE;
+                } else if (data instanceof short[]) {
+                    memory += BLOCK_SIZE * 2;
+                } else if (data instanceof int[]) {
+                    memory += BLOCK_SIZE * 4;
+                } else if (data instanceof long[]) {
+                    memory += BLOCK_SIZE * 8;
+                }
+            }
+            return memory;
+        }
+
+    }
+
+    /**
+     * A vector of values that can be converted to long values without loss:
+     * boolean, integer, date and time values.
+     */
+    static final class LongVector extends ColumnVector {
+
+        private final int type;
+        private final LongBlocks data = new LongBlocks();
+        private long lastValue;
+
+        LongVector(int type) {
+            this.type = type;
+        }
+
+        @Override
+        protected void addValue(Value v) {
+            if (v != null) {
+                lastValue = toLong(v);
+            }
+            // for NULL, the last value is repeated,
+            // so that the range of the block doesn't change
+            data.add(lastValue);
+        }
+
+        private long toLong(Value v) {
+            switch (type) {
+            case Value.BOOLEAN:
+                return v.getBoolean() ? 1 : 0;
+            case Value.DATE:
+                return ((ValueDate) v.convertTo(Value.DATE)).getDateValue();
+            case Value.TIME:
+                return ((ValueTime) v.convertTo(Value.TIME)).getNanos();
+            default:
+                return v.getLong();
+            }
+        }
+
+        @Override
+        protected Value getValue(int pos) {
+            long x = data.get(pos);
+            switch (type) {
+            case Value.BOOLEAN:
+                return ValueBoolean.get(x != 0);
+            case Value.BYTE:
+                return ValueByte.get((byte) x);
+            case Value.SHORT:
+                return ValueShort.get((short) x);
+            case Value.INT:
+                return ValueInt.get((int) x);
+            case Value.DATE:
+                return ValueDate.fromDateValue(x);
+            case Value.TIME:
+                return ValueTime.fromNanos(x);
+            default:
+                return ValueLong.get(x);
+            }
+        }
+
+        private boolean isExact(Value v) {
+            int t = v.getType();
+            if (t == type) {
+                return true;
+            }
+            switch (type) {
+            case Value.BYTE:
+            case Value.SHORT:
+            case Value.INT:
+            case Value.LONG:
+                return t == Value.BYTE || t == Value.SHORT ||
+                        t == Value.INT || t == Value.LONG;
+            default:
+                return false;
+            }
+        }
+
+        @Override
+        protected Filter createRangeFilter(Table table, Value min, Value max) {
+            if (min != null && !isExact(min) || max != null && !isExact(max)) {
+                return super.createRangeFilter(table, min, max);
+            }
+            final long lo = min == null ? Long.MIN_VALUE : toLong(min);
+            final long hi = max == null ? Long.MAX_VALUE : toLong(max);
+            return new Filter(this, false) {
+                @Override
+                protected void filterValues(int block, int count, boolean[] match) {
+                    data.filter(block, count, lo, hi, match);
+                }
+            };
+        }
+
+        @Override
+        public long getMemory() {
+            return super.getMemory() + data.getMemory();
+        }
+
+    }
+
+    /**
+     * A vector of timestamp values. The date and the time are stored in two
+     * lists of long values.
+     */
+    static final class TimestampVector extends ColumnVector {
+
+        private final LongBlocks dateValues = new LongBlocks();
+        private final LongBlocks timeNanos = new LongBlocks();
+        private long lastDateValue, lastTimeNanos;
+
+        @Override
+        protected void addValue(Value v) {
+            if (v != null) {
+                ValueTimestamp ts = (ValueTimestamp) v.convertTo(Value.TIMESTAMP);
+                lastDateValue = ts.getDateValue();
+                lastTimeNanos = ts.getTimeNanos();
+            }
+            dateValues.add(lastDateValue);
+            timeNanos.add(lastTimeNanos);
+        }
+
+        @Override
+        protected Value getValue(int pos) {
+            return ValueTimestamp.fromDateValueAndNanos(dateValues.get(pos),
+                    timeNanos.get(pos));
+        }
+
+        @Override
+        protected Filter createRangeFilter(Table table, Value min, Value max) {
+            if (min != null && min.getType() != Value.TIMESTAMP ||
+                    max != null && max.getType() != Value.TIMESTAMP) {
+                return super.createRangeFilter(table, min, max);
+            }
+            final long minDate, minNanos, maxDate, maxNanos;
+            if (min == null) {
+                minDate = minNanos = Long.MIN_VALUE;
+            } else {
+                minDate = ((ValueTimestamp) min).getDateValue();
+                minNanos = ((ValueTimestamp) min).getTimeNanos();
+            }
+            if (max == null) {
+                maxDate = maxNanos = Long.MAX_VALUE;
+            } else {
+                maxDate = ((ValueTimestamp) max).getDateValue();
+                maxNanos = ((ValueTimestamp) max).getTimeNanos();
+            }
+            return new Filter(this, false) {
+                @Override
+                protected void filterValues(int block, int count, boolean[] match) {
+                    // the date must be within the range
+                    dateValues.filter(block, count, minDate, maxDate, match);
+                    // the time only needs to be checked on the first and the
+                    // last day
+                    int start = block << BLOCK_SHIFT;
+                    for (int i = 0; i < count; i++) {
+                        if (match[i]) {
+                            long d = dateValues.get(start + i);
+                            if (d == minDate && timeNanos.get(start + i) < minNanos ||
+                                    d == maxDate && timeNanos.get(start + i) > maxNanos) {
+                                match[i] = false;
+                            }
+                        }
+                    }
+                }
+            };
+        }
+
+        @Override
+        public long getMemory() {
+            return super.getMemory() + dateValues.getMemory() +
+                    timeNanos.getMemory();
+        }
+
+    }
+
+    /**
+     * A vector of string values. Each distinct value is stored once in a
+     * dictionary, and the rows contain the index of the value in the
+     * dictionary.
+     */
+    static final class DictionaryVector extends ColumnVector {
+
+        private final ArrayList<Value> dictionary = New.arrayList();
+        private final HashMap<String, Integer> ids = New.hashMap();
+        private final LongBlocks data = new LongBlocks();
+        private int lastId;
+        private long dictionaryMemory;
+
+        @Override
+        protected void addValue(Value v) {
+            if (v != null) {
+                // the key is the string, because values may be equal if
+                // they are different (for VARCHAR_IGNORECASE)
+                String s = v.getString();
+                Integer id = ids.get(s);
+                if (id == null) {
+                    id = dictionary.size();
+                    dictionary.add(v);
+                    ids.put(s, id);
+                    dictionaryMemory += v.getMemory() + 2 * Constants.MEMORY_POINTER;
+                }
+                lastId = id;
+            }
+            data.add(lastId);
+        }
+
+        @Override
+        protected Value getValue(int pos) {
+            return dictionary.get((int) data.get(pos));
+        }
+
+        @Override
+        protected Filter createRangeFilter(final Table table, final Value min,
+                final Value max) {
+            return new Filter(this, false) {
+
+                /**
+                 * Whether the dictionary entry matches: 0 if unknown, 1 if it
+                 * matches, 2 if not.
+                 */
+                private byte[] known = new byte[dictionary.size()];
+
+                @Override
+                protected void filterValues(int block, int count, boolean[] match) {
+                    int start = block << BLOCK_SHIFT;
+                    for (int i = 0; i < count; i++) {
+                        if (match[i] && !matches((int) data.get(start + i))) {
+                            match[i] = false;
+                        }
+                    }
+                }
+
+                private boolean matches(int id) {
+                    if (id >= known.length) {
+                        known = Arrays.copyOf(known,
+                                Math.max(id + 1, dictionary.size()));
+                    }
+                    byte k = known[id];
+                    if (k == 0) {
+                        Value v = dictionary.get(id);
+                        boolean m = (min == null || table.compareTypeSafe(v, min) >= 0) &&
+                                (max == null || table.compareTypeSafe(v, max) <= 0);
+                        k = m ? (byte) 1 : (byte) 2;
+                        known[id] = k;
+                    }
+                    return k == 1;
+                }
+            };
+        }
+
+        @Override
+        public long getMemory() {
+            return super.getMemory() + data.getMemory() + dictionaryMemory;
+        }
+
+    }
+
+    /**
+     * A vector of value objects, for data types that are not compressed.
+     */
+    static final class ValueVector extends ColumnVector {
+
+        private final ArrayList<Value[]> blocks = New.arrayList();
+        private long memory;
+
+        @Override
+        protected void addValue(Value v) {
+            int i = size & BLOCK_MASK;
+            if (i == 0) {
+                blocks.add(new Value[BLOCK_SIZE]);
+                memory += BLOCK_SIZE * Constants.MEMORY_POINTER;
+            }
+            blocks.get(size >>> BLOCK_SHIFT)[i] = v;
+            if (v != null) {
+                memory += v.getMemory();
+            }
+        }
+
+        @Override
+        protected Value getValue(int pos) {
+            return blocks.get(pos >>> BLOCK_SHIFT)[pos & BLOCK_MASK];
+        }
+
+        @Override
+        public long getMemory() {
+            return super.getMemory() + memory;
+        }
+
+    }
+
+}
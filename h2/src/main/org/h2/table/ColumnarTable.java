@@ -0,0 +1,423 @@
+/*
+ * Copyright 2004-2014 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.table;
+
+import java.util.ArrayList;
+import org.h2.command.ddl.CreateTableData;
+import org.h2.engine.Constants;
+import org.h2.engine.Session;
+import org.h2.index.ColumnarScanIndex;
+import org.h2.index.Index;
+import org.h2.index.IndexType;
+import org.h2.message.DbException;
+import org.h2.result.Row;
+import org.h2.result.SearchRow;
+import org.h2.store.Data;
+import org.h2.util.BitField;
+import org.h2.util.New;
+import org.h2.util.StatementBuilder;
+import org.h2.value.DataType;
+import org.h2.value.Value;
+import org.h2.value.ValueLong;
+
+/**
+ * A table that keeps the values of each column in a separate vector, in
+ * memory. This is meant for tables that are mostly appended to and are read
+ * using scans that only need a few columns. Rows are identified by their
+ * position. Deleted rows are only marked as deleted. Indexes are not
+ * supported, and the data is not persisted. Changes are visible to other
+ * sessions before they are committed.
+ */
+public class ColumnarTable extends TableBase {
+
+    private final ColumnarScanIndex scanIndex;
+    private final ArrayList<Index> indexes = New.arrayList();
+    private ColumnVector[] vectors;
+    private BitField deleted;
+    private int size;
+    private int rowCount;
+    private volatile long lastModificationId;
+
+    public ColumnarTable(CreateTableData data) {
+        super(data);
+        for (Column col : getColumns()) {
+            int type = col.getType();
+            if (DataType.isLargeObject(type)) {
+                throw DbException.getUnsupportedException(
+                        "COLUMNAR " + DataType.getDataType(type).name);
+            }
+        }
+        scanIndex = new ColumnarScanIndex(this, data.id,
+                IndexColumn.wrap(getColumns()), IndexType.createScan(false));
+        indexes.add(scanIndex);
+        clear();
+    }
+
+    private void clear() {
+        Column[] cols = getColumns();
+        vectors = new ColumnVector[cols.length];
+        for (int i = 0; i < cols.length; i++) {
+            vectors[i] = ColumnVector.create(cols[i]);
+        }
+        deleted = new BitField();
+        size = 0;
+        rowCount = 0;
+    }
+
+    @Override
+    public synchronized void addRow(Session session, Row row) {
+        if (size == Integer.MAX_VALUE) {
+            throw DbException.getUnsupportedException("COLUMNAR ROW COUNT");
+        }
+        for (int i = 0; i < vectors.length; i++) {
+            vectors[i].add(row.getValue(i));
+        }
+        row.setKey(size);
+        size++;
+        rowCount++;
+        lastModificationId = database.getNextModificationDataId();
+    }
+
+    @Override
+    public synchronized void removeRow(Session session, Row row) {
+        int pos = (int) row.getKey();
+        if (pos < 0 || pos >= size || deleted.get(pos)) {
+            throw DbException.throwInternalError("row not found: " + row);
+        }
+        deleted.set(pos);
+        rowCount--;
+        lastModificationId = database.getNextModificationDataId();
+    }
+
+    @Override
+    public synchronized void truncate(Session session) {
+        clear();
+        lastModificationId = database.getNextModificationDataId();
+    }
+
+    /**
+     * Get the column vectors. Vectors are only appended to, so the returned
+     * vectors can be read up to the current size, even if rows are added
+     * concurrently.
+     *
+     * @return the vectors
+     */
+    public synchronized ColumnVector[] getVectors() {
+        return vectors;
+    }
+
+    /**
+     * Get the flags of the deleted rows.
+     *
+     * @return the deleted rows
+     */
+    public synchronized BitField getDeleted() {
+        return deleted;
+    }
+
+    /**
+     * Get the number of rows including deleted rows.
+     *
+     * @return the number of rows
+     */
+    public synchronized int getSize() {
+        return size;
+    }
+
+    /**
+     * Get the row at the given position. The values are only read from the
+     * vectors when they are used.
+     *
+     * @param vectors the vectors
+     * @param pos the position
+     * @return the row
+     */
+    public static Row getRow(ColumnVector[] vectors, int pos) {
+        return new ColumnarRow(vectors, pos);
+    }
+
+    /**
+     * Get the row with the given key.
+     *
+     * @param key the position
+     * @return the row
+     */
+    public Row getRow(long key) {
+        return getRow(getVectors(), (int) key);
+    }
+
+    @Override
+    public Index addIndex(Session session, String indexName, int indexId,
+            IndexColumn[] cols, IndexType indexType, boolean create,
+            String indexComment) {
+        throw DbException.getUnsupportedException("COLUMNAR INDEX");
+    }
+
+    @Override
+    public void removeChildrenAndResources(Session session) {
+        super.removeChildrenAndResources(session);
+        synchronized (this) {
+            clear();
+        }
+        invalidate();
+    }
+
+    @Override
+    public boolean lock(Session session, boolean exclusive,
+            boolean forceLockEvenInMvcc) {
+        return false;
+    }
+
+    @Override
+    public void close(Session session) {
+        // nothing to do
+    }
+
+    @Override
+    public void unlock(Session s) {
+        // nothing to do
+    }
+
+    @Override
+    public void checkSupportAlter() {
+        // ok
+    }
+
+    @Override
+    public void checkRename() {
+        // ok
+    }
+
+    @Override
+    public TableType getTableType() {
+        return TableType.EXTERNAL_TABLE_ENGINE;
+    }
+
+    @Override
+    public Index getScanIndex(Session session) {
+        return scanIndex;
+    }
+
+    @Override
+    public Index getUniqueIndex() {
+        return null;
+    }
+
+    @Override
+    public ArrayList<Index> getIndexes() {
+        return indexes;
+    }
+
+    @Override
+    public boolean isLockedExclusively() {
+        return false;
+    }
+
+    @Override
+    public long getMaxDataModificationId() {
+        return lastModificationId;
+    }
+
+    @Override
+    public boolean isDeterministic() {
+        return true;
+    }
+
+    @Override
+    public boolean canGetRowCount() {
+        return true;
+    }
+
+    @Override
+    public boolean canTruncate() {
+        return true;
+    }
+
+    @Override
+    public boolean canDrop() {
+        return true;
+    }
+
+    @Override
+    public synchronized long getRowCount(Session session) {
+        return rowCount;
+    }
+
+    @Override
+    public synchronized long getRowCountApproximation() {
+        return rowCount;
+    }
+
+    @Override
+    public long getDiskSpaceUsed() {
+        return 0;
+    }
+
+    /**
+     * Get the approximate memory used by the data of this table.
+     *
+     * @return the number of bytes
+     */
+    public synchronized long getMemory() {
+        long memory = size / 8;
+        for (ColumnVector v : vectors) {
+            memory += v.getMemory();
+        }
+        return memory;
+    }
+
+    /**
+     * A row of a columnar table. The values are read from the vectors when
+     * they are first used.
+     */
+    static final class ColumnarRow implements Row {
+
+        private final ColumnVector[] vectors;
+        private final Value[] data;
+        private long key;
+        private int version;
+        private boolean isDeleted;
+        private int sessionId;
+
+        ColumnarRow(ColumnVector[] vectors, int pos) {
+            this.vectors = vectors;
+            this.data = new Value[vectors.length];
+            this.key = pos;
+        }
+
+        @Override
+        public Value getValue(int i) {
+            if (i == -1) {
+                return ValueLong.get(key);
+            }
+            Value v = data[i];
+            if (v == null) {
+                v = vectors[i].get((int) key);
+                data[i] = v;
+            }
+            return v;
+        }
+
+        @Override
+        public void setValue(int i, Value v) {
+            if (i == -1) {
+                key = v.getLong();
+            } else {
+                data[i] = v;
+            }
+        }
+
+        @Override
+        public Value[] getValueList() {
+            for (int i = 0; i < data.length; i++) {
+                getValue(i);
+            }
+            return data;
+        }
+
+        @Override
+        public Row getCopy() {
+            ColumnarRow r2 = new ColumnarRow(vectors, (int) key);
+            System.arraycopy(data, 0, r2.data, 0, data.length);
+            r2.version = version + 1;
+            r2.sessionId = sessionId;
+            return r2;
+        }
+
+        @Override
+        public void setKeyAndVersion(SearchRow row) {
+            setKey(row.getKey());
+            setVersion(row.getVersion());
+        }
+
+        @Override
+        public int getVersion() {
+            return version;
+        }
+
+        @Override
+        public void setVersion(int version) {
+            this.version = version;
+        }
+
+        @Override
+        public long getKey() {
+            return key;
+        }
+
+        @Override
+        public void setKey(long key) {
+            this.key = key;
+        }
+
+        @Override
+        public int getColumnCount() {
+            return data.length;
+        }
+
+        @Override
+        public int getMemory() {
+            int m = Constants.MEMORY_ROW + Constants.MEMORY_OBJECT +
+                    data.length * Constants.MEMORY_POINTER;
+            for (Value v : getValueList()) {
+                m += v.getMemory();
+            }
+            return m;
+        }
+
+        @Override
+        public int getByteCount(Data dummy) {
+            int size = 0;
+            for (Value v : getValueList()) {
+                size += dummy.getValueLen(v);
+            }
+            return size;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return false;
+        }
+
+        @Override
+        public void setDeleted(boolean deleted) {
+            this.isDeleted = deleted;
+        }
+
+        @Override
+        public boolean isDeleted() {
+            return isDeleted;
+        }
+
+        @Override
+        public void setSessionId(int sessionId) {
+            this.sessionId = sessionId;
+        }
+
+        @Override
+        public int getSessionId() {
+            return sessionId;
+        }
+
+        @Override
+        public void commit() {
+            this.sessionId = 0;
+        }
+
+        @Override
+        public String toString() {
+            StatementBuilder buff = new StatementBuilder("( /* key:");
+            buff.append(key).append(" */ ");
+            for (Value v : getValueList()) {
+                buff.appendExceptFirst(", ");
+                buff.append(v.getTraceSQL());
+            }
+            return buff.append(')').toString();
+        }
+
+    }
+
+}
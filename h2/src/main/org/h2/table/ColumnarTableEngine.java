@@ -0,0 +1,25 @@
+/*
+ * Copyright 2004-2014 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.table;
+
+import org.h2.api.TableEngine;
+import org.h2.command.ddl.CreateTableData;
+
+/**
+ * A table engine that stores the data of each column separately, in memory.
+ * Usage:
+ * <pre>
+ * CREATE TABLE FACT(...) ENGINE "org.h2.table.ColumnarTableEngine"
+ * </pre>
+ */
+public class ColumnarTableEngine implements TableEngine {
+
+    @Override
+    public Table createTable(CreateTableData data) {
+        return new ColumnarTable(data);
+    }
+
+}
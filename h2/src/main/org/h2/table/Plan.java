@@ -12,6 +12,7 @@ import java.util.HashSet;
 import org.h2.engine.Session;
 import org.h2.expression.Expression;
 import org.h2.expression.ExpressionVisitor;
+import org.h2.index.HashJoinIndex;
 import org.h2.message.Trace;
 import org.h2.table.TableFilter.TableFilterVisitor;
 import org.h2.util.New;
@@ -120,13 +121,22 @@ public class Plan {
             if (t.isDebugEnabled()) {
                 t.debug("Plan       :   for table filter {0}", tableFilter);
             }
+            if (i > 0) {
+                TableFilter outer = allFilters[i - 1];
+                tableFilter.setMergeJoinOuter(outer, planItems.get(outer));
+            }
             PlanItem item = tableFilter.getBestPlanItem(session, allFilters, i, allColumnsSet);
+            item.setMergeJoin(tableFilter.isMergeJoin(item.getIndex()));
             planItems.put(tableFilter, item);
             if (t.isDebugEnabled()) {
                 t.debug("Plan       :   best plan item cost {0} index {1}",
                         item.cost, item.getIndex().getPlanSQL());
             }
             cost += cost * item.cost;
+            if (item.getIndex() instanceof HashJoinIndex) {
+                // the hash table is built once per query
+                cost += ((HashJoinIndex) item.getIndex()).getBuildCost(session);
+            }
             setEvaluatable(tableFilter, true);
             Expression on = tableFilter.getJoinCondition();
             if (on != null) {
@@ -144,6 +154,7 @@ public class Plan {
         }
         for (TableFilter f : allFilters) {
             setEvaluatable(f, false);
+            f.setMergeJoinOuter(null, null);
         }
         return cost;
     }
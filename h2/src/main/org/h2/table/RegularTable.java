@@ -10,6 +10,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import org.h2.api.DatabaseEventListener;
@@ -21,6 +22,7 @@ import org.h2.engine.Constants;
 import org.h2.engine.DbObject;
 import org.h2.engine.Session;
 import org.h2.engine.SysProperties;
+import org.h2.engine.UndoLogRecord;
 import org.h2.index.Cursor;
 import org.h2.index.HashIndex;
 import org.h2.index.Index;
@@ -136,20 +138,89 @@ public class RegularTable extends TableBase {
             }
             DbException de = DbException.convert(e);
             if (de.getErrorCode() == ErrorCode.DUPLICATE_KEY_1) {
-                for (int j = 0; j < indexes.size(); j++) {
-                    Index index = indexes.get(j);
-                    if (index.getIndexType().isUnique() && index instanceof MultiVersionIndex) {
-                        MultiVersionIndex mv = (MultiVersionIndex) index;
-                        if (mv.isUncommittedFromOtherSession(session, row)) {
-                            throw DbException.get(
-                                    ErrorCode.CONCURRENT_UPDATE_1, index.getName());
-                        }
+                checkUncommittedFromOtherSession(session, row);
+            }
+            throw de;
+        }
+        analyzeIfRequired(session, 1);
+    }
+
+    @Override
+    public void addRows(Session session, List<Row> rows) {
+        lastModificationId = database.getNextModificationDataId();
+        int count = rows.size();
+        if (database.isMultiVersion()) {
+            for (Row row : rows) {
+                row.setSessionId(session.getId());
+            }
+        }
+        ArrayList<Row> list = new ArrayList<>(rows);
+        int i = 0, added = 0;
+        try {
+            for (int size = indexes.size(); i < size; i++) {
+                Index index = indexes.get(i);
+                added = 0;
+                if (index instanceof PageDataIndex) {
+                    // removes the rows again if adding fails
+                    ((PageDataIndex) index).add(session, list);
+                } else {
+                    if (i > 0) {
+                        sortRows(list, index);
+                    }
+                    for (; added < count; added++) {
+                        index.add(session, list.get(added));
                     }
                 }
+                checkRowCount(session, index, count);
+            }
+            rowCount += count;
+        } catch (Throwable e) {
+            try {
+                if (i < indexes.size()) {
+                    Index index = indexes.get(i);
+                    while (--added >= 0) {
+                        index.remove(session, list.get(added));
+                    }
+                }
+                while (--i >= 0) {
+                    Index index = indexes.get(i);
+                    for (Row row : rows) {
+                        index.remove(session, row);
+                    }
+                    checkRowCount(session, index, 0);
+                }
+            } catch (DbException e2) {
+                // this could happen, for example on failure in the storage
+                // but if that is not the case it means there is something wrong
+                // with the database
+                trace.error(e2, "could not undo operation");
+                throw e2;
+            }
+            DbException de = DbException.convert(e);
+            if (de.getErrorCode() == ErrorCode.DUPLICATE_KEY_1) {
+                for (Row row : rows) {
+                    checkUncommittedFromOtherSession(session, row);
+                }
             }
             throw de;
         }
-        analyzeIfRequired(session);
+        for (Row row : rows) {
+            session.log(this, UndoLogRecord.INSERT, row);
+        }
+        analyzeIfRequired(session, count);
+    }
+
+    private void checkUncommittedFromOtherSession(Session session, Row row) {
+        for (int j = 0; j < indexes.size(); j++) {
+            Index index = indexes.get(j);
+            if (index.getIndexType().isUnique() && index instanceof MultiVersionIndex) {
+                MultiVersionIndex mv = (MultiVersionIndex) index;
+                if (mv.isUncommittedFromOtherSession(session, row)) {
+                    throw DbException.get(
+                            ErrorCode.CONCURRENT_UPDATE_1, index.getName());
+                }
+            }
+        }
     }
 
     @Override
@@ -341,17 +412,20 @@ public class RegularTable extends TableBase {
 
     private static void addRowsToIndex(Session session, ArrayList<Row> list,
             Index index) {
-        final Index idx = index;
+        sortRows(list, index);
+        for (Row row : list) {
+            index.add(session, row);
+        }
+        list.clear();
+    }
+
+    private static void sortRows(ArrayList<Row> list, final Index index) {
         Collections.sort(list, new Comparator<Row>() {
             @Override
             public int compare(Row r1, Row r2) {
-                return idx.compareRows(r1, r2);
+                return index.compareRows(r1, r2);
             }
         });
-        for (Row row : list) {
-            index.add(session, row);
-        }
-        list.clear();
     }
 
     @Override
@@ -406,7 +480,7 @@ public class RegularTable extends TableBase {
             }
             throw DbException.convert(e);
         }
-        analyzeIfRequired(session);
+        analyzeIfRequired(session, 1);
     }
 
     @Override
@@ -420,8 +494,9 @@ public class RegularTable extends TableBase {
         changesSinceAnalyze = 0;
     }
 
-    private void analyzeIfRequired(Session session) {
-        if (nextAnalyze == 0 || nextAnalyze > changesSinceAnalyze++) {
+    private void analyzeIfRequired(Session session, int changes) {
+        changesSinceAnalyze += changes;
+        if (nextAnalyze == 0 || nextAnalyze >= changesSinceAnalyze) {
             return;
         }
         changesSinceAnalyze = 0;
@@ -9,6 +9,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import org.h2.api.ErrorCode;
 import org.h2.command.Prepared;
@@ -20,6 +21,7 @@ import org.h2.engine.Session;
 import org.h2.engine.UndoLogRecord;
 import org.h2.expression.Expression;
 import org.h2.expression.ExpressionVisitor;
+import org.h2.index.HashJoinIndex;
 import org.h2.index.Index;
 import org.h2.index.IndexType;
 import org.h2.message.DbException;
@@ -185,6 +187,78 @@ public abstract class Table extends SchemaObjectBase {
      */
     public abstract void addRow(Session session, Row row);
 
+    /**
+     * Add multiple rows to the table and all indexes. The rows that were
+     * added are recorded in the undo log of the session. The default
+     * implementation adds the rows one by one.
+     *
+     * @param session the session
+     * @param rows the rows
+     * @throws DbException if a constraint was violated
+     */
+    public void addRows(Session session, List<Row> rows) {
+        for (int i = 0, size = rows.size(); i < size; i++) {
+            Row row = rows.get(i);
+            addRow(session, row);
+            session.log(this, UndoLogRecord.INSERT, row);
+        }
+    }
+
+    /**
+     * Check if multiple rows of one statement may be added using
+     * {@link #addRows(Session, List)}. This is not the case if there are
+     * triggers, check constraints, or a referential constraint within this
+     * table, because they could see the rows of the same statement that were
+     * added before.
+     *
+     * @return true if the rows may be added at once
+     */
+    public boolean canAddRows() {
+        if (triggers != null && triggers.size() > 0) {
+            return false;
+        }
+        if (constraints != null) {
+            for (int i = 0, size = constraints.size(); i < size; i++) {
+                Constraint c = constraints.get(i);
+                String type = c.getConstraintType();
+                if (Constraint.CHECK.equals(type)) {
+                    return false;
+                } else if (Constraint.REFERENTIAL.equals(type) &&
+                        c.getTable() == c.getRefTable()) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Start adding rows in bulk, if this is supported and the table is empty.
+     * Until {@link #endBulkInsert(Session, boolean)} is called, the rows added
+     * by this session may be written directly, so that they can not be rolled
+     * back once the statement was successful. This is only used for a table
+     * that is created by the same statement.
+     *
+     * @param session the session
+     * @return true if the rows are added in bulk
+     */
+    @SuppressWarnings("unused")
+    public boolean startBulkInsert(Session session) {
+        return false;
+    }
+
+    /**
+     * Stop adding rows in bulk.
+     *
+     * @param session the session
+     * @param success false if the statement failed, in which case the rows
+     *            that were added in bulk are removed
+     */
+    @SuppressWarnings("unused")
+    public void endBulkInsert(Session session, boolean success) {
+        // nothing to do
+    }
+
     /**
      * Commit an operation (when using multi-version concurrency).
      *
@@ -746,6 +820,21 @@ public abstract class Table extends SchemaObjectBase {
                 }
             }
         }
+        if (indexHints == null && item.getIndex() == getScanIndex(session)) {
+            HashJoinIndex index = HashJoinIndex.create(session, this, masks, filter);
+            if (index != null) {
+                double cost = index.getCost(session, masks, filters, filter,
+                        sortOrder, allColumnsSet);
+                if (t.isDebugEnabled()) {
+                    t.debug("Table      :     potential plan item cost {0} index {1}",
+                            cost, index.getPlanSQL());
+                }
+                if (cost < item.cost) {
+                    item.cost = cost;
+                    item.setIndex(index);
+                }
+            }
+        }
         return item;
     }
 
@@ -18,12 +18,22 @@ import org.h2.expression.Comparison;
 import org.h2.expression.ConditionAndOr;
 import org.h2.expression.Expression;
 import org.h2.expression.ExpressionColumn;
+import org.h2.index.HashJoinIndex;
 import org.h2.index.Index;
 import org.h2.index.IndexCondition;
 import org.h2.index.IndexCursor;
 import org.h2.index.IndexLookupBatch;
+import org.h2.index.IndexType;
+import org.h2.index.MultiVersionIndex;
+import org.h2.index.PageBtreeIndex;
+import org.h2.index.PageDataIndex;
+import org.h2.index.PageDelegateIndex;
+import org.h2.index.TreeIndex;
 import org.h2.index.ViewIndex;
 import org.h2.message.DbException;
+import org.h2.mvstore.db.MVDelegateIndex;
+import org.h2.mvstore.db.MVPrimaryIndex;
+import org.h2.mvstore.db.MVSecondaryIndex;
 import org.h2.result.Row;
 import org.h2.result.SearchRow;
 import org.h2.result.SortOrder;
@@ -114,6 +124,19 @@ public class TableFilter implements ColumnResolver {
     private ArrayList<Column> naturalJoinColumns;
     private boolean foundOne;
     private Expression fullCondition;
+
+    /**
+     * Whether the rows are read using a merge join with the previous table.
+     */
+    private boolean mergeJoin;
+
+    /**
+     * The previous table and its plan item, while the cost of a plan is
+     * calculated.
+     */
+    private TableFilter mergeJoinOuter;
+    private PlanItem mergeJoinOuterItem;
+
     private final int hashCode;
     private final int orderInFrom;
 
@@ -280,6 +303,8 @@ public class TableFilter implements ColumnResolver {
             return;
         }
         setIndex(item.getIndex());
+        mergeJoin = item.isMergeJoin();
+        cursor.setMergeJoin(mergeJoin);
         masks = item.getMasks();
         if (nestedJoin != null) {
             if (item.getNestedJoinPlan() != null) {
@@ -340,6 +365,10 @@ public class TableFilter implements ColumnResolver {
     public void startQuery(Session s) {
         this.session = s;
         scanCount = 0;
+        if (index instanceof HashJoinIndex) {
+            ((HashJoinIndex) index).reset();
+        }
+        cursor.setMergeJoin(mergeJoin);
         if (nestedJoin != null) {
             nestedJoin.startQuery(s);
         }
@@ -856,6 +885,9 @@ public class TableFilter implements ColumnResolver {
                     planBuff.append(" ");
                 }
             }
+            if (mergeJoin) {
+                planBuff.append("mergeJoin:");
+            }
             planBuff.append(index.getPlanSQL());
             if (indexConditions.size() > 0) {
                 planBuff.append(": ");
@@ -920,6 +952,108 @@ public class TableFilter implements ColumnResolver {
     public void setIndex(Index index) {
         this.index = index;
         cursor.setIndex(index);
+        mergeJoin = false;
+        cursor.setMergeJoin(false);
+    }
+
+    /**
+     * Set the previous table of the plan and its plan item, or null. This is
+     * used to check if a merge join is possible while the cost of a plan is
+     * calculated.
+     *
+     * @param outer the previous table filter
+     * @param outerItem the plan item of the previous table filter
+     */
+    void setMergeJoinOuter(TableFilter outer, PlanItem outerItem) {
+        mergeJoinOuter = outer;
+        mergeJoinOuterItem = outerItem;
+    }
+
+    /**
+     * Check if the rows of this table can be read with the given index using
+     * a merge join with the previous table of the plan. This is the case if
+     * the previous table is read in ascending order of a column (and not
+     * just for one value of this column), and the first column of the given
+     * index is compared to that column.
+     *
+     * @param index the index
+     * @return true if a merge join is possible
+     */
+    public boolean isMergeJoin(Index index) {
+        if (mergeJoinOuter == null || !isSorted(index) ||
+                !session.getDatabase().getSettings().optimizeMergeJoin) {
+            return false;
+        }
+        IndexColumn col = index.getIndexColumns()[0];
+        IndexColumn outerCol = getSortColumn(mergeJoinOuterItem.getIndex());
+        if (outerCol == null) {
+            return false;
+        }
+        int[] outerMasks = mergeJoinOuterItem.getMasks();
+        if (col.sortType != SortOrder.ASCENDING ||
+                outerCol.sortType != SortOrder.ASCENDING ||
+                col.column.getType() != outerCol.column.getType() ||
+                outerMasks != null && (outerMasks[outerCol.column.getColumnId()] &
+                IndexCondition.EQUALITY) == IndexCondition.EQUALITY) {
+            return false;
+        }
+        for (IndexCondition condition : indexConditions) {
+            if (condition.isEvaluatable() &&
+                    condition.getCompareType() == Comparison.EQUAL &&
+                    condition.getColumn() == col.column) {
+                Expression expr = condition.getExpression();
+                if (expr instanceof ExpressionColumn) {
+                    ExpressionColumn e = (ExpressionColumn) expr;
+                    if (e.getTableFilter() == mergeJoinOuter &&
+                            e.getColumn() == outerCol.column) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the column in which order the rows are returned when reading the
+     * given index.
+     *
+     * @param index the index
+     * @return the column, or null if the rows are not sorted
+     */
+    private static IndexColumn getSortColumn(Index index) {
+        if (isSorted(index)) {
+            return index.getIndexColumns()[0];
+        }
+        // a table scan returns the rows in the order of the row key, which
+        // may be the primary key column
+        int mainIndexColumn = -1;
+        if (index instanceof MVPrimaryIndex) {
+            mainIndexColumn = ((MVPrimaryIndex) index).getMainIndexColumn();
+        } else if (index instanceof PageDataIndex) {
+            mainIndexColumn = ((PageDataIndex) index).getMainIndexColumn();
+        }
+        if (mainIndexColumn < 0) {
+            return null;
+        }
+        IndexColumn col = new IndexColumn();
+        col.column = index.getTable().getColumn(mainIndexColumn);
+        col.columnName = col.column.getName();
+        return col;
+    }
+
+    private static boolean isSorted(Index index) {
+        // only the b-tree indexes return the rows in the order of the index
+        if (!(index instanceof MVSecondaryIndex ||
+                index instanceof MVDelegateIndex ||
+                index instanceof PageBtreeIndex ||
+                index instanceof PageDelegateIndex ||
+                index instanceof TreeIndex ||
+                index instanceof MultiVersionIndex)) {
+            return false;
+        }
+        IndexType type = index.getIndexType();
+        return !type.isHash() && !type.isSpatial();
     }
 
     public void setUsed(boolean used) {
@@ -171,6 +171,8 @@ ShutdownHandler {
                     // no parameters
                 } else if ("-tcpPort".equals(arg)) {
                     i++;
+                } else if ("-tcpWorkers".equals(arg)) {
+                    i++;
                 } else if ("-tcpPassword".equals(arg)) {
                     tcpPassword = args[++i];
                 } else if ("-tcpShutdown".equals(arg)) {
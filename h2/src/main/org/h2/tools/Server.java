@@ -82,6 +82,8 @@ public class Server extends Tool implements Runnable, ShutdownHandler {
      * <td>The port (default: 9092)</td></tr>
      * <tr><td>[-tcpSSL]</td>
      * <td>Use encrypted (SSL) connections</td></tr>
+     * <tr><td>[-tcpWorkers &lt;n&gt;]</td>
+     * <td>Serve connections using a selector and n worker threads</td></tr>
      * <tr><td>[-tcpPassword &lt;pwd&gt;]</td>
      * <td>The password for shutting down a TCP server</td></tr>
      * <tr><td>[-tcpShutdown "&lt;url&gt;"]</td>
@@ -152,6 +154,8 @@ public class Server extends Tool implements Runnable, ShutdownHandler {
                     // no parameters
                 } else if ("-tcpPort".equals(arg)) {
                     i++;
+                } else if ("-tcpWorkers".equals(arg)) {
+                    i++;
                 } else if ("-tcpPassword".equals(arg)) {
                     i++;
                 } else if ("-tcpShutdown".equals(arg)) {
@@ -252,6 +256,8 @@ public class Server extends Tool implements Runnable, ShutdownHandler {
                     // no parameters
                 } else if ("-tcpPort".equals(arg)) {
                     i++;
+                } else if ("-tcpWorkers".equals(arg)) {
+                    i++;
                 } else if ("-tcpPassword".equals(arg)) {
                     tcpPassword = args[++i];
                 } else if ("-tcpShutdown".equals(arg)) {
@@ -431,7 +437,7 @@ public class Server extends Tool implements Runnable, ShutdownHandler {
      * </pre>
      * Supported options are:
      * -tcpPort, -tcpSSL, -tcpPassword, -tcpAllowOthers, -tcpDaemon,
-     * -trace, -ifExists, -baseDir, -key.
+     * -tcpWorkers, -trace, -ifExists, -baseDir, -key.
      * See the main method for details.
      * <p>
      * If no port is specified, the default port is used if possible,
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2004-2014 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.util;
+
+import org.h2.message.DbException;
+
+/**
+ * A hash map with long keys and int values. There is a restriction: the
+ * value -1 (NOT_FOUND) cannot be stored in the map. 0 can be stored.
+ * An empty record has key=0. Entries can not be removed.
+ */
+public class LongIntHashMap extends HashBase {
+
+    /**
+     * The value indicating that the entry has not been found.
+     */
+    public static final int NOT_FOUND = -1;
+
+    private long[] keys;
+    private int[] values;
+    private int zeroValue;
+
+    @Override
+    protected void reset(int newLevel) {
+        super.reset(newLevel);
+        keys = new long[len];
+        values = new int[len];
+    }
+
+    /**
+     * Store the given key-value pair. The value is overwritten or added.
+     *
+     * @param key the key
+     * @param value the value (-1 is not supported)
+     */
+    public void put(long key, int value) {
+        if (key == 0) {
+            zeroKey = true;
+            zeroValue = value;
+            return;
+        }
+        checkSizePut();
+        internalPut(key, value);
+    }
+
+    private void internalPut(long key, int value) {
+        int index = getIndex(getHash(key));
+        int plus = 1;
+        do {
+            long k = keys[index];
+            if (k == 0) {
+                // found an empty record
+                size++;
+                keys[index] = key;
+                values[index] = value;
+                return;
+            } else if (k == key) {
+                // update existing
+                values[index] = value;
+                return;
+            }
+            index = (index + plus++) & mask;
+        } while (plus <= len);
+        // no space
+        DbException.throwInternalError("hashmap is full");
+    }
+
+    @Override
+    protected void rehash(int newLevel) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        reset(newLevel);
+        for (int i = 0; i < oldKeys.length; i++) {
+            long k = oldKeys[i];
+            if (k != 0) {
+                // skip the checkSizePut so we don't end up
+                // accidentally recursing
+                internalPut(k, oldValues[i]);
+            }
+        }
+    }
+
+    /**
+     * Get the value for the given key. This method returns NOT_FOUND if the
+     * entry has not been found.
+     *
+     * @param key the key
+     * @return the value or NOT_FOUND
+     */
+    public int get(long key) {
+        if (key == 0) {
+            return zeroKey ? zeroValue : NOT_FOUND;
+        }
+        int index = getIndex(getHash(key));
+        int plus = 1;
+        do {
+            long k = keys[index];
+            if (k == 0) {
+                // found an empty record
+                return NOT_FOUND;
+            } else if (k == key) {
+                // found it
+                return values[index];
+            }
+            index = (index + plus++) & mask;
+        } while (plus <= len);
+        return NOT_FOUND;
+    }
+
+    private static int getHash(long key) {
+        return (int) (key ^ (key >>> 32));
+    }
+
+}
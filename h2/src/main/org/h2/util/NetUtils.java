@@ -13,6 +13,7 @@ import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.UnknownHostException;
+import java.nio.channels.ServerSocketChannel;
 import java.util.concurrent.TimeUnit;
 
 import org.h2.api.ErrorCode;
@@ -184,6 +185,41 @@ public class NetUtils {
         }
     }
 
+    /**
+     * Create a server socket channel. The system property h2.bindAddress is
+     * used if set. If binding fails, it is tried again once.
+     *
+     * @param port the port to listen on
+     * @return the server socket channel
+     */
+    public static ServerSocketChannel createServerSocketChannel(int port) {
+        try {
+            return createServerSocketChannelTry(port);
+        } catch (Exception e) {
+            // try again
+            return createServerSocketChannelTry(port);
+        }
+    }
+
+    private static ServerSocketChannel createServerSocketChannelTry(int port) {
+        try {
+            InetAddress bindAddress = getBindAddress();
+            ServerSocketChannel channel = ServerSocketChannel.open();
+            try {
+                channel.socket().bind(new InetSocketAddress(bindAddress, port));
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+            return channel;
+        } catch (BindException be) {
+            throw DbException.get(ErrorCode.EXCEPTION_OPENING_PORT_2,
+                    be, "" + port, be.toString());
+        } catch (IOException e) {
+            throw DbException.convertIOException(e, "port: " + port);
+        }
+    }
+
     /**
      * Check if a socket is connected to a local address.
      *
@@ -19,6 +19,8 @@ import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import org.h2.api.ErrorCode;
+import org.h2.compress.LZFInputStream;
+import org.h2.compress.LZFOutputStream;
 import org.h2.engine.Constants;
 import org.h2.engine.SessionInterface;
 import org.h2.message.DbException;
@@ -52,6 +54,8 @@ public class Transfer {
     private boolean ssl;
     private int version;
     private byte[] lobMacSalt;
+    private boolean compressed;
+    private byte[] stringBuffer;
 
     /**
      * Create a new transfer object for the specified session.
@@ -86,6 +90,23 @@ public class Transfer {
         }
     }
 
+    /**
+     * Compress the data that is sent and received from now on, using the LZF
+     * algorithm. The data that is written until the next flush is compressed
+     * as one block. Both sides of the connection need to call this method at
+     * the same point of the conversation.
+     */
+    public synchronized void setCompressed() throws IOException {
+        out.flush();
+        in = new DataInputStream(new LZFInputStream(in));
+        out = new DataOutputStream(new LZFOutputStream(out));
+        compressed = true;
+    }
+
+    public boolean isCompressed() {
+        return compressed;
+    }
+
     /**
      * Write pending changes.
      */
@@ -215,6 +236,11 @@ public class Transfer {
 
     /**
      * Write a string. The maximum string length is Integer.MAX_VALUE.
+     * Starting with protocol version 18, the string is encoded as UTF-8 and
+     * written as one run of bytes, prefixed with the number of bytes. The
+     * number of bytes is calculated first, so that the string can be encoded
+     * in parts using a buffer of a fixed size. Surrogate characters are
+     * encoded individually, so that each Java string can be transferred.
      *
      * @param s the value
      * @return itself
@@ -222,6 +248,38 @@ public class Transfer {
     public Transfer writeString(String s) throws IOException {
         if (s == null) {
             out.writeInt(-1);
+        } else if (version >= Constants.TCP_PROTOCOL_VERSION_18) {
+            int len = s.length();
+            long byteCount = 0;
+            for (int i = 0; i < len; i++) {
+                int c = s.charAt(i);
+                byteCount += c < 0x80 ? 1 : c < 0x800 ? 2 : 3;
+            }
+            if (byteCount > Integer.MAX_VALUE) {
+                throw DbException.getInvalidValueException("string length",
+                        byteCount);
+            }
+            out.writeInt((int) byteCount);
+            byte[] buff = getStringBuffer();
+            int pos = 0;
+            for (int i = 0; i < len; i++) {
+                if (pos > buff.length - 3) {
+                    out.write(buff, 0, pos);
+                    pos = 0;
+                }
+                int c = s.charAt(i);
+                if (c < 0x80) {
+                    buff[pos++] = (byte) c;
+                } else if (c < 0x800) {
+                    buff[pos++] = (byte) (0xc0 | (c >> 6));
+                    buff[pos++] = (byte) (0x80 | (c & 0x3f));
+                } else {
+                    buff[pos++] = (byte) (0xe0 | (c >> 12));
+                    buff[pos++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                    buff[pos++] = (byte) (0x80 | (c & 0x3f));
+                }
+            }
+            out.write(buff, 0, pos);
         } else {
             int len = s.length();
             out.writeInt(len);
@@ -242,15 +300,70 @@ public class Transfer {
         if (len == -1) {
             return null;
         }
-        StringBuilder buff = new StringBuilder(len);
-        for (int i = 0; i < len; i++) {
-            buff.append(in.readChar());
+        String s;
+        if (version >= Constants.TCP_PROTOCOL_VERSION_18) {
+            // the bytes are read in parts, a character may span two parts
+            byte[] buff = getStringBuffer();
+            char[] chars = new char[len];
+            int count = 0;
+            int i = 0, end = 0;
+            for (int remaining = len; remaining > 0;) {
+                int keep = end - i;
+                System.arraycopy(buff, i, buff, 0, keep);
+                int n = Math.min(remaining, buff.length - keep);
+                in.readFully(buff, keep, n);
+                remaining -= n;
+                end = keep + n;
+                i = 0;
+                while (i < end) {
+                    int x = buff[i] & 0xff;
+                    if (x < 0x80) {
+                        chars[count++] = (char) x;
+                        i++;
+                    } else if (x >= 0xe0) {
+                        if (i + 3 > end) {
+                            break;
+                        }
+                        chars[count++] = (char) (((x & 0xf) << 12) +
+                                ((buff[i + 1] & 0x3f) << 6) +
+                                (buff[i + 2] & 0x3f));
+                        i += 3;
+                    } else {
+                        if (i + 2 > end) {
+                            break;
+                        }
+                        chars[count++] = (char) (((x & 0x1f) << 6) +
+                                (buff[i + 1] & 0x3f));
+                        i += 2;
+                    }
+                }
+            }
+            s = new String(chars, 0, count);
+        } else {
+            StringBuilder buff = new StringBuilder(len);
+            for (int i = 0; i < len; i++) {
+                buff.append(in.readChar());
+            }
+            s = buff.toString();
         }
-        String s = buff.toString();
         s = StringUtils.cache(s);
         return s;
     }
 
+    /**
+     * Get the buffer to encode or decode a string.
+     *
+     * @return the buffer
+     */
+    private byte[] getStringBuffer() {
+        byte[] buff = stringBuffer;
+        if (buff == null) {
+            buff = new byte[BUFFER_SIZE];
+            stringBuffer = buff;
+        }
+        return buff;
+    }
+
     /**
      * Write a byte array.
      *
@@ -306,6 +419,16 @@ public class Transfer {
         in.readFully(buff, off, len);
     }
 
+    /**
+     * Check if data was received that was not read yet, so that reading would
+     * not block.
+     *
+     * @return true if there is data to read
+     */
+    public boolean hasBufferedInput() throws IOException {
+        return in.available() > 0;
+    }
+
     /**
      * Close the transfer object and the socket.
      */
@@ -195,6 +195,7 @@ import org.h2.test.unit.TestIntIntHashMap;
 import org.h2.test.unit.TestIntPerfectHash;
 import org.h2.test.unit.TestJmx;
 import org.h2.test.unit.TestLocale;
+import org.h2.test.unit.TestLongIntHashMap;
 import org.h2.test.unit.TestMathUtils;
 import org.h2.test.unit.TestMode;
 import org.h2.test.unit.TestModifyOnWrite;
@@ -914,6 +915,7 @@ kill -9 `jps -l | grep "org.h2.test." | cut -d " " -f 1`
         addTest(new TestIntIntHashMap());
         addTest(new TestIntPerfectHash());
         addTest(new TestJmx());
+        addTest(new TestLongIntHashMap());
         addTest(new TestMathUtils());
         addTest(new TestMode());
         addTest(new TestModifyOnWrite());
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2004-2014 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.test.bench;
+
+import java.util.concurrent.CountDownLatch;
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+
+/**
+ * Measures how concurrent inserts into a single MVMap scale with the number
+ * of writer threads. Each thread inserts a disjoint range of keys.
+ */
+public class TestMVMapScalability {
+
+    /**
+     * This method is called when executing this application from the command
+     * line.
+     *
+     * @param args the command line parameters
+     */
+    public static void main(String... args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int maxThreads = Runtime.getRuntime().availableProcessors();
+        // warm up
+        test(1, count / 10);
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            long time = test(threads, count);
+            System.out.println("threads: " + threads +
+                    " inserts: " + count +
+                    " ms: " + time +
+                    " ops/s: " + (count * 1000L / Math.max(1, time)));
+        }
+    }
+
+    private static long test(int threadCount, int count) throws Exception {
+        MVStore s = new MVStore.Builder().open();
+        final MVMap<Integer, Integer> map = s.openMap("data");
+        final int perThread = count / threadCount;
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[threadCount];
+        for (int t = 0; t < threadCount; t++) {
+            final int offset = t * perThread;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < perThread; i++) {
+                        // each thread uses its own key range, so that
+                        // most changes are in different leaf pages
+                        map.put(offset + i, i);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        long time = System.nanoTime();
+        start.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+        time = (System.nanoTime() - time) / 1000000;
+        if (map.size() != perThread * threadCount) {
+            throw new AssertionError("size: " + map.size());
+        }
+        s.close();
+        return time;
+    }
+
+}
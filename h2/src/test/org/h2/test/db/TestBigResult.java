@@ -38,7 +38,11 @@ public class TestBigResult extends TestBase {
         testLargeUpdateDelete();
         testCloseConnectionDelete();
         testOrderGroup();
+        testLargeGroup();
+        testLargeHashJoin();
         testLimitBufferedResult();
+        testLargeTopN();
+        testLargeOrderBy();
         deleteDb("bigResult");
     }
 
@@ -78,6 +82,115 @@ public class TestBigResult extends TestBase {
         conn.close();
     }
 
+    private void testLargeGroup() throws SQLException {
+        deleteDb("bigResult");
+        Connection conn = getConnection("bigResult");
+        Statement stat = conn.createStatement();
+        int len = getSize(1000, 10000);
+        stat.execute("CREATE TABLE TEST(ID INT PRIMARY KEY, G INT, NAME VARCHAR)");
+        stat.execute("INSERT INTO TEST SELECT X, X / 2, 'Name ' || (X / 2) " +
+                "FROM SYSTEM_RANGE(0, " + (len * 2 - 1) + ")");
+        stat.execute("CREATE TABLE T2(G INT PRIMARY KEY, V INT)");
+        stat.execute("INSERT INTO T2 SELECT X, X * 3 " +
+                "FROM SYSTEM_RANGE(0, " + (len - 1) + ")");
+        // groups are buffered in partitions, which are buffered to disk
+        stat.execute("SET MAX_MEMORY_ROWS 10");
+        stat.execute("SET MAX_OPERATION_MEMORY 4096");
+        for (int i = 0; i < 2; i++) {
+            ResultSet rs = stat.executeQuery("SELECT G, COUNT(*), SUM(ID) " +
+                    "FROM TEST GROUP BY G ORDER BY G");
+            for (int j = 0; j < len; j++) {
+                assertTrue(rs.next());
+                assertEquals(j, rs.getInt(1));
+                assertEquals(2, rs.getInt(2));
+                assertEquals(j * 4 + 1, rs.getLong(3));
+            }
+            assertFalse(rs.next());
+            rs = stat.executeQuery("SELECT NAME, MAX(ID), COUNT(*) " +
+                    "FROM TEST GROUP BY NAME");
+            int count = 0;
+            while (rs.next()) {
+                int max = rs.getInt(2);
+                assertEquals("Name " + (max / 2), rs.getString(1));
+                assertEquals(1, max % 2);
+                assertEquals(2, rs.getInt(3));
+                count++;
+            }
+            assertEquals(len, count);
+            rs = stat.executeQuery("SELECT T.G, T.NAME, SUM(T2.V) + 1 " +
+                    "FROM TEST T LEFT JOIN T2 ON T.G = T2.G * 2 " +
+                    "GROUP BY T.G, T.NAME HAVING COUNT(*) = 2 AND MOD(T.G, 3) = 0 " +
+                    "ORDER BY T.G");
+            for (int j = 0; j < len; j += 3) {
+                assertTrue(rs.next());
+                assertEquals(j, rs.getInt(1));
+                assertEquals("Name " + j, rs.getString(2));
+                if (j % 2 == 0) {
+                    assertEquals(j * 3 + 1, rs.getInt(3));
+                } else {
+                    rs.getInt(3);
+                    assertTrue(rs.wasNull());
+                }
+            }
+            assertFalse(rs.next());
+            rs = stat.executeQuery("SELECT COUNT(DISTINCT G) " +
+                    "FROM (SELECT G FROM TEST GROUP BY G)");
+            rs.next();
+            assertEquals(len, rs.getInt(1));
+            // the same results if all groups are kept in memory
+            stat.execute("SET MAX_MEMORY_ROWS " + (len * 2));
+        }
+        conn.close();
+    }
+
+    private void testLargeHashJoin() throws SQLException {
+        deleteDb("bigResult");
+        Connection conn = getConnection("bigResult");
+        Statement stat = conn.createStatement();
+        int len = getSize(1000, 10000);
+        // the rows of A are buffered in partitions, which are buffered
+        // to disk
+        stat.execute("SET MAX_MEMORY_ROWS " + (len / 4));
+        stat.execute("SET MAX_OPERATION_MEMORY 4096");
+        stat.execute("CREATE TABLE A(ID INT PRIMARY KEY, X INT)");
+        stat.execute("INSERT INTO A SELECT X, X / 2 " +
+                "FROM SYSTEM_RANGE(0, " + (len * 2 - 1) + ")");
+        stat.execute("CREATE TABLE B(ID INT PRIMARY KEY, X INT)");
+        stat.execute("INSERT INTO B SELECT X, X * 3 " +
+                "FROM SYSTEM_RANGE(0, " + (len - 1) + ")");
+        String sql = "SELECT B.ID, SUM(A.ID), COUNT(*) FROM B, A " +
+                "WHERE A.X = B.X GROUP BY B.ID ORDER BY B.ID";
+        ResultSet rs = stat.executeQuery("EXPLAIN " + sql);
+        rs.next();
+        assertContains(rs.getString(1), "PUBLIC.A.hashJoin: X = B.X");
+        PreparedStatement prep = conn.prepareStatement(sql);
+        assertLargeHashJoinResult(prep.executeQuery(), len);
+        assertLargeHashJoinResult(prep.executeQuery(), len);
+        // the table grew after the statement was prepared
+        stat.execute("INSERT INTO A SELECT X, -1 " +
+                "FROM SYSTEM_RANGE(" + (len * 2) + ", " + (len * 4 - 1) + ")");
+        assertLargeHashJoinResult(prep.executeQuery(), len);
+        rs = stat.executeQuery("EXPLAIN " + sql);
+        rs.next();
+        assertContains(rs.getString(1), "PUBLIC.A.hashJoin: X = B.X");
+        assertLargeHashJoinResult(stat.executeQuery(sql), len);
+        // the same results if the hash table is kept in memory
+        stat.execute("SET MAX_MEMORY_ROWS " + (len * 8));
+        assertLargeHashJoinResult(stat.executeQuery(sql), len);
+        conn.close();
+    }
+
+    private void assertLargeHashJoinResult(ResultSet rs, int len)
+            throws SQLException {
+        for (int j = 0; j * 3 < len; j++) {
+            assertTrue(rs.next());
+            assertEquals(j, rs.getInt(1));
+            assertEquals(j * 12 + 1, rs.getLong(2));
+            assertEquals(2, rs.getInt(3));
+        }
+        assertFalse(rs.next());
+    }
+
     private void testCloseConnectionDelete() throws SQLException {
         deleteDb("bigResult");
         Connection conn = getConnection("bigResult");
@@ -123,6 +236,90 @@ public class TestBigResult extends TestBase {
         conn.close();
     }
 
+    private void testLargeTopN() throws SQLException {
+        deleteDb("bigResult");
+        Connection conn = getConnection("bigResult");
+        Statement stat = conn.createStatement();
+        int len = getSize(1000, 10000);
+        stat.execute("SET MAX_MEMORY_ROWS " + (len / 10));
+        stat.execute("CREATE TABLE TEST(ID INT PRIMARY KEY, X INT)");
+        stat.execute("INSERT INTO TEST SELECT X, MOD(X * 7, " + len + ") " +
+                "FROM SYSTEM_RANGE(0, " + (len - 1) + ")");
+        // only the top rows are kept in memory
+        ResultSet rs = stat.executeQuery(
+                "SELECT X FROM TEST ORDER BY X DESC LIMIT 20 OFFSET 5");
+        for (int i = 0; i < 20; i++) {
+            assertTrue(rs.next());
+            assertEquals(len - 6 - i, rs.getInt(1));
+        }
+        assertFalse(rs.next());
+        rs = stat.executeQuery("SELECT MOD(X, 10), COUNT(*) FROM TEST " +
+                "GROUP BY MOD(X, 10) ORDER BY 1 LIMIT 3");
+        for (int i = 0; i < 3; i++) {
+            assertTrue(rs.next());
+            assertEquals(i, rs.getInt(1));
+            assertEquals(len / 10, rs.getInt(2));
+        }
+        assertFalse(rs.next());
+        // the limit is larger than the number of rows
+        rs = stat.executeQuery("SELECT X FROM TEST WHERE X < 5 " +
+                "ORDER BY X LIMIT 10");
+        for (int i = 0; i < 5; i++) {
+            assertTrue(rs.next());
+            assertEquals(i, rs.getInt(1));
+        }
+        assertFalse(rs.next());
+        // the top rows don't fit in memory
+        rs = stat.executeQuery("SELECT X FROM TEST ORDER BY X LIMIT " +
+                (len / 2) + " OFFSET 10");
+        for (int i = 0; i < len / 2; i++) {
+            assertTrue(rs.next());
+            assertEquals(i + 10, rs.getInt(1));
+        }
+        assertFalse(rs.next());
+        conn.close();
+    }
+
+    private void testLargeOrderBy() throws SQLException {
+        deleteDb("bigResult");
+        Connection conn = getConnection("bigResult");
+        Statement stat = conn.createStatement();
+        int len = getSize(1000, 10000);
+        stat.execute("SET MAX_MEMORY_ROWS " + (len / 10));
+        stat.execute("CREATE TABLE TEST(ID INT PRIMARY KEY, X INT, " +
+                "NAME VARCHAR, D DECIMAL)");
+        stat.execute("INSERT INTO TEST SELECT X, MOD(X * 7, " + len + ") / 2, " +
+                "CASE WHEN MOD(X, 5) = 0 THEN NULL ELSE 'N' || X END, X / 10.0 " +
+                "FROM SYSTEM_RANGE(0, " + (len - 1) + ")");
+        // the rows are written to disk in sorted runs, which are merged
+        ResultSet rs = stat.executeQuery(
+                "SELECT X, NAME, D FROM TEST ORDER BY X DESC, ID");
+        int last = Integer.MAX_VALUE;
+        int count = 0;
+        while (rs.next()) {
+            int x = rs.getInt(1);
+            assertTrue(x <= last);
+            last = x;
+            count++;
+        }
+        assertEquals(len, count);
+        rs = stat.executeQuery("SELECT DISTINCT X, X + 1 FROM TEST ORDER BY 2 DESC");
+        for (int i = len / 2 - 1; i >= 0; i--) {
+            assertTrue(rs.next());
+            assertEquals(i, rs.getInt(1));
+            assertEquals(i + 1, rs.getInt(2));
+        }
+        assertFalse(rs.next());
+        rs = stat.executeQuery("SELECT ID, NAME FROM TEST " +
+                "ORDER BY NAME NULLS FIRST, ID OFFSET " + (len / 5 - 1));
+        assertTrue(rs.next());
+        assertEquals(len - 5, rs.getInt(1));
+        assertNull(rs.getString(2));
+        assertTrue(rs.next());
+        assertEquals("N1", rs.getString(2));
+        conn.close();
+    }
+
     private void testOrderGroup() throws SQLException {
         deleteDb("bigResult");
         Connection conn = getConnection("bigResult");
@@ -471,7 +471,7 @@ public class TestGeneralCommonTableQueries extends TestBase {
     }
     
     private void testRecursiveTable() throws Exception {
-        String[] expectedRowData =new String[]{"|meat|null","|fruit|3","|veg|2"};
+        String[] expectedRowData =new String[]{"|fruit|3","|meat|null","|veg|2"};
         String[] expectedColumnNames =new String[]{"VAL",
                 "SUM(SELECT\n    X\nFROM PUBLIC.\"\" BB\n    /* SELECT\n        SUM(1) AS X,\n        A\n    FROM PUBLIC.B\n        /++ PUBLIC.B.tableScan ++/\n        /++ WHERE A IS ?1\n        ++/\n        /++ scanCount: 4 ++/\n    INNER JOIN PUBLIC.C\n        /++ PUBLIC.C.tableScan ++/\n        ON 1=1\n    WHERE (A IS ?1)\n        AND (B.VAL = C.B)\n    GROUP BY A: A IS A.VAL\n     */\n    /* scanCount: 1 */\nWHERE BB.A IS A.VAL)"};
         
@@ -512,7 +512,8 @@ public class TestGeneralCommonTableQueries extends TestBase {
             +"A.val,                                   \n"
             +"sum(SELECT X FROM BB WHERE BB.a IS A.val)\n"//AS SUM_X
             +"FROM A                                   \n"
-            +"GROUP BY A.val";
+            +"GROUP BY A.val                           \n"
+            +"ORDER BY A.val";
 
         for(int queryRunTries=1;queryRunTries<4;queryRunTries++){
             Statement stat = conn.createStatement();
@@ -18,6 +18,11 @@ import java.util.TreeSet;
 import java.util.concurrent.TimeUnit;
 
 import org.h2.api.ErrorCode;
+import org.h2.command.dml.Select;
+import org.h2.engine.Session;
+import org.h2.expression.CompiledExpression;
+import org.h2.jdbc.JdbcConnection;
+import org.h2.result.ResultInterface;
 import org.h2.test.TestBase;
 import org.h2.tools.SimpleResultSet;
 import org.h2.util.New;
@@ -47,6 +52,8 @@ public class TestOptimizations extends TestBase {
         testExplainRoundTrip();
         testOrderByExpression();
         testGroupSubquery();
+        testParallelGroupBy();
+        testCompileExpressions();
         testAnalyzeLob();
         testLike();
         testExistsSubquery();
@@ -168,6 +175,131 @@ public class TestOptimizations extends TestBase {
         conn.close();
     }
 
+    private void testParallelGroupBy() throws Exception {
+        Connection conn = getConnection("optimizations");
+        Statement stat = conn.createStatement();
+        stat.execute("create table test(id int primary key, g int, " +
+                "name varchar, v int, d double)");
+        stat.execute("set group_by_threads 4");
+        // no rows
+        ResultSet rs = stat.executeQuery("select count(*), sum(v) from test");
+        rs.next();
+        assertEquals(0, rs.getInt(1));
+        assertEquals(null, rs.getString(2));
+        assertFalse(stat.executeQuery(
+                "select g, count(*) from test group by g").next());
+        stat.execute("insert into test select x, mod(x, 7), " +
+                "'n' || mod(x, 13), case when mod(x, 5) = 0 then null " +
+                "else x end, x / 3.0 from system_range(1, 3000)");
+        String[] queries = {
+                "select g, count(*), count(v), sum(v), avg(v), min(v), max(v), " +
+                "stddev_pop(d), var_samp(d), count(distinct name) " +
+                "from test group by g order by g",
+                "select name, sum(d), max(name), bit_and(g), " +
+                "bit_or(v), sum(distinct g) from test group by name order by name",
+                "select count(*), min(name), max(d), avg(d), selectivity(g) from test",
+        };
+        for (String q : queries) {
+            stat.execute("set group_by_threads 1");
+            ArrayList<String> expected = getRows(stat.executeQuery(q));
+            stat.execute("set group_by_threads 4");
+            ArrayList<String> actual = getRows(stat.executeQuery(q));
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                String[] e = expected.get(i).split(",");
+                String[] a = actual.get(i).split(",");
+                for (int j = 0; j < e.length; j++) {
+                    if (e[j].indexOf('.') >= 0) {
+                        // the floating point results differ in the last digits
+                        assertTrue(q + " " + e[j] + " " + a[j],
+                                Math.abs(Double.parseDouble(e[j]) -
+                                Double.parseDouble(a[j])) < 1e-6);
+                    } else {
+                        assertEquals(q, e[j], a[j]);
+                    }
+                }
+            }
+        }
+        assertThrows(ErrorCode.INVALID_VALUE_2, stat).
+                execute("set group_by_threads 0");
+        stat.execute("drop table test");
+        conn.close();
+    }
+
+    private static ArrayList<String> getRows(ResultSet rs) throws SQLException {
+        ArrayList<String> list = New.arrayList();
+        int columnCount = rs.getMetaData().getColumnCount();
+        while (rs.next()) {
+            StringBuilder buff = new StringBuilder();
+            for (int i = 1; i <= columnCount; i++) {
+                if (i > 1) {
+                    buff.append(',');
+                }
+                buff.append(rs.getString(i));
+            }
+            list.add(buff.toString());
+        }
+        return list;
+    }
+
+    private void testCompileExpressions() throws Exception {
+        deleteDb("optimizationsCompiled");
+        Connection conn = getConnection("optimizations");
+        Connection conn2 = getConnection(
+                "optimizationsCompiled;COMPILE_EXPRESSIONS=1");
+        String init = "create table test(i int, s smallint, l bigint, d double) " +
+                "as select case when mod(x, 7) = 0 then null else x - 50 end, " +
+                "mod(x, 30), case when mod(x, 11) = 0 then null else x * x * x end, " +
+                "case when mod(x, 13) = 0 then null else (x - 50) / 4.0 end " +
+                "from system_range(1, 100)";
+        Statement stat = conn.createStatement();
+        Statement stat2 = conn2.createStatement();
+        stat.execute(init);
+        stat2.execute(init);
+        String[] queries = {
+                "select i + s, i - l, l * 3, i / (s + 1), l % 7, -i, -d, " +
+                "d * 2, d / 3, d % 1.5, i * d, l + 0.5 from test",
+                "select i from test where i > 10 and (l < 500000 or d is null)",
+                "select i from test where i >= 10 or i < -10 or i <= -20",
+                "select i from test where d > 2.5 or d <= -2.5 or l = 8",
+                "select i from test where d >= 2.5 and d < 5 or l <> 27",
+                "select i from test where not (i = s) or i is null",
+                "select i from test where d < 0 or d = -0.0 or s >= 29",
+                "select i from test where i <> 3 and s <= 2 and l / 2 > 5",
+                "select i from test where (i < 0) = (d < 0)",
+                "select i from test where i + 1 > 2147483646",
+                "select i * 2 as x from test where s between 5 and 10",
+        };
+        for (String q : queries) {
+            q += " order by 1";
+            assertEquals(q, getRows(stat.executeQuery(q)).toString(),
+                    getRows(stat2.executeQuery(q)).toString());
+        }
+        if (!config.networked) {
+            Session session = (Session) ((JdbcConnection) conn2).getSession();
+            Select select = (Select) session.prepare(
+                    "select i * 2 from test where i > 10 or d < 0");
+            ResultInterface result = select.query(0);
+            while (result.next()) {
+                // read all rows
+            }
+            assertTrue(((CompiledExpression) select.getCondition()).
+                    isCompiled());
+            assertTrue(((CompiledExpression) select.getExpressions().get(0)).
+                    isCompiled());
+        }
+        assertThrows(ErrorCode.NUMERIC_VALUE_OUT_OF_RANGE_1, stat2).
+                executeQuery("select i * 2147483647 from test");
+        assertThrows(ErrorCode.NUMERIC_VALUE_OUT_OF_RANGE_1, stat2).
+                executeQuery("select l * 4000000000000000 from test");
+        assertThrows(ErrorCode.DIVISION_BY_ZERO_1, stat2).
+                executeQuery("select i from test where i / (s - s) > 1");
+        stat.execute("drop table test");
+        conn.close();
+        conn2.close();
+        deleteDb("optimizationsCompiled");
+    }
+
     private void testAnalyzeLob() throws Exception {
         Connection conn = getConnection("optimizations");
         Statement stat = conn.createStatement();
@@ -1081,7 +1213,7 @@ public class TestOptimizations extends TestBase {
                 "FROM table_b b JOIN table_a a ON b.table_a_id = a.id GROUP BY b.table_a_id " +
                 "HAVING A.ACTIVE = TRUE");
         rs.next();
-        assertContains(rs.getString(1), "/* PUBLIC.TABLE_B_IDX: TABLE_A_ID = A.ID */");
+        assertContains(rs.getString(1), "PUBLIC.TABLE_B_IDX: TABLE_A_ID = A.ID */");
 
         rs = stat.executeQuery("EXPLAIN ANALYZE SELECT MAX(id) FROM table_b GROUP BY table_a_id");
         rs.next();
@@ -26,6 +26,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
+import org.h2.api.ErrorCode;
 import org.h2.api.TableEngine;
 import org.h2.command.ddl.CreateTableData;
 import org.h2.engine.Session;
@@ -77,6 +78,7 @@ public class TestTableEngines extends TestBase {
         testMultiColumnTreeSetIndex();
         testBatchedJoin();
         testAffinityKey();
+        testColumnarTableEngine();
     }
 
     private void testEarlyFilter() throws SQLException {
@@ -518,6 +520,82 @@ public class TestTableEngines extends TestBase {
         deleteDb("tableEngine");
     }
 
+    private void testColumnarTableEngine() throws SQLException {
+        deleteDb("tableEngine");
+        Connection conn = getConnection("tableEngine");
+        Statement stat = conn.createStatement();
+        stat.execute("CREATE TABLE R(ID BIGINT, D DATE, TS TIMESTAMP, " +
+                "NAME VARCHAR, AMOUNT DECIMAL(10, 2), N INT)");
+        stat.execute("CREATE TABLE F(ID BIGINT, D DATE, TS TIMESTAMP, " +
+                "NAME VARCHAR, AMOUNT DECIMAL(10, 2), N INT) ENGINE \"" +
+                ColumnarTableEngine.class.getName() + "\"");
+        stat.execute("INSERT INTO R SELECT X, " +
+                "DATEADD('DAY', X / 100, DATE '2017-01-01'), " +
+                "CASEWHEN(MOD(X, 11) = 0, NULL, " +
+                "DATEADD('SECOND', X * 37, TIMESTAMP '2017-01-01 00:00:00')), " +
+                "CASEWHEN(MOD(X, 13) = 0, NULL, 'name' || MOD(X, 17)), " +
+                "X / 7.0, CASEWHEN(MOD(X, 5) = 0, NULL, MOD(X, 1000) - 300) " +
+                "FROM SYSTEM_RANGE(1, 5000)");
+        stat.execute("INSERT INTO R VALUES(-9223372036854775808, " +
+                "NULL, NULL, NULL, NULL, -2147483648), " +
+                "(9223372036854775807, NULL, NULL, 'x', NULL, 2147483647)");
+        stat.execute("INSERT INTO F SELECT * FROM R");
+        ResultSet rs = stat.executeQuery(
+                "EXPLAIN SELECT * FROM F WHERE ID > 10 AND NAME = 'x'");
+        rs.next();
+        assertContains(rs.getString(1), "/* PUBLIC.F.columnScan: ID > 10");
+        String[] conditions = {
+                "ID BETWEEN 1000 AND 2000 AND N > 500",
+                "ID < 0", "ID > 5000000000", "N IS NULL", "N = 1.5",
+                "N > 1.5 AND N < 3.5", "N < -2000000000",
+                "NAME = 'name3'", "NAME > 'name3' AND NAME < 'name7'",
+                "TS >= TIMESTAMP '2017-01-02 00:00:00' " +
+                        "AND TS < TIMESTAMP '2017-01-03 00:00:00'",
+                "D = DATE '2017-01-10'", "AMOUNT > 100.5",
+        };
+        for (String c : conditions) {
+            assertColumnarResult(stat, "SELECT COUNT(*) FROM $ WHERE " + c);
+        }
+        assertColumnarResult(stat, "SELECT SUM(ID), MIN(NAME), MAX(TS) FROM $");
+        stat.execute("DELETE FROM F WHERE N < 0");
+        stat.execute("DELETE FROM R WHERE N < 0");
+        stat.execute("UPDATE F SET NAME = 'y' WHERE ID = 100");
+        stat.execute("UPDATE R SET NAME = 'y' WHERE ID = 100");
+        conn.setAutoCommit(false);
+        stat.execute("DELETE FROM F WHERE ID < 2000");
+        conn.rollback();
+        conn.setAutoCommit(true);
+        rs = stat.executeQuery("SELECT COUNT(*) FROM " +
+                "(SELECT * FROM F EXCEPT SELECT * FROM R)");
+        rs.next();
+        assertEquals(0, rs.getInt(1));
+        assertColumnarResult(stat, "SELECT COUNT(*), SUM(N) FROM $");
+        assertThrows(ErrorCode.FEATURE_NOT_SUPPORTED_1, stat).
+                execute("CREATE INDEX IDX_F ON F(ID)");
+        stat.execute("TRUNCATE TABLE F");
+        rs = stat.executeQuery("SELECT COUNT(*) FROM F");
+        rs.next();
+        assertEquals(0, rs.getInt(1));
+        conn.close();
+        deleteDb("tableEngine");
+    }
+
+    private void assertColumnarResult(Statement stat, String sql)
+            throws SQLException {
+        ResultSet expected = stat.executeQuery(sql.replace("$", "R"));
+        assertTrue(expected.next());
+        int columnCount = expected.getMetaData().getColumnCount();
+        String[] values = new String[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            values[i] = expected.getString(i + 1);
+        }
+        ResultSet rs = stat.executeQuery(sql.replace("$", "F"));
+        assertTrue(rs.next());
+        for (int i = 0; i < columnCount; i++) {
+            assertEquals(sql, values[i], rs.getString(i + 1));
+        }
+    }
+
     private static void forceJoinOrder(Statement s, boolean force) throws SQLException {
         s.executeUpdate("SET FORCE_JOIN_ORDER " + force);
     }
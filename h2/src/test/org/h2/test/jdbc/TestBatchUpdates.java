@@ -62,6 +62,7 @@ public class TestBatchUpdates extends TestBase {
         testRootCause();
         testExecuteCall();
         testException();
+        testGeneratedKeys();
         testCoffee();
         deleteDb("batchUpdates");
     }
@@ -160,6 +161,40 @@ public class TestBatchUpdates extends TestBase {
         conn.close();
     }
 
+    private void testGeneratedKeys() throws SQLException {
+        deleteDb("batchUpdates");
+        conn = getConnection("batchUpdates");
+        stat = conn.createStatement();
+        stat.execute("create table test(id identity, name varchar unique)");
+        prep = conn.prepareStatement("insert into test(name) values(?)");
+        for (int i = 0; i < 5; i++) {
+            prep.setString(1, i == 2 ? "x0" : "x" + i);
+            prep.addBatch();
+        }
+        try {
+            prep.executeBatch();
+            fail();
+        } catch (BatchUpdateException e) {
+            int[] counts = e.getUpdateCounts();
+            assertEquals(5, counts.length);
+            assertEquals(1, counts[0]);
+            assertEquals(1, counts[1]);
+            assertEquals(Statement.EXECUTE_FAILED, counts[2]);
+            assertEquals(1, counts[3]);
+            assertEquals(1, counts[4]);
+            assertTrue(e.getNextException() != null);
+        }
+        ResultSet rs = prep.getGeneratedKeys();
+        for (int i = 1; i <= 4; i++) {
+            assertTrue(rs.next());
+            assertEquals(i <= 2 ? i : i + 1, rs.getInt(1));
+        }
+        rs = stat.executeQuery("select count(*) from test");
+        rs.next();
+        assertEquals(4, rs.getInt(1));
+        conn.close();
+    }
+
     private void testCoffee() throws SQLException {
         deleteDb("batchUpdates");
         conn = getConnection("batchUpdates");
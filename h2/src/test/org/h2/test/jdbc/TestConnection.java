@@ -8,6 +8,8 @@ package org.h2.test.jdbc;
 import org.h2.api.ErrorCode;
 import org.h2.test.TestBase;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLClientInfoException;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -39,6 +41,7 @@ public class TestConnection extends TestBase {
         testSetInternalProperty();
         testSetInternalPropertyToInitialValue();
         testSetGetSchema();
+        testCompressTransfer();
     }
 
     private void testSetInternalProperty() throws SQLException {
@@ -119,6 +122,39 @@ public class TestConnection extends TestBase {
         conn.close();
     }
 
+    private void testCompressTransfer() throws SQLException {
+        deleteDb("compressTransfer");
+        Connection conn = getConnection("compressTransfer;COMPRESS_TRANSFER=TRUE");
+        Statement stat = conn.createStatement();
+        stat.execute("create table test(id int primary key, name varchar)");
+        String[] data = { null, "", "Hello", "\u00e4\u00f6\u00fc \u20ac \u0000",
+                "\ud83d\ude00", "\ud800 \udc00", new String(new char[10000]).replace(
+                        '\u0000', 'x'), null };
+        // longer than the buffer, with characters that span two parts
+        char[] chars = new char[100000];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = "x\u00e4\u20ac".charAt(i % 3);
+        }
+        data[data.length - 1] = new String(chars);
+        PreparedStatement prep = conn.prepareStatement(
+                "insert into test values(?, ?)");
+        for (int i = 0; i < 1000; i++) {
+            prep.setInt(1, i);
+            prep.setString(2, data[i % data.length]);
+            prep.execute();
+        }
+        stat.setFetchSize(10);
+        ResultSet rs = stat.executeQuery("select * from test order by id");
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(rs.next());
+            assertEquals(i, rs.getInt(1));
+            assertEquals(data[i % data.length], rs.getString(2));
+        }
+        assertFalse(rs.next());
+        conn.close();
+        deleteDb("compressTransfer");
+    }
+
     private void testSetGetSchema() throws SQLException {
         if (config.networked) {
             return;
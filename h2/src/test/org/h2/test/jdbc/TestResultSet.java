@@ -76,6 +76,7 @@ public class TestResultSet extends TestBase {
         testColumnLabelColumnName();
         testAbsolute();
         testFetchSize();
+        testInterleavedFetch();
         testOwnUpdates();
         testUpdatePrimaryKey();
         testFindColumn();
@@ -406,6 +407,40 @@ public class TestResultSet extends TestBase {
         assertEquals(a + 1, b);
     }
 
+    private void testInterleavedFetch() throws SQLException {
+        Statement s1 = conn.createStatement();
+        Statement s2 = conn.createStatement();
+        Statement s3 = conn.createStatement();
+        s1.setFetchSize(10);
+        s2.setFetchSize(7);
+        ResultSet rs1 = s1.executeQuery("SELECT * FROM SYSTEM_RANGE(1, 95)");
+        ResultSet rs2 = s2.executeQuery("SELECT * FROM SYSTEM_RANGE(1, 95)");
+        for (int i = 1; i <= 95; i++) {
+            assertTrue(rs1.next());
+            assertEquals(i, rs1.getInt(1));
+            if (i == 30) {
+                rs1.setFetchSize(3);
+            }
+            if (rs2 != null) {
+                assertTrue(rs2.next());
+                assertEquals(i, rs2.getInt(1));
+                if (i == 50) {
+                    rs2.close();
+                    rs2 = null;
+                }
+            }
+            if (i % 20 == 0) {
+                ResultSet rs3 = s3.executeQuery("SELECT " + i);
+                assertTrue(rs3.next());
+                assertEquals(i, rs3.getInt(1));
+            }
+        }
+        assertFalse(rs1.next());
+        s1.close();
+        s2.close();
+        s3.close();
+    }
+
     private void testOwnUpdates() throws SQLException {
         DatabaseMetaData meta = conn.getMetaData();
         for (int i = 0; i < 3; i++) {
@@ -81,8 +81,12 @@ public class TestScript extends TestBase {
         testScript("testScript.sql");
         testScript("altertable-index-reuse.sql");
         testScript("query-optimisations.sql");
+        testScript("select-group-by.sql");
+        testScript("select-hash-join.sql");
+        testScript("select-merge-join.sql");
         testScript("commands-dml-script.sql");
         testScript("commands-dml-create-view.sql");
+        testScript("commands-dml-insert.sql");
         for (String s : new String[] { "array", "bigint", "binary", "blob",
                 "boolean", "char", "clob", "date", "decimal", "double", "enum",
                 "geometry", "identity", "int", "other", "real", "smallint",
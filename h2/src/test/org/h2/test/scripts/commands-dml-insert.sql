@@ -0,0 +1,107 @@
+-- Copyright 2004-2014 H2 Group. Multiple-Licensed under the MPL 2.0,
+-- and the EPL 1.0 (http://h2database.com/html/license.html).
+-- Initial Developer: H2 Group
+--
+
+create table test(id int primary key, name varchar unique, v int);
+> ok
+
+create index test_v on test(v);
+> ok
+
+insert into test values(3, 'c', 30), (1, 'a', 10), (2, 'b', 20);
+> update count: 3
+
+insert into test values(5, 'e', 50), (4, 'a', 40);
+> exception
+
+insert into test values(6, 'f', 60), (6, 'g', 70);
+> exception
+
+select * from test order by id;
+> ID NAME V
+> -- ---- --
+> 1  a    10
+> 2  b    20
+> 3  c    30
+> rows (ordered): 3
+
+select id from test where v = 20;
+> ID
+> --
+> 2
+> rows: 1
+
+select id from test where name = 'c';
+> ID
+> --
+> 3
+> rows: 1
+
+drop table test;
+> ok
+
+create table test(id identity, v int);
+> ok
+
+insert into test(v) values(10), (20), (30);
+> update count: 3
+
+select * from test order by id;
+> ID V
+> -- --
+> 1  10
+> 2  20
+> 3  30
+> rows (ordered): 3
+
+drop table test;
+> ok
+
+create table parent(id int primary key);
+> ok
+
+create table child(id int primary key, parent_id int references parent(id));
+> ok
+
+insert into parent values(1), (2);
+> update count: 2
+
+insert into child values(1, 1), (2, 3);
+> exception
+
+insert into child values(1, 1), (2, 2), (3, null);
+> update count: 3
+
+select count(*) from child;
+> COUNT(*)
+> --------
+> 3
+> rows: 1
+
+drop table child, parent;
+> ok
+
+create table test(id int primary key, parent_id int references test(id));
+> ok
+
+insert into test values(1, null), (2, 1), (3, 2);
+> update count: 3
+
+insert into test values(4, 5), (5, null);
+> exception
+
+drop table test;
+> ok
+
+create table test(id int primary key, v int, check (v > 0));
+> ok
+
+insert into test values(1, 1), (2, 0);
+> exception
+
+insert into test values(1, 1), (2, 2);
+> update count: 2
+
+drop table test;
+> ok
@@ -0,0 +1,77 @@
+-- Copyright 2004-2014 H2 Group. Multiple-Licensed under the MPL 2.0,
+-- and the EPL 1.0 (http://h2database.com/html/license.html).
+-- Initial Developer: H2 Group
+--
+
+create table test(id int primary key, g int, l bigint, s varchar, v int, b bigint);
+> ok
+
+select g, count(*), sum(v) from test group by g;
+> G COUNT(*) SUM(V)
+> - -------- ------
+> rows: 0
+
+select count(*), sum(v), min(v), max(v), avg(v) from test;
+> COUNT(*) SUM(V) MIN(V) MAX(V) AVG(V)
+> -------- ------ ------ ------ ------
+> 0        null   null   null   null
+> rows: 1
+
+insert into test values (1, 1, 1, 'a', 10, 9223372036854775807), (2, 1, 1, 'a', 20, 1),
+    (3, 2, 0, 'b', null, 2), (4, null, null, null, 5, 3), (5, 0, 4294967296, 'c', -7, 4),
+    (6, 2, 0, 'b', 3, 5), (7, null, null, null, 4, 6);
+> update count: 7
+
+select g, count(*), count(v), sum(v), min(v), max(v), avg(v) from test group by g order by g;
+> G    COUNT(*) COUNT(V) SUM(V) MIN(V) MAX(V) AVG(V)
+> ---- -------- -------- ------ ------ ------ ------
+> null 2        2        9      4      5      4
+> 0    1        1        -7     -7     -7     -7
+> 1    2        2        30     10     20     15
+> 2    2        1        3      3      3      3
+> rows (ordered): 4
+
+select l, count(*), sum(v) from test group by l order by l;
+> L          COUNT(*) SUM(V)
+> ---------- -------- ------
+> null       2        9
+> 0          2        3
+> 1          2        30
+> 4294967296 1        -7
+> rows (ordered): 4
+
+select s, count(distinct v), group_concat(id order by id), sum(v) s from test group by s order by s;
+> S    COUNT(DISTINCT V) GROUP_CONCAT(ID ORDER BY ID) S
+> ---- ----------------- ---------------------------- --
+> null 2                 4,7                          9
+> a    2                 1,2                          30
+> b    1                 3,6                          3
+> c    1                 5                            -7
+> rows (ordered): 4
+
+select g, sum(b) from test group by g order by g;
+> G    SUM(B)
+> ---- -------------------
+> null 9
+> 0    4
+> 1    9223372036854775808
+> 2    7
+> rows (ordered): 4
+
+select g, max(b), min(l), count(*) c from test group by g order by c desc, g;
+> G    MAX(B)              MIN(L)     C
+> ---- ------------------- ---------- -
+> null 6                   null       2
+> 1    9223372036854775807 1          2
+> 2    5                   0          2
+> 0    4                   4294967296 1
+> rows (ordered): 4
+
+select sum(v), count(*) from test where g = 1;
+> SUM(V) COUNT(*)
+> ------ --------
+> 30     2
+> rows: 1
+
+drop table test;
+> ok
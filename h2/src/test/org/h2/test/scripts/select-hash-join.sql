@@ -0,0 +1,132 @@
+-- Copyright 2004-2014 H2 Group. Multiple-Licensed under the MPL 2.0,
+-- and the EPL 1.0 (http://h2database.com/html/license.html).
+-- Initial Developer: H2 Group
+--
+
+create table a(id int primary key, x int, s varchar) as select x, mod(x, 5), 'x' || mod(x, 3) from system_range(1, 20);
+> ok
+
+create table b(id int primary key, x bigint, s varchar, n int);
+> ok
+
+insert into b values(1, 1, 'x1', null), (2, 1, 'x2', 10), (3, 4, 'x0', null), (4, null, null, 20), (5, 7, 'x7', 30);
+> update count: 5
+
+-- small tables are scanned
+explain select a.id, b.id from a, b where a.x = b.n;
+> PLAN
+> ----------------------------------------------------------------------------------------------------------------------------
+> SELECT A.ID, B.ID FROM PUBLIC.A /* PUBLIC.A.tableScan */ INNER JOIN PUBLIC.B /* PUBLIC.B.tableScan */ ON 1=1 WHERE A.X = B.N
+> rows: 1
+
+insert into a select x, null, null from system_range(21, 1020);
+> update count: 1000
+
+explain select a.id, b.id from a, b where a.x = b.n;
+> PLAN
+> ------------------------------------------------------------------------------------------------------------------------------------
+> SELECT A.ID, B.ID FROM PUBLIC.B /* PUBLIC.B.tableScan */ INNER JOIN PUBLIC.A /* PUBLIC.A.hashJoin: X = B.N */ ON 1=1 WHERE A.X = B.N
+> rows: 1
+
+explain select a.id, b.id from b, a where a.x = b.x and b.id = 2;
+> PLAN
+> ---------------------------------------------------------------------------------------------------------------------------------------------------------------------------------------
+> SELECT A.ID, B.ID FROM PUBLIC.B /* PUBLIC.PRIMARY_KEY_42_0: ID = 2 */ /* WHERE B.ID = 2 */ INNER JOIN PUBLIC.A /* PUBLIC.A.hashJoin: X = B.X */ ON 1=1 WHERE (B.ID = 2) AND (A.X = B.X)
+> rows: 1
+
+select a.id, b.id from b, a where a.x = b.x and b.id < 3 order by a.id, b.id;
+> ID ID
+> -- --
+> 1  1
+> 1  2
+> 6  1
+> 6  2
+> 11 1
+> 11 2
+> 16 1
+> 16 2
+> rows (ordered): 8
+
+select a.id, b.id from b, a where b.x = a.x order by b.id, a.id;
+> ID ID
+> -- --
+> 1  1
+> 6  1
+> 11 1
+> 16 1
+> 1  2
+> 6  2
+> 11 2
+> 16 2
+> 4  3
+> 9  3
+> 14 3
+> 19 3
+> rows (ordered): 12
+
+explain select b.id, a.id from b left join a on a.x = b.x and a.s = 'x1';
+> PLAN
+> --------------------------------------------------------------------------------------------------------------------------------------------------
+> SELECT B.ID, A.ID FROM PUBLIC.B /* PUBLIC.B.tableScan */ LEFT OUTER JOIN PUBLIC.A /* PUBLIC.A.hashJoin: X = B.X */ ON (A.S = 'x1') AND (A.X = B.X)
+> rows: 1
+
+select b.id, a.id from b left join a on a.x = b.x and a.s = 'x1' order by b.id, a.id;
+> ID ID
+> -- ----
+> 1  1
+> 1  16
+> 2  1
+> 2  16
+> 3  4
+> 3  19
+> 4  null
+> 5  null
+> rows (ordered): 8
+
+select count(*) from a, b where a.s = b.s;
+> COUNT(*)
+> --------
+> 20
+> rows: 1
+
+select count(*) from a, b where a.x = b.id + 0.5;
+> COUNT(*)
+> --------
+> 0
+> rows: 1
+
+select count(*) from a, b where a.s = b.x;
+> exception
+
+update b set s = 'X0' where id = 3;
+> update count: 1
+
+set ignorecase true;
+> ok
+
+create table c(id int primary key, s varchar);
+> ok
+
+insert into c values(1, 'X0'), (2, 'x1');
+> update count: 2
+
+explain select c.id, a.id from a, c where a.s = c.s;
+> PLAN
+> ------------------------------------------------------------------------------------------------------------------------------------
+> SELECT C.ID, A.ID FROM PUBLIC.C /* PUBLIC.C.tableScan */ INNER JOIN PUBLIC.A /* PUBLIC.A.hashJoin: S = C.S */ ON 1=1 WHERE A.S = C.S
+> rows: 1
+
+select c.id, a.id from a, c where a.s = c.s and a.id < 7 order by c.id, a.id;
+> ID ID
+> -- --
+> 1  3
+> 1  6
+> 2  1
+> 2  4
+> rows (ordered): 4
+
+set ignorecase false;
+> ok
+
+drop table a, b, c;
+> ok
@@ -0,0 +1,82 @@
+-- Copyright 2004-2014 H2 Group. Multiple-Licensed under the MPL 2.0,
+-- and the EPL 1.0 (http://h2database.com/html/license.html).
+-- Initial Developer: H2 Group
+--
+
+create table a(id int primary key, v int);
+> ok
+
+create table b(id int primary key, a_id int, v int);
+> ok
+
+create index b_a_id on b(a_id);
+> ok
+
+insert into a select x, x * 10 from system_range(1, 100);
+> update count: 100
+
+insert into b select x, case when mod(x, 3) = 0 then null else mod(x, 50) * 2 end, x from system_range(1, 150);
+> update count: 150
+
+explain select count(*) from a inner join b on b.a_id = a.id;
+> PLAN
+> ----------------------------------------------------------------------------------------------------------------------------------------------------------------
+> SELECT COUNT(*) FROM PUBLIC.A /* PUBLIC.A.tableScan */ INNER JOIN PUBLIC.B /* mergeJoin:PUBLIC.B_A_ID: A_ID = A.ID AND A_ID = A.ID */ ON 1=1 WHERE B.A_ID = A.ID
+> rows: 1
+
+select count(*), sum(a.v), sum(b.v) from a inner join b on b.a_id = a.id;
+> COUNT(*) SUM(A.V) SUM(B.V)
+> -------- -------- --------
+> 98       49000    7350
+> rows: 1
+
+select a.id, b.id from a inner join b on b.a_id = a.id where a.id between 60 and 64 order by a.id, b.id;
+> ID ID
+> -- ---
+> 60 80
+> 60 130
+> 62 31
+> 62 131
+> 64 32
+> 64 82
+> rows (ordered): 6
+
+select count(*) from a inner join b on b.a_id = a.id where a.id > 95 or a.id < 3;
+> COUNT(*)
+> --------
+> 6
+> rows: 1
+
+select a.id, count(*) from a inner join b on b.a_id = a.id where mod(a.id, 40) = 0 group by a.id order by a.id;
+> ID COUNT(*)
+> -- --------
+> 40 2
+> 80 2
+> rows (ordered): 2
+
+create table c(id int primary key, b_id int);
+> ok
+
+create index c_b_id on c(b_id);
+> ok
+
+insert into c select x, mod(x * 7, 150) from system_range(1, 300);
+> update count: 300
+
+explain select count(*) from a inner join b on b.a_id = a.id inner join c on c.b_id = b.id;
+> PLAN
+> --------------------------------------------------------------------------------------------------------------------------------------------------------------------------------------------------------------------------------------------------------------------------------------------
+> SELECT COUNT(*) FROM PUBLIC.A /* PUBLIC.A.tableScan */ INNER JOIN PUBLIC.B /* mergeJoin:PUBLIC.B_A_ID: A_ID = A.ID AND A_ID = A.ID */ ON 1=1 /* WHERE B.A_ID = A.ID */ INNER JOIN PUBLIC.C /* PUBLIC.C_B_ID: B_ID = B.ID AND B_ID = B.ID */ ON 1=1 WHERE (C.B_ID = B.ID) AND (B.A_ID = A.ID)
+> rows: 1
+
+select count(*), sum(c.id) from a inner join b on b.a_id = a.id inner join c on c.b_id = b.id;
+> COUNT(*) SUM(C.ID)
+> -------- ---------
+> 196      29400
+> rows: 1
+
+drop table c;
+> ok
+
+drop table a, b;
+> ok
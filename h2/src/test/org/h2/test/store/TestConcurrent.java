@@ -49,6 +49,9 @@ public class TestConcurrent extends TestMVStore {
         FileUtils.createDirectories(getBaseDir());
         testInterruptReopen();
         testConcurrentSaveCompact();
+        testConcurrentCommitAndRead();
+        testConcurrentCommitAndSync();
+        testCommitAndSyncWithoutChanges();
         testConcurrentDataType();
         testConcurrentAutoCommitAndChange();
         testConcurrentReplaceAndRead();
@@ -61,6 +64,7 @@ public class TestConcurrent extends TestMVStore {
         testConcurrentMap();
         testConcurrentIterate();
         testConcurrentWrite();
+        testConcurrentPutRemove();
         testConcurrentRead();
     }
 
@@ -129,6 +133,122 @@ public class TestConcurrent extends TestMVStore {
         }
     }
 
+    private void testConcurrentCommitAndRead() throws Exception {
+        String fileName = getBaseDir() + "/" + getTestName();
+        FileUtils.delete(fileName);
+        MVStore s = new MVStore.Builder().
+                fileName(fileName).
+                pageSplitSize(100).
+                cacheSize(0).
+                autoCommitDisabled().
+                open();
+        try {
+            final MVStore store = s;
+            final MVMap<Integer, Integer> map = s.openMap("data");
+            final AtomicInteger written = new AtomicInteger();
+            Task task = new Task() {
+                @Override
+                public void call() throws Exception {
+                    Random r = new Random(1);
+                    while (!stop) {
+                        // pages of the chunk that is being written
+                        // are read by this thread
+                        int max = written.get();
+                        if (max > 0) {
+                            int x = r.nextInt(max);
+                            assertEquals(x, map.get(x).intValue());
+                        }
+                        store.commit();
+                    }
+                }
+            };
+            task.execute();
+            for (int i = 0; i < 5000 && !task.isFinished(); i++) {
+                map.put(i, i);
+                written.set(i + 1);
+                if (i % 10 == 0) {
+                    s.commit();
+                }
+            }
+            task.get();
+            s.close();
+            s = new MVStore.Builder().
+                    fileName(fileName).
+                    open();
+            MVMap<Integer, Integer> m = s.openMap("data");
+            assertEquals(written.get(), m.size());
+            for (int i = 0; i < written.get(); i++) {
+                assertEquals(i, m.get(i).intValue());
+            }
+        } finally {
+            s.close();
+        }
+    }
+
+    private void testConcurrentCommitAndSync() throws Exception {
+        String fileName = getBaseDir() + "/" + getTestName();
+        FileUtils.delete(fileName);
+        final MVStore s = new MVStore.Builder().
+                fileName(fileName).
+                autoCommitDisabled().
+                open();
+        final MVMap<Integer, Integer> map = s.openMap("data");
+        int threadCount = 4;
+        final int count = 200;
+        Task[] tasks = new Task[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            final int offset = i * count;
+            tasks[i] = new Task() {
+                @Override
+                public void call() throws Exception {
+                    for (int j = 0; j < count; j++) {
+                        map.put(offset + j, j);
+                        s.commitAndSync();
+                    }
+                }
+            };
+            tasks[i].execute();
+        }
+        for (Task t : tasks) {
+            t.get();
+        }
+        // at most one version per call
+        assertTrue(s.getCurrentVersion() <= threadCount * count);
+        // all changes are stored, even without closing normally
+        s.closeImmediately();
+        MVStore s2 = new MVStore.Builder().
+                fileName(fileName).
+                open();
+        MVMap<Integer, Integer> m = s2.openMap("data");
+        assertEquals(threadCount * count, m.size());
+        s2.close();
+    }
+
+    private void testCommitAndSyncWithoutChanges() {
+        String fileName = getBaseDir() + "/" + getTestName();
+        FileUtils.delete(fileName);
+        MVStore s = new MVStore.Builder().
+                fileName(fileName).
+                autoCommitDisabled().
+                open();
+        MVMap<Integer, Integer> map = s.openMap("data");
+        map.put(1, 10);
+        s.commitAndSync();
+        // nothing to store, the version is not incremented
+        s.commitAndSync();
+        // changed in the same version as the last (empty) commit
+        map.put(2, 20);
+        s.commitAndSync();
+        s.closeImmediately();
+        s = new MVStore.Builder().
+                fileName(fileName).
+                open();
+        map = s.openMap("data");
+        assertEquals(10, map.get(1).intValue());
+        assertEquals(20, map.get(2).intValue());
+        s.close();
+    }
+
     private void testConcurrentDataType() throws InterruptedException {
         final ObjectDataType type = new ObjectDataType();
         final Object[] data = new Object[]{
@@ -760,6 +880,57 @@ public class TestConcurrent extends TestMVStore {
         s.close();
     }
 
+    /**
+     * Test that writers to different keys of the same map do not lose updates.
+     */
+    private void testConcurrentPutRemove() throws InterruptedException {
+        final MVStore s = openStore(null);
+        final MVMap<Integer, Integer> m = s.openMap("data");
+        final int threadCount = 4;
+        final int size = 2000;
+        Task[] tasks = new Task[threadCount];
+        for (int t = 0; t < threadCount; t++) {
+            final int offset = t * size;
+            tasks[t] = new Task() {
+                @Override
+                public void call() throws Exception {
+                    for (int i = 0; i < size; i++) {
+                        m.put(offset + i, i);
+                    }
+                    for (int i = 0; i < size; i += 2) {
+                        m.remove(offset + i);
+                    }
+                    for (int i = 1; i < size; i += 2) {
+                        if (!m.replace(offset + i, i, -i)) {
+                            throw new AssertionError("replace " + (offset + i));
+                        }
+                    }
+                    for (int i = 0; i < size; i += 2) {
+                        if (m.putIfAbsent(offset + i, i) != null) {
+                            throw new AssertionError("putIfAbsent " + (offset + i));
+                        }
+                    }
+                }
+            };
+            tasks[t].execute();
+        }
+        for (int i = 0; i < 10; i++) {
+            s.commit();
+            Thread.sleep(1);
+        }
+        for (Task t : tasks) {
+            t.get();
+        }
+        assertEquals(threadCount * size, m.size());
+        for (int t = 0; t < threadCount; t++) {
+            for (int i = 0; i < size; i++) {
+                int expected = (i & 1) == 0 ? i : -i;
+                assertEquals(expected, m.get(t * size + i).intValue());
+            }
+        }
+        s.close();
+    }
+
     private static void testConcurrentRead() throws InterruptedException {
         final MVStore s = openStore(null);
         final MVMap<Integer, Integer> m = s.openMap("data");
@@ -21,8 +21,11 @@ import org.h2.mvstore.Cursor;
 import org.h2.mvstore.DataUtils;
 import org.h2.mvstore.FileStore;
 import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVMapAppender;
 import org.h2.mvstore.MVStore;
 import org.h2.mvstore.OffHeapStore;
+import org.h2.mvstore.db.ValueDataType;
+import org.h2.mvstore.db.ValueLongDataType;
 import org.h2.mvstore.type.DataType;
 import org.h2.mvstore.type.ObjectDataType;
 import org.h2.mvstore.type.StringDataType;
@@ -30,6 +33,8 @@ import org.h2.store.fs.FilePath;
 import org.h2.store.fs.FileUtils;
 import org.h2.test.TestBase;
 import org.h2.test.utils.AssertThrows;
+import org.h2.value.Value;
+import org.h2.value.ValueLong;
 
 /**
  * Tests the MVStore.
@@ -70,6 +75,7 @@ public class TestMVStore extends TestBase {
         testBackgroundExceptionListener();
         testOldVersion();
         testAtomicOperations();
+        testAppender();
         testWriteBuffer();
         testWriteDelay();
         testEncryptedFile();
@@ -78,6 +84,8 @@ public class TestMVStore extends TestBase {
         testRenameMapRollback();
         testCustomMapType();
         testCacheSize();
+        testOffHeapCache();
+        testLongKeys();
         testConcurrentOpen();
         testFileHeader();
         testFileHeaderCorruption();
@@ -99,6 +107,7 @@ public class TestMVStore extends TestBase {
         testLargeImport();
         testBtreeStore();
         testCompact();
+        testCompactThreads();
         testCompactMapNotOpen();
         testReuseSpace();
         testRandom();
@@ -575,6 +584,70 @@ public class TestMVStore extends TestBase {
         FileUtils.delete(fileName);
     }
 
+    private void testAppender() {
+        String fileName = getBaseDir() + "/" + getTestName();
+        FileUtils.delete(fileName);
+        for (int test = 0; test < 2; test++) {
+            MVStore s = new MVStore.Builder().
+                    fileName(test == 0 ? fileName : null).
+                    pageSplitSize(1000).open();
+            final MVMap<Integer, String> m = s.openMap("data");
+            m.put(-1, "x");
+            m.put(0, "x");
+            final MVMapAppender<Integer, String> appender =
+                    new MVMapAppender<>(m);
+            final int count = 10000;
+            for (int i = 1; i <= count; i++) {
+                appender.append(i, "Hello " + i);
+                if (i == count / 2) {
+                    appender.flush();
+                    s.commit();
+                }
+            }
+            new AssertThrows(IllegalArgumentException.class) {
+                @Override
+                public void test() {
+                    appender.append(count, "Hello");
+                }
+            };
+            appender.flush();
+            assertEquals(count, appender.getCount());
+            assertEquals(count + 2, m.sizeAsLong());
+            m.put(count + 1, "y");
+            m.remove(0);
+            final MVMapAppender<Integer, String> appender2 =
+                    new MVMapAppender<>(m);
+            appender2.append(count, "Hello");
+            new AssertThrows(IllegalArgumentException.class) {
+                @Override
+                public void test() {
+                    appender2.flush();
+                }
+            };
+            for (int i = 1; i <= count; i++) {
+                assertEquals("Hello " + i, m.get(i));
+                assertEquals(i, m.getKeyIndex(i));
+            }
+            Iterator<Integer> it = m.keyIterator(null);
+            for (int i = -1; i <= count + 1; i++) {
+                if (i != 0) {
+                    assertEquals(i, it.next().intValue());
+                }
+            }
+            assertFalse(it.hasNext());
+            s.close();
+            if (test == 0) {
+                s = new MVStore.Builder().fileName(fileName).open();
+                MVMap<Integer, String> m2 = s.openMap("data");
+                assertEquals(count + 2, m2.sizeAsLong());
+                assertEquals("Hello " + count, m2.get(count));
+                assertEquals("y", m2.get(count + 1));
+                s.close();
+            }
+        }
+        FileUtils.delete(fileName);
+    }
+
     private void testWriteBuffer() {
         String fileName = getBaseDir() + "/" + getTestName();
         FileUtils.delete(fileName);
@@ -853,6 +926,116 @@ public class TestMVStore extends TestBase {
 
     }
 
+    private void testOffHeapCache() {
+        String fileName = getBaseDir() + "/" + getTestName();
+        FileUtils.delete(fileName);
+        MVStore s;
+        MVMap<Integer, String> map;
+        s = new MVStore.Builder().
+                fileName(fileName).
+                autoCommitDisabled().
+                compress().open();
+        assertNull(s.getOffHeapCache());
+        map = s.openMap("test");
+        // add 10 MB of data
+        for (int i = 0; i < 1024; i++) {
+            map.put(i, i + new String(new char[10240]));
+        }
+        s.close();
+        s = new MVStore.Builder().
+                fileName(fileName).
+                autoCommitDisabled().
+                cacheSize(1).
+                offHeapCacheSize(32).open();
+        map = s.openMap("test");
+        for (int i = 0; i < 1024; i++) {
+            assertEquals(i + new String(new char[10240]), map.get(i));
+        }
+        long readCount = s.getFileStore().getReadCount();
+        assertTrue(s.getOffHeapCache().getUsedMemory() > 10 * 1024 * 1024);
+        // the pages don't fit in the read cache, but are in the
+        // off-heap cache
+        for (int i = 0; i < 1024; i++) {
+            assertEquals(i + new String(new char[10240]), map.get(i));
+        }
+        assertEquals(readCount, s.getFileStore().getReadCount());
+        // changed pages must not be read from the off-heap cache
+        for (int i = 0; i < 1024; i += 2) {
+            map.put(i, "x" + i);
+        }
+        s.commit();
+        for (int i = 0; i < 1024; i++) {
+            String expected = i % 2 == 0 ?
+                    "x" + i : i + new String(new char[10240]);
+            assertEquals(expected, map.get(i));
+        }
+        s.close();
+        assertEquals(0, s.getOffHeapCache().getUsedMemory());
+    }
+
+    private void testLongKeys() {
+        String fileName = getBaseDir() + "/" + getTestName();
+        FileUtils.delete(fileName);
+        MVStore s = new MVStore.Builder().
+                fileName(fileName).
+                pageSplitSize(100).
+                autoCommitDisabled().open();
+        MVMap<Value, String> map = s.openMap("test",
+                new MVMap.Builder<Value, String>().
+                keyType(new ValueLongDataType()).
+                valueType(StringDataType.INSTANCE));
+        TreeMap<Long, String> expected = new TreeMap<>();
+        Random r = new Random(1);
+        for (int i = 0; i < 5000; i++) {
+            long k = r.nextInt(2000) - 200;
+            if (r.nextInt(4) == 0) {
+                assertEquals(expected.remove(k), map.remove(ValueLong.get(k)));
+            } else {
+                assertEquals(expected.put(k, "v" + i),
+                        map.put(ValueLong.get(k), "v" + i));
+            }
+            if (i % 1000 == 0) {
+                s.commit();
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        assertEquals(expected.firstKey().longValue(),
+                map.firstKey().getLong());
+        assertEquals(expected.ceilingKey(100L).longValue(),
+                map.ceilingKey(ValueLong.get(100)).getLong());
+        assertEquals(expected.floorKey(-1L).longValue(),
+                map.floorKey(ValueLong.get(-1)).getLong());
+        s.close();
+
+        // the storage format is the same as with the ValueDataType
+        s = new MVStore.Builder().
+                fileName(fileName).open();
+        map = s.openMap("test",
+                new MVMap.Builder<Value, String>().
+                keyType(new ValueDataType(null, null, null)).
+                valueType(StringDataType.INSTANCE));
+        Iterator<Value> it = map.keyIterator(null);
+        for (Entry<Long, String> e : expected.entrySet()) {
+            Value k = it.next();
+            assertEquals(e.getKey().longValue(), k.getLong());
+            assertEquals(e.getValue(), map.get(k));
+        }
+        assertFalse(it.hasNext());
+        s.close();
+
+        s = new MVStore.Builder().
+                fileName(fileName).open();
+        map = s.openMap("test",
+                new MVMap.Builder<Value, String>().
+                keyType(new ValueLongDataType()).
+                valueType(StringDataType.INSTANCE));
+        assertEquals(expected.size(), map.size());
+        for (Entry<Long, String> e : expected.entrySet()) {
+            assertEquals(e.getValue(), map.get(ValueLong.get(e.getKey())));
+        }
+        s.close();
+    }
+
     private void testConcurrentOpen() {
         String fileName = getBaseDir() + "/" + getTestName();
         FileUtils.delete(fileName);
@@ -1818,6 +2001,53 @@ public class TestMVStore extends TestBase {
         // System.out.println("len2: " + len);
     }
 
+    private void testCompactThreads() {
+        String fileName = getBaseDir() + "/" + getTestName();
+        FileUtils.delete(fileName);
+        MVStore s = new MVStore.Builder().
+                fileName(fileName).
+                pageSplitSize(1000).
+                compactThreads(4).
+                autoCommitDisabled().
+                open();
+        s.setRetentionTime(0);
+        MVMap<Integer, String> m = s.openMap("data");
+        MVMap<Integer, String> m2 = s.openMap("data2");
+        for (int i = 0; i < 20000; i++) {
+            m.put(i, "Hello " + i);
+            m2.put(i, "World " + i);
+            if (i % 1000 == 0) {
+                s.commit();
+            }
+        }
+        s.commit();
+        for (int i = 0; i < 20000; i++) {
+            if (i % 10 != 0) {
+                m.remove(i);
+                m2.remove(i);
+            }
+        }
+        s.commit();
+        long chunkCount = s.getCurrentVersion();
+        // re-writes more than one step of pages
+        while (s.compact(90, 1024 * 1024)) {
+            // repeat
+        }
+        assertTrue(s.getCurrentVersion() > chunkCount + 1);
+        s.close();
+
+        s = openStore(fileName);
+        m = s.openMap("data");
+        m2 = s.openMap("data2");
+        assertEquals(2000, m.size());
+        assertEquals(2000, m2.size());
+        for (int i = 0; i < 20000; i += 10) {
+            assertEquals("Hello " + i, m.get(i));
+            assertEquals("World " + i, m2.get(i));
+        }
+        s.close();
+    }
+
     private void testReuseSpace() {
         String fileName = getBaseDir() + "/" + getTestName();
         FileUtils.delete(fileName);
@@ -61,6 +61,8 @@ public class TestMVTableEngine extends TestBase {
         testTemporaryTables();
         testUniqueIndex();
         testSecondaryIndex();
+        testCreateIndexParallel();
+        testBulkInsert();
         testGarbageCollectionForLOB();
         testSpatial();
         testCount();
@@ -434,6 +436,124 @@ public class TestMVTableEngine extends TestBase {
         conn.close();
     }
 
+    private void testCreateIndexParallel() throws SQLException {
+        Connection conn;
+        Statement stat;
+        deleteDb(getTestName());
+        String url = getTestName() + ";MV_STORE=TRUE" +
+                ";CREATE_INDEX_THREADS=4;MAX_MEMORY_ROWS=1000";
+        url = getURL(url, true);
+        conn = getConnection(url);
+        stat = conn.createStatement();
+        stat.execute("create table test(id int primary key, " +
+                "a int, b varchar, c int)");
+        int size = 20000;
+        stat.execute("insert into test select x, mod(x * 7919, " + size +
+                "), mod(x, 100), case when mod(x, 10) = 0 then null " +
+                "else mod(x, 30) end from system_range(1, " + size + ")");
+        stat.execute("create unique index idx_a on test(a)");
+        stat.execute("create index idx_b on test(b desc, c)");
+        ResultSet rs = stat.executeQuery("select count(*) from test " +
+                "where a between 100 and 1099");
+        rs.next();
+        assertEquals(1000, rs.getInt(1));
+        rs = stat.executeQuery("select count(*) from test " +
+                "where b = '12' and c = 12");
+        rs.next();
+        assertEquals(67, rs.getInt(1));
+        stat.execute("drop index idx_a");
+        stat.execute("update test set a = 5 where id = 100");
+        assertThrows(ErrorCode.DUPLICATE_KEY_1, stat).
+                execute("create unique index idx_a on test(a)");
+        stat.execute("update test set a = null where id <= 100");
+        stat.execute("create unique index idx_a on test(a)");
+        conn.close();
+        conn = getConnection(url);
+        stat = conn.createStatement();
+        rs = stat.executeQuery("select count(*) from test where a is null");
+        rs.next();
+        assertEquals(100, rs.getInt(1));
+        rs = stat.executeQuery("select a from test " +
+                "where a is not null order by a");
+        int count = 0;
+        int last = -1;
+        while (rs.next()) {
+            assertTrue(rs.getInt(1) > last);
+            last = rs.getInt(1);
+            count++;
+        }
+        assertEquals(size - 100, count);
+        rs = stat.executeQuery("select count(*) from test t1 " +
+                "where b = '12' and exists(select * from test t2 " +
+                "where t2.b = t1.b and t2.c = t1.c and t2.id = t1.id)");
+        rs.next();
+        assertEquals(200, rs.getInt(1));
+        conn.close();
+    }
+
+    private void testBulkInsert() throws SQLException {
+        Connection conn;
+        Statement stat;
+        ResultSet rs;
+        deleteDb(getTestName());
+        String url = getTestName() + ";MV_STORE=TRUE";
+        url = getURL(url, true);
+        conn = getConnection(url);
+        stat = conn.createStatement();
+        int size = 20000;
+        stat.execute("create table test(id int primary key, name varchar) " +
+                "as select x, 'Hello ' || x from system_range(1, " + size + ")");
+        stat.execute("create table test2 as select x, 'Hello ' || x name " +
+                "from system_range(1, " + size + ")");
+        assertThrows(ErrorCode.DUPLICATE_KEY_1, stat).execute(
+                "create table test3(id int primary key) as " +
+                "select mod(x, 1000) from system_range(1, 2000)");
+        stat.execute("script to '" + getBaseDir() + "/backup.sql'");
+        stat.execute("drop all objects");
+        stat.execute("runscript from '" + getBaseDir() + "/backup.sql'");
+        FileUtils.delete(getBaseDir() + "/backup.sql");
+        stat.execute("set undo_log 0");
+        // the rows of a failed statement are removed
+        assertThrows(ErrorCode.DUPLICATE_KEY_1, stat).execute(
+                "insert into test direct select * from (" +
+                "select x, 'World' from system_range(" + (size + 1) +
+                ", " + (2 * size) + ") union all select 1, 'World')");
+        // rows added to an existing table can be rolled back
+        conn.setAutoCommit(false);
+        stat.execute("insert into test direct select x, 'World' " +
+                "from system_range(" + (size + 1) + ", " + (2 * size) + ")");
+        conn.rollback();
+        conn.setAutoCommit(true);
+        rs = stat.executeQuery("select count(*) from test");
+        rs.next();
+        assertEquals(size, rs.getInt(1));
+        stat.execute("insert into test direct select x, 'World' " +
+                "from system_range(" + (size + 1) + ", " + (2 * size) + ")");
+        stat.execute("insert into test2 direct select * from test2");
+        stat.execute("set undo_log 1");
+        conn.close();
+        conn = getConnection(url);
+        stat = conn.createStatement();
+        rs = stat.executeQuery("select count(*), sum(id), " +
+                "sum(case when name = 'World' then 1 else 0 end) from test");
+        rs.next();
+        assertEquals(2 * size, rs.getInt(1));
+        assertEquals((long) size * (2 * size + 1), rs.getLong(2));
+        assertEquals(size, rs.getInt(3));
+        rs = stat.executeQuery("select name from test where id = 12345");
+        rs.next();
+        assertEquals("Hello 12345", rs.getString(1));
+        rs = stat.executeQuery("select count(*), count(distinct x) from test2");
+        rs.next();
+        assertEquals(2 * size, rs.getInt(1));
+        assertEquals(size, rs.getInt(2));
+        rs = stat.executeQuery("select count(*) from information_schema.tables " +
+                "where table_name = 'TEST3'");
+        rs.next();
+        assertEquals(0, rs.getInt(1));
+        conn.close();
+    }
+
     private void testGarbageCollectionForLOB() throws SQLException {
         if (config.memory) {
             return;
@@ -542,8 +662,9 @@ public class TestMVTableEngine extends TestBase {
         rs = stat2.executeQuery("explain analyze select count(*) from test");
         rs.next();
         plan = rs.getString(1);
-        // transaction log is larger than the table, so read the table
-        assertContains(plan, "reads:");
+        // transaction log is larger than the table, but the number of
+        // committed rows is known, so there is still no need to read the table
+        assertTrue(plan, plan.indexOf("reads:") < 0);
         rs = stat2.executeQuery("select count(*) from test");
         rs.next();
         assertEquals(10000, rs.getInt(1));
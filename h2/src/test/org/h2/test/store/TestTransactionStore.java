@@ -47,19 +47,23 @@ public class TestTransactionStore extends TestBase {
         testConcurrentAddRemove();
         testConcurrentAdd();
         testCountWithOpenTransactions();
+        testCountWithOwnChanges();
         testConcurrentUpdate();
         testRepeatedChange();
         testTransactionAge();
+        testManyOpenTransactions();
         testStopWhileCommitting();
         testGetModifiedMaps();
         testKeyIterator();
         testMultiStatement();
         testTwoPhaseCommit();
+        testSharedUndoLog();
         testSavepoint();
         testConcurrentTransactionsReadCommitted();
         testSingleConnection();
         testCompareWithPostgreSQL();
         testStoreMultiThreadedReads();
+        testReadUncommittedWithoutCache();
     }
 
     private static void testConcurrentAddRemove() throws InterruptedException {
@@ -199,6 +203,98 @@ public class TestTransactionStore extends TestBase {
         s.close();
     }
 
+    private void testCountWithOwnChanges() {
+        String fileName = getBaseDir() + "/testCountWithOwnChanges.h3";
+        FileUtils.delete(fileName);
+        MVStore s = MVStore.open(fileName);
+        TransactionStore ts = new TransactionStore(s);
+        ts.init();
+
+        Transaction tx1 = ts.begin();
+        TransactionMap<Integer, Integer> map1 = tx1.openMap("data");
+        for (int i = 0; i < 10; i++) {
+            map1.put(i, i);
+        }
+        tx1.commit();
+
+        tx1 = ts.begin();
+        map1 = tx1.openMap("data");
+        Transaction tx2 = ts.begin();
+        TransactionMap<Integer, Integer> map2 = tx2.openMap("data");
+        assertSize(10, map1);
+        for (int i = 10; i < 15; i++) {
+            map1.put(i, i);
+        }
+        map1.remove(0);
+        map1.remove(1);
+        map1.remove(10);
+        map1.put(2, 20);
+        map1.put(10, 100);
+        assertSize(13, map1);
+        assertSize(10, map2);
+
+        long savepoint = tx1.setSavepoint();
+        map1.put(20, 20);
+        map1.remove(3);
+        map1.put(3, 30);
+        map1.remove(4);
+        assertSize(13, map1);
+        // the changes after the savepoint are not visible
+        TransactionMap<Integer, Integer> old =
+                map1.getInstance(tx1, savepoint);
+        assertSize(13, old);
+        tx1.rollbackToSavepoint(savepoint);
+        assertSize(13, map1);
+        assertSize(10, map2);
+
+        tx1.prepare();
+        s.close();
+
+        s = MVStore.open(fileName);
+        ts = new TransactionStore(s);
+        ts.init();
+        tx2 = ts.begin();
+        map2 = tx2.openMap("data");
+        assertSize(10, map2);
+        tx1 = ts.getOpenTransactions().get(0);
+        tx1.commit();
+        assertSize(13, map2);
+        map2.remove(2);
+        map2.put(100, 100);
+        map2.put(101, 101);
+        assertSize(14, map2);
+        Transaction tx3 = ts.begin();
+        TransactionMap<Integer, Integer> map3 = tx3.openMap("data");
+        assertSize(13, map3);
+        tx2.rollback();
+        assertSize(13, map3);
+        Transaction tx4 = ts.begin();
+        TransactionMap<Integer, Integer> map4 = tx4.openMap("data");
+        map4.put(200, 200);
+        map4.put(201, 201);
+        assertSize(15, map4);
+        map3.clear();
+        assertSize(0, map3);
+        // clear also removes the changes of other open transactions
+        assertSize(0, map4);
+        tx4.commit();
+        assertSize(0, map3);
+        map3.put(1, 1);
+        assertSize(1, map3);
+        tx3.commit();
+        s.close();
+    }
+
+    private void assertSize(int expected, TransactionMap<Integer, ?> map) {
+        int count = 0;
+        for (Iterator<Integer> it = map.keyIterator(null); it.hasNext();) {
+            it.next();
+            count++;
+        }
+        assertEquals(expected, count);
+        assertEquals(expected, map.sizeAsLong());
+    }
+
     private void testConcurrentUpdate() {
         MVStore s;
         TransactionStore ts;
@@ -301,6 +397,59 @@ public class TestTransactionStore extends TestBase {
         s.close();
     }
 
+    private void testManyOpenTransactions() {
+        MVStore s = MVStore.open(null);
+        TransactionStore ts = new TransactionStore(s);
+        ts.init();
+        int count = 0x10000 + 100;
+        Transaction[] list = new Transaction[count];
+        for (int i = 0; i < count; i++) {
+            list[i] = ts.begin();
+            assertEquals(i + 1, list[i].getId());
+        }
+        Transaction last = list[count - 1];
+        TransactionMap<Integer, String> map = last.openMap("test");
+        map.put(1, "Hello");
+        Transaction tx = list[0];
+        TransactionMap<Integer, String> map2 = tx.openMap("test");
+        assertNull(map2.get(1));
+        assertEquals(0, map2.sizeAsLong());
+        assertEquals(1, ts.getOpenTransactions().size());
+        last.commit();
+        assertEquals("Hello", map2.get(1));
+        assertEquals(1, map2.sizeAsLong());
+
+        // the lowest free id is re-used
+        list[10].commit();
+        tx = ts.begin();
+        assertEquals(11, tx.getId());
+        map = tx.openMap("test");
+        map.put(1, "World");
+        tx.commit();
+        tx = ts.begin();
+        assertEquals(11, tx.getId());
+        assertEquals("World", tx.openMap("test").get(1));
+        tx.commit();
+        for (int i = 0; i < count - 1; i++) {
+            if (i != 10) {
+                list[i].commit();
+            }
+        }
+        assertEquals(0, ts.getOpenTransactions().size());
+        // the undo logs of high ids are removed, the others are re-used
+        assertFalse(s.hasMap("undoLog." + count));
+        assertTrue(s.hasMap("undoLog.11"));
+
+        ts.setMaxTransactionId(count);
+        try {
+            ts.setMaxTransactionId(1 << 24);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        s.close();
+    }
+
     private void testStopWhileCommitting() throws Exception {
         String fileName = getBaseDir() + "/testStopWhileCommitting.h3";
         FileUtils.delete(fileName);
@@ -316,6 +465,8 @@ public class TestTransactionStore extends TestBase {
             ts = new TransactionStore(s);
             ts.init();
             tx = ts.begin();
+            // each transaction id has its own undo log
+            String undoLogName = "undoLog." + tx.getId();
             s.setReuseSpace(false);
             m = tx.openMap("test");
             final String value = "x" + i;
@@ -348,11 +499,11 @@ public class TestTransactionStore extends TestBase {
             store.close();
             s = MVStore.open(fileName);
             // roll back a bit, until we have some undo log entries
-            assertTrue(s.hasMap("undoLog"));
+            assertTrue(s.hasMap(undoLogName));
             for (int back = 0; back < 100; back++) {
                 int minus = r.nextInt(10);
                 s.rollbackTo(Math.max(0, s.getCurrentVersion() - minus));
-                MVMap<?, ?> undo = s.openMap("undoLog");
+                MVMap<?, ?> undo = s.openMap(undoLogName);
                 if (undo.size() > 0) {
                     break;
                 }
@@ -579,6 +730,71 @@ public class TestTransactionStore extends TestBase {
         s.close();
     }
 
+    private void testSharedUndoLog() {
+        String fileName = getBaseDir() + "/testSharedUndoLog.h3";
+        FileUtils.delete(fileName);
+
+        MVStore s;
+        TransactionStore ts;
+        Transaction tx;
+        Transaction tx2;
+        TransactionMap<String, String> m;
+        TransactionMap<String, String> m2;
+        List<Transaction> list;
+
+        s = MVStore.open(fileName);
+        ts = new TransactionStore(s);
+        ts.init();
+        tx = ts.begin();
+        m = tx.openMap("test");
+        m.put("1", "Hello");
+        tx.commit();
+        tx = ts.begin();
+        m = tx.openMap("test");
+        m.put("1", "Hallo");
+        m.put("2", "World");
+        assertTrue(s.hasMap("undoLog." + tx.getId()));
+        s.commit();
+        s.close();
+
+        // older versions used one undo log for all transactions
+        s = MVStore.open(fileName);
+        s.renameMap(s.openMap("undoLog.1"), "undoLog");
+        s.close();
+
+        s = MVStore.open(fileName);
+        ts = new TransactionStore(s);
+        ts.init();
+        list = ts.getOpenTransactions();
+        assertEquals(1, list.size());
+        tx = list.get(0);
+        assertEquals(Transaction.STATUS_OPEN, tx.getStatus());
+        tx2 = ts.begin();
+        assertTrue(tx2.getId() != tx.getId());
+        m2 = tx2.openMap("test");
+        assertEquals("Hello", m2.get("1"));
+        assertNull(m2.get("2"));
+        assertEquals(1, m2.sizeAsLong());
+        tx.rollback();
+        assertEquals("Hello", m2.get("1"));
+        assertNull(m2.get("2"));
+        m2.put("2", "World");
+        tx2.commit();
+        s.close();
+
+        s = MVStore.open(fileName);
+        ts = new TransactionStore(s);
+        ts.init();
+        assertFalse(s.hasMap("undoLog"));
+        assertEquals(0, ts.getOpenTransactions().size());
+        tx = ts.begin();
+        m = tx.openMap("test");
+        assertEquals("Hello", m.get("1"));
+        assertEquals("World", m.get("2"));
+        tx.commit();
+        s.close();
+    }
+
     private void testTwoPhaseCommit() {
         String fileName = getBaseDir() + "/testTwoPhaseCommit.h3";
         FileUtils.delete(fileName);
@@ -1041,4 +1257,33 @@ public class TestTransactionStore extends TestBase {
         ts.close();
     }
 
+    private void testReadUncommittedWithoutCache() {
+        String fileName = getBaseDir() + "/testReadUncommittedWithoutCache.h3";
+        FileUtils.delete(fileName);
+        // without cache, each read of a stored page creates new objects
+        MVStore s = new MVStore.Builder().
+                fileName(fileName).cacheSize(0).pageSplitSize(100).open();
+        TransactionStore ts = new TransactionStore(s);
+        ts.init();
+        Transaction tx = ts.begin();
+        TransactionMap<Integer, String> m = tx.openMap("test");
+        for (int i = 0; i < 100; i++) {
+            m.put(i, "Hello");
+        }
+        tx.commit();
+        tx = ts.begin();
+        m = tx.openMap("test");
+        m.put(1, "World");
+        s.commit();
+        Transaction tx2 = ts.begin();
+        TransactionMap<Integer, String> m2 = tx2.openMap("test");
+        assertEquals("Hello", m2.get(1));
+        tx.commit();
+        assertEquals("World", m2.get(1));
+        tx2.commit();
+        ts.close();
+        s.close();
+        FileUtils.delete(fileName);
+    }
+
 }
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2004-2014 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.test.unit;
+
+import java.util.Random;
+
+import org.h2.test.TestBase;
+import org.h2.util.LongIntHashMap;
+
+/**
+ * Tests the LongIntHashMap class.
+ */
+public class TestLongIntHashMap extends TestBase {
+
+    private final Random rand = new Random();
+
+    /**
+     * Run just this test.
+     *
+     * @param a ignored
+     */
+    public static void main(String... a) throws Exception {
+        TestBase.createCaller().init().test();
+    }
+
+    @Override
+    public void test() {
+        LongIntHashMap map = new LongIntHashMap();
+        map.put(1, 1);
+        map.put(1, 2);
+        assertEquals(1, map.size());
+        assertEquals(2, map.get(1));
+        assertEquals(LongIntHashMap.NOT_FOUND, map.get(0));
+        map.put(0, 1);
+        map.put(0, 2);
+        assertEquals(2, map.size());
+        assertEquals(2, map.get(0));
+        // keys that only differ in the upper bits
+        map.put(1L << 32, 3);
+        map.put(-1L, 4);
+        assertEquals(2, map.get(1));
+        assertEquals(3, map.get(1L << 32));
+        assertEquals(4, map.get(-1L));
+        assertEquals(4, map.size());
+        rand.setSeed(10);
+        test(true);
+        test(false);
+    }
+
+    private void test(boolean random) {
+        int len = 2000;
+        long[] x = new long[len];
+        for (int i = 0; i < len; i++) {
+            long key = random ? rand.nextLong() : i;
+            x[i] = key;
+        }
+        LongIntHashMap map = new LongIntHashMap();
+        for (int i = 0; i < len; i++) {
+            map.put(x[i], i);
+        }
+        assertEquals(len, map.size());
+        for (int i = 0; i < len; i++) {
+            if (map.get(x[i]) != i) {
+                throw new AssertionError("get " + x[i] + " = " + map.get(x[i]) +
+                        " should be " + i);
+            }
+        }
+        for (int i = 0; i < len; i++) {
+            map.put(x[i], len - i);
+        }
+        assertEquals(len, map.size());
+        for (int i = 0; i < len; i++) {
+            if (map.get(x[i]) != len - i) {
+                throw new AssertionError("get " + x[i] + " = " + map.get(x[i]) +
+                        " should be " + (len - i));
+            }
+        }
+    }
+}
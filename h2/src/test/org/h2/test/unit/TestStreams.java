@@ -34,6 +34,7 @@ public class TestStreams extends TestBase {
     public void test() throws IOException {
         testLZFStreams();
         testLZFStreamClose();
+        testLZFStreamFlush();
     }
 
     private static byte[] getRandomBytes(Random random) {
@@ -68,6 +69,36 @@ public class TestStreams extends TestBase {
         FileUtils.delete(getBaseDir() + "/temp");
     }
 
+    private void testLZFStreamFlush() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        LZFOutputStream comp = new LZFOutputStream(out);
+        ByteArrayInputStream in = new ByteArrayInputStream(new byte[0]);
+        // the header is only read with the first block
+        LZFInputStream decompress = new LZFInputStream(in);
+        assertEquals(0, decompress.available());
+        comp.write("Hello".getBytes());
+        comp.flush();
+        int len = out.size();
+        assertTrue(len > 5);
+        comp.write(" World".getBytes());
+        comp.flush();
+        assertTrue(out.size() > len);
+        in = new ByteArrayInputStream(out.toByteArray());
+        decompress = new LZFInputStream(in);
+        byte[] buff = new byte[100];
+        // only one block is read at a time
+        assertEquals(5, decompress.read(buff));
+        assertEquals("Hello", new String(buff, 0, 5));
+        assertTrue(decompress.available() > 0);
+        assertEquals(' ', decompress.read());
+        assertEquals(5, decompress.available());
+        assertEquals(5, decompress.read(buff));
+        assertEquals("World", new String(buff, 0, 5));
+        assertEquals(-1, decompress.read(buff));
+        comp.close();
+        decompress.close();
+    }
+
     private void testLZFStreams() throws IOException {
         Random random = new Random(1);
         int max = getSize(100, 1000);
@@ -84,6 +84,7 @@ public class TestTools extends TestBase {
         org.h2.Driver.load();
         testSimpleResultSet();
         testTcpServerWithoutPort();
+        testTcpServerWithWorkers();
         testConsole();
         testJdbcDriverUtils();
         testWrongServer();
@@ -121,6 +122,76 @@ public class TestTools extends TestBase {
         s1.stop();
     }
 
+    private void testTcpServerWithWorkers() throws Exception {
+        Server s = Server.createTcpServer(
+                "-tcpPort", "9124", "-tcpWorkers", "2").start();
+        String url = "jdbc:h2:tcp://localhost:9124/mem:workers";
+        assertThrows(ErrorCode.DATABASE_NOT_FOUND_1, this).
+                getConnection(url + ";IFEXISTS=TRUE", "sa", "sa");
+        Connection[] list = new Connection[5];
+        for (int i = 0; i < list.length; i++) {
+            list[i] = getConnection(url, "sa", "sa");
+        }
+        list[0].createStatement().execute(
+                "create table test(id int primary key, name varchar)");
+        for (int i = 0; i < list.length; i++) {
+            PreparedStatement prep = list[i].prepareStatement(
+                    "insert into test values(?, ?)");
+            for (int j = 0; j < 100; j++) {
+                prep.setInt(1, i * 100 + j);
+                prep.setString(2, "Hello");
+                prep.addBatch();
+            }
+            prep.executeBatch();
+        }
+        list[list.length - 1].close();
+        for (int i = 0; i < list.length - 1; i++) {
+            ResultSet rs = list[i].createStatement().executeQuery(
+                    "select * from test order by id");
+            for (int j = 0; j < 500; j++) {
+                assertTrue(rs.next());
+                assertEquals(j, rs.getInt(1));
+            }
+            assertFalse(rs.next());
+        }
+        // more requests wait for a lock than there are workers:
+        // the request that releases the lock is still processed
+        Connection owner = getConnection(url, "sa", "sa");
+        owner.setAutoCommit(false);
+        owner.createStatement().execute(
+                "update test set name = 'Owner' where id = 1");
+        Task[] tasks = new Task[3];
+        for (int i = 0; i < tasks.length; i++) {
+            final Connection conn = getConnection(url, "sa", "sa");
+            conn.createStatement().execute("set lock_timeout 10000");
+            tasks[i] = new Task() {
+                @Override
+                public void call() throws Exception {
+                    try {
+                        conn.createStatement().execute(
+                                "update test set name = 'Waiting' where id = 1");
+                    } finally {
+                        conn.close();
+                    }
+                }
+            }.execute();
+        }
+        Thread.sleep(500);
+        long start = System.currentTimeMillis();
+        owner.commit();
+        assertTrue(System.currentTimeMillis() - start < 2000);
+        for (Task t : tasks) {
+            t.get();
+        }
+        owner.close();
+        for (int i = 0; i < list.length - 1; i++) {
+            list[i].close();
+        }
+        s.stop();
+        assertThrows(ErrorCode.CONNECTION_BROKEN_1, this).
+                getConnection(url, "sa", "sa");
+    }
+
     private void testConsole() throws Exception {
         String old = System.getProperty(SysProperties.H2_BROWSER);
         Console c = new Console();